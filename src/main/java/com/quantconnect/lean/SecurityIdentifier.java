@@ -55,7 +55,7 @@ public class SecurityIdentifier {
     /**
      * Gets an instance of <see cref="SecurityIdentifier"/> that is empty, that is, one with no symbol specified
      */
-    public static final SecurityIdentifier EMPTY = new SecurityIdentifier( null, BigInteger.ZERO );
+    public static final SecurityIdentifier EMPTY = new SecurityIdentifier( "", BigInteger.ZERO );
 
     /**
      * Gets the date to be used when it does not apply.
@@ -153,7 +153,12 @@ public class SecurityIdentifier {
 
         final BigInteger scale = extractFromProperties( StrikeScaleOffset, StrikeScaleWidth );
         final BigInteger unscaled = extractFromProperties( StrikeOffset, StrikeWidth );
-        final BigDecimal pow = BigDecimal.valueOf( 10 ).pow( scale.intValue() - StrikeDefaultScale );
+        final int exponent = scale.intValue() - StrikeDefaultScale;
+        // fractional strikes have a negative exponent, which BigDecimal.pow doesn't take
+        if( exponent < 0 )
+            return new BigDecimal( unscaled ).scaleByPowerOfTen( exponent );
+
+        final BigDecimal pow = BigDecimal.valueOf( 10 ).pow( exponent );
         return pow.multiply( new BigDecimal( unscaled ) );
     }
 
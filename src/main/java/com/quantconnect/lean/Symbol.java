@@ -38,7 +38,7 @@ public final class Symbol implements Comparable<Object> {
      * Represents an unassigned symbol. This is intended to be used as an
      * uninitialized, default value
      */
-    public static final Symbol EMPTY = new Symbol( SecurityIdentifier.EMPTY, null );
+    public static final Symbol EMPTY = new Symbol( SecurityIdentifier.EMPTY, "" );
     
     /**
      * Provides a convience method for creating a Symbol for most security types.
@@ -107,7 +107,7 @@ public final class Symbol implements Comparable<Object> {
         // format spec: http://www.optionsclearing.com/components/docs/initiatives/symbology/symbology_initiative_v1_8.pdf
         if( alias == null ) {
             alias = String.format( "%-6s%02d%02d%02d%s%08d", sym, expiry.getYear() - 2000, expiry.getMonth().getValue(), expiry.getDayOfMonth(), 
-                    sid.getOptionRight() == OptionRight.CALL ? "C" : "P", strike.setScale( 3, RoundingMode.HALF_UP ).movePointRight( 3 ) );
+                    sid.getOptionRight() == OptionRight.CALL ? "C" : "P", strike.setScale( 3, RoundingMode.HALF_UP ).movePointRight( 3 ).longValue() );
 //            alias = String.format( "%-6s%2$s%3$s{3:00000000}", sym, sid.Date.toString(DateFormat.SixCharacter), sid.getOptionRight().toString().charAt( 0 ), sid.StrikePrice * 1000m);
         }
         
@@ -16,7 +16,6 @@
 package com.quantconnect.lean;
 
 import java.time.Duration;
-import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -86,7 +85,7 @@ public class Time {
      */
     public static final Duration ONE_MILLISECOND = Duration.ofMillis( 1 );
     
-    private static final LocalDateTime EPOCH_TIME = LocalDateTime.from( Instant.EPOCH ); //( 1970, 1, 1, 0, 0, 0, 0 );
+    private static final LocalDateTime EPOCH_TIME = LocalDateTime.of( 1970, 1, 1, 0, 0 );
 
     /**
      * Live charting is sensitive to timezone so need to convert the local system time to a UTC and display in browser as UTC.
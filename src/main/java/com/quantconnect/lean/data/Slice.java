@@ -17,26 +17,35 @@ package com.quantconnect.lean.data;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 import com.quantconnect.lean.Symbol;
 import com.quantconnect.lean.data.market.DataDictionary;
+import com.quantconnect.lean.data.market.Delisting;
 import com.quantconnect.lean.data.market.Delistings;
+import com.quantconnect.lean.data.market.Dividend;
 import com.quantconnect.lean.data.market.Dividends;
+import com.quantconnect.lean.data.market.OptionChain;
 import com.quantconnect.lean.data.market.OptionChains;
+import com.quantconnect.lean.data.market.QuoteBar;
 import com.quantconnect.lean.data.market.QuoteBars;
+import com.quantconnect.lean.data.market.Split;
 import com.quantconnect.lean.data.market.Splits;
+import com.quantconnect.lean.data.market.SymbolChangedEvent;
 import com.quantconnect.lean.data.market.SymbolChangedEvents;
 import com.quantconnect.lean.data.market.Tick;
 import com.quantconnect.lean.data.market.Ticks;
@@ -65,8 +74,12 @@ public class Slice implements Iterable<Entry<Symbol,BaseData>> {
     // String -> data   for non-tick data
     // String -> list{data} for tick data
     private final Lazy<DataDictionary<SymbolData>> _data;
-    // Quandl -> DataDictonary<Quandl>
-    private final Map<Class<?>,Lazy<Object>> _dataByType;
+    // Quandl -> DataDictonary<Quandl>, each built in a single pass on first access
+    private final Map<Class<?>,DataDictionary<?>> _dataByType;
+    // stable snapshot of the symbol -> data pairs used for iteration
+    private final Lazy<Entry<Symbol,BaseData>[]> _entries;
+    // primitive columns of the bar data, only built if requested
+    private final Lazy<SliceColumns> _columns;
 
     private final LocalDateTime Time;
     private final boolean hasData;
@@ -141,6 +154,14 @@ public class Slice implements Iterable<Entry<Symbol,BaseData>> {
         return _symbolChangedEvents;
     }
 
+    /**
+     * Gets the columnar snapshot of the trade and quote bars in this slice. The snapshot is built
+     * on first access and shared by all subsequent calls for this slice.
+     */
+    public SliceColumns getColumns() {
+        return _columns.get();
+    }
+
     /**
      * Gets the number of symbols held in this slice
      */
@@ -159,7 +180,12 @@ public class Slice implements Iterable<Entry<Symbol,BaseData>> {
      * Gets a list of all the data in this slice
      */
     public ImmutableList<BaseData> values() {
-        return ImmutableList.copyOf( Iterables.transform( getKeyValuePairIterable(), x -> x.getValue() ) );
+        final Entry<Symbol,BaseData>[] entries = _entries.get();
+        final ImmutableList.Builder<BaseData> values = ImmutableList.builder();
+        for( int i = 0; i < entries.length; i++ )
+            values.add( entries[i].getValue() );
+        
+        return values.build();
     }
 
     /**
@@ -213,19 +239,21 @@ public class Slice implements Iterable<Entry<Symbol,BaseData>> {
 
         // market data
         _data = Lazy.of( () -> createDynamicDataDictionary( data ) );
+        _entries = Lazy.of( this::createEntries );
+        _columns = Lazy.of( () -> new SliceColumns( getBars(), getQuoteBars() ) );
 
         this.hasData = hasData != null ? hasData : _data.get().size() > 0;
 
         _ticks = createTicksCollection( ticks );
-        _bars = createCollection( tradeBars, TradeBars.class );
-        _quoteBars = createCollection( quoteBars, QuoteBars.class );
-        _optionChains = createCollection( optionChains, OptionChains.class );
+        _bars = createCollection( tradeBars, TradeBars.class, TradeBar.class );
+        _quoteBars = createCollection( quoteBars, QuoteBars.class, QuoteBar.class );
+        _optionChains = createCollection( optionChains, OptionChains.class, OptionChain.class );
 
         // auxiliary data
-        _splits = createCollection( splits, Splits.class );
-        _dividends = createCollection( dividends, Dividends.class );
-        _delistings = createCollection( delistings, Delistings.class );
-        _symbolChangedEvents = createCollection( symbolChanges, SymbolChangedEvents.class );
+        _splits = createCollection( splits, Splits.class, Split.class );
+        _dividends = createCollection( dividends, Dividends.class, Dividend.class );
+        _delistings = createCollection( delistings, Delistings.class, Delisting.class );
+        _symbolChangedEvents = createCollection( symbolChanges, SymbolChangedEvents.class, SymbolChangedEvent.class );
     }
 
     /**
@@ -235,17 +263,13 @@ public class Slice implements Iterable<Entry<Symbol,BaseData>> {
      */
     @SuppressWarnings("unchecked")
     public <T extends BaseData> DataDictionary<T> get( final Class<? extends T> type ) {
-        Lazy<Object> dictionary = _dataByType.get( type );
+        DataDictionary<?> dictionary = _dataByType.get( type );
         if( dictionary == null ) {
-            if( type.equals( Tick.class ) )
-                dictionary = Lazy.of( () -> new DataDictionary<>( _data.get().values().stream().flatMap( x -> ((List<T>)x.getData()).stream() ).collect( Collectors.toList() ), x -> x.getSymbol() ) );
-            else
-                dictionary = Lazy.of( () -> new DataDictionary<>( _data.get().values().stream().map( x -> (T)x.getData() ).collect( Collectors.toList() ), x -> x.getSymbol() ) );
-
+            dictionary = createTypedDictionary( type );
             _dataByType.put( type, dictionary );
         }
 
-        return (DataDictionary<T>)dictionary.get();
+        return (DataDictionary<T>)dictionary;
     }
 
     /**
@@ -274,11 +298,31 @@ public class Slice implements Iterable<Entry<Symbol,BaseData>> {
         return _data.get().containsKey( symbol );
     }
 
+    /**
+     * Produces the read only dictionary holding the data of the requested type in a single pass over the
+     * dynamic data dictionary. Tick subscriptions are represented by their last tick, as they are when iterating.
+     */
+    private <T extends BaseData> DataDictionary<T> createTypedDictionary( final Class<? extends T> type ) {
+        final DataDictionary<T> dictionary = new DataDictionary<>( _data.get().size() );
+        for( final Entry<Symbol,SymbolData> kvp : _data.get().entrySet() ) {
+            final SymbolData symbolData = kvp.getValue();
+            if( symbolData.type == null )
+                continue;
+
+            final Object data = symbolData.type == SubscriptionType.Tick ? Iterables.getLast( symbolData.ticks, null ) : symbolData.getData();
+            if( type.isInstance( data ) )
+                dictionary.put( kvp.getKey(), type.cast( data ) );
+        }
+
+        dictionary.lockReadOnly();
+        return dictionary;
+    }
+
     /**
      * Produces the dynamic data dictionary from the input data
      */
     private DataDictionary<SymbolData> createDynamicDataDictionary( final Iterable<BaseData> data ) {
-        final DataDictionary<SymbolData> allData = new DataDictionary<>();
+        final DataDictionary<SymbolData> allData = data instanceof Collection ? new DataDictionary<>( ((Collection<BaseData>)data).size() ) : new DataDictionary<>();
         for( final BaseData datum : data) {
             final SymbolData symbolData = allData.computeIfAbsent( datum.getSymbol(), s -> new SymbolData( s ) );
 
@@ -312,18 +356,17 @@ public class Slice implements Iterable<Entry<Symbol,BaseData>> {
     /**
      * Returns the input ticks if non-null, otherwise produces one fom the dynamic data dictionary
      */
-    @SuppressWarnings("unchecked")
     private Ticks createTicksCollection( final Ticks ticks ) {
         if( ticks != null )
             return ticks;
 
         final Ticks newTicks = new Ticks();
-        _data.get().values().stream()
-            .map( x -> (List<Tick>)x.getData() )
-            .filter( x -> x.size() != 0 )
-            .forEach( x -> newTicks.put( x.get( 0 ).getSymbol(), x ) );
+        for( final SymbolData symbolData : _data.get().values() ) {
+            if( symbolData.type == SubscriptionType.Tick && symbolData.ticks.size() != 0 )
+                newTicks.put( symbolData.ticks.get( 0 ).getSymbol(), symbolData.ticks );
+        }
 
-        return ticks;
+        return newTicks;
     }
 
     /**
@@ -331,10 +374,11 @@ public class Slice implements Iterable<Entry<Symbol,BaseData>> {
      * <typeparam name="T The data dictionary type</typeparam>
      * <typeparam name="TItem The item type of the data Map</typeparam>
      * @param collection The input collection, if non-null, returned immediately
+     * @param type The data dictionary type
+     * @param itemType The item type, data of any other type is left out of the collection
      * @returns The data dictionary of <typeparamref name="TItem"/> containing all the data of that type in this slice
      */
-    @SuppressWarnings("unchecked")
-    private <T extends DataDictionary<TItem>,TItem extends BaseData> T createCollection( T collection, final Class<T> type ) {
+    private <T extends DataDictionary<TItem>,TItem extends BaseData> T createCollection( T collection, final Class<T> type, final Class<TItem> itemType ) {
         if( collection != null )
             return collection;
         
@@ -347,8 +391,16 @@ public class Slice implements Iterable<Entry<Symbol,BaseData>> {
             return null;
         }
         
-        for( final TItem item : _data.get().values().stream().map( x -> (TItem)x.getData() ).collect( Collectors.toList() ) )
-            collection.put( item.getSymbol(), item );
+        for( final SymbolData symbolData : _data.get().values() ) {
+            if( symbolData.type == null )
+                continue;
+
+            final Object data = symbolData.getData();
+            if( itemType.isInstance( data ) ) {
+                final TItem item = itemType.cast( data );
+                collection.put( item.getSymbol(), item );
+            }
+        }
 
         return collection;
     }
@@ -359,12 +411,29 @@ public class Slice implements Iterable<Entry<Symbol,BaseData>> {
      */
     @Override
     public Iterator<Entry<Symbol,BaseData>> iterator() {
-        return getKeyValuePairIterable().iterator();
+        return Iterators.forArray( _entries.get() );
     }
 
-    private Iterable<Entry<Symbol, BaseData>> getKeyValuePairIterable() {
+    /**
+     * Produces the symbol/data pairs once so repeated iteration doesn't re-collect the dynamic data dictionary.
+     * Tick subscriptions are represented by their last tick.
+     */
+    @SuppressWarnings("unchecked")
+    private Entry<Symbol,BaseData>[] createEntries() {
         // TODO this will not enumerate auxiliary data!
-        return _data.get().entrySet().stream().collect( Collectors.toMap( Entry::getKey, kvp -> (BaseData)kvp.getValue().getData() ) ).entrySet();
+        final DataDictionary<SymbolData> data = _data.get();
+        final Entry<Symbol,BaseData>[] entries = (Entry<Symbol,BaseData>[])new Entry<?,?>[data.size()];
+        int i = 0;
+        for( final Entry<Symbol,SymbolData> kvp : data.entrySet() ) {
+            final SymbolData symbolData = kvp.getValue();
+            if( symbolData.type == null )
+                continue;
+
+            final BaseData value = symbolData.type == SubscriptionType.Tick ? Iterables.getLast( symbolData.ticks, null ) : (BaseData)symbolData.getData();
+            entries[i++] = new SimpleImmutableEntry<>( kvp.getKey(), value );
+        }
+
+        return i == entries.length ? entries : Arrays.copyOf( entries, i );
     }
 
     private enum SubscriptionType { TradeBar, Tick, Custom };
@@ -0,0 +1,256 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.quantconnect.lean.data;
+
+import java.util.Arrays;
+
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.data.market.Bar;
+import com.quantconnect.lean.data.market.QuoteBar;
+import com.quantconnect.lean.data.market.QuoteBars;
+import com.quantconnect.lean.data.market.TradeBar;
+import com.quantconnect.lean.data.market.TradeBars;
+
+import it.unimi.dsi.fastutil.ints.AbstractIntComparator;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * Provides a columnar snapshot of the bar data in a <see cref="Slice"/>. Each symbol is assigned a column index
+ * and its prices are held in parallel primitive arrays, so cross sectional computations such as ranking, z-scores
+ * and filters can run over whole arrays instead of traversing and unboxing each bar.
+ *
+ * Values that are not available for a symbol, for example the bid/ask of a symbol with only a trade bar, are
+ * <c>NaN</c>. The getters return copies of the columns, so a snapshot shared through <see cref="Slice.getColumns"/>
+ * can't be changed by the algorithm that reads it. Fetch each column once per slice rather than once per symbol.
+ */
+public class SliceColumns {
+
+    private final Symbol[] symbols;
+    private final Object2IntOpenHashMap<Symbol> indexes;
+
+    private final double[] open;
+    private final double[] high;
+    private final double[] low;
+    private final double[] close;
+    private final double[] volume;
+    private final double[] bid;
+    private final double[] ask;
+
+    /**
+     * Initializes a new instance of the <see cref="SliceColumns"/> class from the trade and quote bars of a slice
+     * @param tradeBars The trade bars of the slice
+     * @param quoteBars The quote bars of the slice
+     */
+    public SliceColumns( final TradeBars tradeBars, final QuoteBars quoteBars ) {
+        indexes = new Object2IntOpenHashMap<>( tradeBars.size() + quoteBars.size() );
+        indexes.defaultReturnValue( -1 );
+
+        // trade bar symbols first, then quote bar only symbols
+        final Symbol[] order = new Symbol[tradeBars.size() + quoteBars.size()];
+        int count = 0;
+        for( final Symbol symbol : tradeBars.keySet() ) {
+            indexes.put( symbol, count );
+            order[count++] = symbol;
+        }
+        for( final Symbol symbol : quoteBars.keySet() ) {
+            if( !indexes.containsKey( symbol ) ) {
+                indexes.put( symbol, count );
+                order[count++] = symbol;
+            }
+        }
+
+        symbols = count == order.length ? order : Arrays.copyOf( order, count );
+        open = nans( count );
+        high = nans( count );
+        low = nans( count );
+        close = nans( count );
+        volume = nans( count );
+        bid = nans( count );
+        ask = nans( count );
+
+        for( int i = 0; i < count; i++ ) {
+            final TradeBar tradeBar = tradeBars.get( symbols[i] );
+            if( tradeBar != null ) {
+                open[i] = tradeBar.getOpen().doubleValue();
+                high[i] = tradeBar.getHigh().doubleValue();
+                low[i] = tradeBar.getLow().doubleValue();
+                close[i] = tradeBar.getClose().doubleValue();
+                volume[i] = tradeBar.getVolume();
+            }
+
+            final QuoteBar quoteBar = quoteBars.get( symbols[i] );
+            if( quoteBar != null ) {
+                final Bar bidBar = quoteBar.getBid();
+                final Bar askBar = quoteBar.getAsk();
+                if( bidBar != null )
+                    bid[i] = bidBar.getClose().doubleValue();
+                if( askBar != null )
+                    ask[i] = askBar.getClose().doubleValue();
+
+                // symbols without trades take their prices from the quotes
+                if( tradeBar == null ) {
+                    open[i] = quoteBar.getOpen().doubleValue();
+                    high[i] = quoteBar.getHigh().doubleValue();
+                    low[i] = quoteBar.getLow().doubleValue();
+                    close[i] = quoteBar.getClose().doubleValue();
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of symbols in this snapshot
+     */
+    public int size() {
+        return symbols.length;
+    }
+
+    /**
+     * Gets the column index of the specified symbol
+     * @param symbol The symbol we seek
+     * @returns The index of the symbol, or -1 if the symbol has no bar data in this snapshot
+     */
+    public int indexOf( final Symbol symbol ) {
+        return indexes.getInt( symbol );
+    }
+
+    /**
+     * Gets the symbol at the specified column index
+     */
+    public Symbol getSymbol( final int index ) {
+        return symbols[index];
+    }
+
+    /**
+     * Gets the symbols of this snapshot, indexed by column
+     */
+    public Symbol[] getSymbols() {
+        return symbols.clone();
+    }
+
+    /**
+     * Gets the opening prices, indexed by column
+     */
+    public double[] getOpen() {
+        return open.clone();
+    }
+
+    /**
+     * Gets the high prices, indexed by column
+     */
+    public double[] getHigh() {
+        return high.clone();
+    }
+
+    /**
+     * Gets the low prices, indexed by column
+     */
+    public double[] getLow() {
+        return low.clone();
+    }
+
+    /**
+     * Gets the closing prices, indexed by column
+     */
+    public double[] getClose() {
+        return close.clone();
+    }
+
+    /**
+     * Gets the traded volumes, indexed by column
+     */
+    public double[] getVolume() {
+        return volume.clone();
+    }
+
+    /**
+     * Gets the closing bid prices, indexed by column
+     */
+    public double[] getBid() {
+        return bid.clone();
+    }
+
+    /**
+     * Gets the closing ask prices, indexed by column
+     */
+    public double[] getAsk() {
+        return ask.clone();
+    }
+
+    /**
+     * Computes the z-score of each value against the cross section, ignoring <c>NaN</c> values
+     * @param values The values indexed by column, for example <see cref="getClose"/>
+     * @returns A new array with the z-score of each value, <c>NaN</c> where the input is <c>NaN</c>, and every score
+     * is <c>NaN</c> when the values have no dispersion, including when fewer than two of them are numbers
+     */
+    public static double[] zScores( final double[] values ) {
+        double sum = 0;
+        int n = 0;
+        for( int i = 0; i < values.length; i++ ) {
+            if( !Double.isNaN( values[i] ) ) {
+                sum += values[i];
+                n++;
+            }
+        }
+
+        final double[] scores = nans( values.length );
+        if( n == 0 )
+            return scores;
+
+        final double mean = sum / n;
+        double sumSquares = 0;
+        for( int i = 0; i < values.length; i++ ) {
+            if( !Double.isNaN( values[i] ) ) {
+                final double delta = values[i] - mean;
+                sumSquares += delta * delta;
+            }
+        }
+
+        final double std = Math.sqrt( sumSquares / n );
+        if( std > 0 ) {
+            for( int i = 0; i < values.length; i++ )
+                scores[i] = ( values[i] - mean ) / std;
+        }
+
+        return scores;
+    }
+
+    /**
+     * Ranks the values of the cross section in ascending order
+     * @param values The values indexed by column, for example <see cref="getClose"/>
+     * @returns The column indexes ordered from the lowest to the highest value, ties keep column order and <c>NaN</c> values are last
+     */
+    public static int[] rank( final double[] values ) {
+        final int[] indexes = new int[values.length];
+        for( int i = 0; i < indexes.length; i++ )
+            indexes[i] = i;
+
+        IntArrays.mergeSort( indexes, new AbstractIntComparator() {
+            @Override
+            public int compare( final int a, final int b ) {
+                return Double.compare( values[a], values[b] );
+            }
+        } );
+        return indexes;
+    }
+
+    private static double[] nans( final int length ) {
+        final double[] values = new double[length];
+        Arrays.fill( values, Double.NaN );
+        return values;
+    }
+}
@@ -1,7 +1,7 @@
 package com.quantconnect.lean.data.market;
 
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
@@ -12,17 +12,34 @@ import com.quantconnect.lean.Symbol;
 import com.quantconnect.lean.SymbolCache;
 import com.quantconnect.lean.data.BaseData;
 
+import it.unimi.dsi.fastutil.Hash;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+
 /**
  * Provides a base class for types holding base data instances keyed by symbol
  */
 public class DataDictionary<T> implements Map<Symbol,T> {
     
-    // storage for the data
-    private final Map<Symbol,T> data = new HashMap<>();
+    // storage for the data, open addressing so entries don't allocate a node each
+    private final Object2ObjectOpenHashMap<Symbol,T> data;
+    
+    private boolean readOnly;
+
+    // the most symbols held since the table was last trimmed, the table is sized for at least this many
+    private int peakSize;
 
     
     public DataDictionary() {
-        super();
+        data = new Object2ObjectOpenHashMap<>();
+    }
+
+    /**
+     * Initializes a new instance of the <see cref="QuantConnect.Data.Market.DataDictionary{T}"/> class
+     * sized to hold the specified number of symbols without rehashing
+     * @param expectedSize The expected number of symbols
+     */
+    public DataDictionary( final int expectedSize ) {
+        data = new Object2ObjectOpenHashMap<>( expectedSize );
     }
 
     /**
@@ -32,17 +49,48 @@ public class DataDictionary<T> implements Map<Symbol,T> {
      * @param keySelector Delegate used to select a key from the value
      */
     public DataDictionary( final Iterable<T> data, final Function<T,Symbol> keySelector ) {
+        this( data instanceof Collection ? ((Collection<T>)data).size() : Hash.DEFAULT_INITIAL_SIZE );
         for( final T datum : data )
             put( keySelector.apply( datum ), datum );
     }
 
+    /**
+     * Gets a value indicating whether this instance is read only.
+     * @returns <c>true</c> if this instance is read only; otherwise, <c>false</c>.
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Sets whether this instance is read only
+     * @param readOnly True to reject all further modifications
+     */
+    void setReadOnly( final boolean readOnly ) {
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Marks this instance read only. Producers that reuse a dictionary across time steps keep the returned action
+     * and run it before refilling the dictionary, code the dictionary is handed to has no way to make it writable.
+     * @returns The action making this instance writable again
+     * <exception cref="IllegalStateException">This instance is already read only</exception>
+     */
+    public Runnable lockReadOnly() {
+        if( readOnly )
+            throw new IllegalStateException( Extensions.getBetterTypeName( getClass() ) + " is already read-only." );
+
+        readOnly = true;
+        return () -> readOnly = false;
+    }
+
     /**
      * Returns an enumerator that iterates through the collection.
      * @returns A <see cref="T:System.Collections.Generic.IEnumerator`1"/> that can be used to iterate through the collection.
      */
     @Override
     public Set<Entry<Symbol,T>> entrySet() {
-        return data.entrySet();
+        return readOnly ? Collections.unmodifiableSet( data.entrySet() ) : data.entrySet();
     }
 
 //    /**
@@ -55,10 +103,22 @@ public class DataDictionary<T> implements Map<Symbol,T> {
 
     /**
      * Removes all items from the <see cref="T:System.Collections.Generic.ICollection`1"/>.
+     * A cleared dictionary keeps its table for the next fill, unless it held less than a quarter of the symbols it
+     * once did, then the table is shrunk to the last fill's size so a reused dictionary doesn't keep a peak sized table.
      * <exception cref="T:System.NotSupportedException The <see cref="T:System.Collections.Generic.ICollection`1"/> is read-only. </exception>
      */
     @Override
     public void clear() {
+        checkWritable();
+        final int size = data.size();
+        if( size > peakSize )
+            peakSize = size;
+        else if( size < peakSize / 4 ) {
+            // trim() sizes the table for the current entries, trim(int) of this fastutil version never shrinks
+            data.trim();
+            peakSize = size;
+        }
+
         data.clear();
     }
 
@@ -91,6 +151,7 @@ public class DataDictionary<T> implements Map<Symbol,T> {
      */
     @Override
     public T put( final Symbol key, final T data ) {
+        checkWritable();
         return this.data.put( key, data );
     }
 
@@ -105,6 +166,7 @@ public class DataDictionary<T> implements Map<Symbol,T> {
      */
     @Override
     public T remove( final Object key ) {
+        checkWritable();
         return data.remove( key );
     }
 
@@ -153,7 +215,7 @@ public class DataDictionary<T> implements Map<Symbol,T> {
      */
     @Override
     public Set<Symbol> keySet() {
-        return data.keySet();
+        return readOnly ? Collections.unmodifiableSet( data.keySet() ) : data.keySet();
     }
 
     /**
@@ -162,7 +224,7 @@ public class DataDictionary<T> implements Map<Symbol,T> {
      */
     @Override
     public Collection<T> values() {
-        return data.values();
+        return readOnly ? Collections.unmodifiableCollection( data.values() ) : data.values();
     }
      
     /**
@@ -186,6 +248,12 @@ public class DataDictionary<T> implements Map<Symbol,T> {
 
     @Override
     public void putAll( final Map<? extends Symbol,? extends T> m ) {
+        checkWritable();
         data.putAll( m );
     }
+
+    private void checkWritable() {
+        if( readOnly )
+            throw new UnsupportedOperationException( Extensions.getBetterTypeName( getClass() ) + " is read-only and cannot be modified." );
+    }
 }
\ No newline at end of file
@@ -46,6 +46,7 @@ public class OptionChain extends BaseData implements Iterable<OptionContract> {
     private QuoteBars quoteBars;
     private OptionContracts contracts;
     private Set<Symbol> filteredContracts;
+    private OptionChainIndex contractIndex;
 
     
     /**
@@ -88,6 +89,17 @@ public class OptionChain extends BaseData implements Iterable<OptionContract> {
         return contracts;
     }
 
+    /**
+     * Gets an index of the contracts in this chain by expiry, right and strike, for strike and expiry
+     * range queries. The index is brought up to date with <see cref="getContracts"/> on each call.
+     */
+    public OptionChainIndex getContractIndex() {
+        if( contractIndex == null )
+            contractIndex = new OptionChainIndex();
+        contractIndex.update( contracts.keySet() );
+        return contractIndex;
+    }
+
     /**
      * Gets the set of symbols that passed the <see cref="Option.ContractFilter"/>
      */
@@ -0,0 +1,367 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.data.market;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.quantconnect.lean.OptionRight;
+import com.quantconnect.lean.SecurityIdentifier;
+import com.quantconnect.lean.Symbol;
+
+/**
+ * Indexes the contracts of an option chain by expiry, right and strike for range queries.
+ *
+ * Expiries are kept sorted and each expiry holds the call and put strikes as sorted primitive arrays, so selecting
+ * a strike and expiry window costs two binary searches per expiry plus the size of the result. The strike, expiry
+ * and right of a contract are read from its <see cref="SecurityIdentifier"/> once, when the contract is added.
+ * Strikes are kept as longs in ten-thousandths, the precision of the <see cref="SecurityIdentifier"/>, so they
+ * compare exactly. The index is updated incrementally as contracts are added or removed.
+ *
+ * Instances are not thread-safe.
+ */
+public class OptionChainIndex {
+
+    private static final int INITIAL_CAPACITY = 8;
+    // the number of decimals of the strikes in a security identifier
+    private static final int STRIKE_SCALE = 4;
+
+    private final Map<Symbol,Entry> entries = new HashMap<>();
+
+    private LocalDate[] expiries = new LocalDate[INITIAL_CAPACITY];
+    private ExpiryStrikes[] strikes = new ExpiryStrikes[INITIAL_CAPACITY];
+    private int expiryCount;
+
+    private int generation;
+    private BigDecimal strikeSpacing;
+    private boolean strikeSpacingResolved;
+
+    /**
+     * Gets the number of contracts in the index
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Determines whether the specified contract is in the index
+     */
+    public boolean contains( final Symbol symbol ) {
+        return entries.containsKey( symbol );
+    }
+
+    /**
+     * Adds the specified contract to the index
+     * @param symbol The option contract symbol
+     * @returns True if the contract was added, false if it was already indexed
+     */
+    public boolean add( final Symbol symbol ) {
+        if( entries.containsKey( symbol ) )
+            return false;
+
+        insert( symbol );
+        return true;
+    }
+
+    /**
+     * Removes the specified contract from the index
+     * @param symbol The option contract symbol
+     * @returns True if the contract was removed, false if it wasn't indexed
+     */
+    public boolean remove( final Symbol symbol ) {
+        final Entry entry = entries.remove( symbol );
+        if( entry == null )
+            return false;
+
+        final int index = Arrays.binarySearch( expiries, 0, expiryCount, entry.expiry );
+        final ExpiryStrikes expiryStrikes = strikes[index];
+        expiryStrikes.side( entry.right ).remove( entry.strike, symbol );
+        if( expiryStrikes.isEmpty() )
+            removeExpiries( index, index + 1 );
+
+        strikeSpacingResolved = false;
+        return true;
+    }
+
+    /**
+     * Updates the index so it contains exactly the specified contracts. Contracts already indexed are only looked up,
+     * so the cost of an update is proportional to the number of symbols plus the number of changes.
+     * @param symbols The option contract symbols
+     */
+    public void update( final Iterable<Symbol> symbols ) {
+        final int current = ++generation;
+        int seen = 0;
+        for( final Symbol symbol : symbols ) {
+            Entry entry = entries.get( symbol );
+            if( entry == null )
+                entry = insert( symbol );
+            else if( entry.generation == current )
+                continue;
+
+            entry.generation = current;
+            seen++;
+        }
+
+        if( seen == entries.size() )
+            return;
+
+        final List<Symbol> missing = new ArrayList<>( entries.size() - seen );
+        for( final Map.Entry<Symbol,Entry> kvp : entries.entrySet() ) {
+            if( kvp.getValue().generation != current )
+                missing.add( kvp.getKey() );
+        }
+        for( final Symbol symbol : missing )
+            remove( symbol );
+    }
+
+    /**
+     * Gets a copy of the indexed expiries in ascending order, later changes to the index are not reflected in it
+     */
+    public List<LocalDate> getExpiries() {
+        return Collections.unmodifiableList( Arrays.asList( Arrays.copyOf( expiries, expiryCount ) ) );
+    }
+
+    /**
+     * Gets the smallest difference between two distinct strikes of the index
+     * @returns The strike spacing, or null if the index has fewer than two distinct strikes
+     */
+    public BigDecimal getStrikeSpacing() {
+        if( strikeSpacingResolved )
+            return strikeSpacing;
+
+        int count = 0;
+        for( int i = 0; i < expiryCount; i++ ) {
+            for( final Side side : strikes[i].sides )
+                count += side.size;
+        }
+
+        final long[] all = new long[count];
+        int offset = 0;
+        for( int i = 0; i < expiryCount; i++ ) {
+            for( final Side side : strikes[i].sides ) {
+                System.arraycopy( side.strikes, 0, all, offset, side.size );
+                offset += side.size;
+            }
+        }
+        Arrays.sort( all );
+
+        long spacing = Long.MAX_VALUE;
+        for( int i = 1; i < count; i++ ) {
+            if( all[i] != all[i - 1] )
+                spacing = Math.min( spacing, all[i] - all[i - 1] );
+        }
+
+        strikeSpacing = spacing != Long.MAX_VALUE ? BigDecimal.valueOf( spacing, STRIKE_SCALE ) : null;
+        strikeSpacingResolved = true;
+        return strikeSpacing;
+    }
+
+    /**
+     * Selects the contracts with a strike and expiry within the specified inclusive bounds
+     * @param minStrike The minimum strike
+     * @param maxStrike The maximum strike
+     * @param minExpiry The earliest expiry
+     * @param maxExpiry The latest expiry
+     * @returns The selected contracts ordered by expiry, then calls before puts, then strike
+     */
+    public List<Symbol> select( final BigDecimal minStrike, final BigDecimal maxStrike, final LocalDate minExpiry, final LocalDate maxExpiry ) {
+        return select( null, minStrike, maxStrike, minExpiry, maxExpiry );
+    }
+
+    /**
+     * Selects the contracts of the specified right with a strike and expiry within the specified inclusive bounds
+     * @param right The option right to select, null for both
+     * @param minStrike The minimum strike
+     * @param maxStrike The maximum strike
+     * @param minExpiry The earliest expiry
+     * @param maxExpiry The latest expiry
+     * @returns The selected contracts ordered by expiry, then calls before puts, then strike
+     */
+    public List<Symbol> select( final OptionRight right, final BigDecimal minStrike, final BigDecimal maxStrike, final LocalDate minExpiry, final LocalDate maxExpiry ) {
+        final List<Symbol> selected = new ArrayList<>();
+        if( minStrike.compareTo( maxStrike ) > 0 || minExpiry.isAfter( maxExpiry ) )
+            return selected;
+
+        final long low = toStrikeUnits( minStrike, RoundingMode.CEILING );
+        final long high = toStrikeUnits( maxStrike, RoundingMode.FLOOR );
+        final int end = upperBound( maxExpiry );
+        for( int i = lowerBound( minExpiry ); i < end; i++ ) {
+            if( right != OptionRight.PUT )
+                strikes[i].calls.select( low, high, selected );
+            if( right != OptionRight.CALL )
+                strikes[i].puts.select( low, high, selected );
+        }
+        return selected;
+    }
+
+    private Entry insert( final Symbol symbol ) {
+        final SecurityIdentifier id = symbol.getId();
+        final Entry entry = new Entry( id.getDate(), id.getOptionRight(), toStrikeUnits( id.getStrikePrice(), RoundingMode.HALF_EVEN ) );
+
+        int index = Arrays.binarySearch( expiries, 0, expiryCount, entry.expiry );
+        if( index < 0 ) {
+            index = -index - 1;
+            if( expiryCount == expiries.length ) {
+                expiries = Arrays.copyOf( expiries, expiryCount * 2 );
+                strikes = Arrays.copyOf( strikes, expiryCount * 2 );
+            }
+            System.arraycopy( expiries, index, expiries, index + 1, expiryCount - index );
+            System.arraycopy( strikes, index, strikes, index + 1, expiryCount - index );
+            expiries[index] = entry.expiry;
+            strikes[index] = new ExpiryStrikes();
+            expiryCount++;
+        }
+
+        strikes[index].side( entry.right ).insert( entry.strike, symbol );
+        entries.put( symbol, entry );
+        strikeSpacingResolved = false;
+        return entry;
+    }
+
+    private void removeExpiries( final int from, final int to ) {
+        System.arraycopy( expiries, to, expiries, from, expiryCount - to );
+        System.arraycopy( strikes, to, strikes, from, expiryCount - to );
+        Arrays.fill( expiries, expiryCount - ( to - from ), expiryCount, null );
+        Arrays.fill( strikes, expiryCount - ( to - from ), expiryCount, null );
+        expiryCount -= to - from;
+        strikeSpacingResolved = false;
+    }
+
+    /**
+     * Converts a strike to ten-thousandths, bounds beyond the range of a long are clamped to it
+     */
+    private static long toStrikeUnits( final BigDecimal strike, final RoundingMode rounding ) {
+        final BigInteger units = strike.movePointRight( STRIKE_SCALE ).setScale( 0, rounding ).unscaledValue();
+        if( units.bitLength() < Long.SIZE )
+            return units.longValue();
+        return units.signum() > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+    }
+
+    // index of the first expiry on or after the date
+    private int lowerBound( final LocalDate date ) {
+        final int index = Arrays.binarySearch( expiries, 0, expiryCount, date );
+        return index >= 0 ? index : -index - 1;
+    }
+
+    // index of the first expiry after the date
+    private int upperBound( final LocalDate date ) {
+        final int index = Arrays.binarySearch( expiries, 0, expiryCount, date );
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private static final class Entry {
+        final LocalDate expiry;
+        final OptionRight right;
+        final long strike;
+        int generation;
+
+        Entry( final LocalDate expiry, final OptionRight right, final long strike ) {
+            this.expiry = expiry;
+            this.right = right;
+            this.strike = strike;
+        }
+    }
+
+    private static final class ExpiryStrikes {
+        final Side calls = new Side();
+        final Side puts = new Side();
+        final Side[] sides = { calls, puts };
+
+        Side side( final OptionRight right ) {
+            return right == OptionRight.CALL ? calls : puts;
+        }
+
+        boolean isEmpty() {
+            return calls.size == 0 && puts.size == 0;
+        }
+    }
+
+    /**
+     * The contracts of one expiry and right, sorted by strike
+     */
+    private static final class Side {
+        long[] strikes = new long[INITIAL_CAPACITY];
+        Symbol[] symbols = new Symbol[INITIAL_CAPACITY];
+        int size;
+
+        void insert( final long strike, final Symbol symbol ) {
+            final int index = upperBound( strike );
+            if( size == strikes.length ) {
+                strikes = Arrays.copyOf( strikes, size * 2 );
+                symbols = Arrays.copyOf( symbols, size * 2 );
+            }
+            System.arraycopy( strikes, index, strikes, index + 1, size - index );
+            System.arraycopy( symbols, index, symbols, index + 1, size - index );
+            strikes[index] = strike;
+            symbols[index] = symbol;
+            size++;
+        }
+
+        void remove( final long strike, final Symbol symbol ) {
+            // several contracts may share a strike, find the one holding this symbol
+            for( int index = lowerBound( strike ); index < size && strikes[index] == strike; index++ ) {
+                if( symbols[index].equals( symbol ) ) {
+                    System.arraycopy( strikes, index + 1, strikes, index, size - index - 1 );
+                    System.arraycopy( symbols, index + 1, symbols, index, size - index - 1 );
+                    symbols[--size] = null;
+                    return;
+                }
+            }
+        }
+
+        void select( final long low, final long high, final List<Symbol> selected ) {
+            final int end = upperBound( high );
+            for( int index = lowerBound( low ); index < end; index++ )
+                selected.add( symbols[index] );
+        }
+
+        // index of the first strike greater or equal to the value
+        private int lowerBound( final long value ) {
+            int low = 0;
+            int high = size;
+            while( low < high ) {
+                final int middle = ( low + high ) >>> 1;
+                if( strikes[middle] < value )
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return low;
+        }
+
+        // index of the first strike greater than the value
+        private int upperBound( final long value ) {
+            int low = 0;
+            int high = size;
+            while( low < high ) {
+                final int middle = ( low + high ) >>> 1;
+                if( strikes[middle] <= value )
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return low;
+        }
+    }
+}
@@ -220,14 +220,14 @@ public class QuoteBar extends BaseData implements IBar {
     public QuoteBar( LocalDateTime time, Symbol symbol, IBar bid, long lastBidSize, IBar ask, long lastAskSize, Duration period ) {
         setSymbol( symbol );
         setTime( time );
-        bid = bid == null ? null : new Bar( bid.getOpen(), bid.getHigh(), bid.getLow(), bid.getClose() );
-        ask = ask == null ? null : new Bar( ask.getOpen(), ask.getHigh(), ask.getLow(), ask.getClose() );
+        this.bid = bid == null ? null : new Bar( bid.getOpen(), bid.getHigh(), bid.getLow(), bid.getClose() );
+        this.ask = ask == null ? null : new Bar( ask.getOpen(), ask.getHigh(), ask.getLow(), ask.getClose() );
         if( bid != null ) 
             this.lastBidSize = lastBidSize;
         if( ask != null ) 
             this.lastAskSize = lastAskSize;
         setValue( getClose() );
-        period = period != null ? period : Duration.ofMinutes( 1 );
+        this.period = period != null ? period : Duration.ofMinutes( 1 );
         setDataType( MarketDataType.QuoteBar );
     }
     
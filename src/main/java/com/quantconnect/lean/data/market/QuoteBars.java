@@ -20,4 +20,18 @@ package com.quantconnect.lean.data.market;
  */
 public class QuoteBars extends DataDictionary<QuoteBar> {
 
+    /**
+     * Initializes a new empty instance of the <see cref="QuoteBars"/> class
+     */
+    public QuoteBars() {
+        super();
+    }
+
+    /**
+     * Initializes a new instance of the <see cref="QuoteBars"/> class sized for the specified number of symbols
+     * @param expectedSize The expected number of symbols
+     */
+    public QuoteBars( final int expectedSize ) {
+        super( expectedSize );
+    }
 }
\ No newline at end of file
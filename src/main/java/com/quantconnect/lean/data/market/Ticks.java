@@ -23,5 +23,19 @@ import java.util.List;
  * Ticks are timestamped to the nearest second in QuantConnect
  */
 public class Ticks extends DataDictionary<List<Tick>> {
-    
+
+    /**
+     * Initializes a new empty instance of the <see cref="Ticks"/> class
+     */
+    public Ticks() {
+        super();
+    }
+
+    /**
+     * Initializes a new instance of the <see cref="Ticks"/> class sized for the specified number of symbols
+     * @param expectedSize The expected number of symbols
+     */
+    public Ticks( final int expectedSize ) {
+        super( expectedSize );
+    }
 }
@@ -165,6 +165,7 @@ public class TradeBar extends BaseData implements IBar {
      * @param original Original tradebar object we seek to clone
      */
     public TradeBar( TradeBar original ) {
+        this.initialized = new AtomicBoolean( true );
         setDataType( MarketDataType.TradeBar );
         setTime( original.getTime() );
         setSymbol( original.getSymbol() );
@@ -175,7 +176,6 @@ public class TradeBar extends BaseData implements IBar {
         this.low = original.low;
         this.volume = original.volume;
         this.period = original.period;
-        this.initialized = new AtomicBoolean( true );
     }
 
     /**
@@ -204,6 +204,7 @@ public class TradeBar extends BaseData implements IBar {
      * @param period The period of this bar, specify null for default of 1 minute
      */
     public TradeBar( LocalDateTime time, Symbol symbol, BigDecimal open, BigDecimal high, BigDecimal low, BigDecimal close, long volume, Duration period ) {
+        this.initialized = new AtomicBoolean( true );
         setTime( time );
         setSymbol( symbol );
         setValue( close );
@@ -214,7 +215,6 @@ public class TradeBar extends BaseData implements IBar {
         this.low = low;
         this.volume = volume;
         this.period = period != null ? period : Duration.ofMinutes( 1 );
-        this.initialized = new AtomicBoolean( true );
     }
 
     /**
@@ -20,4 +20,18 @@ package com.quantconnect.lean.data.market;
  */
 public class TradeBars extends DataDictionary<TradeBar> {
 
+    /**
+     * Initializes a new empty instance of the <see cref="TradeBars"/> class
+     */
+    public TradeBars() {
+        super();
+    }
+
+    /**
+     * Initializes a new instance of the <see cref="TradeBars"/> class sized for the specified number of symbols
+     * @param expectedSize The expected number of symbols
+     */
+    public TradeBars( final int expectedSize ) {
+        super( expectedSize );
+    }
 }
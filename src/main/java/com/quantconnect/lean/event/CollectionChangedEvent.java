@@ -1,5 +1,8 @@
 package com.quantconnect.lean.event;
 
+import java.util.Collections;
+import java.util.List;
+
 public class CollectionChangedEvent {
     
     public enum CollectionChangedAction {
@@ -8,19 +11,45 @@ public class CollectionChangedEvent {
     }
 
     private final CollectionChangedAction action;
-    private final Object element;
+    private final List<?> elements;
 
     public CollectionChangedEvent( CollectionChangedAction action, Object element ) {
         this.action = action;
-        this.element = element;
+        this.elements = Collections.singletonList( element );
+    }
+
+    /**
+     * Creates an event for a batch of elements added or removed together
+     * @param action The change applied to all the elements
+     * @param elements The elements, in the order they were changed
+     */
+    public CollectionChangedEvent( CollectionChangedAction action, List<?> elements ) {
+        this.action = action;
+        this.elements = Collections.unmodifiableList( elements );
     }
 
     public CollectionChangedAction getAction() {
         return action;
     }
 
+    /**
+     * Gets the changed element of a single element event
+     * @deprecated Batch events hold several elements, use <see cref="getElements"/>
+     * <exception cref="IllegalStateException">The event holds more than one element</exception>
+     */
+    @Deprecated
     public Object getElement() {
-        return element;
+        if( elements.size() > 1 )
+            throw new IllegalStateException( "The event holds " + elements.size() + " elements, use getElements()" );
+
+        return elements.isEmpty() ? null : elements.get( 0 );
+    }
+
+    /**
+     * Gets all the changed elements
+     */
+    public List<?> getElements() {
+        return elements;
     }
 
 }
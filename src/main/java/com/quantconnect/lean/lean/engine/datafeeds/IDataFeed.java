@@ -27,6 +27,10 @@ import com.quantconnect.lean.securities.Security;
 
 /**
  * Datafeed interface for creating custom datafeed sources.
+ *
+ * Implementations own the <see cref="TimeSliceBuilder"/> their <see cref="TimeSlice"/> instances are built with, so the
+ * builder's collections are reused from one time step to the next and released with the feed. A feed producing slices
+ * ahead of the algorithm creates them through <see cref="TimeSlice.create"/> instead.
  */
 public interface IDataFeed extends Iterable<TimeSlice> {
     
@@ -21,40 +21,25 @@ package com.quantconnect.lean.lean.engine.datafeeds;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.Set;
 
-import com.quantconnect.lean.Extensions;
-import com.quantconnect.lean.MarketDataType;
 import com.quantconnect.lean.SecurityType;
 import com.quantconnect.lean.Symbol;
 import com.quantconnect.lean.TickType;
 import com.quantconnect.lean.data.BaseData;
 import com.quantconnect.lean.data.Slice;
 import com.quantconnect.lean.data.SubscriptionDataConfig;
-import com.quantconnect.lean.data.market.Delisting;
-import com.quantconnect.lean.data.market.Delistings;
-import com.quantconnect.lean.data.market.Dividend;
-import com.quantconnect.lean.data.market.Dividends;
 import com.quantconnect.lean.data.market.OptionChain;
 import com.quantconnect.lean.data.market.OptionChains;
 import com.quantconnect.lean.data.market.OptionContract;
 import com.quantconnect.lean.data.market.QuoteBar;
 import com.quantconnect.lean.data.market.QuoteBars;
-import com.quantconnect.lean.data.market.Split;
-import com.quantconnect.lean.data.market.Splits;
-import com.quantconnect.lean.data.market.SymbolChangedEvent;
-import com.quantconnect.lean.data.market.SymbolChangedEvents;
 import com.quantconnect.lean.data.market.Tick;
 import com.quantconnect.lean.data.market.Ticks;
 import com.quantconnect.lean.data.market.TradeBar;
 import com.quantconnect.lean.data.market.TradeBars;
-import com.quantconnect.lean.data.universeselection.BaseDataCollection;
 import com.quantconnect.lean.data.universeselection.OptionChainUniverseDataCollection;
 import com.quantconnect.lean.data.universeselection.SecurityChanges;
 import com.quantconnect.lean.securities.Cash;
@@ -157,7 +142,20 @@ public class TimeSlice {
     }
     
     /**
-     * Creates a new <see cref="TimeSlice"/> for the specified time using the specified data
+     * Applies the <see cref="SecuritiesUpdateData"/> to the securities' market prices, one batch per
+     * security and subscription data type
+     */
+    public void updateSecurityPrices() {
+        for( int i = 0; i < SecuritiesUpdateData.size(); i++ ) {
+            final UpdateData<Security> update = SecuritiesUpdateData.get( i );
+            update.target.setMarketPrice( update.dataType, update.data );
+        }
+    }
+    
+    /**
+     * Creates a new <see cref="TimeSlice"/> for the specified time using the specified data. The slice doesn't share
+     * any collection with other slices, so it stays valid for as long as it is referenced. A data feed reusing its
+     * collections across time steps owns a <see cref="TimeSliceBuilder"/> instead.
      * @param utcDateTime The UTC frontier date time
      * @param algorithmTimeZone The algorithm's time zone, required for computing algorithm and slice time
      * @param cashBook The algorithm's cash book, required for generating cash update pairs
@@ -165,135 +163,14 @@ public class TimeSlice {
      * @param changes The new changes that are seen in this time slice as a result of universe selection
      * @returns A new <see cref="TimeSlice"/> containing the specified data
      */
-    @SuppressWarnings("unchecked")
     public static TimeSlice create( final LocalDateTime utcDateTime, final ZoneId algorithmTimeZone, final CashBook cashBook, final List<DataFeedPacket> data, final SecurityChanges changes ) {
-        int count = 0;
-        final List<UpdateData<Security>> security = new ArrayList<>();
-        final List<UpdateData<Security>> custom = new ArrayList<>();
-        final List<UpdateData<SubscriptionDataConfig>> consolidator = new ArrayList<>();
-        final List<BaseData> allDataForAlgorithm = new ArrayList<>( data.size() );
-        final List<UpdateData<Cash>> cash = new ArrayList<>( cashBook.size() );
-    
-        final Set<Symbol> cashSecurities = new HashSet<>();
-        for( final Cash cashItem : cashBook.values() )
-            cashSecurities.add( cashItem.getSecuritySymbol() );
-    
-//        final Split split;
-//        final Dividend dividend;
-//        final Delisting delisting;
-//        final SymbolChangedEvent symbolChange;
-    
-        // we need to be able to reference the slice being created in order to define the
-        // evaluation of option price models, so we define a 'future' that can be referenced
-        // in the option price model evaluation delegates for each contract
-        final Slice slice;
-        final Lazy<Slice> sliceFuture = Lazy.of( () -> slice );
-    
-        final LocalDateTime algorithmTime = Extensions.convertFromUtc( utcDateTime, algorithmTimeZone );
-        final TradeBars tradeBars = new TradeBars();
-        final QuoteBars quoteBars = new QuoteBars();
-        final Ticks ticks = new Ticks();
-        final Splits splits = new Splits();
-        final Dividends dividends = new Dividends();
-        final Delistings delistings = new Delistings();
-        final OptionChains optionChains = new OptionChains();
-        final SymbolChangedEvents symbolChanges = new SymbolChangedEvents();
-    
-        for( final DataFeedPacket packet : data ) {
-            final List<BaseData> list = packet.getData();
-            final Symbol symbol = packet.getSecurity().getSymbol();
-    
-            if( list.isEmpty() )
-                continue;
-            
-            // keep count of all data points
-            if( list.size() == 1 && list.get( 0 ) instanceof BaseDataCollection ) {
-                final int baseDataCollectionCount = ((BaseDataCollection)list.get( 0 )).getData().size();
-                if( baseDataCollectionCount == 0 )
-                    continue;
-                
-                count += baseDataCollectionCount;
-            }
-            else
-                count += list.size();
-    
-            final SubscriptionDataConfig configuration = packet.getConfiguration();
-            if( !configuration.isInternalFeed && configuration.isCustomData ) {
-                // This is all the custom data
-                custom.add( new UpdateData<>( packet.getSecurity(), (Class<? extends Security>)configuration.type, list ) );
-            }
-    
-            final List<BaseData> securityUpdate = new ArrayList<>( list.size() );
-            final List<BaseData> consolidatorUpdate = new ArrayList<>( list.size() );
-            for( int i = 0; i < list.size(); i++ ) {
-                final BaseData baseData = list.get( i );
-                if( !configuration.isInternalFeed ) {
-                    // this is all the data that goes into the algorithm
-                    allDataForAlgorithm.add( baseData );
-                }
-                // don't add internal feed data to ticks/bars objects
-                if( baseData.getDataType() != MarketDataType.Auxiliary) {
-                    if( !configuration.isInternalFeed ) {
-                        populateDataDictionaries( baseData, ticks, tradeBars, quoteBars, optionChains );
-    
-                        // special handling of options data to build the option chain
-                        if( packet.getSecurity().getType() == SecurityType.Option ) {
-                            if( baseData.getDataType() == MarketDataType.OptionChain )
-                                optionChains.put( baseData.getSymbol(), (OptionChain)baseData );
-                            else if( !handleOptionData( algorithmTime, baseData, optionChains, packet.getSecurity(), sliceFuture ) )
-                                continue;
-                        }
-    
-                        // this is data used to update consolidators
-                        consolidatorUpdate.add( baseData );
-                    }
-    
-                    // this is the data used set market prices
-                    securityUpdate.add( baseData );
-                }
-                // include checks for various aux types so we don't have to construct the dictionaries in Slice
-                else if( baseData instanceof Delisting )
-                    delistings.put( symbol, (Delisting)baseData );
-                else if( baseData instanceof Dividend )
-                    dividends.put( symbol, (Dividend)baseData );
-                else if( baseData instanceof Split )
-                    splits.put( symbol, (Split)baseData );
-                else if( baseData instanceof SymbolChangedEvent ) {
-                    // symbol changes is keyed by the requested symbol
-                    symbolChanges.put( configuration.getSymbol(), (SymbolChangedEvent)baseData );
-                }
-            }
-    
-            if( securityUpdate.size() > 0 ) {
-                // check for 'cash securities' if we found valid update data for this symbol
-                // and we need this data to update cash conversion rates, long term we should
-                // have Cash hold onto it's security, then he can update himself, or rather, just
-                // patch through calls to conversion rate to compue it on the fly using Security.Price
-                if( cashSecurities.contains( packet.getSecurity().getSymbol() ) ) {
-                    for( final Entry<String,Cash> cashKvp : cashBook.entrySet() ) {
-                        if( cashKvp.getValue().getSecuritySymbol().equals( packet.getSecurity().getSymbol() ) ) {
-                            final List<BaseData> cashUpdates = Arrays.asList( securityUpdate.get( securityUpdate.size() - 1 ) );
-                            cash.add( new UpdateData<>( cashKvp.getValue(), (Class<? extends Cash>)configuration.type, cashUpdates ) );
-                        }
-                    }
-                }
-    
-                security.add( new UpdateData<>( packet.getSecurity(), (Class<? extends Security>)configuration.type, securityUpdate ) );
-            }
-            
-            if( consolidatorUpdate.size() > 0 )
-                consolidator.add( new UpdateData<>( configuration, (Class<? extends SubscriptionDataConfig>)configuration.type, consolidatorUpdate ) );
-        }
-    
-        slice = new Slice( algorithmTime, allDataForAlgorithm, tradeBars, quoteBars, ticks, optionChains, splits, dividends, delistings, symbolChanges, allDataForAlgorithm.size() > 0 );
-    
-        return new TimeSlice( utcDateTime, count, slice, data, cash, security, consolidator, custom, changes);
+        return new TimeSliceBuilder().create( utcDateTime, algorithmTimeZone, cashBook, data, changes );
     }
     
     /**
      * Adds the specified <see cref="BaseData"/> instance to the appropriate <see cref="DataDictionary{T}"/>
      */
-    private static void populateDataDictionaries( final BaseData baseData, final Ticks ticks, final TradeBars tradeBars,
+    static void populateDataDictionaries( final BaseData baseData, final Ticks ticks, final TradeBars tradeBars,
             final QuoteBars quoteBars, final OptionChains optionChains) {
         final Symbol symbol = baseData.getSymbol();
     
@@ -319,7 +196,7 @@ public class TimeSlice {
         }
     }
 
-    private static boolean handleOptionData( final LocalDateTime algorithmTime, final BaseData baseData, final OptionChains optionChains,
+    static boolean handleOptionData( final LocalDateTime algorithmTime, final BaseData baseData, final OptionChains optionChains,
             final Security security, final Lazy<Slice> sliceFuture ) {
         final Symbol symbol = baseData.getSymbol();
         
@@ -357,7 +234,8 @@ public class TimeSlice {
             chain.getContracts().put( baseData.getSymbol(), contract );
             if( security instanceof Option ) {
                 final Option option = (Option)security;
-                contract.setOptionPriceModel( () -> option.getPriceModel().evaluate( option, sliceFuture.get(), contract ) );
+                final OptionContract optionContract = contract;
+                contract.setOptionPriceModel( () -> option.getPriceModel().evaluate( option, sliceFuture.get(), optionContract ) );
             }
         }
     
@@ -0,0 +1,407 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+
+package com.quantconnect.lean.lean.engine.datafeeds;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.quantconnect.lean.Extensions;
+import com.quantconnect.lean.MarketDataType;
+import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.data.BaseData;
+import com.quantconnect.lean.data.Slice;
+import com.quantconnect.lean.data.SubscriptionDataConfig;
+import com.quantconnect.lean.data.market.DataDictionary;
+import com.quantconnect.lean.data.market.Delisting;
+import com.quantconnect.lean.data.market.Delistings;
+import com.quantconnect.lean.data.market.Dividend;
+import com.quantconnect.lean.data.market.Dividends;
+import com.quantconnect.lean.data.market.OptionChain;
+import com.quantconnect.lean.data.market.OptionChains;
+import com.quantconnect.lean.data.market.QuoteBars;
+import com.quantconnect.lean.data.market.Split;
+import com.quantconnect.lean.data.market.Splits;
+import com.quantconnect.lean.data.market.SymbolChangedEvent;
+import com.quantconnect.lean.data.market.SymbolChangedEvents;
+import com.quantconnect.lean.data.market.Ticks;
+import com.quantconnect.lean.data.market.TradeBars;
+import com.quantconnect.lean.data.universeselection.BaseDataCollection;
+import com.quantconnect.lean.data.universeselection.SecurityChanges;
+import com.quantconnect.lean.securities.Cash;
+import com.quantconnect.lean.securities.CashBook;
+import com.quantconnect.lean.securities.Security;
+
+import javaslang.Lazy;
+
+/**
+ * Builds <see cref="TimeSlice"/> instances while reusing the same collections from one time step to the next.
+ *
+ * The lists and data dictionaries referenced by a <see cref="TimeSlice"/> and its <see cref="Slice"/> are
+ * handed out as read only views over the builder's buffers, so they are only valid until the next call
+ * to <see cref="create"/>. A builder is not thread-safe and is intended to be owned by a single data feed, which
+ * only creates the next slice once the algorithm is done with the previous one. Feeds queueing slices ahead of
+ * the algorithm, and algorithms keeping a <see cref="Slice"/>, rely on <see cref="TimeSlice.create"/> instead,
+ * which allocates every slice afresh.
+ *
+ * When constructed with a <see cref="ForkJoinPool"/> the builder partitions large time steps across the pool.
+ * Each partition fills its own <see cref="SliceParts"/>, also reused across time steps, and the partial results
+ * are merged in packet order, so
+ * the produced <see cref="Slice"/> is identical to the sequential one. Packets of option securities build shared
+ * option chains and are therefore always processed sequentially, in order, between the parallel runs.
+ */
+public class TimeSliceBuilder {
+
+    // partitions smaller than this are not split any further
+    private static final int MIN_PARTITION_SIZE = 64;
+
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+
+    private final SliceParts parts = new SliceParts();
+
+    // the parts filled by each partition of a parallel run, merged into 'parts' and cleared after each run
+    private SliceParts[] partitions = new SliceParts[0];
+
+    // read only views handed to the algorithm, these track the buffers above so they are created once
+    private final List<UpdateData<Security>> securityView = Collections.unmodifiableList( parts.security );
+    private final List<UpdateData<Security>> customView = Collections.unmodifiableList( parts.custom );
+    private final List<UpdateData<SubscriptionDataConfig>> consolidatorView = Collections.unmodifiableList( parts.consolidator );
+    private final List<UpdateData<Cash>> cashView = Collections.unmodifiableList( parts.cash );
+    private final List<BaseData> allDataForAlgorithmView = Collections.unmodifiableList( parts.allDataForAlgorithm );
+
+    private Slice slice;
+
+    /**
+     * Initializes a new instance of the <see cref="TimeSliceBuilder"/> class that processes packets sequentially
+     */
+    public TimeSliceBuilder() {
+        this( null, Integer.MAX_VALUE );
+    }
+
+    /**
+     * Initializes a new instance of the <see cref="TimeSliceBuilder"/> class that assembles large time steps in parallel
+     * @param pool The pool used to process packets in parallel, null to always process sequentially
+     * @param parallelThreshold The minimum number of consecutive non-option packets processed in parallel
+     */
+    public TimeSliceBuilder( final ForkJoinPool pool, final int parallelThreshold ) {
+        this.pool = pool;
+        this.parallelThreshold = Math.max( parallelThreshold, 1 );
+    }
+
+    /**
+     * Creates a new <see cref="TimeSlice"/> for the specified time using the specified data, reusing this
+     * builder's buffers. Any <see cref="TimeSlice"/> previously returned by this builder is invalidated.
+     * @param utcDateTime The UTC frontier date time
+     * @param algorithmTimeZone The algorithm's time zone, required for computing algorithm and slice time
+     * @param cashBook The algorithm's cash book, required for generating cash update pairs
+     * @param data The data in this <see cref="TimeSlice"/>
+     * @param changes The new changes that are seen in this time slice as a result of universe selection
+     * @returns A new <see cref="TimeSlice"/> containing the specified data
+     */
+    public TimeSlice create( final LocalDateTime utcDateTime, final ZoneId algorithmTimeZone, final CashBook cashBook, final List<DataFeedPacket> data, final SecurityChanges changes ) {
+        parts.unlock();
+        parts.clear();
+        slice = null;
+
+        // we need to be able to reference the slice being created in order to define the
+        // evaluation of option price models, so we define a 'future' that can be referenced
+        // in the option price model evaluation delegates for each contract
+        final Lazy<Slice> sliceFuture = Lazy.of( () -> slice );
+
+        final LocalDateTime algorithmTime = Extensions.convertFromUtc( utcDateTime, algorithmTimeZone );
+
+        if( pool == null || data.size() < parallelThreshold ) {
+            for( final DataFeedPacket packet : data )
+                addPacket( parts, packet, cashBook, algorithmTime, sliceFuture );
+        }
+        else {
+            // option packets share chains, so they split the data into runs that can be processed in parallel
+            int runStart = 0;
+            for( int i = 0; i <= data.size(); i++ ) {
+                if( i < data.size() && !isOption( data.get( i ) ) )
+                    continue;
+
+                addRun( data, runStart, i, cashBook, algorithmTime );
+                if( i < data.size() )
+                    addPacket( parts, data.get( i ), cashBook, algorithmTime, sliceFuture );
+
+                runStart = i + 1;
+            }
+        }
+
+        parts.lock();
+
+        slice = new Slice( algorithmTime, allDataForAlgorithmView, parts.tradeBars, parts.quoteBars, parts.ticks, parts.optionChains,
+                parts.splits, parts.dividends, parts.delistings, parts.symbolChanges, parts.allDataForAlgorithm.size() > 0 );
+
+        return new TimeSlice( utcDateTime, parts.count, slice, data, cashView, securityView, consolidatorView, customView, changes );
+    }
+
+    /**
+     * Adds the run of non-option packets in [from, to), splitting it across the pool when it is large enough
+     */
+    private void addRun( final List<DataFeedPacket> data, final int from, final int to, final CashBook cashBook, final LocalDateTime algorithmTime ) {
+        if( to - from < parallelThreshold ) {
+            for( int i = from; i < to; i++ )
+                addPacket( parts, data.get( i ), cashBook, algorithmTime, null );
+        }
+        else {
+            final int partitionSize = Math.max( MIN_PARTITION_SIZE, (to - from) / (pool.getParallelism() * 4) );
+            final int count = (to - from + partitionSize - 1) / partitionSize;
+            if( partitions.length < count ) {
+                final int size = partitions.length;
+                partitions = Arrays.copyOf( partitions, count );
+                for( int i = size; i < count; i++ )
+                    partitions[i] = new SliceParts();
+            }
+
+            pool.invoke( new SlicePartsTask( partitions, data, from, to, partitionSize, 0, count, cashBook, algorithmTime ) );
+            for( int i = 0; i < count; i++ ) {
+                parts.append( partitions[i] );
+                partitions[i].clear();
+            }
+        }
+    }
+
+    private static boolean isOption( final DataFeedPacket packet ) {
+        return packet.getSecurity().getType() == SecurityType.Option;
+    }
+
+    /**
+     * Adds the data of a single packet to the specified parts. The slice future is only required for option packets.
+     */
+    @SuppressWarnings("unchecked")
+    private static void addPacket( final SliceParts parts, final DataFeedPacket packet, final CashBook cashBook, final LocalDateTime algorithmTime, final Lazy<Slice> sliceFuture ) {
+        final List<BaseData> list = packet.getData();
+        final Symbol symbol = packet.getSecurity().getSymbol();
+
+        if( list.isEmpty() )
+            return;
+
+        // keep count of all data points
+        if( list.size() == 1 && list.get( 0 ) instanceof BaseDataCollection ) {
+            final int baseDataCollectionCount = ((BaseDataCollection)list.get( 0 )).getData().size();
+            if( baseDataCollectionCount == 0 )
+                return;
+
+            parts.count += baseDataCollectionCount;
+        }
+        else
+            parts.count += list.size();
+
+        final SubscriptionDataConfig configuration = packet.getConfiguration();
+        if( !configuration.isInternalFeed && configuration.isCustomData ) {
+            // This is all the custom data
+            parts.custom.add( new UpdateData<>( packet.getSecurity(), (Class<? extends Security>)configuration.type, list ) );
+        }
+
+        parts.securityUpdate.clear();
+        parts.consolidatorUpdate.clear();
+        for( int i = 0; i < list.size(); i++ ) {
+            final BaseData baseData = list.get( i );
+            if( !configuration.isInternalFeed ) {
+                // this is all the data that goes into the algorithm
+                parts.allDataForAlgorithm.add( baseData );
+            }
+            // don't add internal feed data to ticks/bars objects
+            if( baseData.getDataType() != MarketDataType.Auxiliary) {
+                if( !configuration.isInternalFeed ) {
+                    TimeSlice.populateDataDictionaries( baseData, parts.ticks, parts.tradeBars, parts.quoteBars, parts.optionChains );
+
+                    // special handling of options data to build the option chain
+                    if( packet.getSecurity().getType() == SecurityType.Option ) {
+                        if( baseData.getDataType() == MarketDataType.OptionChain )
+                            parts.optionChains.put( baseData.getSymbol(), (OptionChain)baseData );
+                        else if( !TimeSlice.handleOptionData( algorithmTime, baseData, parts.optionChains, packet.getSecurity(), sliceFuture ) )
+                            continue;
+                    }
+
+                    // this is data used to update consolidators
+                    parts.consolidatorUpdate.add( baseData );
+                }
+
+                // this is the data used set market prices
+                parts.securityUpdate.add( baseData );
+            }
+            // include checks for various aux types so we don't have to construct the dictionaries in Slice
+            else if( baseData instanceof Delisting )
+                parts.delistings.put( symbol, (Delisting)baseData );
+            else if( baseData instanceof Dividend )
+                parts.dividends.put( symbol, (Dividend)baseData );
+            else if( baseData instanceof Split )
+                parts.splits.put( symbol, (Split)baseData );
+            else if( baseData instanceof SymbolChangedEvent ) {
+                // symbol changes is keyed by the requested symbol
+                parts.symbolChanges.put( configuration.getSymbol(), (SymbolChangedEvent)baseData );
+            }
+        }
+
+        if( parts.securityUpdate.size() > 0 ) {
+            // check for 'cash securities' if we found valid update data for this symbol
+            // and we need this data to update cash conversion rates, long term we should
+            // have Cash hold onto it's security, then he can update himself, or rather, just
+            // patch through calls to conversion rate to compue it on the fly using Security.Price
+            final List<Cash> cashItems = cashBook.getCashBySecuritySymbol( symbol );
+            if( !cashItems.isEmpty() ) {
+                final List<BaseData> cashUpdates = Collections.singletonList( parts.securityUpdate.get( parts.securityUpdate.size() - 1 ) );
+                for( int i = 0; i < cashItems.size(); i++ )
+                    parts.cash.add( new UpdateData<>( cashItems.get( i ), (Class<? extends Cash>)configuration.type, cashUpdates ) );
+            }
+
+            parts.security.add( new UpdateData<>( packet.getSecurity(), (Class<? extends Security>)configuration.type, parts.securityUpdate ) );
+        }
+
+        if( parts.consolidatorUpdate.size() > 0 )
+            parts.consolidator.add( new UpdateData<>( configuration, (Class<? extends SubscriptionDataConfig>)configuration.type, parts.consolidatorUpdate ) );
+    }
+
+    /**
+     * Holds the collections a <see cref="TimeSlice"/> is built from, either for a whole time step or for one partition of it
+     */
+    static final class SliceParts {
+        int count;
+        final List<UpdateData<Security>> security = new ArrayList<>();
+        final List<UpdateData<Security>> custom = new ArrayList<>();
+        final List<UpdateData<SubscriptionDataConfig>> consolidator = new ArrayList<>();
+        final List<UpdateData<Cash>> cash = new ArrayList<>();
+        final List<BaseData> allDataForAlgorithm = new ArrayList<>();
+
+        // scratch lists, UpdateData takes an immutable copy so these never escape
+        final List<BaseData> securityUpdate = new ArrayList<>();
+        final List<BaseData> consolidatorUpdate = new ArrayList<>();
+
+        final TradeBars tradeBars = new TradeBars();
+        final QuoteBars quoteBars = new QuoteBars();
+        final Ticks ticks = new Ticks();
+        final Splits splits = new Splits();
+        final Dividends dividends = new Dividends();
+        final Delistings delistings = new Delistings();
+        final OptionChains optionChains = new OptionChains();
+        final SymbolChangedEvents symbolChanges = new SymbolChangedEvents();
+        private final DataDictionary<?>[] dictionaries = { tradeBars, quoteBars, ticks, splits, dividends, delistings, optionChains, symbolChanges };
+        // the actions making the dictionaries writable again while they are handed out read only
+        private final Runnable[] unlocks = new Runnable[dictionaries.length];
+
+        /**
+         * Appends the parts of the packets that follow this one's, later values replace earlier ones as they would sequentially
+         */
+        void append( final SliceParts other ) {
+            count += other.count;
+            security.addAll( other.security );
+            custom.addAll( other.custom );
+            consolidator.addAll( other.consolidator );
+            cash.addAll( other.cash );
+            allDataForAlgorithm.addAll( other.allDataForAlgorithm );
+
+            tradeBars.putAll( other.tradeBars );
+            quoteBars.putAll( other.quoteBars );
+            ticks.putAll( other.ticks );
+            splits.putAll( other.splits );
+            dividends.putAll( other.dividends );
+            delistings.putAll( other.delistings );
+            optionChains.putAll( other.optionChains );
+            symbolChanges.putAll( other.symbolChanges );
+        }
+
+        /**
+         * Clears all buffers so they can be refilled for the next time step
+         */
+        void clear() {
+            count = 0;
+            security.clear();
+            custom.clear();
+            consolidator.clear();
+            cash.clear();
+            allDataForAlgorithm.clear();
+
+            for( final DataDictionary<?> dictionary : dictionaries )
+                dictionary.clear();
+        }
+
+        /**
+         * Marks the dictionaries read only before they are handed out
+         */
+        void lock() {
+            for( int i = 0; i < dictionaries.length; i++ )
+                unlocks[i] = dictionaries[i].lockReadOnly();
+        }
+
+        /**
+         * Makes the dictionaries writable again, if they were handed out
+         */
+        void unlock() {
+            for( int i = 0; i < unlocks.length; i++ ) {
+                if( unlocks[i] != null ) {
+                    unlocks[i].run();
+                    unlocks[i] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills the <see cref="SliceParts"/> of the partitions [first, last) of a run of non-option packets, splitting the
+     * partitions in halves until each task fills a single one
+     */
+    private static final class SlicePartsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final SliceParts[] partitions;
+        private final List<DataFeedPacket> data;
+        private final int from;
+        private final int to;
+        private final int partitionSize;
+        private final int first;
+        private final int last;
+        private final CashBook cashBook;
+        private final LocalDateTime algorithmTime;
+
+        SlicePartsTask( final SliceParts[] partitions, final List<DataFeedPacket> data, final int from, final int to, final int partitionSize,
+                final int first, final int last, final CashBook cashBook, final LocalDateTime algorithmTime ) {
+            this.partitions = partitions;
+            this.data = data;
+            this.from = from;
+            this.to = to;
+            this.partitionSize = partitionSize;
+            this.first = first;
+            this.last = last;
+            this.cashBook = cashBook;
+            this.algorithmTime = algorithmTime;
+        }
+
+        @Override
+        protected void compute() {
+            if( last - first == 1 ) {
+                final int end = Math.min( from + last * partitionSize, to );
+                for( int i = from + first * partitionSize; i < end; i++ )
+                    addPacket( partitions[first], data.get( i ), cashBook, algorithmTime, null );
+                return;
+            }
+
+            final int middle = (first + last) >>> 1;
+            invokeAll( new SlicePartsTask( partitions, data, from, to, partitionSize, first, middle, cashBook, algorithmTime ),
+                    new SlicePartsTask( partitions, data, from, to, partitionSize, middle, last, cashBook, algorithmTime ) );
+        }
+    }
+}
@@ -18,12 +18,12 @@ package com.quantconnect.lean.orders;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
 import com.google.common.collect.ImmutableList;
@@ -38,25 +38,23 @@ import com.quantconnect.lean.securities.SecurityTransactionManager;
 /**
  * Provides a single reference to an order for the algorithm to maintain. As the order gets
  * updated this ticket will also get updated
+ * 
+ * The ticket doesn't lock: its requests and events are kept in concurrent append logs, and its fill
+ * totals are replaced as a whole by compare and set, so events may be added from several threads.
  */
 public final class OrderTicket {
     
-    private final ReentrantLock orderEventsLock = new ReentrantLock();
-    private final Object updateRequestsLock = new Object();
-    private final Object setCancelRequestLock = new Object();
-
-    private Order order;
-    private Optional<OrderStatus> orderStatusOverride;
-    private CancelOrderRequest cancelRequest;
+    private volatile Order order;
+    private volatile Optional<OrderStatus> orderStatusOverride = Optional.empty();
+    private final AtomicReference<CancelOrderRequest> cancelRequest = new AtomicReference<>();
 
-    private int quantityFilled;
-    private BigDecimal averageFillPrice;
+    private final AtomicReference<FillTotals> fillTotals = new AtomicReference<>( FillTotals.NONE );
 
     private final int orderId;
-    private final List<OrderEvent> orderEvents; 
+    private final ConcurrentLinkedQueue<OrderEvent> orderEvents; 
     private final SubmitOrderRequest submitRequest;
-    private final Condition /*ManualResetEvent*/ orderStatusClosedEvent;
-    private final LinkedList<UpdateOrderRequest> updateRequests;
+    private final CompletableFuture<OrderTicket> orderClosed;
+    private final ConcurrentLinkedDeque<UpdateOrderRequest> updateRequests;
 
     // we pull this in to provide some behavior/simplicity to the ticket API
     private final SecurityTransactionManager transactionManager;
@@ -103,7 +101,7 @@ public final class OrderTicket {
      * then this will return a value of zero.
      */
     public BigDecimal getAverageFillPrice() {
-        return averageFillPrice;
+        return fillTotals.get().averageFillPrice;
     }
 
     /**
@@ -111,7 +109,7 @@ public final class OrderTicket {
      * then this will return a value of zero.
      */
     public int getQuantityFilled() {
-        return quantityFilled;
+        return fillTotals.get().quantityFilled;
     }
 
     /**
@@ -147,9 +145,7 @@ public final class OrderTicket {
      * <see cref="UpdateOrderRequest"/> that was sent for this order id
      */
     public List<UpdateOrderRequest> getUpdateRequests() {
-        synchronized( updateRequestsLock ) {
-            return ImmutableList.copyOf( updateRequests );
-        }
+        return ImmutableList.copyOf( updateRequests );
     }
 
     /**
@@ -157,23 +153,23 @@ public final class OrderTicket {
      * was not canceled, this will return null
      */
     public CancelOrderRequest getCancelRequest() {
-        return cancelRequest;
+        return cancelRequest.get();
     }
 
     /**
      * Gets a list of all order events for this ticket
      */
     public List<OrderEvent> getOrderEvents() {
-        synchronized( orderEventsLock ) {
-            return ImmutableList.copyOf( orderEvents );
-        }
+        return ImmutableList.copyOf( orderEvents );
     }
 
     /**
-     * Gets a Condition that can be used to wait until this order has filled
-    */
-    public Condition getOrderClosed() {
-        return orderStatusClosedEvent;
+     * Gets a future completed with this ticket once its order is closed: filled, canceled or invalid. The future
+     * is completed on the thread that processed the closing order event, so the dependent actions that aren't
+     * asynchronous run on that thread.
+     */
+    public CompletableFuture<OrderTicket> getOrderClosed() {
+        return orderClosed;
     }
 
     /**
@@ -186,9 +182,9 @@ public final class OrderTicket {
         this.orderId = submitRequest.orderId;
         this.transactionManager = transactionManager;
 
-        this.orderEvents = new ArrayList<OrderEvent>();
-        this.updateRequests = new LinkedList<UpdateOrderRequest>();
-        this.orderStatusClosedEvent = orderEventsLock.newCondition(); // new ManualResetEvent( false );
+        this.orderEvents = new ConcurrentLinkedQueue<OrderEvent>();
+        this.updateRequests = new ConcurrentLinkedDeque<UpdateOrderRequest>();
+        this.orderClosed = new CompletableFuture<OrderTicket>();
     }
 
     /**
@@ -241,7 +237,7 @@ public final class OrderTicket {
     public OrderResponse cancel( String tag ) {
         final CancelOrderRequest request = new CancelOrderRequest( transactionManager.getUtcTime(), orderId, tag );
         transactionManager.processRequest( request );
-        return cancelRequest.getResponse();
+        return cancelRequest.get().getResponse();
     }
     
     public OrderResponse cancel() {
@@ -261,8 +257,9 @@ public final class OrderTicket {
      * @returns The most recent <see cref="OrderRequest"/> for this ticket
     */
     public OrderRequest getMostRecentOrderRequest() {
-        if( cancelRequest != null )
-            return cancelRequest;
+        final CancelOrderRequest cancel = cancelRequest.get();
+        if( cancel != null )
+            return cancel;
         
         final UpdateOrderRequest lastUpdate = updateRequests.peekLast();
         if( lastUpdate != null )
@@ -272,31 +269,26 @@ public final class OrderTicket {
     }
 
     /**
-     * Adds an order event to this ticket
+     * Adds an order event to this ticket. This method is thread safe, the fills of concurrent events are all
+     * accounted for, but the closing event has to be added after the fills it closes for the ticket to be
+     * complete once <see cref="getOrderClosed"/> is.
      * @param orderEvent The order event to be added
      */
     void addOrderEvent( OrderEvent orderEvent ) {
-        orderEventsLock.lock();
-        try {
-            orderEvents.add( orderEvent );
-            if( orderEvent.fillQuantity != 0 ) {
-                // keep running totals of quantity filled and the average fill price so we
-                // don't need to compute these on demand
-                quantityFilled += orderEvent.fillQuantity;
-                final BigDecimal quantityWeightedFillPrice = orderEvents.stream()
-                        .filter( x -> x.status.isFill() )
-                        .map( x -> x.fillPrice.multiply( BigDecimal.valueOf( x.getAbsoluteFillQuantity() ) ) )
-                        .reduce( BigDecimal.ZERO, BigDecimal::add );
-                averageFillPrice = quantityWeightedFillPrice.divide( BigDecimal.valueOf( Math.abs( quantityFilled ) ), RoundingMode.HALF_UP );
-            }
-        
-            // fire the wait handle indicating this order is closed
-            if( orderEvent.status.isClosed() )
-                orderStatusClosedEvent.signalAll(); //.Set();
-        } 
-        finally {
-            orderEventsLock.unlock();
+        orderEvents.add( orderEvent );
+        if( orderEvent.fillQuantity != 0 ) {
+            // keep running totals of quantity filled and the average fill price so we
+            // don't need to compute these on demand
+            fillTotals.updateAndGet( totals -> totals.add( orderEvent ) );
         }
+
+        // release the margin the order reserved as it fills and closes
+        if( transactionManager != null )
+            transactionManager.onOrderEvent( orderEvent );
+    
+        // complete the future indicating this order is closed
+        if( orderEvent.status.isClosed() )
+            orderClosed.complete( this );
     }
 
     /**
@@ -318,9 +310,7 @@ public final class OrderTicket {
         if( request.orderId != orderId )
             throw new IllegalArgumentException( "Received UpdateOrderRequest for incorrect order id." );
 
-        synchronized( updateRequestsLock ) {
-            updateRequests.add( request );
-        }
+        updateRequests.add( request );
     }
 
     /**
@@ -335,14 +325,15 @@ public final class OrderTicket {
         if( request.orderId != orderId )
             throw new IllegalArgumentException( "Received CancelOrderRequest for incorrect order id." );
         
-        synchronized( setCancelRequestLock ) {
-            if( cancelRequest != null )
-                return false;
-            
-            cancelRequest = request;
-        }
-        
-        return true;
+        return cancelRequest.compareAndSet( null, request );
+    }
+
+    /**
+     * Marks this ticket as invalid, which closes it
+     */
+    private void invalidate() {
+        orderStatusOverride = Optional.of( OrderStatus.Invalid );
+        orderClosed.complete( this );
     }
 
     /**
@@ -351,10 +342,12 @@ public final class OrderTicket {
     public static OrderTicket invalidCancelOrderId( SecurityTransactionManager transactionManager, CancelOrderRequest request ) {
         final SubmitOrderRequest submit = new SubmitOrderRequest( OrderType.Market, SecurityType.Base, Symbol.EMPTY, 0, BigDecimal.ZERO, BigDecimal.ZERO, LocalDateTime.MAX, null );
         submit.setResponse( OrderResponse.unableToFindOrder( request ) );
+        // the ticket takes the request's order id, which it checks the request against
+        submit.setOrderId( request.orderId );
         final OrderTicket ticket = new OrderTicket( transactionManager, submit );
         request.setResponse( OrderResponse.unableToFindOrder( request ) );
         ticket.trySetCancelRequest( request );
-        ticket.orderStatusOverride = Optional.of( OrderStatus.Invalid );
+        ticket.invalidate();
         return ticket;
     }
 
@@ -364,10 +357,12 @@ public final class OrderTicket {
     public static OrderTicket invalidUpdateOrderId( SecurityTransactionManager transactionManager, UpdateOrderRequest request ) {
         final SubmitOrderRequest submit = new SubmitOrderRequest( OrderType.Market, SecurityType.Base, Symbol.EMPTY, 0, BigDecimal.ZERO, BigDecimal.ZERO, LocalDateTime.MAX, null );
         submit.setResponse( OrderResponse.unableToFindOrder( request ) );
+        // the ticket takes the request's order id, which it checks the request against
+        submit.setOrderId( request.orderId );
         final OrderTicket ticket = new OrderTicket( transactionManager, submit );
         request.setResponse( OrderResponse.unableToFindOrder( request ) );
         ticket.addUpdateRequest( request );
-        ticket.orderStatusOverride = Optional.of( OrderStatus.Invalid );
+        ticket.invalidate();
         return ticket;
     }
 
@@ -377,7 +372,7 @@ public final class OrderTicket {
     public static OrderTicket invalidSubmitRequest( SecurityTransactionManager transactionManager, SubmitOrderRequest request, OrderResponse response ) {
         request.setResponse( response );
         final OrderTicket orderTicket = new OrderTicket( transactionManager, request );
-        orderTicket.orderStatusOverride = Optional.of( OrderStatus.Invalid );
+        orderTicket.invalidate();
         return  orderTicket;
     }
 
@@ -387,7 +382,7 @@ public final class OrderTicket {
     public static OrderTicket invalidWarmingUp( SecurityTransactionManager transactionManager, SubmitOrderRequest submit ) {
         submit.setResponse( OrderResponse.warmingUp( submit ) );
         final OrderTicket ticket = new OrderTicket( transactionManager, submit );
-        ticket.orderStatusOverride = Optional.of( OrderStatus.Invalid );
+        ticket.invalidate();
         return ticket;
     }
 
@@ -406,12 +401,12 @@ public final class OrderTicket {
 
     private int responseCount() {
         return ( submitRequest.getResponse() == OrderResponse.UNPROCESSED ? 0 : 1 ) 
-             + ( cancelRequest == null || cancelRequest.getResponse() == OrderResponse.UNPROCESSED ? 0 : 1 )
+             + ( getCancelRequest() == null || getCancelRequest().getResponse() == OrderResponse.UNPROCESSED ? 0 : 1 )
              + (int)updateRequests.stream().filter( x -> x.getResponse() != OrderResponse.UNPROCESSED ).count();
     }
 
     private int requestCount() {
-        return 1 + updateRequests.size() + (cancelRequest == null ? 0 : 1);
+        return 1 + updateRequests.size() + (getCancelRequest() == null ? 0 : 1);
     }
 
     /**
@@ -428,6 +423,32 @@ public final class OrderTicket {
     }
 
 
+    /**
+     * The quantity filled and the average fill price of the ticket, replaced as a whole so they are always consistent
+     */
+    private static final class FillTotals {
+        static final FillTotals NONE = new FillTotals( 0, BigDecimal.ZERO, BigDecimal.ZERO );
+
+        final int quantityFilled;
+        final BigDecimal quantityWeightedFillPrice;
+        final BigDecimal averageFillPrice;
+
+        FillTotals( int quantityFilled, BigDecimal quantityWeightedFillPrice, BigDecimal averageFillPrice ) {
+            this.quantityFilled = quantityFilled;
+            this.quantityWeightedFillPrice = quantityWeightedFillPrice;
+            this.averageFillPrice = averageFillPrice;
+        }
+
+        FillTotals add( OrderEvent orderEvent ) {
+            final BigDecimal weighted = orderEvent.status.isFill()
+                    ? quantityWeightedFillPrice.add( orderEvent.fillPrice.multiply( BigDecimal.valueOf( orderEvent.getAbsoluteFillQuantity() ) ) )
+                    : quantityWeightedFillPrice;
+            final int filled = quantityFilled + orderEvent.fillQuantity;
+            final BigDecimal average = filled != 0 ? weighted.divide( BigDecimal.valueOf( Math.abs( filled ) ), RoundingMode.HALF_UP ) : averageFillPrice;
+            return new FillTotals( filled, weighted, average );
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private static <T extends Order> BigDecimal accessOrder( OrderTicket ticket, OrderField field, Function<T,BigDecimal> orderSelector, Function<SubmitOrderRequest,BigDecimal> requestSelector ) {
         final Order order = ticket.order;
@@ -0,0 +1,32 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.orders.fills;
+
+import com.quantconnect.lean.data.BaseData;
+import com.quantconnect.lean.securities.Security;
+
+/**
+ * Represents a fill model that maintains its own view of the market from every data point received by the security,
+ * rather than only the last values held by the <see cref="SecurityCache"/>
+ */
+public interface IMarketDataFillModel extends IFillModel {
+    /**
+     * Updates the model with new market data, called for every data point in the order it was received
+     * @param asset The security that received the data
+     * @param data The new data
+     */
+    void update( Security asset, BaseData data );
+}
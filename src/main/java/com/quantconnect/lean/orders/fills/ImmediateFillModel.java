@@ -383,7 +383,7 @@ public class ImmediateFillModel implements IFillModel {
      * @param asset Security asset we're checking
      * @param direction The order direction, decides whether to pick bid or ask
      */
-    private Prices getPrices( Security asset, OrderDirection direction ) {
+    static Prices getPrices( Security asset, OrderDirection direction ) {
         final BigDecimal low = asset.getLow();
         final BigDecimal high = asset.getHigh();
         final BigDecimal open = asset.getOpen();
@@ -418,7 +418,7 @@ public class ImmediateFillModel implements IFillModel {
     /**
      * Determines if the exchange is open using the current time of the asset
      */
-    private static boolean isExchangeOpen( Security asset ) {
+    static boolean isExchangeOpen( Security asset ) {
         if( !asset.getExchange().dateTimeIsOpen( asset.getLocalTime() ) ) {
             // if we're not open at the current time exactly, check the bar size, this handle large sized bars (hours/days)
             final BaseData currentBar = asset.getLastData();
@@ -430,7 +430,7 @@ public class ImmediateFillModel implements IFillModel {
         return true;
     }
 
-    private class Prices {
+    static class Prices {
         public final BigDecimal current;
         public final BigDecimal open;
         public final BigDecimal high;
@@ -0,0 +1,632 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.orders.fills;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.quantconnect.lean.Extensions;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.TickType;
+import com.quantconnect.lean.data.BaseData;
+import com.quantconnect.lean.data.market.Tick;
+import com.quantconnect.lean.orders.LimitOrder;
+import com.quantconnect.lean.orders.MarketOnCloseOrder;
+import com.quantconnect.lean.orders.MarketOnOpenOrder;
+import com.quantconnect.lean.orders.MarketOrder;
+import com.quantconnect.lean.orders.Order;
+import com.quantconnect.lean.orders.OrderEvent;
+import com.quantconnect.lean.orders.OrderTypes.OrderDirection;
+import com.quantconnect.lean.orders.OrderTypes.OrderStatus;
+import com.quantconnect.lean.orders.StopLimitOrder;
+import com.quantconnect.lean.orders.StopMarketOrder;
+import com.quantconnect.lean.securities.Security;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+/**
+ * Fill model that simulates the order book of each security from its quote and trade <see cref="Tick"/> data.
+ *
+ * The displayed size of each price level is kept in primitive arrays indexed by the price in minimum price variations,
+ * in a window that follows the market. Marketable orders take the displayed size from the best price outward, up to
+ * their limit price. The rest of a limit order joins the back of the queue at its price: trades at that price consume
+ * the queue ahead of it before filling it, the queue shrinks with the displayed size when orders ahead of it leave, and
+ * trades through its price fill it. Every fill is limited to the participation rate of the displayed size or traded
+ * volume, so large orders fill partially over several ticks. Stop orders trigger on a trade at or through their stop price.
+ *
+ * Fills are accumulated as ticks arrive and reported by the next fill call as one <see cref="OrderEvent"/> at their
+ * average price, with the <see cref="OrderStatus.PartiallyFilled"/> status until the whole order is filled. The order
+ * fee is charged in proportion to each fill. Updating an order's price or quantity sends it to the back of the queue.
+ *
+ * Tick data only carries the top of the book, so deeper levels keep the size last displayed at them. Securities without
+ * tick data, and market on open and market on close orders, are filled by the fallback model.
+ */
+public class OrderBookFillModel implements IMarketDataFillModel {
+
+    /**
+     * The default fraction of the displayed size and traded volume an order can take, all of it
+     */
+    public static final double DEFAULT_PARTICIPATION_RATE = 1;
+
+    // the number of price levels held around the market, and walked by one marketable order
+    private static final int LEVELS = 1024;
+    private static final int MAX_SWEEP_LEVELS = 32;
+    private static final long NONE = Long.MIN_VALUE;
+    private static final BigDecimal DEFAULT_TICK_SIZE = new BigDecimal( "0.01" );
+
+    private final Object locker = new Object();
+    private final double participationRate;
+    private final IFillModel fallback;
+    private final Map<Symbol,Book> books = new HashMap<>();
+    private final Int2ObjectOpenHashMap<OrderState> orders = new Int2ObjectOpenHashMap<>();
+
+    /**
+     * Initializes a new instance of the <see cref="OrderBookFillModel"/> class taking all of the displayed size and
+     * traded volume, with an <see cref="ImmediateFillModel"/> fallback
+     */
+    public OrderBookFillModel() {
+        this( DEFAULT_PARTICIPATION_RATE );
+    }
+
+    /**
+     * Initializes a new instance of the <see cref="OrderBookFillModel"/> class with an <see cref="ImmediateFillModel"/> fallback
+     * @param participationRate The fraction of the displayed size and traded volume an order can take, in (0, 1]
+     */
+    public OrderBookFillModel( double participationRate ) {
+        this( participationRate, new ImmediateFillModel() );
+    }
+
+    /**
+     * Initializes a new instance of the <see cref="OrderBookFillModel"/> class
+     * @param participationRate The fraction of the displayed size and traded volume an order can take, in (0, 1]
+     * @param fallback The model filling the orders of securities without tick data, and the market on open/close orders
+     */
+    public OrderBookFillModel( double participationRate, IFillModel fallback ) {
+        if( !( participationRate > 0 && participationRate <= 1 ) )
+            throw new IllegalArgumentException( "The participation rate must be in (0, 1]: " + participationRate );
+        if( fallback == null )
+            throw new IllegalArgumentException( "The fallback fill model is required" );
+
+        this.participationRate = participationRate;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Updates the book of the security with a quote or trade tick, other data is ignored
+     * @param asset The security that received the data
+     * @param data The new data
+     */
+    @Override
+    public void update( Security asset, BaseData data ) {
+        if( !( data instanceof Tick ) )
+            return;
+
+        final Tick tick = (Tick)data;
+        if( tick.suspicious )
+            return;
+
+        synchronized( locker ) {
+            Book book = books.get( asset.getSymbol() );
+            if( book == null ) {
+                book = new Book( asset.getSymbolProperties().getPipSize() );
+                books.put( asset.getSymbol(), book );
+            }
+
+            if( tick.tickType == TickType.Quote )
+                book.onQuote( tick );
+            else if( tick.tickType == TickType.Trade )
+                book.onTrade( tick );
+        }
+    }
+
+    /**
+     * Fills a market order against the displayed size of the opposite side of the book
+     * @param asset Asset we're trading this order
+     * @param order Order to update
+     * @returns Order fill information detailing the average price and quantity filled.
+     */
+    @Override
+    public OrderEvent marketFill( Security asset, MarketOrder order ) {
+        if( order.getStatus() != OrderStatus.Canceled && !ImmediateFillModel.isExchangeOpen( asset ) )
+            return createEvent( asset, order );
+
+        return fill( asset, order, null, null );
+    }
+
+    /**
+     * Triggers a stop market order on a trade at or through its stop price, then fills it as a market order
+     * @param asset Asset we're trading this order
+     * @param order Stop Order to Check, return filled if true
+     * @returns Order fill information detailing the average price and quantity filled.
+     */
+    @Override
+    public OrderEvent stopMarketFill( Security asset, StopMarketOrder order ) {
+        if( order.getStatus() != OrderStatus.Canceled && !ImmediateFillModel.isExchangeOpen( asset ) )
+            return createEvent( asset, order );
+
+        return fill( asset, order, null, order.getStopPrice() );
+    }
+
+    /**
+     * Triggers a stop limit order on a trade at or through its stop price, then fills it as a limit order
+     * @param asset Asset we're trading this order
+     * @param order Stop Limit Order to Check, return filled if true
+     * @returns Order fill information detailing the average price and quantity filled.
+     */
+    @Override
+    public OrderEvent stopLimitFill( Security asset, StopLimitOrder order ) {
+        return fill( asset, order, order.getLimitPrice(), order.getStopPrice() );
+    }
+
+    /**
+     * Fills a limit order from the displayed size it crosses, then from its queue position at its limit price
+     * @param asset Stock Object to use to help model limit fill
+     * @param order Order to fill. Alter the values directly if filled.
+     * @returns Order fill information detailing the average price and quantity filled.
+     */
+    @Override
+    public OrderEvent limitFill( Security asset, LimitOrder order ) {
+        return fill( asset, order, order.getLimitPrice(), null );
+    }
+
+    /**
+     * Market on open orders cross in the opening auction, which ticks don't describe; they are filled by the fallback model
+     * @param asset Asset we're trading with this order
+     * @param order Order to be filled
+     * @returns Order fill information detailing the average price and quantity filled.
+     */
+    @Override
+    public OrderEvent marketOnOpenFill( Security asset, MarketOnOpenOrder order ) {
+        return fallback.marketOnOpenFill( asset, order );
+    }
+
+    /**
+     * Market on close orders cross in the closing auction, which ticks don't describe; they are filled by the fallback model
+     * @param asset Asset we're trading with this order
+     * @param order Order to be filled
+     * @returns Order fill information detailing the average price and quantity filled.
+     */
+    @Override
+    public OrderEvent marketOnCloseFill( Security asset, MarketOnCloseOrder order ) {
+        return fallback.marketOnCloseFill( asset, order );
+    }
+
+    private OrderEvent fill( Security asset, Order order, BigDecimal limitPrice, BigDecimal stopPrice ) {
+        synchronized( locker ) {
+            final Book book = books.get( asset.getSymbol() );
+            if( book == null || !book.hasMarket() ) {
+                orders.remove( order.getId() );
+                return fillWithFallback( asset, order );
+            }
+
+            final OrderEvent fill = createEvent( asset, order );
+            if( order.getStatus() == OrderStatus.Canceled ) {
+                final OrderState state = orders.remove( order.getId() );
+                if( state != null )
+                    book.removeResting( state );
+                return fill;
+            }
+
+            final OrderState state = getState( book, order, limitPrice, stopPrice );
+            if( state.pending == 0 )
+                return fill;
+
+            final int quantity = (int)state.pending;
+            fill.fillPrice = BigDecimal.valueOf( state.pendingNotional ).multiply( book.tickSize )
+                    .divide( BigDecimal.valueOf( quantity ), MathContext.DECIMAL64 );
+            fill.fillQuantity = state.buy ? quantity : -quantity;
+            state.filled += quantity;
+            state.pending = 0;
+            state.pendingNotional = 0;
+
+            // charge the order fee in proportion to the quantity filled, the last fill charging what's left of it
+            final BigDecimal orderFee = asset.getFeeModel().getOrderFee( asset, order ).abs();
+            if( state.filled >= state.quantity ) {
+                fill.status = OrderStatus.Filled;
+                fill.orderFee = orderFee.subtract( state.feesCharged ).max( BigDecimal.ZERO );
+                orders.remove( order.getId() );
+                book.removeResting( state );
+            }
+            else {
+                fill.status = OrderStatus.PartiallyFilled;
+                fill.orderFee = orderFee.multiply( BigDecimal.valueOf( quantity ) )
+                        .divide( BigDecimal.valueOf( state.quantity ), MathContext.DECIMAL64 );
+                state.feesCharged = state.feesCharged.add( fill.orderFee );
+            }
+
+            return fill;
+        }
+    }
+
+    /**
+     * Gets the state of the order in the book, registering the order on its first fill call or after it was updated
+     */
+    private OrderState getState( Book book, Order order, BigDecimal limitPrice, BigDecimal stopPrice ) {
+        final OrderState current = orders.get( order.getId() );
+        final int quantity = order.getAbsoluteQuantity();
+        if( current != null && current.quantity == quantity && equal( current.limitPrice, limitPrice ) && equal( current.stopPrice, stopPrice ) )
+            return current;
+
+        final boolean buy = order.getDirection() == OrderDirection.Buy;
+        final long limit = limitPrice == null ? ( buy ? Long.MAX_VALUE : Long.MIN_VALUE ) : book.toLevel( limitPrice, !buy );
+        final long stop = stopPrice == null ? NONE : book.toLevel( stopPrice, buy );
+        final OrderState state = new OrderState( buy, quantity, limitPrice, limit, stopPrice, stop );
+
+        // an updated order keeps what it filled so far but loses its place in the queue
+        if( current != null ) {
+            book.removeResting( current );
+            state.filled = current.filled;
+            state.pending = current.pending;
+            state.pendingNotional = current.pendingNotional;
+            state.feesCharged = current.feesCharged;
+            state.triggered = current.triggered;
+        }
+
+        orders.put( order.getId(), state );
+        book.addResting( state );
+        if( !state.triggered && ( stop == NONE || book.isTriggeredBy( state, book.lastTrade ) ) )
+            book.trigger( state );
+        return state;
+    }
+
+    private OrderEvent fillWithFallback( Security asset, Order order ) {
+        switch( order.getType() ) {
+            case Market:
+                return fallback.marketFill( asset, (MarketOrder)order );
+            case Limit:
+                return fallback.limitFill( asset, (LimitOrder)order );
+            case StopMarket:
+                return fallback.stopMarketFill( asset, (StopMarketOrder)order );
+            case StopLimit:
+                return fallback.stopLimitFill( asset, (StopLimitOrder)order );
+            default:
+                throw new IllegalArgumentException( "Unexpected order type: " + order.getType() );
+        }
+    }
+
+    private static OrderEvent createEvent( Security asset, Order order ) {
+        final LocalDateTime utcTime = Extensions.convertToUtc( asset.getLocalTime(), asset.getExchange().getTimeZone() );
+        return new OrderEvent( order, utcTime, BigDecimal.ZERO );
+    }
+
+    private static boolean equal( BigDecimal a, BigDecimal b ) {
+        return a == null ? b == null : b != null && a.compareTo( b ) == 0;
+    }
+
+    /**
+     * The simulated book of one security, prices are held as a number of minimum price variations
+     */
+    private final class Book {
+        final BigDecimal tickSize;
+        final double tickValue;
+
+        // displayed size of the levels base to base + LEVELS - 1
+        final long[] bidSizes = new long[LEVELS];
+        final long[] askSizes = new long[LEVELS];
+        long base = NONE;
+
+        long bestBid = NONE;
+        long bestAsk = NONE;
+        long lastTrade = NONE;
+
+        OrderState[] resting = new OrderState[4];
+        int restingCount;
+
+        Book( BigDecimal pipSize ) {
+            this.tickSize = pipSize != null && pipSize.signum() > 0 ? pipSize : DEFAULT_TICK_SIZE;
+            this.tickValue = tickSize.doubleValue();
+        }
+
+        boolean hasMarket() {
+            return bestBid != NONE || bestAsk != NONE || lastTrade != NONE;
+        }
+
+        /**
+         * Converts a price to its level, rounding prices between two levels up or down
+         */
+        long toLevel( BigDecimal price, boolean roundUp ) {
+            final double ticks = price.doubleValue() / tickValue;
+            final long nearest = Math.round( ticks );
+            if( Math.abs( ticks - nearest ) < 1e-6 )
+                return nearest;
+            return (long)( roundUp ? Math.ceil( ticks ) : Math.floor( ticks ) );
+        }
+
+        void onQuote( Tick tick ) {
+            if( tick.bidPrice.signum() > 0 ) {
+                final long level = toLevel( tick.bidPrice, false );
+                if( bestBid != NONE && level < bestBid )
+                    clear( bidSizes, level + 1, bestBid );
+                setSize( bidSizes, level, tick.bidSize );
+                bestBid = level;
+                if( bestAsk != NONE && bestAsk <= level ) {
+                    clear( askSizes, bestAsk, level );
+                    bestAsk = NONE;
+                }
+            }
+
+            if( tick.askPrice.signum() > 0 ) {
+                final long level = toLevel( tick.askPrice, true );
+                if( bestAsk != NONE && level > bestAsk )
+                    clear( askSizes, bestAsk, level - 1 );
+                setSize( askSizes, level, tick.askSize );
+                bestAsk = level;
+                if( bestBid != NONE && bestBid >= level ) {
+                    clear( bidSizes, level, bestBid );
+                    bestBid = NONE;
+                }
+            }
+
+            for( int i = 0; i < restingCount; i++ ) {
+                final OrderState state = resting[i];
+                if( !state.triggered || state.isComplete() )
+                    continue;
+
+                updateQueue( state );
+                take( state );
+            }
+        }
+
+        void onTrade( Tick tick ) {
+            final BigDecimal price = tick.getLastPrice();
+            if( price == null || price.signum() <= 0 )
+                return;
+
+            final long level = toLevel( price, false );
+            final long volume = Math.max( tick.quantity, 0 );
+            lastTrade = level;
+
+            // the trade took displayed size from the side it hit
+            if( bestAsk != NONE && level >= bestAsk )
+                setSize( askSizes, level, Math.max( getSize( askSizes, level ) - volume, 0 ) );
+            else if( bestBid != NONE && level <= bestBid )
+                setSize( bidSizes, level, Math.max( getSize( bidSizes, level ) - volume, 0 ) );
+
+            for( int i = 0; i < restingCount; i++ ) {
+                final OrderState state = resting[i];
+                if( state.isComplete() )
+                    continue;
+
+                if( !state.triggered ) {
+                    if( !isTriggeredBy( state, level ) )
+                        continue;
+                    trigger( state );
+                }
+                else
+                    fillFromTrade( state, level, volume );
+            }
+        }
+
+        boolean isTriggeredBy( OrderState state, long level ) {
+            return level != NONE && ( state.buy ? level >= state.stop : level <= state.stop );
+        }
+
+        void trigger( OrderState state ) {
+            state.triggered = true;
+            initializeQueue( state );
+            take( state );
+        }
+
+        /**
+         * Fills an order from a trade: market orders when the book has no quote to take, limit orders at their price
+         * once the queue ahead of them is gone, or at once when the trade went through their price
+         */
+        void fillFromTrade( OrderState state, long level, long volume ) {
+            if( state.isMarket() ) {
+                if( ( state.buy ? bestAsk : bestBid ) == NONE )
+                    state.addFill( level, Math.min( state.remaining(), (long)( volume * participationRate ) ) );
+                return;
+            }
+
+            final boolean through = state.buy ? level < state.limit : level > state.limit;
+            if( !through && level != state.limit )
+                return;
+
+            long available = volume;
+            if( !through ) {
+                final long queued = Math.min( state.queueAhead, available );
+                state.queueAhead -= queued;
+                available -= queued;
+            }
+
+            state.credit += available * participationRate;
+            final long quantity = Math.min( state.remaining(), (long)state.credit );
+            if( quantity > 0 ) {
+                state.credit -= quantity;
+                state.addFill( state.limit, quantity );
+            }
+        }
+
+        /**
+         * Takes the displayed size of the opposite side from the best price up to the order's limit
+         */
+        void take( OrderState state ) {
+            long remaining = state.remaining();
+            if( remaining <= 0 )
+                return;
+
+            final long[] sizes = state.buy ? askSizes : bidSizes;
+            final long best = state.buy ? bestAsk : bestBid;
+            if( best == NONE )
+                return;
+
+            final int step = state.buy ? 1 : -1;
+            long level = best;
+            for( int i = 0; i < MAX_SWEEP_LEVELS && remaining > 0; i++, level += step ) {
+                if( state.buy ? level > state.limit : level < state.limit )
+                    break;
+
+                final long displayed = getSize( sizes, level );
+                final long quantity = Math.min( remaining, (long)( displayed * participationRate ) );
+                if( quantity <= 0 )
+                    continue;
+
+                setSize( sizes, level, displayed - quantity );
+                state.addFill( level, quantity );
+                remaining -= quantity;
+            }
+        }
+
+        /**
+         * Places a limit order at the back of the queue at its price, ahead of it when its price improves the best price
+         */
+        void initializeQueue( OrderState state ) {
+            if( state.isMarket() )
+                return;
+
+            final long best = state.buy ? bestBid : bestAsk;
+            final boolean improves = best == NONE || ( state.buy ? state.limit > best : state.limit < best );
+            state.queueAhead = improves ? 0 : getSize( state.buy ? bidSizes : askSizes, state.limit );
+            state.credit = 0;
+        }
+
+        /**
+         * Orders ahead in the queue can only leave it, so the queue is capped at the size displayed at the order's price
+         */
+        void updateQueue( OrderState state ) {
+            if( state.isMarket() || state.queueAhead == 0 )
+                return;
+
+            final long best = state.buy ? bestBid : bestAsk;
+            if( best == NONE || ( state.buy ? state.limit > best : state.limit < best ) )
+                state.queueAhead = 0;
+            else if( state.limit == best )
+                state.queueAhead = Math.min( state.queueAhead, getSize( state.buy ? bidSizes : askSizes, best ) );
+        }
+
+        void addResting( OrderState state ) {
+            if( restingCount == resting.length )
+                resting = Arrays.copyOf( resting, restingCount * 2 );
+            resting[restingCount++] = state;
+        }
+
+        void removeResting( OrderState state ) {
+            for( int i = 0; i < restingCount; i++ ) {
+                if( resting[i] == state ) {
+                    resting[i] = resting[--restingCount];
+                    resting[restingCount] = null;
+                    return;
+                }
+            }
+        }
+
+        long getSize( long[] sizes, long level ) {
+            return base != NONE && level >= base && level < base + LEVELS ? sizes[(int)( level - base )] : 0;
+        }
+
+        void setSize( long[] sizes, long level, long size ) {
+            if( base == NONE || level < base || level >= base + LEVELS )
+                recenter( level );
+            sizes[(int)( level - base )] = size;
+        }
+
+        /**
+         * Clears the levels from and to inclusive that are in the window
+         */
+        void clear( long[] sizes, long from, long to ) {
+            if( base == NONE )
+                return;
+
+            final long start = Math.max( from, base );
+            final long end = Math.min( to, base + LEVELS - 1 );
+            if( start <= end )
+                Arrays.fill( sizes, (int)( start - base ), (int)( end - base ) + 1, 0 );
+        }
+
+        /**
+         * Moves the window so the specified level is at its center, keeping the sizes of the levels still in it
+         */
+        private void recenter( long level ) {
+            final long newBase = level - LEVELS / 2;
+            if( base == NONE || Math.abs( newBase - base ) >= LEVELS ) {
+                Arrays.fill( bidSizes, 0 );
+                Arrays.fill( askSizes, 0 );
+            }
+            else if( newBase > base ) {
+                final int shift = (int)( newBase - base );
+                shift( bidSizes, shift, 0, LEVELS - shift );
+                shift( askSizes, shift, 0, LEVELS - shift );
+            }
+            else {
+                final int shift = (int)( base - newBase );
+                shift( bidSizes, 0, shift, LEVELS - shift );
+                shift( askSizes, 0, shift, LEVELS - shift );
+            }
+            base = newBase;
+        }
+
+        private void shift( long[] sizes, int from, int to, int length ) {
+            System.arraycopy( sizes, from, sizes, to, length );
+            if( to > from )
+                Arrays.fill( sizes, 0, to, 0 );
+            else
+                Arrays.fill( sizes, length, LEVELS, 0 );
+        }
+    }
+
+    /**
+     * The simulated state of one order, quantities are absolute
+     */
+    private static final class OrderState {
+        final boolean buy;
+        final int quantity;
+        final BigDecimal limitPrice;
+        final long limit;
+        final BigDecimal stopPrice;
+        final long stop;
+
+        boolean triggered;
+        long queueAhead;
+        double credit;
+
+        long filled;
+        long pending;
+        long pendingNotional;
+        BigDecimal feesCharged = BigDecimal.ZERO;
+
+        OrderState( boolean buy, int quantity, BigDecimal limitPrice, long limit, BigDecimal stopPrice, long stop ) {
+            this.buy = buy;
+            this.quantity = quantity;
+            this.limitPrice = limitPrice;
+            this.limit = limit;
+            this.stopPrice = stopPrice;
+            this.stop = stop;
+        }
+
+        boolean isMarket() {
+            return limitPrice == null;
+        }
+
+        long remaining() {
+            return quantity - filled - pending;
+        }
+
+        boolean isComplete() {
+            return remaining() <= 0;
+        }
+
+        void addFill( long level, long quantity ) {
+            if( quantity <= 0 )
+                return;
+            pending += quantity;
+            pendingNotional += level * quantity;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.orders.fills;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import com.quantconnect.lean.orders.LimitOrder;
+import com.quantconnect.lean.orders.Order;
+import com.quantconnect.lean.orders.OrderTypes.OrderDirection;
+import com.quantconnect.lean.orders.StopLimitOrder;
+import com.quantconnect.lean.orders.StopMarketOrder;
+import com.quantconnect.lean.orders.fills.ImmediateFillModel.Prices;
+import com.quantconnect.lean.securities.Security;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+/**
+ * Indexes the open limit, stop market and stop limit orders of one security by the price that lets them fill, so each
+ * time step only the orders whose price the market reached are passed to the fill model.
+ *
+ * The orders are kept in four books sorted by price: buy limits fill when the ask falls to their limit and buy stops
+ * trigger when it rises to their stop, sell limits fill when the bid rises to their limit and sell stops trigger when it
+ * falls to their stop. A stop limit order is kept by its stop price until its stop triggers, then by its limit price.
+ * A query takes a binary search per book plus the number of orders returned, the comparisons are inclusive so the fill
+ * model makes the final decision. Market orders, and market on open and close orders, aren't indexed.
+ *
+ * This is a building block for the brokerage's per step fill scan, which isn't part of this tree: nothing constructs
+ * an index yet, the scan is expected to add each accepted order, remove it when canceled, and call
+ * <see cref="forEachCrossed(Security, Consumer)"/> instead of calling the fill model for every open order.
+ *
+ * Instances are not thread-safe.
+ */
+public class TriggerPriceIndex {
+
+    private final Book buyFalling = new Book();
+    private final Book buyRising = new Book();
+    private final Book sellFalling = new Book();
+    private final Book sellRising = new Book();
+    private final Int2ObjectOpenHashMap<Entry> entries = new Int2ObjectOpenHashMap<>();
+
+    private Order[] crossed = new Order[16];
+
+    /**
+     * Adds an open order, or moves it to its new price if it is already indexed
+     * @param order The order
+     * @returns True if the order was indexed, false if its type has no trigger price
+     */
+    public boolean add( Order order ) {
+        remove( order.getId() );
+
+        final Book book = getBook( order );
+        if( book == null )
+            return false;
+
+        final double price = getTriggerPrice( order ).doubleValue();
+        book.add( price, order );
+        entries.put( order.getId(), new Entry( order, book, price ) );
+        return true;
+    }
+
+    /**
+     * Removes an order, once it is filled or canceled
+     * @param orderId The id of the order
+     * @returns True if the order was indexed
+     */
+    public boolean remove( int orderId ) {
+        final Entry entry = entries.remove( orderId );
+        if( entry == null )
+            return false;
+
+        entry.book.remove( entry.price, entry.order );
+        return true;
+    }
+
+    /**
+     * Gets the number of indexed orders
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Passes the orders that can fill with the current prices of the security to the specified action. The prices are
+     * those used by <see cref="ImmediateFillModel"/>: the ask side for buy orders and the bid side for sell orders
+     * when quotes are available.
+     * @param asset The security whose orders are indexed
+     * @param action The action filling an order, typically calling the security's fill model
+     */
+    public void forEachCrossed( Security asset, Consumer<Order> action ) {
+        final BigDecimal current = asset.getPrice();
+        final Prices buy = ImmediateFillModel.getPrices( asset, OrderDirection.Buy );
+        final Prices sell = ImmediateFillModel.getPrices( asset, OrderDirection.Sell );
+        forEachCrossed( buy.low.min( current ), buy.high.max( current ), sell.low.min( current ), sell.high.max( current ), action );
+    }
+
+    /**
+     * Passes the orders whose price is within the range traded by each side to the specified action. After the action,
+     * orders that were closed are removed and the others are moved if their price changed, a stop limit order whose stop
+     * triggered for instance.
+     * @param buyLow The lowest price buy orders could trade at
+     * @param buyHigh The highest price buy orders could trade at
+     * @param sellLow The lowest price sell orders could trade at
+     * @param sellHigh The highest price sell orders could trade at
+     * @param action The action filling an order, typically calling the security's fill model
+     */
+    public void forEachCrossed( BigDecimal buyLow, BigDecimal buyHigh, BigDecimal sellLow, BigDecimal sellHigh, Consumer<Order> action ) {
+        // collect first, the action may fill orders and so change the books
+        int count = buyFalling.collectAtOrAbove( buyLow.doubleValue(), 0 );
+        count = buyRising.collectAtOrBelow( buyHigh.doubleValue(), count );
+        count = sellFalling.collectAtOrAbove( sellLow.doubleValue(), count );
+        count = sellRising.collectAtOrBelow( sellHigh.doubleValue(), count );
+
+        for( int i = 0; i < count; i++ ) {
+            final Order order = crossed[i];
+            crossed[i] = null;
+            action.accept( order );
+
+            final Entry entry = entries.get( order.getId() );
+            if( entry == null || entry.order != order )
+                continue;
+
+            if( order.getStatus().isClosed() )
+                remove( order.getId() );
+            else if( getBook( order ) != entry.book || getTriggerPrice( order ).doubleValue() != entry.price )
+                add( order );
+        }
+    }
+
+    private Book getBook( Order order ) {
+        final boolean buy = order.getDirection() == OrderDirection.Buy;
+        switch( order.getType() ) {
+            case Limit:
+                return buy ? buyFalling : sellRising;
+            case StopMarket:
+                return buy ? buyRising : sellFalling;
+            case StopLimit:
+                if( ((StopLimitOrder)order).isStopTriggered() )
+                    return buy ? buyFalling : sellRising;
+                return buy ? buyRising : sellFalling;
+            default:
+                return null;
+        }
+    }
+
+    private static BigDecimal getTriggerPrice( Order order ) {
+        switch( order.getType() ) {
+            case Limit:
+                return ((LimitOrder)order).getLimitPrice();
+            case StopMarket:
+                return ((StopMarketOrder)order).getStopPrice();
+            case StopLimit:
+                final StopLimitOrder stopLimit = (StopLimitOrder)order;
+                return stopLimit.isStopTriggered() ? stopLimit.getLimitPrice() : stopLimit.getStopPrice();
+            default:
+                throw new IllegalArgumentException( "Order type has no trigger price: " + order.getType() );
+        }
+    }
+
+    private static final class Entry {
+        final Order order;
+        final Book book;
+        final double price;
+
+        Entry( Order order, Book book, double price ) {
+            this.order = order;
+            this.book = book;
+            this.price = price;
+        }
+    }
+
+    /**
+     * Orders sorted by price in parallel arrays, orders at the same price in the order they were added
+     */
+    private final class Book {
+        double[] prices = new double[16];
+        Order[] orders = new Order[16];
+        int size;
+
+        void add( double price, Order order ) {
+            if( size == prices.length ) {
+                prices = Arrays.copyOf( prices, size * 2 );
+                orders = Arrays.copyOf( orders, size * 2 );
+            }
+
+            final int index = upperBound( price );
+            System.arraycopy( prices, index, prices, index + 1, size - index );
+            System.arraycopy( orders, index, orders, index + 1, size - index );
+            prices[index] = price;
+            orders[index] = order;
+            size++;
+        }
+
+        void remove( double price, Order order ) {
+            for( int i = lowerBound( price ); i < size && prices[i] == price; i++ ) {
+                if( orders[i] == order ) {
+                    System.arraycopy( prices, i + 1, prices, i, size - i - 1 );
+                    System.arraycopy( orders, i + 1, orders, i, size - i - 1 );
+                    orders[--size] = null;
+                    return;
+                }
+            }
+        }
+
+        int collectAtOrAbove( double price, int count ) {
+            return collect( lowerBound( price ), size, count );
+        }
+
+        int collectAtOrBelow( double price, int count ) {
+            return collect( 0, upperBound( price ), count );
+        }
+
+        private int collect( int from, int to, int count ) {
+            if( from >= to )
+                return count;
+
+            final int required = count + to - from;
+            if( required > crossed.length )
+                crossed = Arrays.copyOf( crossed, Math.max( required, crossed.length * 2 ) );
+
+            System.arraycopy( orders, from, crossed, count, to - from );
+            return required;
+        }
+
+        /**
+         * Gets the index of the first price not less than the specified price
+         */
+        private int lowerBound( double price ) {
+            int low = 0;
+            int high = size;
+            while( low < high ) {
+                final int middle = ( low + high ) >>> 1;
+                if( prices[middle] < price )
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return low;
+        }
+
+        /**
+         * Gets the index of the first price greater than the specified price
+         */
+        private int upperBound( double price ) {
+            int low = 0;
+            int high = size;
+            while( low < high ) {
+                final int middle = ( low + high ) >>> 1;
+                if( prices[middle] <= price )
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.securities;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import com.quantconnect.lean.orders.OrderEvent;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+/**
+ * Ledger of the initial margin reserved by open orders, so the capital checks of new orders account for the margin
+ * already committed to the orders waiting to fill.
+ *
+ * An order reserves its initial margin when it passes its capital check. Each fill releases the share of the reservation
+ * of the quantity filled, the holdings now use that margin, and the event closing the order releases what's left.
+ * The total reserved is kept as a running sum, so checking an order against it takes constant time.
+ *
+ * Instances are thread-safe.
+ */
+public class BuyingPowerLedger {
+
+    private final Object locker = new Object();
+    private final Int2ObjectOpenHashMap<Reservation> reservations = new Int2ObjectOpenHashMap<>();
+    private BigDecimal totalReserved = BigDecimal.ZERO;
+
+    /**
+     * Gets the total margin reserved by the open orders
+     */
+    public BigDecimal getTotalReserved() {
+        synchronized( locker ) {
+            return totalReserved;
+        }
+    }
+
+    /**
+     * Gets the margin reserved by the open orders other than the specified one, which is the margin an update of the
+     * order can't use
+     * @param orderId The id of the order to exclude
+     * @returns The margin reserved by the other orders
+     */
+    public BigDecimal getReservedByOthers( int orderId ) {
+        synchronized( locker ) {
+            final Reservation reservation = reservations.get( orderId );
+            return reservation != null ? totalReserved.subtract( reservation.amount ) : totalReserved;
+        }
+    }
+
+    /**
+     * Gets the margin reserved by the specified order
+     * @param orderId The id of the order
+     * @returns The margin reserved, zero if the order has no reservation
+     */
+    public BigDecimal getReserved( int orderId ) {
+        synchronized( locker ) {
+            final Reservation reservation = reservations.get( orderId );
+            return reservation != null ? reservation.amount : BigDecimal.ZERO;
+        }
+    }
+
+    /**
+     * Reserves margin for an order, replacing the order's previous reservation if it was updated
+     * @param orderId The id of the order
+     * @param quantity The absolute quantity of the order that is still to fill
+     * @param amount The initial margin required for that quantity
+     */
+    public void reserve( int orderId, int quantity, BigDecimal amount ) {
+        if( quantity <= 0 || amount.signum() <= 0 ) {
+            release( orderId );
+            return;
+        }
+
+        synchronized( locker ) {
+            final Reservation previous = reservations.put( orderId, new Reservation( quantity, amount ) );
+            if( previous != null )
+                totalReserved = totalReserved.subtract( previous.amount );
+            totalReserved = totalReserved.add( amount );
+        }
+    }
+
+    /**
+     * Releases all of the margin reserved by an order
+     * @param orderId The id of the order
+     */
+    public void release( int orderId ) {
+        synchronized( locker ) {
+            final Reservation reservation = reservations.remove( orderId );
+            if( reservation != null )
+                totalReserved = totalReserved.subtract( reservation.amount );
+        }
+    }
+
+    /**
+     * Updates the ledger with an order event, releasing the share of the reservation of the quantity filled, and the
+     * whole reservation when the event closes the order
+     * @param orderEvent The order event reported for an order
+     */
+    public void onOrderEvent( OrderEvent orderEvent ) {
+        if( orderEvent.status.isClosed() ) {
+            release( orderEvent.orderId );
+            return;
+        }
+
+        final int filled = orderEvent.getAbsoluteFillQuantity();
+        if( filled == 0 )
+            return;
+
+        synchronized( locker ) {
+            final Reservation reservation = reservations.get( orderEvent.orderId );
+            if( reservation == null )
+                return;
+
+            final int remaining = reservation.quantity - filled;
+            if( remaining <= 0 ) {
+                reservations.remove( orderEvent.orderId );
+                totalReserved = totalReserved.subtract( reservation.amount );
+                return;
+            }
+
+            final BigDecimal amount = reservation.amount.multiply( BigDecimal.valueOf( remaining ) )
+                    .divide( BigDecimal.valueOf( reservation.quantity ), MathContext.DECIMAL64 );
+            reservations.put( orderEvent.orderId, new Reservation( remaining, amount ) );
+            totalReserved = totalReserved.subtract( reservation.amount ).add( amount );
+        }
+    }
+
+    private static final class Reservation {
+        final int quantity;
+        final BigDecimal amount;
+
+        Reservation( int quantity, BigDecimal amount ) {
+            this.quantity = quantity;
+            this.amount = amount;
+        }
+    }
+}
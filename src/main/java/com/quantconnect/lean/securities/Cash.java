@@ -21,6 +21,8 @@ import java.math.RoundingMode;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -47,14 +49,17 @@ import com.quantconnect.lean.securities.forex.Forex;
 public class Cash {
     private final Logger log = LoggerFactory.getLogger( getClass() );
     private final Object locker = new Object();
+    private final CopyOnWriteArrayList<Consumer<Cash>> conversionRateListeners = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<Consumer<Cash>> amountListeners = new CopyOnWriteArrayList<>();
 
     private boolean isBaseCurrency;
     private boolean invertRealTimePrice;
     private Symbol securitySymbol;
     private String symbol;
-    private BigDecimal amount;
+    private volatile BigDecimal amount;
 
-    protected BigDecimal conversionRate;
+    // only written through setConversionRate after construction, so the listeners see every change
+    private volatile BigDecimal conversionRate;
 
 
     /**
@@ -85,6 +90,47 @@ public class Cash {
         return conversionRate;
     }
 
+    /**
+     * Sets the conversion rate into account currency and notifies the conversion rate listeners
+     * @param conversionRate The new conversion rate
+     */
+    public void setConversionRate( BigDecimal conversionRate ) {
+        this.conversionRate = conversionRate;
+        onConversionRateChanged();
+    }
+
+    /**
+     * Registers a listener invoked synchronously, on the updating thread, whenever the conversion rate changes
+     * @param listener The listener to be notified with this cash instance
+     */
+    public void addConversionRateListener( Consumer<Cash> listener ) {
+        conversionRateListeners.addIfAbsent( listener );
+    }
+
+    /**
+     * Removes a listener previously registered with <see cref="addConversionRateListener"/>
+     * @param listener The listener to be removed
+     */
+    public void removeConversionRateListener( Consumer<Cash> listener ) {
+        conversionRateListeners.remove( listener );
+    }
+
+    /**
+     * Registers a listener invoked synchronously, on the updating thread, whenever the amount changes
+     * @param listener The listener to be notified with this cash instance
+     */
+    public void addAmountListener( Consumer<Cash> listener ) {
+        amountListeners.addIfAbsent( listener );
+    }
+
+    /**
+     * Removes a listener previously registered with <see cref="addAmountListener"/>
+     * @param listener The listener to be removed
+     */
+    public void removeAmountListener( Consumer<Cash> listener ) {
+        amountListeners.remove( listener );
+    }
+
     /**
      * Gets the value of this cash in the accout currency
      */
@@ -119,7 +165,7 @@ public class Cash {
         if( invertRealTimePrice )
             rate = BigDecimal.ONE.divide( rate, RoundingMode.HALF_EVEN );
         
-        conversionRate = rate;
+        setConversionRate( rate );
     }
 
     /**
@@ -129,10 +175,14 @@ public class Cash {
      * @returns The amount of currency directly after the addition
      */
     public BigDecimal addAmount( BigDecimal amt ) {
+        final BigDecimal total;
         synchronized( locker ) {
             amount = amount.add( amt );
-            return amount;
+            total = amount;
         }
+        
+        onAmountChanged();
+        return total;
     }
 
     /**
@@ -143,6 +193,8 @@ public class Cash {
         synchronized( locker ) {
             this.amount = amount;
         }
+        
+        onAmountChanged();
     }
 
     /**
@@ -162,7 +214,7 @@ public class Cash {
         if( symbol.equals( CashBook.ACCOUNT_CURRENCY ) ) {
             this.securitySymbol = null;
             this.isBaseCurrency = true;
-            this.conversionRate = BigDecimal.ONE;
+            setConversionRate( BigDecimal.ONE );
             return null;
         }
 
@@ -231,6 +283,16 @@ public class Cash {
         throw new IllegalArgumentException( String.format( "In order to maintain cash in %1$s you are required to add a subscription for Forex pair %1$s%2$s or %2$s%1$s", symbol, CashBook.ACCOUNT_CURRENCY ) );
     }
     
+    private void onConversionRateChanged() {
+        for( Consumer<Cash> listener : conversionRateListeners )
+            listener.accept( this );
+    }
+
+    private void onAmountChanged() {
+        for( Consumer<Cash> listener : amountListeners )
+            listener.accept( this );
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
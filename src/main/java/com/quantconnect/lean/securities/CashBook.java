@@ -20,14 +20,18 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import com.google.common.collect.ImmutableMap;
 import com.quantconnect.lean.Currencies;
 import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.Symbol;
 import com.quantconnect.lean.data.SubscriptionManager;
 
 
@@ -43,13 +47,29 @@ public class CashBook implements Map<String,Cash> {
 
     private final Map<String,Cash> currencies;
 
+    // conversion security symbol -> cash items converted by it, kept in sync with 'currencies'
+    private final Map<Symbol,List<Cash>> cashBySecuritySymbol;
+
+    // the total value is cached until a cash item reports an amount or conversion rate change. Invalidation
+    // bumps the version, so a total computed concurrently with a change is never returned once the change is visible
+    private final AtomicLong version = new AtomicLong();
+    private final Consumer<Cash> invalidator = cash -> invalidate();
+    private volatile CachedTotal cachedTotal;
+
     /**
      * Gets the total value of the cash book in units of the base currency
      */
     public BigDecimal getTotalValueInAccountCurrency() {
-        return currencies.values().stream()
+        final CachedTotal cached = cachedTotal;
+        final long current = version.get();
+        if( cached != null && cached.version == current )
+            return cached.total;
+        
+        final BigDecimal total = currencies.values().stream()
                 .map( x -> x.getValueInAccountCurrency() )
                 .reduce( BigDecimal.ZERO, BigDecimal::add );
+        cachedTotal = new CachedTotal( current, total );
+        return total;
     }
 
     /**
@@ -57,7 +77,18 @@ public class CashBook implements Map<String,Cash> {
      */
     public CashBook() {
         currencies = new HashMap<String,Cash>();
-        currencies.put( ACCOUNT_CURRENCY, new Cash( ACCOUNT_CURRENCY, BigDecimal.ZERO, BigDecimal.ONE ) );
+        cashBySecuritySymbol = new HashMap<Symbol,List<Cash>>();
+        put( ACCOUNT_CURRENCY, new Cash( ACCOUNT_CURRENCY, BigDecimal.ZERO, BigDecimal.ONE ) );
+    }
+
+    /**
+     * Gets the cash items whose conversion rate is provided by the specified security
+     * @param securitySymbol The symbol of the conversion rate security
+     * @returns A read only view of the matching cash items, or an empty list if the security doesn't provide any conversion rate
+     */
+    public List<Cash> getCashBySecuritySymbol( Symbol securitySymbol ) {
+        final List<Cash> cash = cashBySecuritySymbol.get( securitySymbol );
+        return cash != null ? Collections.unmodifiableList( cash ) : Collections.emptyList();
     }
 
     /**
@@ -68,7 +99,7 @@ public class CashBook implements Map<String,Cash> {
      *        portfolio value/starting capital impact caused by this currency position.
      */
     public void add( String symbol, BigDecimal quantity, BigDecimal conversionRate ) {
-        currencies.put( symbol, new Cash( symbol, quantity, conversionRate ) );
+        put( symbol, new Cash( symbol, quantity, conversionRate ) );
     }
 
     /**
@@ -89,6 +120,9 @@ public class CashBook implements Map<String,Cash> {
                 addedSecurities.add( security );
         }
         
+        // ensuring the data feeds resolves each cash's conversion security symbol
+        rebuildSecuritySymbolIndex();
+        
         return addedSecurities;
     }
 
@@ -158,7 +192,7 @@ public class CashBook implements Map<String,Cash> {
      * @param item KeyValuePair of symbol -> Cash item
      */
     public void add( Entry<String,Cash> item ) {
-        currencies.put( item.getKey(), item.getValue() );
+        put( item.getKey(), item.getValue() );
     }
 
     /**
@@ -168,14 +202,24 @@ public class CashBook implements Map<String,Cash> {
      * @return 
      */
     public Cash put( String symbol, Cash value ) {
-        return currencies.put( symbol, value );
+        final Cash previous = currencies.put( symbol, value );
+        unindex( previous );
+        index( value );
+        unsubscribe( previous );
+        subscribe( value );
+        invalidate();
+        return previous;
     }
 
     /**
      * Clear this instance of all Cash entries.
      */
     public void clear() {
+        final List<Cash> removed = new ArrayList<>( currencies.values() );
         currencies.clear();
+        removed.forEach( this::unsubscribe );
+        cashBySecuritySymbol.clear();
+        invalidate();
     }
 
     /**
@@ -183,7 +227,11 @@ public class CashBook implements Map<String,Cash> {
      * @param symbol The symbol to be removed
      */
     public Cash remove( Object symbol ) {
-        return currencies.remove( symbol );
+        final Cash removed = currencies.remove( symbol );
+        unindex( removed );
+        unsubscribe( removed );
+        invalidate();
+        return removed;
     }
 
     /**
@@ -191,7 +239,7 @@ public class CashBook implements Map<String,Cash> {
      * @param item Item.
      */
     public boolean remove( Entry<String,Cash> item ) {
-        return currencies.remove( item.getKey() ) != null;
+        return remove( item.getKey() ) != null;
     }
 
     /**
@@ -227,19 +275,19 @@ public class CashBook implements Map<String,Cash> {
 //    }
 
     /**
-     * Gets the keys.
+     * Gets the keys. The set is a read only view, cash items are added and removed through <see cref="put"/> and <see cref="remove"/>.
      * @returns The keys.
      */
     public Set<String> keySet() {
-        return currencies.keySet();
+        return Collections.unmodifiableSet( currencies.keySet() );
     }
 
     /**
-     * Gets the values.
+     * Gets the values. The collection is a read only view, cash items are added and removed through <see cref="put"/> and <see cref="remove"/>.
      * @returns The values.
      */
     public Collection<Cash> values() {
-        return currencies.values();
+        return Collections.unmodifiableCollection( currencies.values() );
     }
 
     @Override
@@ -258,11 +306,70 @@ public class CashBook implements Map<String,Cash> {
 
     @Override
     public void putAll( Map<? extends String,? extends Cash> m ) {
-        currencies.putAll( m );
+        for( Entry<? extends String,? extends Cash> entry : m.entrySet() )
+            put( entry.getKey(), entry.getValue() );
     }
 
+    /**
+     * Gets the entries. The set and its entries are read only views, so the security symbol index and the listeners
+     * invalidating the total value stay in sync; cash items are replaced through <see cref="put"/>.
+     * @returns The entries.
+     */
     @Override
     public Set<Entry<String,Cash>> entrySet() {
-        return currencies.entrySet();
+        return Collections.unmodifiableMap( currencies ).entrySet();
+    }
+
+    private void index( Cash cash ) {
+        if( cash == null || cash.getSecuritySymbol() == null )
+            return;
+        
+        cashBySecuritySymbol.computeIfAbsent( cash.getSecuritySymbol(), s -> new ArrayList<>( 1 ) ).add( cash );
+    }
+
+    private void unindex( Cash cash ) {
+        if( cash == null || cash.getSecuritySymbol() == null )
+            return;
+        
+        final List<Cash> cashes = cashBySecuritySymbol.get( cash.getSecuritySymbol() );
+        if( cashes != null && cashes.removeIf( x -> x == cash ) && cashes.isEmpty() )
+            cashBySecuritySymbol.remove( cash.getSecuritySymbol() );
+    }
+
+    private void subscribe( Cash cash ) {
+        if( cash == null )
+            return;
+        
+        cash.addAmountListener( invalidator );
+        cash.addConversionRateListener( invalidator );
+    }
+
+    private void unsubscribe( Cash cash ) {
+        // the same instance may still be held under another symbol
+        if( cash == null || currencies.values().stream().anyMatch( x -> x == cash ) )
+            return;
+        
+        cash.removeAmountListener( invalidator );
+        cash.removeConversionRateListener( invalidator );
+    }
+
+    private void invalidate() {
+        version.incrementAndGet();
+    }
+
+    private void rebuildSecuritySymbolIndex() {
+        cashBySecuritySymbol.clear();
+        for( Cash cash : currencies.values() )
+            index( cash );
+    }
+
+    private static final class CachedTotal {
+        final long version;
+        final BigDecimal total;
+
+        CachedTotal( long version, BigDecimal total ) {
+            this.version = version;
+            this.total = total;
+        }
     }
 }
@@ -0,0 +1,71 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.securities;
+
+import java.time.Duration;
+
+/**
+ * Provides an implementation of <see cref="IVolatilityModel"/> that computes an exponentially weighted moving average
+ * of the squared log returns between the closes of consecutive samples, assuming a zero mean return (RiskMetrics)
+ */
+public class ExponentiallyWeightedVolatilityModel extends SampledVolatilityModel {
+
+    private final double decay;
+    private double variance = Double.NaN;
+    private double previousClose;
+
+    /**
+     * Initializes a new instance of the <see cref="ExponentiallyWeightedVolatilityModel"/> class using daily returns
+     * and the RiskMetrics decay of 0.94
+     */
+    public ExponentiallyWeightedVolatilityModel() {
+        this( 0.94 );
+    }
+
+    /**
+     * Initializes a new instance of the <see cref="ExponentiallyWeightedVolatilityModel"/> class using daily returns
+     * @param decay The weight of the previous variance in each update, between 0 and 1 exclusive
+     */
+    public ExponentiallyWeightedVolatilityModel( double decay ) {
+        this( decay, Duration.ofDays( 1 ), TRADING_DAYS_PER_YEAR );
+    }
+
+    /**
+     * Initializes a new instance of the <see cref="ExponentiallyWeightedVolatilityModel"/> class
+     * @param decay The weight of the previous variance in each update, between 0 and 1 exclusive
+     * @param samplePeriod The period of each return
+     * @param periodsPerYear The number of sample periods per year used to annualize the volatility
+     */
+    public ExponentiallyWeightedVolatilityModel( double decay, Duration samplePeriod, double periodsPerYear ) {
+        super( samplePeriod, periodsPerYear );
+        if( !( decay > 0 && decay < 1 ) )
+            throw new IllegalArgumentException( "The decay must be between 0 and 1 exclusive: " + decay );
+
+        this.decay = decay;
+    }
+
+    @Override
+    protected double addSample( double open, double high, double low, double close ) {
+        if( previousClose > 0 ) {
+            final double logReturn = Math.log( close / previousClose );
+            final double squared = logReturn * logReturn;
+            variance = Double.isNaN( variance ) ? squared : decay * variance + ( 1 - decay ) * squared;
+        }
+        previousClose = close;
+
+        return variance;
+    }
+}
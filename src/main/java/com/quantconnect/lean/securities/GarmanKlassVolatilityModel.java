@@ -0,0 +1,57 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.securities;
+
+import java.time.Duration;
+
+/**
+ * Provides an implementation of <see cref="IVolatilityModel"/> that uses the Garman-Klass estimator, the mean of
+ * 0.5 ln(high/low)^2 - (2 ln 2 - 1) ln(close/open)^2 over the last samples
+ */
+public class GarmanKlassVolatilityModel extends SampledVolatilityModel {
+
+    private static final double CLOSE_WEIGHT = 2 * Math.log( 2 ) - 1;
+
+    private final RollingMoments estimates;
+
+    /**
+     * Initializes a new instance of the <see cref="GarmanKlassVolatilityModel"/> class using daily bars
+     * @param periods The number of samples in the window
+     */
+    public GarmanKlassVolatilityModel( int periods ) {
+        this( periods, Duration.ofDays( 1 ), TRADING_DAYS_PER_YEAR );
+    }
+
+    /**
+     * Initializes a new instance of the <see cref="GarmanKlassVolatilityModel"/> class
+     * @param periods The number of samples in the window
+     * @param samplePeriod The period of each sample
+     * @param periodsPerYear The number of sample periods per year used to annualize the volatility
+     */
+    public GarmanKlassVolatilityModel( int periods, Duration samplePeriod, double periodsPerYear ) {
+        super( samplePeriod, periodsPerYear );
+        this.estimates = new RollingMoments( periods );
+    }
+
+    @Override
+    protected double addSample( double open, double high, double low, double close ) {
+        final double range = Math.log( high / low );
+        final double change = Math.log( close / open );
+        estimates.add( 0.5 * range * range - CLOSE_WEIGHT * change * change );
+        // single samples can be negative, the mean of a window of them is floored at zero
+        return Math.max( estimates.mean(), 0 );
+    }
+}
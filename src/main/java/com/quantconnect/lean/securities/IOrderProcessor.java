@@ -15,8 +15,12 @@
 
 package com.quantconnect.lean.securities;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.quantconnect.lean.orders.OrderRequest;
 import com.quantconnect.lean.orders.OrderTicket;
+import com.quantconnect.lean.orders.SubmitOrderRequest;
 
 /**
  * Represents a type capable of processing orders
@@ -28,4 +32,24 @@ public interface IOrderProcessor extends IOrderProvider {
      * @returns The <see cref="OrderTicket"/> for the corresponding <see cref="OrderRequest.OrderId"/>
      */
     OrderTicket process( OrderRequest request );
+
+    /**
+     * Adds the specified orders to be processed as one unit, in order. Processors that queue requests should
+     * override this to enqueue the whole batch at once. A submit request that already carries an error response,
+     * one a batch capital check rejected for instance, gets an invalid ticket instead of being sent. Processors
+     * overriding this must do the same.
+     * @param transactionManager The transaction manager the tickets are created for
+     * @param requests The <see cref="OrderRequest"/>s to be processed
+     * @returns The <see cref="OrderTicket"/> of each request, in the order of the requests
+     */
+    default List<OrderTicket> process( SecurityTransactionManager transactionManager, List<? extends OrderRequest> requests ) {
+        final List<OrderTicket> tickets = new ArrayList<>( requests.size() );
+        for( final OrderRequest request : requests ) {
+            if( request instanceof SubmitOrderRequest && request.getResponse().isError() )
+                tickets.add( OrderTicket.invalidSubmitRequest( transactionManager, (SubmitOrderRequest)request, request.getResponse() ) );
+            else
+                tickets.add( process( request ) );
+        }
+        return tickets;
+    }
 }
\ No newline at end of file
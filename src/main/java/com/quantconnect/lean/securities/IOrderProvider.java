@@ -18,6 +18,7 @@ package com.quantconnect.lean.securities;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
+import com.quantconnect.lean.Symbol;
 import com.quantconnect.lean.orders.Order;
 import com.quantconnect.lean.orders.OrderTicket;
 
@@ -56,6 +57,16 @@ public interface IOrderProvider {
         return getOrderTickets( null );
     }
     
+    /**
+     * Gets the tickets of the open orders of the specified symbol. Providers that index their open orders, with an
+     * <see cref="OrderTicketIndex"/> for instance, should override this to avoid scanning every ticket.
+     * @param symbol The symbol of the orders, or null for the open orders of every symbol
+     * @returns An enumerable of the <see cref="OrderTicket"/> of the open orders
+     */
+    default Stream<OrderTicket> getOpenOrderTickets( Symbol symbol ) {
+        return getOrderTickets( x -> x.getStatus().isOpen() && ( symbol == null || x.getSymbol().equals( symbol ) ) );
+    }
+
     /**
      * Gets the order ticket for the specified order id. Returns null if not found
      * @param orderId The order's id
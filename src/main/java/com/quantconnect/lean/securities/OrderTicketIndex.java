@@ -0,0 +1,195 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.securities;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.orders.OrderEvent;
+import com.quantconnect.lean.orders.OrderTicket;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+/**
+ * Indexes order tickets by order id, and the tickets of open orders by symbol.
+ *
+ * The <see cref="SecurityTransactionManager"/> adds each ticket when its order is submitted and reports every
+ * <see cref="OrderEvent"/> of it, a closing event reported before the ticket is added is applied when it is. The event
+ * that closes an order moves its ticket from the open tickets to an archive of closed tickets, which keeps only the
+ * most recently closed ones, so the memory held by a long running algorithm stays bounded. Open order queries take time
+ * proportional to the number of tickets they return rather than to the number of orders ever placed.
+ *
+ * Instances are thread-safe, queries return snapshots.
+ */
+public class OrderTicketIndex {
+
+    /**
+     * The default number of closed tickets kept
+     */
+    public static final int DEFAULT_ARCHIVE_CAPACITY = 10000;
+
+    private final Object locker = new Object();
+    private final int archiveCapacity;
+
+    // open and archived tickets by order id, in submission order
+    private final Int2ObjectLinkedOpenHashMap<OrderTicket> tickets = new Int2ObjectLinkedOpenHashMap<>();
+
+    // open tickets in submission order, and by symbol
+    private final Int2ObjectLinkedOpenHashMap<OrderTicket> open = new Int2ObjectLinkedOpenHashMap<>();
+    private final Map<Symbol,Int2ObjectLinkedOpenHashMap<OrderTicket>> openBySymbol = new HashMap<>();
+
+    // closed tickets, oldest first
+    private final ArrayDeque<OrderTicket> archive = new ArrayDeque<>();
+    // orders whose closing event was reported before their ticket was added
+    private final IntOpenHashSet closedBeforeAdded = new IntOpenHashSet();
+    private int count;
+
+    /**
+     * Initializes a new instance of the <see cref="OrderTicketIndex"/> class keeping the default number of closed tickets
+     */
+    public OrderTicketIndex() {
+        this( DEFAULT_ARCHIVE_CAPACITY );
+    }
+
+    /**
+     * Initializes a new instance of the <see cref="OrderTicketIndex"/> class
+     * @param archiveCapacity The number of closed tickets kept, older ones are dropped
+     */
+    public OrderTicketIndex( int archiveCapacity ) {
+        if( archiveCapacity < 0 )
+            throw new IllegalArgumentException( "The archive capacity can't be negative: " + archiveCapacity );
+
+        this.archiveCapacity = archiveCapacity;
+    }
+
+    /**
+     * Adds the ticket of a submitted order, a ticket that is already closed, of an invalid order for instance, goes to the archive
+     * @param ticket The new order ticket
+     */
+    public void add( OrderTicket ticket ) {
+        synchronized( locker ) {
+            if( tickets.put( ticket.getOrderId(), ticket ) != null )
+                throw new IllegalArgumentException( "An order ticket was already added for order id: " + ticket.getOrderId() );
+
+            count++;
+            if( closedBeforeAdded.remove( ticket.getOrderId() ) || ticket.getStatus().isClosed() )
+                archive( ticket );
+            else {
+                open.put( ticket.getOrderId(), ticket );
+                openBySymbol.computeIfAbsent( ticket.getSymbol(), symbol -> new Int2ObjectLinkedOpenHashMap<>() )
+                        .put( ticket.getOrderId(), ticket );
+            }
+        }
+    }
+
+    /**
+     * Updates the index with an order event, archiving the ticket of the order when the event closes it
+     * @param orderEvent The order event reported for one of the indexed orders
+     */
+    public void onOrderEvent( OrderEvent orderEvent ) {
+        if( !orderEvent.status.isClosed() )
+            return;
+
+        synchronized( locker ) {
+            final OrderTicket ticket = open.remove( orderEvent.orderId );
+            if( ticket == null ) {
+                if( !tickets.containsKey( orderEvent.orderId ) )
+                    closedBeforeAdded.add( orderEvent.orderId );
+                return;
+            }
+
+            final Int2ObjectLinkedOpenHashMap<OrderTicket> symbolTickets = openBySymbol.get( ticket.getSymbol() );
+            symbolTickets.remove( orderEvent.orderId );
+            if( symbolTickets.isEmpty() )
+                openBySymbol.remove( ticket.getSymbol() );
+
+            archive( ticket );
+        }
+    }
+
+    /**
+     * Gets the number of tickets ever added, including those dropped from the archive
+     */
+    public int getCount() {
+        synchronized( locker ) {
+            return count;
+        }
+    }
+
+    /**
+     * Gets the number of open tickets
+     */
+    public int getOpenCount() {
+        synchronized( locker ) {
+            return open.size();
+        }
+    }
+
+    /**
+     * Gets the ticket of the specified order
+     * @param orderId The order's id
+     * @returns The order ticket, or null if the order is unknown or its ticket was dropped from the archive
+     */
+    public OrderTicket get( int orderId ) {
+        synchronized( locker ) {
+            return tickets.get( orderId );
+        }
+    }
+
+    /**
+     * Gets the tickets of the open orders, in submission order
+     * @param symbol The symbol of the orders, or null for the open orders of every symbol
+     * @returns The tickets of the open orders
+     */
+    public List<OrderTicket> getOpenTickets( Symbol symbol ) {
+        synchronized( locker ) {
+            if( symbol == null )
+                return new ArrayList<>( open.values() );
+
+            final Int2ObjectLinkedOpenHashMap<OrderTicket> symbolTickets = openBySymbol.get( symbol );
+            return symbolTickets != null ? new ArrayList<>( symbolTickets.values() ) : Collections.emptyList();
+        }
+    }
+
+    /**
+     * Gets the open and archived tickets matching the specified filter, in submission order
+     * @param filter The filter predicate, or null for all of the tickets
+     * @returns The matching tickets
+     */
+    public List<OrderTicket> getTickets( Predicate<OrderTicket> filter ) {
+        synchronized( locker ) {
+            final List<OrderTicket> result = new ArrayList<>();
+            for( final OrderTicket ticket : tickets.values() ) {
+                if( filter == null || filter.test( ticket ) )
+                    result.add( ticket );
+            }
+            return result;
+        }
+    }
+
+    private void archive( OrderTicket ticket ) {
+        archive.addLast( ticket );
+        while( archive.size() > archiveCapacity )
+            tickets.remove( archive.removeFirst().getOrderId() );
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.securities;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.util.FixedDecimal;
+
+/**
+ * Keeps the portfolio wide sums of the attached <see cref="SecurityHolding"/> instances. Each holding's
+ * contribution is cached and the totals are adjusted by the difference whenever the holding reports a change
+ * (fills, fees) so reading a total does not require a pass over the securities.
+ * 
+ * Market price and conversion rate changes only mark the affected holdings dirty. The dirty holdings are
+ * revalued together on the next read, so a time step costs the number of securities that received new prices
+ * rather than the number of holdings, however many times the totals are read in between.
+ */
+final class PortfolioTotals {
+
+    private final Object locker = new Object();
+    private final Map<SecurityHolding,Contribution> contributions = new IdentityHashMap<>();
+    private final Map<Cash,List<SecurityHolding>> holdingsByQuoteCurrency = new IdentityHashMap<>();
+    private final Consumer<Cash> conversionRateListener = this::conversionRateChanged;
+    private final Set<SecurityHolding> dirty = Collections.newSetFromMap( new IdentityHashMap<>() );
+
+    private final Contribution totals = new Contribution();
+
+    /**
+     * Starts tracking the specified holding, adding its current contribution to the totals
+     * @param holding The holding to track
+     */
+    void attach( SecurityHolding holding ) {
+        synchronized( locker ) {
+            if( contributions.containsKey( holding ) )
+                return;
+
+            holding.setTotals( this );
+            contributions.put( holding, new Contribution() );
+
+            final Cash quoteCurrency = holding.getSecurity().getQuoteCurrency();
+            holdingsByQuoteCurrency.computeIfAbsent( quoteCurrency, cash -> {
+                cash.addConversionRateListener( conversionRateListener );
+                return new ArrayList<>();
+            } ).add( holding );
+
+            update( holding );
+        }
+    }
+
+    /**
+     * Stops tracking the specified holding, removing its last contribution from the totals
+     * @param holding The holding to forget
+     */
+    void detach( SecurityHolding holding ) {
+        synchronized( locker ) {
+            final Contribution contribution = contributions.remove( holding );
+            if( contribution == null )
+                return;
+
+            holding.setTotals( null );
+            dirty.remove( holding );
+            totals.subtract( contribution );
+
+            final Cash quoteCurrency = holding.getSecurity().getQuoteCurrency();
+            final List<SecurityHolding> holdings = holdingsByQuoteCurrency.get( quoteCurrency );
+            holdings.remove( holding );
+            if( holdings.isEmpty() ) {
+                holdingsByQuoteCurrency.remove( quoteCurrency );
+                quoteCurrency.removeConversionRateListener( conversionRateListener );
+            }
+        }
+    }
+
+    /**
+     * Stops tracking all holdings
+     */
+    void detachAll() {
+        synchronized( locker ) {
+            for( SecurityHolding holding : new ArrayList<>( contributions.keySet() ) )
+                detach( holding );
+        }
+    }
+
+    /**
+     * Recomputes the contribution of the specified holding and applies the difference to the totals
+     * @param holding The holding that changed
+     */
+    void update( SecurityHolding holding ) {
+        synchronized( locker ) {
+            final Contribution contribution = contributions.get( holding );
+            if( contribution == null )
+                return;
+
+            dirty.remove( holding );
+            revalue( holding, contribution );
+        }
+    }
+
+    /**
+     * Marks the specified holding for revaluation on the next read of the totals
+     * @param holding The holding whose market value changed
+     */
+    void markDirty( SecurityHolding holding ) {
+        synchronized( locker ) {
+            if( contributions.containsKey( holding ) )
+                dirty.add( holding );
+        }
+    }
+
+    /**
+     * Revalues the holdings marked dirty since the last read
+     */
+    private void flush() {
+        if( dirty.isEmpty() )
+            return;
+
+        for( SecurityHolding holding : dirty )
+            revalue( holding, contributions.get( holding ) );
+        dirty.clear();
+    }
+
+    private void revalue( SecurityHolding holding, Contribution contribution ) {
+        totals.subtract( contribution );
+        contribution.compute( holding );
+        totals.add( contribution );
+    }
+
+    private void conversionRateChanged( Cash cash ) {
+        synchronized( locker ) {
+            final List<SecurityHolding> holdings = holdingsByQuoteCurrency.get( cash );
+            if( holdings == null )
+                return;
+
+            for( SecurityHolding holding : holdings ) {
+                if( holding.getQuantity() != 0 )
+                    dirty.add( holding );
+            }
+        }
+    }
+
+    BigDecimal getHoldingsValueWithoutForex() {
+        synchronized( locker ) {
+            flush();
+            return totals.holdingsValueWithoutForex.toBigDecimal();
+        }
+    }
+
+    BigDecimal getAbsoluteHoldingsValue() {
+        synchronized( locker ) {
+            flush();
+            return totals.absoluteHoldingsValue.toBigDecimal();
+        }
+    }
+
+    BigDecimal getAbsoluteHoldingsCost() {
+        synchronized( locker ) {
+            flush();
+            return totals.absoluteHoldingsCost.toBigDecimal();
+        }
+    }
+
+    BigDecimal getUnleveredAbsoluteHoldingsCost() {
+        synchronized( locker ) {
+            flush();
+            return totals.unleveredAbsoluteHoldingsCost.toBigDecimal();
+        }
+    }
+
+    BigDecimal getUnrealizedProfit() {
+        synchronized( locker ) {
+            flush();
+            return totals.unrealizedProfit.toBigDecimal();
+        }
+    }
+
+    BigDecimal getMarginUsed() {
+        synchronized( locker ) {
+            flush();
+            return totals.marginUsed.toBigDecimal();
+        }
+    }
+
+    BigDecimal getFees() {
+        synchronized( locker ) {
+            flush();
+            return totals.fees.toBigDecimal();
+        }
+    }
+
+    BigDecimal getProfit() {
+        synchronized( locker ) {
+            flush();
+            return totals.profit.toBigDecimal();
+        }
+    }
+
+    BigDecimal getSaleVolume() {
+        synchronized( locker ) {
+            flush();
+            return totals.saleVolume.toBigDecimal();
+        }
+    }
+
+    /**
+     * Recomputes every total from scratch and compares it with the incrementally maintained value
+     * @param securities The securities whose holdings make up the portfolio
+     * @throws IllegalStateException if any incrementally maintained total differs from the full recomputation
+     */
+    void verify( Collection<Security> securities ) {
+        synchronized( locker ) {
+            flush();
+            final Contribution expected = new Contribution();
+            final Contribution contribution = new Contribution();
+            for( Security security : securities ) {
+                contribution.compute( security.getHoldings() );
+                expected.add( contribution );
+            }
+
+            check( "holdings value without forex", expected.holdingsValueWithoutForex, totals.holdingsValueWithoutForex );
+            check( "absolute holdings value", expected.absoluteHoldingsValue, totals.absoluteHoldingsValue );
+            check( "absolute holdings cost", expected.absoluteHoldingsCost, totals.absoluteHoldingsCost );
+            check( "unlevered absolute holdings cost", expected.unleveredAbsoluteHoldingsCost, totals.unleveredAbsoluteHoldingsCost );
+            check( "unrealized profit", expected.unrealizedProfit, totals.unrealizedProfit );
+            check( "margin used", expected.marginUsed, totals.marginUsed );
+            check( "fees", expected.fees, totals.fees );
+            check( "profit", expected.profit, totals.profit );
+            check( "sale volume", expected.saleVolume, totals.saleVolume );
+        }
+    }
+
+    private static void check( String name, FixedDecimal expectedTotal, FixedDecimal actualTotal ) {
+        final BigDecimal expected = expectedTotal.toBigDecimal();
+        final BigDecimal actual = actualTotal.toBigDecimal();
+        if( expected.compareTo( actual ) != 0 )
+            throw new IllegalStateException( String.format( "PortfolioTotals.verify(): Incremental total %1$s is %2$s but the full recomputation is %3$s", name, actual, expected ) );
+    }
+
+    /**
+     * The values a single holding adds to the portfolio totals, also used to hold the totals themselves.
+     * Values are kept in fixed point so adjusting the totals doesn't allocate, the values read from the holding are
+     * still computed as BigDecimal by <see cref="SecurityHolding"/>.
+     */
+    private static final class Contribution {
+        final FixedDecimal holdingsValueWithoutForex = new FixedDecimal();
+        final FixedDecimal absoluteHoldingsValue = new FixedDecimal();
+        final FixedDecimal absoluteHoldingsCost = new FixedDecimal();
+        final FixedDecimal unleveredAbsoluteHoldingsCost = new FixedDecimal();
+        final FixedDecimal unrealizedProfit = new FixedDecimal();
+        final FixedDecimal marginUsed = new FixedDecimal();
+        final FixedDecimal fees = new FixedDecimal();
+        final FixedDecimal profit = new FixedDecimal();
+        final FixedDecimal saleVolume = new FixedDecimal();
+
+        void compute( SecurityHolding holding ) {
+            final Security security = holding.getSecurity();
+            fees.set( holding.getTotalFees() );
+            profit.set( holding.getProfit() );
+            saleVolume.set( holding.getTotalSaleVolume() );
+
+            if( holding.getQuantity() == 0 ) {
+                holdingsValueWithoutForex.set( BigDecimal.ZERO );
+                absoluteHoldingsValue.set( BigDecimal.ZERO );
+                absoluteHoldingsCost.set( BigDecimal.ZERO );
+                unleveredAbsoluteHoldingsCost.set( BigDecimal.ZERO );
+                unrealizedProfit.set( BigDecimal.ZERO );
+                marginUsed.set( security.getMarginModel().getMaintenanceMargin( security ) );
+                return;
+            }
+
+            final BigDecimal holdingsValue = holding.getHoldingsValue();
+            // forex is excluded from the portfolio value since it is already accounted for by the cash book
+            holdingsValueWithoutForex.set( security.getType() != SecurityType.Forex ? holdingsValue : BigDecimal.ZERO );
+            absoluteHoldingsValue.set( holdingsValue.abs() );
+            absoluteHoldingsCost.set( holding.getAbsoluteHoldingsCost() );
+            unleveredAbsoluteHoldingsCost.set( holding.getUnleveredAbsoluteHoldingsCost() );
+            unrealizedProfit.set( holding.getUnrealizedProfit() );
+            marginUsed.set( security.getMarginModel().getMaintenanceMargin( security ) );
+        }
+
+        void add( Contribution other ) {
+            holdingsValueWithoutForex.add( other.holdingsValueWithoutForex );
+            absoluteHoldingsValue.add( other.absoluteHoldingsValue );
+            absoluteHoldingsCost.add( other.absoluteHoldingsCost );
+            unleveredAbsoluteHoldingsCost.add( other.unleveredAbsoluteHoldingsCost );
+            unrealizedProfit.add( other.unrealizedProfit );
+            marginUsed.add( other.marginUsed );
+            fees.add( other.fees );
+            profit.add( other.profit );
+            saleVolume.add( other.saleVolume );
+        }
+
+        void subtract( Contribution other ) {
+            holdingsValueWithoutForex.subtract( other.holdingsValueWithoutForex );
+            absoluteHoldingsValue.subtract( other.absoluteHoldingsValue );
+            absoluteHoldingsCost.subtract( other.absoluteHoldingsCost );
+            unleveredAbsoluteHoldingsCost.subtract( other.unleveredAbsoluteHoldingsCost );
+            unrealizedProfit.subtract( other.unrealizedProfit );
+            marginUsed.subtract( other.marginUsed );
+            fees.subtract( other.fees );
+            profit.subtract( other.profit );
+            saleVolume.subtract( other.saleVolume );
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.securities;
+
+/**
+ * Mean and variance of the last values of a series, maintained in constant time per value over a primitive ring buffer.
+ *
+ * The running sums are taken relative to a shift close to the mean, so the sum of squares doesn't lose the variance to
+ * cancellation. Once per window length the shift is moved to the current mean and the sums are recomputed from the buffer,
+ * which also discards the rounding error accumulated by the add/remove updates; the cost stays constant when amortized.
+ */
+final class RollingMoments {
+
+    private final double[] values;
+    private int count;
+    private int next;
+    private int sinceRecenter;
+
+    private double shift;
+    private double sum;
+    private double sumOfSquares;
+
+    RollingMoments( int capacity ) {
+        if( capacity < 1 )
+            throw new IllegalArgumentException( "RollingMoments requires a capacity of at least 1: " + capacity );
+
+        values = new double[capacity];
+    }
+
+    /**
+     * Adds a value, dropping the oldest one once the window is full
+     */
+    void add( double value ) {
+        if( count == 0 )
+            shift = value;
+
+        if( count == values.length ) {
+            final double removed = values[next] - shift;
+            sum -= removed;
+            sumOfSquares -= removed * removed;
+        }
+        else
+            count++;
+
+        values[next] = value;
+        next = next + 1 == values.length ? 0 : next + 1;
+
+        final double added = value - shift;
+        sum += added;
+        sumOfSquares += added * added;
+
+        if( ++sinceRecenter == values.length )
+            recenter();
+    }
+
+    int count() {
+        return count;
+    }
+
+    boolean isFull() {
+        return count == values.length;
+    }
+
+    double mean() {
+        return count == 0 ? 0 : shift + sum / count;
+    }
+
+    /**
+     * Gets the sample variance of the window, 0 with fewer than two values
+     */
+    double variance() {
+        if( count < 2 )
+            return 0;
+
+        return Math.max( ( sumOfSquares - sum * sum / count ) / ( count - 1 ), 0 );
+    }
+
+    private void recenter() {
+        shift = mean();
+        sum = 0;
+        sumOfSquares = 0;
+        for( int i = 0; i < count; i++ ) {
+            final double deviation = values[i] - shift;
+            sum += deviation;
+            sumOfSquares += deviation * deviation;
+        }
+        sinceRecenter = 0;
+    }
+}
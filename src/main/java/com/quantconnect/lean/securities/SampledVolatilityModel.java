@@ -0,0 +1,180 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.securities;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.ZoneOffset;
+
+import com.quantconnect.lean.TickType;
+import com.quantconnect.lean.data.BaseData;
+import com.quantconnect.lean.data.market.IBar;
+import com.quantconnect.lean.data.market.Tick;
+import com.quantconnect.lean.data.market.TradeBar;
+
+/**
+ * Base class for the realized volatility models. Incoming data is consolidated into one open/high/low/close sample per
+ * sample period, for example one per day, and each completed sample is handed to <see cref="addSample"/> which
+ * returns the updated per-period variance. The volatility is that variance annualized, as a fraction.
+ *
+ * Data spanning a whole sample period, such as daily bars with a daily sample period, is sampled as soon as it arrives.
+ * Finer data is sampled when the first data of the next period arrives. Each update takes constant time.
+ *
+ * Only data of one type is sampled, trade bars by default, since trade and quote prices of the same security don't
+ * make a consistent series. Securities subscribed at tick resolution should sample <see cref="Tick"/> data, of which
+ * only the trades are used.
+ */
+public abstract class SampledVolatilityModel implements IVolatilityModel {
+
+    /**
+     * The number of periods per year used to annualize daily samples
+     */
+    public static final double TRADING_DAYS_PER_YEAR = 252;
+
+    private static final long NO_PERIOD = Long.MIN_VALUE;
+
+    private final Duration samplePeriod;
+    private final long samplePeriodSeconds;
+    private final double periodsPerYear;
+
+    private Class<? extends BaseData> dataType = TradeBar.class;
+    private long currentPeriod = NO_PERIOD;
+    private double open;
+    private double high;
+    private double low;
+    private double close;
+
+    private volatile BigDecimal volatility = BigDecimal.ZERO;
+
+    /**
+     * Initializes a new instance of the <see cref="SampledVolatilityModel"/> class
+     * @param samplePeriod The period of each sample, in whole seconds
+     * @param periodsPerYear The number of sample periods per year used to annualize the volatility
+     */
+    protected SampledVolatilityModel( Duration samplePeriod, double periodsPerYear ) {
+        if( samplePeriod.getSeconds() < 1 )
+            throw new IllegalArgumentException( "The sample period must be at least one second: " + samplePeriod );
+        if( !( periodsPerYear > 0 ) )
+            throw new IllegalArgumentException( "The number of periods per year must be positive: " + periodsPerYear );
+
+        this.samplePeriod = samplePeriod;
+        this.samplePeriodSeconds = samplePeriod.getSeconds();
+        this.periodsPerYear = periodsPerYear;
+    }
+
+    /**
+     * Gets the annualized volatility of the security as a fraction, 0 until enough samples were taken
+     */
+    @Override
+    public BigDecimal getVolatility() {
+        return volatility;
+    }
+
+    /**
+     * Gets the type of the data sampled, other data is ignored
+     */
+    public Class<? extends BaseData> getDataType() {
+        return dataType;
+    }
+
+    /**
+     * Sets the type of the data sampled, other data is ignored. Change it before the first update.
+     * @param dataType The data type, <see cref="TradeBar"/>, <see cref="QuoteBar"/> or <see cref="Tick"/> for instance
+     */
+    public void setDataType( Class<? extends BaseData> dataType ) {
+        if( dataType == null )
+            throw new IllegalArgumentException( "The sampled data type can't be null" );
+
+        this.dataType = dataType;
+    }
+
+    /**
+     * Updates this model using the new price information in
+     * the specified security instance
+     * @param security The security to calculate volatility for
+     * @param data The new data used to update the model
+     */
+    @Override
+    public void update( Security security, BaseData data ) {
+        if( !dataType.isInstance( data ) || data instanceof Tick && ((Tick)data).tickType != TickType.Trade )
+            return;
+
+        final double o, h, l, c;
+        if( data instanceof IBar ) {
+            final IBar bar = (IBar)data;
+            o = toDouble( bar.getOpen() );
+            h = toDouble( bar.getHigh() );
+            l = toDouble( bar.getLow() );
+            c = toDouble( bar.getClose() );
+        }
+        else {
+            c = toDouble( data.getPrice() );
+            o = h = l = c;
+        }
+
+        // also rejects NaN, a missing side of a quote bar for instance
+        if( !( o > 0 && h > 0 && l > 0 && c > 0 ) )
+            return;
+
+        if( Duration.between( data.getTime(), data.getEndTime() ).compareTo( samplePeriod ) >= 0 ) {
+            if( currentPeriod != NO_PERIOD )
+                sample();
+            currentPeriod = NO_PERIOD;
+            sample( o, Math.max( h, Math.max( o, c ) ), Math.min( l, Math.min( o, c ) ), c );
+            return;
+        }
+
+        final long period = Math.floorDiv( data.getEndTime().toEpochSecond( ZoneOffset.UTC ), samplePeriodSeconds );
+        if( period == currentPeriod ) {
+            high = Math.max( high, h );
+            low = Math.min( low, l );
+            close = c;
+        }
+        else if( currentPeriod == NO_PERIOD || period > currentPeriod ) {
+            if( currentPeriod != NO_PERIOD )
+                sample();
+            currentPeriod = period;
+            open = o;
+            high = h;
+            low = l;
+            close = c;
+        }
+    }
+
+    /**
+     * Adds a completed sample to the model
+     * @param open The first price of the period
+     * @param high The highest price of the period
+     * @param low The lowest price of the period
+     * @param close The last price of the period
+     * @returns The variance per sample period, or NaN while the model doesn't have enough samples
+     */
+    protected abstract double addSample( double open, double high, double low, double close );
+
+    private void sample() {
+        sample( open, high, low, close );
+    }
+
+    private void sample( double open, double high, double low, double close ) {
+        final double variance = addSample( open, high, low, close );
+        if( variance >= 0 )
+            volatility = BigDecimal.valueOf( Math.sqrt( variance * periodsPerYear ) );
+    }
+
+    private static double toDouble( BigDecimal value ) {
+        return value != null ? value.doubleValue() : Double.NaN;
+    }
+}
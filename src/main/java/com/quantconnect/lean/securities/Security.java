@@ -31,6 +31,7 @@ import com.quantconnect.lean.data.SubscriptionDataConfig;
 import com.quantconnect.lean.orders.fees.IFeeModel;
 import com.quantconnect.lean.orders.fees.InteractiveBrokersFeeModel;
 import com.quantconnect.lean.orders.fills.IFillModel;
+import com.quantconnect.lean.orders.fills.IMarketDataFillModel;
 import com.quantconnect.lean.orders.fills.ImmediateFillModel;
 import com.quantconnect.lean.orders.slippage.ISlippageModel;
 import com.quantconnect.lean.orders.slippage.SpreadSlippageModel;
@@ -227,7 +228,15 @@ public class Security {
     }
 
     public void setHoldings( SecurityHolding holdings ) {
+        // carry the portfolio totals registration over to the replacement holdings
+        final PortfolioTotals totals = this.holdings != null ? this.holdings.getTotals() : null;
+        if( totals != null )
+            totals.detach( this.holdings );
+        
         this.holdings = holdings;
+        
+        if( totals != null )
+            totals.attach( holdings );
     }
 
     public SecurityExchange getExchange() {
@@ -316,6 +325,8 @@ public class Security {
 
     public void setMarginModel( ISecurityMarginModel marginModel ) {
         this.marginModel = marginModel;
+        // the margin used and the unlevered cost of the holdings depend on the margin model
+        updatePortfolioTotals();
     }
 
     public ISettlementModel getSettlementModel() {
@@ -590,6 +601,29 @@ public class Security {
         cache.addData( data );
         holdings.updateMarketPrice( getPrice() );
         volatilityModel.update( this, data );
+        if( fillModel instanceof IMarketDataFillModel )
+            ((IMarketDataFillModel)fillModel).update( this, data );
+    }
+
+    /**
+     * Update any security properties based on a batch of market data of a single type, such as all the data of one
+     * subscription in a time step. The cache and holdings are updated once for the whole batch.
+     * @param dataType The type of every data point in the batch
+     * @param data New data packets from LEAN, oldest first
+     */
+    public void setMarketPrice( Class<?> dataType, List<? extends BaseData> data ) {
+        if( data.isEmpty() )
+            return;
+        
+        cache.addData( dataType, data );
+        holdings.updateMarketPrice( getPrice() );
+        for( int i = 0; i < data.size(); i++ )
+            volatilityModel.update( this, data.get( i ) );
+        if( fillModel instanceof IMarketDataFillModel ) {
+            final IMarketDataFillModel marketDataFillModel = (IMarketDataFillModel)fillModel;
+            for( int i = 0; i < data.size(); i++ )
+                marketDataFillModel.update( this, data.get( i ) );
+        }
     }
 
     /**
@@ -611,6 +645,16 @@ public class Security {
      */
     public void setLeverage( BigDecimal leverage ) {
         marginModel.setLeverage( this, leverage );
+        updatePortfolioTotals();
+    }
+
+    /**
+     * Recomputes the contribution of the holdings to the portfolio totals, once the margin requirements changed
+     */
+    private void updatePortfolioTotals() {
+        final PortfolioTotals totals = holdings != null ? holdings.getTotals() : null;
+        if( totals != null )
+            totals.update( holdings );
     }
 
     /**
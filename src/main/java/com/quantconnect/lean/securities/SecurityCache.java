@@ -17,6 +17,8 @@ package com.quantconnect.lean.securities;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -148,7 +150,7 @@ public class SecurityCache {
         }
         if( data instanceof IBar ) {
             final IBar bar = (IBar)data;
-            if( !lastQuoteBarUpdate.equals( data.getEndTime() ) ) {
+            if( !Objects.equals( lastQuoteBarUpdate, data.getEndTime() ) ) {
                 if( bar.getOpen().signum() != 0 ) open = bar.getOpen();
                 if( bar.getHigh().signum() != 0 ) high = bar.getHigh();
                 if( bar.getLow().signum() != 0 ) low = bar.getLow();
@@ -175,6 +177,95 @@ public class SecurityCache {
             price = data.getPrice();
     }
 
+    /**
+     * Adds a batch of market data points of a single type, leaving the cache as if <see cref="addData"/> had been
+     * called for each of them in order. The type is resolved once for the batch, the batch is scanned from the
+     * most recent data point and each cached value is written once, and only the last data point is kept by type.
+     * @param dataType The type of every data point in the batch
+     * @param data The data points, oldest first
+     */
+    public void addData( Class<?> dataType, List<? extends BaseData> data ) {
+        final int count = data.size();
+        if( count == 0 )
+            return;
+
+        if( dataType == Tick.class )
+            addTicks( data );
+        else if( dataType == TradeBar.class )
+            addTradeBars( data );
+        else if( dataType == QuoteBar.class )
+            addQuoteBars( data );
+        else {
+            for( int i = 0; i < count; i++ )
+                addData( data.get( i ) );
+            return;
+        }
+
+        final BaseData last = data.get( count - 1 );
+        lastData = last;
+        dataByType.put( last.getClass(), last );
+    }
+
+    private void addTicks( List<? extends BaseData> ticks ) {
+        boolean hasBidPrice = false, hasBidSize = false, hasAskPrice = false, hasAskSize = false;
+        for( int i = ticks.size() - 1; i >= 0 && !(hasBidPrice && hasBidSize && hasAskPrice && hasAskSize); i-- ) {
+            final Tick tick = (Tick)ticks.get( i );
+            if( !hasBidPrice && tick.bidPrice.signum() != 0 ) { bidPrice = tick.bidPrice; hasBidPrice = true; }
+            if( !hasBidSize && tick.bidSize != 0 ) { bidSize = tick.bidSize; hasBidSize = true; }
+            if( !hasAskPrice && tick.askPrice.signum() != 0 ) { askPrice = tick.askPrice; hasAskPrice = true; }
+            if( !hasAskSize && tick.askSize != 0 ) { askSize = tick.askSize; hasAskSize = true; }
+        }
+
+        // ticks aren't bars, so the last tick always sets the price
+        price = ticks.get( ticks.size() - 1 ).getPrice();
+    }
+
+    private void addTradeBars( List<? extends BaseData> bars ) {
+        boolean hasOpen = false, hasHigh = false, hasLow = false, hasClose = false, hasVolume = false;
+        for( int i = bars.size() - 1; i >= 0 && !(hasOpen && hasHigh && hasLow && hasClose && hasVolume); i-- ) {
+            final TradeBar bar = (TradeBar)bars.get( i );
+            if( !Objects.equals( lastQuoteBarUpdate, bar.getEndTime() ) ) {
+                if( !hasOpen && bar.getOpen().signum() != 0 ) { open = bar.getOpen(); hasOpen = true; }
+                if( !hasHigh && bar.getHigh().signum() != 0 ) { high = bar.getHigh(); hasHigh = true; }
+                if( !hasLow && bar.getLow().signum() != 0 ) { low = bar.getLow(); hasLow = true; }
+                if( !hasClose && bar.getClose().signum() != 0 ) {
+                    price = bar.getClose();
+                    close = bar.getClose();
+                    hasClose = true;
+                }
+            }
+
+            if( !hasVolume && bar.getVolume() != 0 ) { volume = bar.getVolume(); hasVolume = true; }
+        }
+    }
+
+    private void addQuoteBars( List<? extends BaseData> bars ) {
+        boolean hasOpen = false, hasHigh = false, hasLow = false, hasClose = false;
+        boolean hasBidPrice = false, hasBidSize = false, hasAskPrice = false, hasAskSize = false;
+        for( int i = bars.size() - 1; i >= 0 && !(hasOpen && hasHigh && hasLow && hasClose && hasBidPrice && hasBidSize && hasAskPrice && hasAskSize); i-- ) {
+            final QuoteBar bar = (QuoteBar)bars.get( i );
+            // each quote bar is compared with the end time of the quote bar applied before it
+            final LocalDateTime previousQuoteBarUpdate = i > 0 ? bars.get( i - 1 ).getEndTime() : lastQuoteBarUpdate;
+            if( !Objects.equals( previousQuoteBarUpdate, bar.getEndTime() ) ) {
+                if( !hasOpen && bar.getOpen().signum() != 0 ) { open = bar.getOpen(); hasOpen = true; }
+                if( !hasHigh && bar.getHigh().signum() != 0 ) { high = bar.getHigh(); hasHigh = true; }
+                if( !hasLow && bar.getLow().signum() != 0 ) { low = bar.getLow(); hasLow = true; }
+                if( !hasClose && bar.getClose().signum() != 0 ) {
+                    price = bar.getClose();
+                    close = bar.getClose();
+                    hasClose = true;
+                }
+            }
+
+            if( !hasAskPrice && bar.getAsk() != null && bar.getAsk().getClose().signum() != 0 ) { askPrice = bar.getAsk().getClose(); hasAskPrice = true; }
+            if( !hasBidPrice && bar.getBid() != null && bar.getBid().getClose().signum() != 0 ) { bidPrice = bar.getBid().getClose(); hasBidPrice = true; }
+            if( !hasBidSize && bar.getLastBidSize() != 0 ) { bidSize = bar.getLastBidSize(); hasBidSize = true; }
+            if( !hasAskSize && bar.getLastAskSize() != 0 ) { askSize = bar.getLastAskSize(); hasAskSize = true; }
+        }
+
+        lastQuoteBarUpdate = bars.get( bars.size() - 1 ).getEndTime();
+    }
+
     /**
      * Get last data packet recieved for this security
      * @returns BaseData type of the security
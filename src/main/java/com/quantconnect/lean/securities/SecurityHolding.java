@@ -39,15 +39,34 @@ public class SecurityHolding {
     private BigDecimal lastTradeProfit;
     private BigDecimal totalFees;
 
+    // portfolio totals this holding reports its changes to, if any
+    private PortfolioTotals totals;
+
     /**
      * Create a new holding class instance setting the initial properties to $0.
      * @param security The security being held
      */
     public SecurityHolding( Security security ) {
         this.security = security;
+        this.averagePrice = BigDecimal.ZERO;
+        this.price = BigDecimal.ZERO;
         //Total Sales Volume for the day
         this.totalSaleVolume = BigDecimal.ZERO;
+        this.profit = BigDecimal.ZERO;
         this.lastTradeProfit = BigDecimal.ZERO;
+        this.totalFees = BigDecimal.ZERO;
+    }
+
+    Security getSecurity() {
+        return security;
+    }
+
+    PortfolioTotals getTotals() {
+        return totals;
+    }
+
+    void setTotals( PortfolioTotals totals ) {
+        this.totals = totals;
     }
 
     /**
@@ -240,6 +259,7 @@ public class SecurityHolding {
      */
     public void addNewFee( BigDecimal newFee ) {
         totalFees = totalFees.add( newFee );
+        onChanged();
     }
 
     /**
@@ -248,6 +268,7 @@ public class SecurityHolding {
      */
     public void addNewProfit( BigDecimal profitLoss ) {
         profit = profit.add( profitLoss );
+        onChanged();
     }
 
     /**
@@ -256,6 +277,7 @@ public class SecurityHolding {
      */
     public void addNewSale( BigDecimal saleValue ) {
         totalSaleVolume = totalSaleVolume.add( saleValue );
+        onChanged();
     }
 
     /**
@@ -272,6 +294,7 @@ public class SecurityHolding {
     public void setHoldings( BigDecimal averagePrice, int quantity ) {
         this.averagePrice = averagePrice;
         this.quantity = quantity;
+        onChanged();
     }
 
     /**
@@ -280,6 +303,10 @@ public class SecurityHolding {
      */
     public void updateMarketPrice( BigDecimal closingPrice ) {
         price = closingPrice;
+        // the contribution of a flat holding to the portfolio totals does not depend on its price
+        final PortfolioTotals totals = this.totals;
+        if( totals != null && quantity != 0 )
+            totals.markDirty( this );
     }
 
     /**
@@ -300,4 +327,10 @@ public class SecurityHolding {
                     .multiply( security.getSymbolProperties().getContractMultiplier() )
                     .subtract( orderFee );
     }
+
+    private void onChanged() {
+        final PortfolioTotals totals = this.totals;
+        if( totals != null )
+            totals.update( this );
+    }
 }
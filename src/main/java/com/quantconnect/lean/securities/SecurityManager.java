@@ -18,8 +18,11 @@ package com.quantconnect.lean.securities;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -61,6 +64,10 @@ public class SecurityManager implements Map<Symbol,Security> {
     private final TimeKeeper timeKeeper;
     //Internal dictionary implementation:
     private final Map<Symbol, Security> securityManager;
+    //Serializes changes to the collection so batches are applied as a whole
+    private final Object locker = new Object();
+    //Portfolio totals kept in step with the securities of this collection
+    private PortfolioTotals portfolioTotals;
 
     /**
      * Gets the most recent time this manager was updated
@@ -86,6 +93,82 @@ public class SecurityManager implements Map<Symbol,Security> {
         put( security.getSymbol(), security );
     }
 
+    /**
+     * Adds the specified securities to the collection as a single change. All the securities are validated
+     * before any is added, and listeners receive one <see cref="CollectionChangedEvent"/> holding every added security.
+     * A security already in the collection, or repeated in the batch, is added once; a different security with the
+     * symbol of one in the collection or earlier in the batch is rejected.
+     * @param securities The securities to add
+     * @returns The securities that were not already in the collection, in the order they were added
+     */
+    public List<Security> addAll( Collection<? extends Security> securities ) {
+        final List<Security> added = new ArrayList<>( securities.size() );
+        synchronized( locker ) {
+            final Map<Symbol,Security> batch = new HashMap<>( securities.size() * 2 );
+            for( Security security : securities ) {
+                Security existing = batch.putIfAbsent( security.getSymbol(), security );
+                if( existing == null )
+                    existing = securityManager.get( security.getSymbol() );
+                if( existing != null && !existing.equals( security ) )
+                    throw new IllegalArgumentException( "Unable to over write existing Security: " + security.getSymbol().toString() );
+            }
+
+            for( Security security : securities ) {
+                if( securityManager.putIfAbsent( security.getSymbol(), security ) == null ) {
+                    security.setLocalTimeKeeper( timeKeeper.getLocalTimeKeeper( security.getExchange().getTimeZone() ) );
+                    if( portfolioTotals != null )
+                        portfolioTotals.attach( security.getHoldings() );
+                    added.add( security );
+                }
+            }
+        }
+
+        if( !added.isEmpty() )
+            onCollectionChanged( new CollectionChangedEvent( CollectionChangedAction.Add, added ) );
+        return added;
+    }
+
+    /**
+     * Removes the securities with the specified symbols as a single change. Listeners receive one
+     * <see cref="CollectionChangedEvent"/> holding every removed security.
+     * @param symbols The symbols of the securities to remove
+     * @returns The removed securities, symbols not in the collection are ignored
+     */
+    public List<Security> removeAll( Collection<Symbol> symbols ) {
+        final List<Security> removed = new ArrayList<>( symbols.size() );
+        synchronized( locker ) {
+            for( Symbol symbol : symbols ) {
+                final Security security = securityManager.remove( symbol );
+                if( security != null ) {
+                    if( portfolioTotals != null )
+                        portfolioTotals.detach( security.getHoldings() );
+                    removed.add( security );
+                }
+            }
+        }
+
+        if( !removed.isEmpty() )
+            onCollectionChanged( new CollectionChangedEvent( CollectionChangedAction.Remove, removed ) );
+        return removed;
+    }
+
+    /**
+     * Registers a listener for additions to and removals from this collection. Listeners are invoked asynchronously,
+     * batch operations deliver all their securities in a single event.
+     * @param listener The listener to register
+     */
+    public void addCollectionChangedListener( CollectionChangedEventListener listener ) {
+        listeners.addIfAbsent( listener );
+    }
+
+    /**
+     * Removes a listener registered with <see cref="addCollectionChangedListener"/>
+     * @param listener The listener to remove
+     */
+    public void removeCollectionChangedListener( CollectionChangedEventListener listener ) {
+        listeners.remove( listener );
+    }
+
     /**
      * Add a symbol-security by its key value pair.
      * Map implementation
@@ -97,10 +180,20 @@ public class SecurityManager implements Map<Symbol,Security> {
 
     /**
      * Clear the securities array to delete all the portfolio and asset information.
+     * Listeners receive one <see cref="CollectionChangedEvent"/> holding every removed security.
      * Map implementation
      */
     public void clear() {
-        securityManager.clear();
+        final List<Security> removed;
+        synchronized( locker ) {
+            removed = new ArrayList<>( securityManager.values() );
+            securityManager.clear();
+            if( portfolioTotals != null )
+                portfolioTotals.detachAll();
+        }
+
+        if( !removed.isEmpty() )
+            onCollectionChanged( new CollectionChangedEvent( CollectionChangedAction.Remove, removed ) );
     }
 
     /**
@@ -172,7 +265,13 @@ public class SecurityManager implements Map<Symbol,Security> {
      * @returns true success
      */
     public Security remove( Symbol symbol ) {
-        final Security security = securityManager.remove( symbol );
+        final Security security;
+        synchronized( locker ) {
+            security = securityManager.remove( symbol );
+            if( security != null && portfolioTotals != null )
+                portfolioTotals.detach( security.getHoldings() );
+        }
+        
         if( security != null ) {
             onCollectionChanged( new CollectionChangedEvent( CollectionChangedAction.Remove, security ) );
             return security;
@@ -248,9 +347,33 @@ public class SecurityManager implements Map<Symbol,Security> {
         return securityManager.containsValue( value );
     }
 
+    /**
+     * Adds the specified securities as a single change, like <see cref="addAll"/> keyed by the map's symbols.
+     * Map implementation
+     */
     @Override
     public void putAll( Map<? extends Symbol,? extends Security> m ) {
-        securityManager.putAll( m );
+        final List<Security> added = new ArrayList<>( m.size() );
+        synchronized( locker ) {
+            for( Entry<? extends Symbol,? extends Security> entry : m.entrySet() ) {
+                final Security existing = securityManager.get( entry.getKey() );
+                if( existing != null && !existing.equals( entry.getValue() ) )
+                    throw new IllegalArgumentException( "Unable to over write existing Security: " + entry.getKey().toString() );
+            }
+
+            for( Entry<? extends Symbol,? extends Security> entry : m.entrySet() ) {
+                final Security security = entry.getValue();
+                if( securityManager.putIfAbsent( entry.getKey(), security ) == null ) {
+                    security.setLocalTimeKeeper( timeKeeper.getLocalTimeKeeper( security.getExchange().getTimeZone() ) );
+                    if( portfolioTotals != null )
+                        portfolioTotals.attach( security.getHoldings() );
+                    added.add( security );
+                }
+            }
+        }
+
+        if( !added.isEmpty() )
+            onCollectionChanged( new CollectionChangedEvent( CollectionChangedAction.Add, added ) );
     }
     
     /**
@@ -260,17 +383,24 @@ public class SecurityManager implements Map<Symbol,Security> {
      * @returns Security
      */
     public Security put( Symbol symbol, Security value ) {
-        final Security existing = securityManager.get( symbol );
-        if( existing != null && !existing.equals( value ) )
-            throw new IllegalArgumentException( "Unable to over write existing Security: " + symbol.toString() );
-
-        // no security exists for the specified symbol key, add it now
-        if( existing == null ) {
-            securityManager.put( symbol, value );
-            value.setLocalTimeKeeper( timeKeeper.getLocalTimeKeeper( value.getExchange().getTimeZone() ) );
-            onCollectionChanged( new CollectionChangedEvent( CollectionChangedAction.Add, value ) );
+        final Security existing;
+        synchronized( locker ) {
+            existing = securityManager.get( symbol );
+            if( existing != null && !existing.equals( value ) )
+                throw new IllegalArgumentException( "Unable to over write existing Security: " + symbol.toString() );
+
+            // no security exists for the specified symbol key, add it now
+            if( existing == null ) {
+                securityManager.put( symbol, value );
+                value.setLocalTimeKeeper( timeKeeper.getLocalTimeKeeper( value.getExchange().getTimeZone() ) );
+                if( portfolioTotals != null )
+                    portfolioTotals.attach( value.getHoldings() );
+            }
         }
 
+        if( existing == null )
+            onCollectionChanged( new CollectionChangedEvent( CollectionChangedAction.Add, value ) );
+
         return existing;
     }
 
@@ -296,6 +426,21 @@ public class SecurityManager implements Map<Symbol,Security> {
         return put( symbol, value );
     }
 
+    /**
+     * Sets the portfolio totals that track the holdings of the securities in this collection.
+     * The holdings of the current securities are attached immediately, later additions and removals are
+     * applied synchronously so the totals never lag behind the collection.
+     * @param portfolioTotals The totals to keep in step with this collection
+     */
+    void setPortfolioTotals( PortfolioTotals portfolioTotals ) {
+        if( this.portfolioTotals != null )
+            this.portfolioTotals.detachAll();
+        
+        this.portfolioTotals = portfolioTotals;
+        for( Security security : securityManager.values() )
+            portfolioTotals.attach( security.getHoldings() );
+    }
+
     /**
      * Event invocator for the <see cref="CollectionChanged"/> event
      * @param changedEvent Event arguments for the <see cref="CollectionChanged"/> event
@@ -16,6 +16,7 @@
 package com.quantconnect.lean.securities;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
 import java.math.RoundingMode;
 
 import com.quantconnect.lean.Extensions;
@@ -60,7 +61,7 @@ public class SecurityMarginModel implements ISecurityMarginModel {
         if( leverage.compareTo( BigDecimal.ONE ) < 0 )
             throw new IllegalArgumentException( "Leverage must be greater than or equal to 1.");
 
-        final BigDecimal inverseLeverage = BigDecimal.ONE.divide( leverage, RoundingMode.HALF_UP );
+        final BigDecimal inverseLeverage = BigDecimal.ONE.divide( leverage, MathContext.DECIMAL64 );
         initialMarginRequirement = inverseLeverage;
         maintenanceMarginRequirement = inverseLeverage;
     }
@@ -71,7 +72,7 @@ public class SecurityMarginModel implements ISecurityMarginModel {
      * @returns The current leverage in the security
      */
     public BigDecimal getLeverage( Security security ) {
-        return BigDecimal.ONE.divide( getMaintenanceMarginRequirement( security ), RoundingMode.HALF_UP );
+        return BigDecimal.ONE.divide( getMaintenanceMarginRequirement( security ), MathContext.DECIMAL64 );
     }
 
     /**
@@ -86,7 +87,7 @@ public class SecurityMarginModel implements ISecurityMarginModel {
         if( leverage.compareTo( BigDecimal.ONE ) < 0 )
             throw new IllegalArgumentException( "Leverage must be greater than or equal to 1.");
 
-        final BigDecimal margin = BigDecimal.ONE.divide( leverage, RoundingMode.HALF_EVEN );
+        final BigDecimal margin = BigDecimal.ONE.divide( leverage, MathContext.DECIMAL64 );
         initialMarginRequirement = margin;
         maintenanceMarginRequirement = margin;
     }
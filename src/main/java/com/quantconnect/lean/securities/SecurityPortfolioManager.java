@@ -22,15 +22,17 @@ import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.tuple.Pair;
 
 import com.quantconnect.lean.DataNormalizationMode;
-import com.quantconnect.lean.SecurityType;
 import com.quantconnect.lean.Symbol;
 import com.quantconnect.lean.data.BaseData;
 import com.quantconnect.lean.data.market.Dividend;
@@ -58,11 +60,13 @@ public class SecurityPortfolioManager implements Map<Symbol,SecurityHolding>, IS
     public final SecurityTransactionManager transactions;
 
     /**
-     * The list of pending funds waiting for settlement time
+     * The pending funds waiting for settlement time, ordered by settlement time
      */
-    private final List<UnsettledCashAmount> unsettledCashAmounts;
+    private final PriorityQueue<UnsettledCashAmount> unsettledCashAmounts;
 
-    // The _unsettledCashAmounts list has to be synchronized because order fills are happening on a separate thread
+    // Order fills are happening on a separate thread, they only append to this queue without locking and
+    // the settlement scan moves the new items into the time ordered queue
+    private final ConcurrentLinkedQueue<UnsettledCashAmount> addedUnsettledCashAmounts;
     private final Object unsettledCashAmountsLocker = new Object();
 
     // Record keeping variables
@@ -73,6 +77,9 @@ public class SecurityPortfolioManager implements Map<Symbol,SecurityHolding>, IS
     private CashBook unsettledCashBook;
     private MarginCallModel marginCallModel;
     
+    // running sums of the holdings, maintained as fills, prices and conversion rates change
+    private final PortfolioTotals totals;
+    private boolean verifyTotals;
 
     /**
      * Initialize security portfolio manager.
@@ -81,10 +88,13 @@ public class SecurityPortfolioManager implements Map<Symbol,SecurityHolding>, IS
         this.securities = securityManager;
         this.transactions = transactions;
         this.marginCallModel = new MarginCallModel( this );
+        this.totals = new PortfolioTotals();
+        securityManager.setPortfolioTotals( totals );
 
         this.cashBook = new CashBook();
         this.unsettledCashBook = new CashBook();
-        this.unsettledCashAmounts = new ArrayList<UnsettledCashAmount>();
+        this.unsettledCashAmounts = new PriorityQueue<UnsettledCashAmount>( Comparator.comparing( UnsettledCashAmount::getSettlementTimeUtc ) );
+        this.addedUnsettledCashAmounts = new ConcurrentLinkedQueue<UnsettledCashAmount>();
 
         this.baseCurrencyCash = cashBook.get( CashBook.ACCOUNT_CURRENCY );
 //        _baseCurrencyUnsettledCash = UnsettledCashBook.get( CashBook.ACCOUNT_CURRENCY );
@@ -93,6 +103,23 @@ public class SecurityPortfolioManager implements Map<Symbol,SecurityHolding>, IS
         baseCurrencyCash.setAmount( BigDecimal.valueOf( 100_000 ) );
     }
     
+    /**
+     * Gets whether every portfolio total read is cross-checked against a full recomputation over all securities.
+     * This is a debugging aid, reads become O(n) again while it is enabled.
+     */
+    public boolean isVerifyTotals() {
+        return verifyTotals;
+    }
+
+    /**
+     * Sets whether every portfolio total read is cross-checked against a full recomputation over all securities.
+     * A mismatch throws an <see cref="IllegalStateException"/>.
+     * @param verifyTotals True to verify the incrementally maintained totals on each read
+     */
+    public void setVerifyTotals( boolean verifyTotals ) {
+        this.verifyTotals = verifyTotals;
+    }
+
     /**
      * Gets the cash book that keeps track of all currency holdings (only settled cash)
      */
@@ -297,7 +324,7 @@ public class SecurityPortfolioManager implements Map<Symbol,SecurityHolding>, IS
      */
     public BigDecimal getTotalUnleveredAbsoluteHoldingsCost() {
         //Sum of unlevered cost of holdings
-        return securities.values().stream().map( p -> p.getHoldings().getUnleveredAbsoluteHoldingsCost() ).reduce( BigDecimal.ZERO, BigDecimal::add );
+        return getTotals().getUnleveredAbsoluteHoldingsCost();
     }
 
     /**
@@ -305,7 +332,7 @@ public class SecurityPortfolioManager implements Map<Symbol,SecurityHolding>, IS
      * absolute cost of each holding
      */
     public BigDecimal getTotalAbsoluteHoldingsCost() {
-        return securities.values().stream().map( x -> x.getHoldings().getAbsoluteHoldingsCost() ).reduce( BigDecimal.ZERO, BigDecimal::add );
+        return getTotals().getAbsoluteHoldingsCost();
     }
 
     /**
@@ -313,7 +340,7 @@ public class SecurityPortfolioManager implements Map<Symbol,SecurityHolding>, IS
     */
     public BigDecimal getTotalHoldingsValue() {
         //Sum sum of holdings
-        return securities.values().stream().map( position -> position.getHoldings().getAbsoluteHoldingsValue() ).reduce( BigDecimal.ZERO, BigDecimal::add );
+        return getTotals().getAbsoluteHoldingsValue();
     }
 
     /**
@@ -337,7 +364,7 @@ public class SecurityPortfolioManager implements Map<Symbol,SecurityHolding>, IS
      * Get the total unrealised profit in our portfolio from the individual security unrealized profits.
      */
     public BigDecimal getTotalUnrealisedProfit() {
-        return securities.values().stream().map( position -> position.getHoldings().getUnrealizedProfit() ).reduce( BigDecimal.ZERO, BigDecimal::add );
+        return getTotals().getUnrealizedProfit();
     }
 
     /**
@@ -357,11 +384,7 @@ public class SecurityPortfolioManager implements Map<Symbol,SecurityHolding>, IS
      */
     public BigDecimal getTotalPortfolioValue() {
         // we can't include forex in this calculation since we would be double accounting with respect to the cash book
-        BigDecimal totalHoldingsValueWithoutForex = BigDecimal.ZERO;
-        for( Security position : securities.values() ) {
-             if( position.getType() != SecurityType.Forex ) 
-                 totalHoldingsValueWithoutForex = totalHoldingsValueWithoutForex.add( position.getHoldings().getHoldingsValue() );
-        }
+        final BigDecimal totalHoldingsValueWithoutForex = getTotals().getHoldingsValueWithoutForex();
 
         return cashBook.getTotalValueInAccountCurrency().add( unsettledCashBook.getTotalValueInAccountCurrency() ).add( totalHoldingsValueWithoutForex );
     }
@@ -370,28 +393,34 @@ public class SecurityPortfolioManager implements Map<Symbol,SecurityHolding>, IS
      * Total fees paid during the algorithm operation across all securities in portfolio.
      */
     public BigDecimal getTotalFees() {
-        return securities.values().stream().map( position -> position.getHoldings().getTotalFees() ).reduce( BigDecimal.ZERO, BigDecimal::add );
+        return getTotals().getFees();
     }
 
     /**
      * Sum of all gross profit across all securities in portfolio.
      */
     public BigDecimal getTotalProfit() {
-        return securities.values().stream().map( position -> position.getHoldings().getProfit() ).reduce( BigDecimal.ZERO, BigDecimal::add );
+        return getTotals().getProfit();
     }
 
     /**
      * Total sale volume since the start of algorithm operations.
      */
     public BigDecimal getTotalSaleVolume() {
-        return securities.values().stream().map( position -> position.getHoldings().getTotalSaleVolume() ).reduce( BigDecimal.ZERO, BigDecimal::add );
+        return getTotals().getSaleVolume();
     }
 
     /**
      * Gets the total margin used across all securities in the account's currency
      */
     public BigDecimal getTotalMarginUsed() {
-        return securities.values().stream().map( position -> position.getMarginModel().getMaintenanceMargin( position ) ).reduce( BigDecimal.ZERO, BigDecimal::add );
+        return getTotals().getMarginUsed();
+    }
+
+    private PortfolioTotals getTotals() {
+        if( verifyTotals )
+            totals.verify( securities.values() );
+        return totals;
     }
 
     /**
@@ -448,7 +477,7 @@ public class SecurityPortfolioManager implements Map<Symbol,SecurityHolding>, IS
         Cash item = cashBook.get( symbol );
         if( item != null ) {
             item.setAmount( cash );
-            item.conversionRate = conversionRate;
+            item.setConversionRate( conversionRate );
         }
         else
             cashBook.add( symbol, cash, conversionRate );
@@ -655,33 +684,33 @@ public class SecurityPortfolioManager implements Map<Symbol,SecurityHolding>, IS
     }
 
     /**
-     * Adds an item to the list of unsettled cash amounts
+     * Adds an item to the list of unsettled cash amounts. This operation is thread-safe and does not block
      * @param item The item to add
      */
     public void addUnsettledCashAmount( UnsettledCashAmount item ) {
-        synchronized( unsettledCashAmountsLocker ) {
-            unsettledCashAmounts.add( item );
-        }
+        addedUnsettledCashAmounts.add( item );
     }
 
     /**
-     * Scan the portfolio to check if unsettled funds should be settled
+     * Scan the portfolio to check if unsettled funds should be settled. Only the items that are due are visited.
      */
     public void scanForCashSettlement( LocalDateTime timeUtc ) {
         synchronized( unsettledCashAmountsLocker ) {
-            for( UnsettledCashAmount item : new ArrayList<>( unsettledCashAmounts ) ) {
-                // check if settlement time has passed
-                if( item.getSettlementTimeUtc().isBefore( timeUtc ) ) {
-                    // remove item from unsettled funds list
-                    unsettledCashAmounts.remove( item );
-
-                    // update unsettled cashbook
-                    final BigDecimal amount = item.getAmount();
-                    unsettledCashBook.get( item.getCurrency() ).addAmount( amount.negate() );
-
-                    // update settled cashbook
-                    cashBook.get( item.getCurrency() ).addAmount( amount );
-                }
+            UnsettledCashAmount added;
+            while( (added = addedUnsettledCashAmounts.poll()) != null )
+                unsettledCashAmounts.add( added );
+
+            // check if settlement time has passed
+            while( !unsettledCashAmounts.isEmpty() && unsettledCashAmounts.peek().getSettlementTimeUtc().isBefore( timeUtc ) ) {
+                // remove item from unsettled funds queue
+                final UnsettledCashAmount item = unsettledCashAmounts.poll();
+
+                // update unsettled cashbook
+                final BigDecimal amount = item.getAmount();
+                unsettledCashBook.get( item.getCurrency() ).addAmount( amount.negate() );
+
+                // update settled cashbook
+                cashBook.get( item.getCurrency() ).addAmount( amount );
             }
         }
     }
@@ -18,10 +18,14 @@ package com.quantconnect.lean.securities;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -33,8 +37,12 @@ import org.slf4j.LoggerFactory;
 import com.quantconnect.lean.Symbol;
 import com.quantconnect.lean.orders.CancelOrderRequest;
 import com.quantconnect.lean.orders.Order;
+import com.quantconnect.lean.orders.OrderEvent;
 import com.quantconnect.lean.orders.OrderRequest;
+import com.quantconnect.lean.orders.OrderResponse;
+import com.quantconnect.lean.orders.OrderResponseErrorCode;
 import com.quantconnect.lean.orders.OrderTicket;
+import com.quantconnect.lean.orders.OrderTypes.OrderDirection;
 import com.quantconnect.lean.orders.SubmitOrderRequest;
 import com.quantconnect.lean.orders.UpdateOrderRequest;
 
@@ -50,8 +58,10 @@ public class SecurityTransactionManager implements IOrderProvider {
     
     private final Logger log = LoggerFactory.getLogger( getClass() );
     private final SecurityManager securities;
+    private final BuyingPowerLedger buyingPowerLedger = new BuyingPowerLedger();
+    private final OrderTicketIndex orderTickets = new OrderTicketIndex();
 
-    private AtomicInteger orderId;
+    private final AtomicInteger orderId = new AtomicInteger();
     private long marketOrderFillTimeout = TimeUnit.SECONDS.toMillis( 5 );
     private IOrderProcessor _orderProcessor;
     private Map<LocalDateTime,BigDecimal> _transactionRecord;
@@ -85,6 +95,21 @@ public class SecurityTransactionManager implements IOrderProvider {
         _transactionRecord = value;
     }
 
+    /**
+     * Gets the ledger of the margin reserved by the open orders. Orders reserve margin when they're submitted, see
+     * <see cref="reserveCapitalForOrder"/>, and release it as their order tickets receive fills and the closing event.
+     */
+    public BuyingPowerLedger getBuyingPowerLedger() {
+        return buyingPowerLedger;
+    }
+
+    /**
+     * Gets the index of the tickets of the orders submitted through this manager, kept in step with their order events
+     */
+    public OrderTicketIndex getOrderTicketIndex() {
+        return orderTickets;
+    }
+
     /**
      * Configurable minimum order value to ignore bad orders, or orders with unrealistic sizes
      * Default minimum order size is $0 value
@@ -126,12 +151,15 @@ public class SecurityTransactionManager implements IOrderProvider {
      * @returns The order ticket for the request
      */
     public OrderTicket processRequest( OrderRequest request ) {
-        if( request instanceof SubmitOrderRequest ) {
-            final SubmitOrderRequest submit = (SubmitOrderRequest)request;
-            submit.setOrderId( getIncrementOrderId() );
-        }
-        
-        return _orderProcessor.process( request );
+        if( !(request instanceof SubmitOrderRequest) )
+            return _orderProcessor.process( request );
+
+        final SubmitOrderRequest submit = (SubmitOrderRequest)request;
+        submit.setOrderId( getIncrementOrderId() );
+
+        final OrderTicket ticket = _orderProcessor.process( request );
+        orderTickets.add( ticket );
+        return ticket;
     }
 
     /**
@@ -143,6 +171,64 @@ public class SecurityTransactionManager implements IOrderProvider {
         return processRequest( request );
     }
 
+    /**
+     * Add a batch of orders, such as the orders of a portfolio rebalance. The orders are checked together for
+     * sufficient capital, each one using its initial margin from the margin remaining before the batch, so the
+     * batch can't spend the same margin twice. The orders with sufficient capital reserve their margin in the
+     * <see cref="BuyingPowerLedger"/>, the others get an error response, and the whole batch is handed to the order
+     * processor as one unit.
+     * @param portfolio Our portfolio
+     * @param requests The requests detailing the orders to be submitted
+     * @returns The ticket of each order, in the order of the requests
+     */
+    public List<OrderTicket> addOrders( SecurityPortfolioManager portfolio, List<SubmitOrderRequest> requests ) {
+        if( requests.isEmpty() )
+            return Collections.emptyList();
+
+        // take one block of consecutive order ids for the whole batch
+        final int firstOrderId = orderId.getAndAdd( requests.size() ) + 1;
+        final List<Order> orders = new ArrayList<>( requests.size() );
+        for( int i = 0; i < requests.size(); i++ ) {
+            final SubmitOrderRequest request = requests.get( i );
+            request.setOrderId( firstOrderId + i );
+            orders.add( Order.createOrder( request ) );
+        }
+
+        // requests without sufficient capital carry their error response to the processor, which gives
+        // them an invalid ticket instead of sending them
+        final MarginRequirement[] requirements = getMarginRequirements( portfolio, orders );
+        for( int i = 0; i < requests.size(); i++ ) {
+            final SubmitOrderRequest request = requests.get( i );
+            if( requirements[i] != null )
+                buyingPowerLedger.reserve( request.getOrderId(), requirements[i].quantity, requirements[i].amount );
+            else {
+                request.setResponse( OrderResponse.error( request, OrderResponseErrorCode.InsufficientBuyingPower,
+                        String.format( "Order Error: id: %1$s, Insufficient buying power to complete order", request.getOrderId() ) ) );
+            }
+        }
+
+        final List<OrderTicket> tickets = _orderProcessor.process( this, requests );
+        for( final OrderTicket ticket : tickets ) {
+            orderTickets.add( ticket );
+
+            // orders the processor rejected won't report the event releasing their reservation
+            if( ticket.getStatus().isClosed() )
+                buyingPowerLedger.release( ticket.getOrderId() );
+        }
+        
+        return tickets;
+    }
+
+    /**
+     * Add an order to collection without waiting for it to be processed. Algorithms can compose on the returned
+     * future to react to the order once it's closed, and keep submitting other orders in the meantime.
+     * @param request A request detailing the order to be submitted
+     * @returns A future completed with the order's ticket once the order is filled, canceled or invalid
+     */
+    public CompletableFuture<OrderTicket> addOrderAsync( SubmitOrderRequest request ) {
+        return processRequest( request ).getOrderClosed();
+    }
+
     /**
      * Update an order yet to be filled such as stop or limit orders.
      * @param request Request detailing how the order should be updated
@@ -167,7 +253,7 @@ public class SecurityTransactionManager implements IOrderProvider {
      */
     public List<OrderTicket> cancelOpenOrders( Symbol symbol ) {
         final List<OrderTicket> cancelledOrders = new ArrayList<OrderTicket>();
-        getOrderTickets( x -> x.getSymbol().equals( symbol ) && x.getStatus().isOpen() ).forEach( ticket -> {
+        getOpenOrderTickets( symbol ).forEach( ticket -> {
             ticket.cancel();
             cancelledOrders.add( ticket );
         } );
@@ -200,6 +286,17 @@ public class SecurityTransactionManager implements IOrderProvider {
         return _orderProcessor.getOrderTickets( filter != null ? filter : (x -> true) );
     }
 
+    /**
+     * Gets the tickets of the open orders of the specified symbol, in submission order, from the
+     * <see cref="OrderTicketIndex"/> without scanning the tickets of the closed orders
+     * @param symbol The symbol of the orders, or null for the open orders of every symbol
+     * @returns An enumerable of the <see cref="OrderTicket"/> of the open orders
+     */
+    @Override
+    public Stream<OrderTicket> getOpenOrderTickets( Symbol symbol ) {
+        return orderTickets.getOpenTickets( symbol ).stream();
+    }
+
     /**
      * Gets the order ticket for the specified order id. Returns null if not found
      * @param orderId The order's id
@@ -225,9 +322,14 @@ public class SecurityTransactionManager implements IOrderProvider {
 
         boolean awaitResult;
         try {
-            awaitResult = orderTicket.getOrderClosed().await(marketOrderFillTimeout, TimeUnit.MILLISECONDS );
+            orderTicket.getOrderClosed().get( marketOrderFillTimeout, TimeUnit.MILLISECONDS );
+            awaitResult = true;
         }
         catch( InterruptedException ie ) {
+            Thread.currentThread().interrupt();
+            awaitResult = false;
+        }
+        catch( ExecutionException | TimeoutException e ) {
             awaitResult = false;
         }
         
@@ -244,7 +346,7 @@ public class SecurityTransactionManager implements IOrderProvider {
      * @returns List of open orders.
      */
     public List<Order> getOpenOrders() {
-        return _orderProcessor.getOrders( x -> x.getStatus().isOpen() ).collect( Collectors.toList() );
+        return getOpenOrders( null );
     }
 
     /**
@@ -253,7 +355,10 @@ public class SecurityTransactionManager implements IOrderProvider {
      * @returns List of open orders.
      */
     public List<Order> getOpenOrders( Symbol symbol ) {
-        return _orderProcessor.getOrders( x -> x.getSymbol().equals( symbol ) && x.getStatus().isOpen() ).collect( Collectors.toList() );
+        return getOpenOrderTickets( symbol )
+                .map( ticket -> _orderProcessor.getOrderById( ticket.getOrderId() ) )
+                .filter( order -> order != null && order.getStatus().isOpen() )
+                .collect( Collectors.toList() );
     }
 
     /**
@@ -291,42 +396,146 @@ public class SecurityTransactionManager implements IOrderProvider {
     }
 
     /**
-     * Check if there is sufficient capital to execute this order.
+     * Check if there is sufficient capital to execute this order. The margin reserved by the other open orders in the
+     * <see cref="BuyingPowerLedger"/> isn't available to the order, the ledger itself isn't changed.
      * @param portfolio Our portfolio
      * @param order Order we're checking
      * @returns True if sufficient capital.
      */
     public boolean getSufficientCapitalForOrder( SecurityPortfolioManager portfolio, Order order ) {
+        return getMarginRequirement( portfolio, order ) != null;
+    }
+
+    /**
+     * Check if there is sufficient capital to execute this order and, when there is, reserve the initial margin of its
+     * unfilled quantity in the <see cref="BuyingPowerLedger"/>. This is the check of the submit and update paths, the
+     * fills of the order and the event closing it release the reservation.
+     * @param portfolio Our portfolio
+     * @param order Order being submitted or updated
+     * @returns True if sufficient capital, in which case the margin was reserved.
+     */
+    public boolean reserveCapitalForOrder( SecurityPortfolioManager portfolio, Order order ) {
+        final MarginRequirement requirement = getMarginRequirement( portfolio, order );
+        if( requirement == null )
+            return false;
+
+        buyingPowerLedger.reserve( order.getId(), requirement.quantity, requirement.amount );
+        return true;
+    }
+
+    private MarginRequirement getMarginRequirement( SecurityPortfolioManager portfolio, Order order ) {
         // short circuit the div 0 case
-        if( order.getQuantity() == 0 ) 
-            return true;
+        if( order.getQuantity() == 0 )
+            return MarginRequirement.NONE;
 
         final Security security = securities.get( order.getSymbol() );
 
         final OrderTicket ticket = getOrderTicket( order.getId() );
         if( ticket == null ) {
             log.error( "SecurityTransactionManager.getSufficientCapitalForOrder(): Null order ticket for id: " + order.getId() );
-            return false;
+            return null;
         }
 
         // When order only reduces or closes a security position, capital is always sufficient
         if( security.getHoldings().getQuantity() * order.getQuantity() < 0 && 
                 Math.abs( security.getHoldings().getQuantity() ) >= Math.abs( order.getQuantity() ) )
-            return true;
+            return MarginRequirement.NONE;
 
-        final BigDecimal freeMargin = security.getMarginModel().getMarginRemaining( portfolio, security, order.getDirection() );
+        // the margin reserved by the other open orders isn't free
+        final BigDecimal freeMargin = security.getMarginModel().getMarginRemaining( portfolio, security, order.getDirection() )
+                .subtract( buyingPowerLedger.getReservedByOthers( order.getId() ) );
         final BigDecimal initialMarginRequiredForOrder = security.getMarginModel().getInitialMarginRequiredForOrder( security, order );
 
         // pro-rate the initial margin required for order based on how much has already been filled
-        final double percentUnfilled = (Math.abs( order.getQuantity() ) - Math.abs( ticket.getQuantityFilled() ) ) / (double)Math.abs( order.getQuantity() );
-        final BigDecimal initialMarginRequiredForRemainderOfOrder = initialMarginRequiredForOrder.multiply( BigDecimal.valueOf( percentUnfilled ) );
+        final int quantityUnfilled = Math.abs( order.getQuantity() ) - Math.abs( ticket.getQuantityFilled() );
+        final double percentUnfilled = quantityUnfilled / (double)Math.abs( order.getQuantity() );
+        final BigDecimal initialMarginRequiredForRemainderOfOrder = initialMarginRequiredForOrder.multiply( BigDecimal.valueOf( percentUnfilled ) ).abs();
 
-        if( initialMarginRequiredForRemainderOfOrder.abs().compareTo( freeMargin ) > 0 ) {
+        if( initialMarginRequiredForRemainderOfOrder.compareTo( freeMargin ) > 0 ) {
             log.error( String.format( "SecurityTransactionManager.GetSufficientCapitalForOrder(): Id: %1$s, Initial Margin: %2$s, Free Margin: %3$s", order.getId(), initialMarginRequiredForOrder, freeMargin ) );
-            return false;
+            return null;
         }
         
-        return true;
+        return new MarginRequirement( quantityUnfilled, initialMarginRequiredForRemainderOfOrder );
+    }
+
+    /**
+     * Check if there is sufficient capital to execute each of the orders of a batch. The margin remaining of each
+     * security and direction is computed once, and the initial margin of each order with sufficient capital is
+     * unavailable to the following orders, as is the margin reserved by the open orders. An order only reducing the
+     * position left by the orders before it in the batch needs no margin. The ledger isn't changed.
+     * @param portfolio Our portfolio
+     * @param orders The orders we're checking, in priority order
+     * @returns True at the index of each order with sufficient capital.
+     */
+    public boolean[] getSufficientCapitalForOrders( SecurityPortfolioManager portfolio, List<Order> orders ) {
+        final MarginRequirement[] requirements = getMarginRequirements( portfolio, orders );
+        final boolean[] sufficient = new boolean[requirements.length];
+        for( int i = 0; i < requirements.length; i++ )
+            sufficient[i] = requirements[i] != null;
+        
+        return sufficient;
+    }
+
+    private MarginRequirement[] getMarginRequirements( SecurityPortfolioManager portfolio, List<Order> orders ) {
+        final MarginRequirement[] requirements = new MarginRequirement[orders.size()];
+        final Map<Symbol,BigDecimal> freeMarginToBuy = new HashMap<>();
+        final Map<Symbol,BigDecimal> freeMarginToSell = new HashMap<>();
+        final Map<Symbol,Integer> projectedQuantities = new HashMap<>();
+        BigDecimal reservedByBatch = BigDecimal.ZERO;
+
+        for( int i = 0; i < orders.size(); i++ ) {
+            final Order order = orders.get( i );
+            final Security security = securities.get( order.getSymbol() );
+
+            // the holdings once the orders of the batch accepted so far are filled
+            final int projectedQuantity = projectedQuantities.getOrDefault( order.getSymbol(), security.getHoldings().getQuantity() );
+
+            // When order only reduces or closes a security position, capital is always sufficient
+            if( order.getQuantity() == 0 || projectedQuantity * order.getQuantity() < 0 && 
+                    Math.abs( projectedQuantity ) >= Math.abs( order.getQuantity() ) ) {
+                requirements[i] = MarginRequirement.NONE;
+                projectedQuantities.put( order.getSymbol(), projectedQuantity + order.getQuantity() );
+                continue;
+            }
+
+            final Map<Symbol,BigDecimal> freeMargins = order.getDirection() == OrderDirection.Buy ? freeMarginToBuy : freeMarginToSell;
+            BigDecimal freeMargin = freeMargins.get( order.getSymbol() );
+            if( freeMargin == null ) {
+                freeMargin = security.getMarginModel().getMarginRemaining( portfolio, security, order.getDirection() );
+                freeMargins.put( order.getSymbol(), freeMargin );
+            }
+
+            // pro-rate the initial margin required for order based on how much has already been filled
+            final OrderTicket ticket = getOrderTicket( order.getId() );
+            final int quantityUnfilled = Math.abs( order.getQuantity() ) - ( ticket != null ? Math.abs( ticket.getQuantityFilled() ) : 0 );
+            final double percentUnfilled = quantityUnfilled / (double)Math.abs( order.getQuantity() );
+            final BigDecimal initialMarginRequiredForOrder = security.getMarginModel().getInitialMarginRequiredForOrder( security, order );
+            final BigDecimal initialMarginRequiredForRemainderOfOrder = initialMarginRequiredForOrder.multiply( BigDecimal.valueOf( percentUnfilled ) ).abs();
+
+            final BigDecimal available = freeMargin.subtract( buyingPowerLedger.getReservedByOthers( order.getId() ) ).subtract( reservedByBatch );
+            if( initialMarginRequiredForRemainderOfOrder.compareTo( available ) > 0 ) {
+                log.error( String.format( "SecurityTransactionManager.getSufficientCapitalForOrders(): Id: %1$s, Initial Margin: %2$s, Free Margin: %3$s", order.getId(), initialMarginRequiredForOrder, available ) );
+                continue;
+            }
+
+            requirements[i] = new MarginRequirement( quantityUnfilled, initialMarginRequiredForRemainderOfOrder );
+            reservedByBatch = reservedByBatch.add( initialMarginRequiredForRemainderOfOrder );
+            projectedQuantities.put( order.getSymbol(), projectedQuantity + order.getQuantity() );
+        }
+
+        return requirements;
+    }
+
+    /**
+     * Updates the <see cref="BuyingPowerLedger"/> with an order event, releasing the margin reserved by the order as it
+     * fills and once it's closed, and moves the ticket of a closed order out of the open tickets of the
+     * <see cref="OrderTicketIndex"/>. Every event added to an <see cref="OrderTicket"/> is reported here.
+     * @param orderEvent The order event reported for an order
+     */
+    public void onOrderEvent( OrderEvent orderEvent ) {
+        buyingPowerLedger.onOrderEvent( orderEvent );
+        orderTickets.onOrderEvent( orderEvent );
     }
 
     /**
@@ -352,4 +561,19 @@ public class SecurityTransactionManager implements IOrderProvider {
 //        final OrderStatus status = order.getStatus();
 //        return status == OrderStatus.Filled || status == OrderStatus.PartiallyFilled || status == OrderStatus.Invalid || status == OrderStatus.Canceled;
 //    }
+
+    /**
+     * The unfilled quantity of an order and the initial margin it requires
+     */
+    private static final class MarginRequirement {
+        static final MarginRequirement NONE = new MarginRequirement( 0, BigDecimal.ZERO );
+
+        final int quantity;
+        final BigDecimal amount;
+
+        MarginRequirement( int quantity, BigDecimal amount ) {
+            this.quantity = quantity;
+            this.amount = amount;
+        }
+    }
 }
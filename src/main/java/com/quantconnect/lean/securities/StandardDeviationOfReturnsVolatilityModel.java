@@ -0,0 +1,59 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.securities;
+
+import java.time.Duration;
+
+/**
+ * Provides an implementation of <see cref="IVolatilityModel"/> that computes the annualized sample standard deviation
+ * of the log returns between the closes of the last samples
+ */
+public class StandardDeviationOfReturnsVolatilityModel extends SampledVolatilityModel {
+
+    private final RollingMoments returns;
+    private double previousClose;
+
+    /**
+     * Initializes a new instance of the <see cref="StandardDeviationOfReturnsVolatilityModel"/> class using daily returns
+     * @param periods The number of returns in the window
+     */
+    public StandardDeviationOfReturnsVolatilityModel( int periods ) {
+        this( periods, Duration.ofDays( 1 ), TRADING_DAYS_PER_YEAR );
+    }
+
+    /**
+     * Initializes a new instance of the <see cref="StandardDeviationOfReturnsVolatilityModel"/> class
+     * @param periods The number of returns in the window
+     * @param samplePeriod The period of each return
+     * @param periodsPerYear The number of sample periods per year used to annualize the volatility
+     */
+    public StandardDeviationOfReturnsVolatilityModel( int periods, Duration samplePeriod, double periodsPerYear ) {
+        super( samplePeriod, periodsPerYear );
+        if( periods < 2 )
+            throw new IllegalArgumentException( "StandardDeviationOfReturnsVolatilityModel requires at least 2 periods: " + periods );
+
+        this.returns = new RollingMoments( periods );
+    }
+
+    @Override
+    protected double addSample( double open, double high, double low, double close ) {
+        if( previousClose > 0 )
+            returns.add( Math.log( close / previousClose ) );
+        previousClose = close;
+
+        return returns.count() >= 2 ? returns.variance() : Double.NaN;
+    }
+}
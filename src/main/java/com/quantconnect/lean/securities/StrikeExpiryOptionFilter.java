@@ -19,18 +19,14 @@ package com.quantconnect.lean.securities;
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 
-import com.google.common.collect.Iterables;
 import com.quantconnect.lean.Global;
-import com.quantconnect.lean.SecurityIdentifier;
 import com.quantconnect.lean.Symbol;
 import com.quantconnect.lean.Time;
 import com.quantconnect.lean.data.BaseData;
-import com.quantconnect.lean.util.FunctionalUtilities;
+import com.quantconnect.lean.data.market.OptionChainIndex;
 
 /**
  * Provides an implementation of <see cref="IDerivativeSecurityFilter"/> for use in selecting
@@ -38,6 +34,9 @@ import com.quantconnect.lean.util.FunctionalUtilities;
  */
 public class StrikeExpiryOptionFilter implements IDerivativeSecurityFilter {
     
+    // kept in sync with the symbols passed to filter, so only new and removed contracts are processed each call
+    private final OptionChainIndex index = new OptionChainIndex();
+
     private BigDecimal strikeSize;
     private LocalDate strikeSizeResolveDate;
 
@@ -70,7 +69,8 @@ public class StrikeExpiryOptionFilter implements IDerivativeSecurityFilter {
      * Filters the input set of symbols using the underlying price data
      * @param symbols The derivative symbols to be filtered
      * @param underlying The underlying price data
-     * @returns The filtered set of symbols
+     * @returns The filtered set of symbols ordered by expiry, then calls before puts, then strike, or the input
+     * symbols as they are when the underlying is missing
      */
     public Iterable<Symbol> filter( Iterable<Symbol> symbols, BaseData underlying ) {
         // we can't properly apply this filter without knowing the underlying price
@@ -78,14 +78,13 @@ public class StrikeExpiryOptionFilter implements IDerivativeSecurityFilter {
         if( underlying == null )
             return symbols;
 
+        index.update( symbols );
+
         final LocalDate date = underlying.getTime().toLocalDate();
         if( !date.equals( strikeSizeResolveDate ) ) {
             // each day we need to recompute the strike size
-            final List<Symbol> symbolsList = new ArrayList<>();
-            Iterables.addAll( symbolsList, symbols );
-            final List<BigDecimal> uniqueStrikes = symbolsList.stream().map( x -> x.getId().getStrikePrice() ).distinct().sorted().collect( Collectors.toList() );
-            strikeSize = FunctionalUtilities.zip( uniqueStrikes.stream(), uniqueStrikes.stream().skip( 1 ), (l, r) -> r.subtract( l ) ).min( Comparator.naturalOrder() ).orElse( Global.FIVE );
-//            _strikeSize = uniqueStrikes.Zip( uniqueStrikes.Skip(1), (l, r) -> r.ID.StrikePrice - l.ID.StrikePrice).DefaultIfEmpty( BigDecimal.valueOf( 5 ) ).Min();
+            final BigDecimal spacing = index.getStrikeSpacing();
+            strikeSize = spacing != null ? spacing : Global.FIVE;
             strikeSizeResolveDate = date;
         }
 
@@ -93,20 +92,13 @@ public class StrikeExpiryOptionFilter implements IDerivativeSecurityFilter {
         final BigDecimal price = underlying.getPrice();
         final BigDecimal minPrice = price.add( strikeSize.multiply( BigDecimal.valueOf( minStrike ) ) );
         final BigDecimal maxPrice = price.add( strikeSize.multiply( BigDecimal.valueOf( maxStrike ) ) );
-        final LocalDate minExp = date.plus( this.minExpiry );
-        final LocalDate maxExp = date.plus( this.maxExpiry );
-
-        final List<Symbol> filtered = new ArrayList<>();
-        for( Symbol symbol : symbols ) {
-            final SecurityIdentifier contract = symbol.getId();
-            final BigDecimal strikePrice = contract.getStrikePrice();
-            final LocalDate d = contract.getDate();
-            if( strikePrice.compareTo( minPrice ) >= 0 && strikePrice.compareTo( maxPrice ) <= 0 && 
-                    !d.isBefore( minExp ) && !d.isAfter( maxExp ) )
-                filtered.add( symbol );
-            
-        }
+        // a LocalDate can't be moved by a Duration, contracts expiring on the date the earliest expiry time falls on
+        // are in the range only if that time is midnight
+        final LocalDateTime midnight = date.atStartOfDay();
+        final LocalDateTime earliest = midnight.plus( this.minExpiry );
+        final LocalDate minExp = earliest.toLocalTime().equals( LocalTime.MIDNIGHT ) ? earliest.toLocalDate() : earliest.toLocalDate().plusDays( 1 );
+        final LocalDate maxExp = midnight.plus( this.maxExpiry ).toLocalDate();
 
-        return filtered;
+        return index.select( minPrice, maxPrice, minExp, maxExp );
     }
 }
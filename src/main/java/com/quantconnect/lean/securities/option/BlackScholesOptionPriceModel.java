@@ -0,0 +1,269 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.securities.option;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.quantconnect.lean.OptionRight;
+import com.quantconnect.lean.OptionStyle;
+import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.data.Slice;
+import com.quantconnect.lean.data.market.FirstOrderGreeks;
+import com.quantconnect.lean.data.market.OptionChain;
+import com.quantconnect.lean.data.market.OptionContract;
+import com.quantconnect.lean.securities.IVolatilityModel;
+import com.quantconnect.lean.securities.Security;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * Provides an implementation of <see cref="IOptionPriceModel"/> that values european contracts with Black-Scholes-Merton
+ * and american contracts with the Barone-Adesi-Whaley approximation.
+ *
+ * The first contract evaluated in a time step values its whole <see cref="OptionChain"/> in one pass over primitive arrays.
+ * The batch is cached per chain for the current underlying price, volatility and time, so the other contracts of the chain
+ * only convert their own values to <see cref="BigDecimal"/> when their lazy result is requested. The batches of earlier
+ * time steps are released when the time moves on. When constructed with a <see cref="ForkJoinPool"/> large chains are
+ * split across the pool.
+ *
+ * The volatility is read from the underlying's <see cref="IVolatilityModel"/>, or from the option's own model when the
+ * option has no underlying.
+ */
+public class BlackScholesOptionPriceModel implements IOptionPriceModel {
+
+    // partitions smaller than this are not split any further
+    private static final int MIN_PARTITION_SIZE = 64;
+
+    private final double riskFreeRate;
+    private final double dividendYield;
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+
+    // the batches of the current time step, keyed by the canonical option symbol
+    private final Map<Symbol,ChainBatch> batches = new ConcurrentHashMap<>();
+    private volatile LocalDateTime batchesTime;
+
+    /**
+     * Initializes a new instance of the <see cref="BlackScholesOptionPriceModel"/> class with a 1% risk free rate and no dividends
+     */
+    public BlackScholesOptionPriceModel() {
+        this( 0.01, 0 );
+    }
+
+    /**
+     * Initializes a new instance of the <see cref="BlackScholesOptionPriceModel"/> class that evaluates chains sequentially
+     * @param riskFreeRate The annualized, continuously compounded risk free rate
+     * @param dividendYield The annualized, continuous dividend yield of the underlying
+     */
+    public BlackScholesOptionPriceModel( final double riskFreeRate, final double dividendYield ) {
+        this( riskFreeRate, dividendYield, null, Integer.MAX_VALUE );
+    }
+
+    /**
+     * Initializes a new instance of the <see cref="BlackScholesOptionPriceModel"/> class that evaluates large chains in parallel
+     * @param riskFreeRate The annualized, continuously compounded risk free rate
+     * @param dividendYield The annualized, continuous dividend yield of the underlying
+     * @param pool The pool used to evaluate chains in parallel, null to always evaluate sequentially
+     * @param parallelThreshold The minimum number of contracts in a chain evaluated in parallel
+     */
+    public BlackScholesOptionPriceModel( final double riskFreeRate, final double dividendYield, final ForkJoinPool pool, final int parallelThreshold ) {
+        this.riskFreeRate = riskFreeRate;
+        this.dividendYield = dividendYield;
+        this.pool = pool;
+        this.parallelThreshold = Math.max( parallelThreshold, 1 );
+    }
+
+    /**
+     * Evaluates the specified option contract, valuing its whole chain if this is the first contract of the chain
+     * requested for the current underlying price, volatility and time
+     * @param security The option security object
+     * @param slice The current data slice. This can be used to access other information
+     * available to the algorithm
+     * @param contract The option contract to evaluate
+     * @returns An instance of <see cref="OptionPriceModelResult"/> containing the theoretical
+     * price of the specified option contract
+     */
+    @Override
+    public OptionPriceModelResult evaluate( final Security security, final Slice slice, final OptionContract contract ) {
+        final Symbol symbol = contract.getSymbol();
+        final Symbol canonical = Symbol.create( symbol.getId().getSymbol(), SecurityType.Option, symbol.getId().getMarket() );
+        final OptionChain chain = slice.getOptionChains().get( canonical );
+
+        final double underlyingPrice = chain != null && chain.getUnderlying() != null
+                ? chain.getUnderlying().getPrice().doubleValue()
+                : toDouble( contract.getUnderlyingLastPrice() );
+        final double volatility = getVolatility( security );
+        final LocalDateTime time = slice.getTime();
+
+        if( chain != null ) {
+            releaseBatchesBefore( time );
+
+            // the chain is valued outside of the map, concurrent callers may value it twice but never block each other
+            ChainBatch batch = batches.get( canonical );
+            if( batch == null || !batch.isValidFor( chain, underlyingPrice, volatility, time ) ) {
+                batch = new ChainBatch( chain, chain.getContracts().values(), underlyingPrice, volatility, time );
+                batches.put( canonical, batch );
+            }
+
+            final int index = batch.indexOf( symbol );
+            if( index >= 0 )
+                return batch.getResult( index );
+        }
+
+        // contracts outside of the slice's chain are valued on their own
+        return new ChainBatch( null, Collections.singletonList( contract ), underlyingPrice, volatility, time ).getResult( 0 );
+    }
+
+    /**
+     * Drops the batches of earlier time steps, so chains that are no longer in the slices aren't retained
+     */
+    private void releaseBatchesBefore( final LocalDateTime time ) {
+        final LocalDateTime last = batchesTime;
+        if( last != null && !last.isBefore( time ) )
+            return;
+
+        batchesTime = time;
+        if( last != null )
+            batches.values().removeIf( batch -> batch.time.isBefore( time ) );
+    }
+
+    private static double getVolatility( final Security security ) {
+        Security source = security;
+        if( security instanceof Option && ((Option)security).getUnderlying() != null )
+            source = ((Option)security).getUnderlying();
+
+        final IVolatilityModel model = source.getVolatilityModel();
+        return model != null ? toDouble( model.getVolatility() ) : 0;
+    }
+
+    private static double toDouble( final BigDecimal value ) {
+        return value != null ? value.doubleValue() : 0;
+    }
+
+    private static BigDecimal toDecimal( final double value ) {
+        return Double.isFinite( value ) ? BigDecimal.valueOf( value ) : BigDecimal.ZERO;
+    }
+
+    /**
+     * The values of every contract of a chain for one underlying price, volatility and time, stored as
+     * <see cref="OptionPricing.STRIDE"/> consecutive doubles per contract
+     */
+    private final class ChainBatch {
+        private final OptionChain chain;
+        private final double underlyingPrice;
+        private final double volatility;
+        private final LocalDateTime time;
+
+        private final Object2IntOpenHashMap<Symbol> indices;
+        private final boolean[] calls;
+        private final boolean[] americans;
+        private final double[] strikes;
+        private final double[] expiries;
+        private final double[] values;
+
+        ChainBatch( final OptionChain chain, final Collection<OptionContract> contracts, final double underlyingPrice, final double volatility, final LocalDateTime time ) {
+            this.chain = chain;
+            this.underlyingPrice = underlyingPrice;
+            this.volatility = volatility;
+            this.time = time;
+
+            final int size = contracts.size();
+            indices = new Object2IntOpenHashMap<>( size );
+            indices.defaultReturnValue( -1 );
+            calls = new boolean[size];
+            americans = new boolean[size];
+            strikes = new double[size];
+            expiries = new double[size];
+            values = new double[size * OptionPricing.STRIDE];
+
+            int i = 0;
+            for( final OptionContract contract : contracts ) {
+                indices.put( contract.getSymbol(), i );
+                calls[i] = contract.getRight() == OptionRight.CALL;
+                americans[i] = contract.getSymbol().getId().getOptionStyle() == OptionStyle.AMERICAN;
+                strikes[i] = contract.getStrike().doubleValue();
+                expiries[i] = OptionPricing.yearsToExpiry( time, contract.getExpiry() );
+                i++;
+            }
+
+            if( pool == null || size < parallelThreshold )
+                evaluate( 0, size );
+            else
+                pool.invoke( new EvaluateTask( this, 0, size ) );
+        }
+
+        boolean isValidFor( final OptionChain chain, final double underlyingPrice, final double volatility, final LocalDateTime time ) {
+            return this.chain == chain && this.underlyingPrice == underlyingPrice && this.volatility == volatility && this.time.equals( time );
+        }
+
+        int indexOf( final Symbol symbol ) {
+            return indices.getInt( symbol );
+        }
+
+        void evaluate( final int from, final int to ) {
+            for( int i = from; i < to; i++ )
+                OptionPricing.evaluate( calls[i], americans[i], underlyingPrice, strikes[i], expiries[i], riskFreeRate, dividendYield, volatility, values, i * OptionPricing.STRIDE );
+        }
+
+        OptionPriceModelResult getResult( final int index ) {
+            final int offset = index * OptionPricing.STRIDE;
+            final double price = values[offset + OptionPricing.PRICE];
+            final double delta = values[offset + OptionPricing.DELTA];
+            final double lambda = price > 0 ? delta * underlyingPrice / price : 0;
+
+            final FirstOrderGreeks greeks = new FirstOrderGreeks(
+                    toDecimal( delta ),
+                    toDecimal( values[offset + OptionPricing.VEGA] ),
+                    toDecimal( values[offset + OptionPricing.THETA] ),
+                    toDecimal( values[offset + OptionPricing.RHO] ),
+                    toDecimal( lambda ) );
+            return new OptionPriceModelResult( toDecimal( price ), greeks );
+        }
+    }
+
+    private static final class EvaluateTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ChainBatch batch;
+        private final int from;
+        private final int to;
+
+        EvaluateTask( final ChainBatch batch, final int from, final int to ) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if( to - from <= MIN_PARTITION_SIZE ) {
+                batch.evaluate( from, to );
+                return;
+            }
+
+            final int middle = ( from + to ) >>> 1;
+            invokeAll( new EvaluateTask( batch, from, middle ), new EvaluateTask( batch, middle, to ) );
+        }
+    }
+}
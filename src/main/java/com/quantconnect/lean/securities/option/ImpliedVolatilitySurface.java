@@ -0,0 +1,286 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.securities.option;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.quantconnect.lean.OptionRight;
+import com.quantconnect.lean.OptionStyle;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.data.market.OptionChain;
+import com.quantconnect.lean.data.market.OptionContract;
+
+/**
+ * Solves the implied volatility of every contract of an option chain and interpolates them into a surface by
+ * strike and expiry.
+ *
+ * Each <see cref="update"/> only solves the contracts whose market price or underlying price changed since the
+ * previous update, or all of them on a new day. The solver starts from the contract's previous solution, which
+ * usually converges in one or two Newton steps. The market price is the bid/ask mid price, or the last price
+ * when the quote is incomplete.
+ *
+ * The surface uses the out of the money contract at each strike, calls at or above the underlying price and puts
+ * below it. Volatilities are interpolated linearly in strike within an expiry, and linearly in total variance
+ * between expiries. Outside of the quoted strikes and expiries the nearest value is used.
+ *
+ * Instances are not thread-safe.
+ */
+public class ImpliedVolatilitySurface {
+
+    private static final Comparator<Quote> BY_STRIKE = Comparator.comparingDouble( quote -> quote.strike );
+
+    private final double riskFreeRate;
+    private final double dividendYield;
+
+    private final Map<Symbol,Quote> quotes = new HashMap<>();
+    private int generation;
+    private LocalDateTime time;
+
+    // the interpolation grid, one row of strikes and volatilities per expiry
+    private LocalDate[] expiries = new LocalDate[0];
+    private double[] expiryYears = new double[0];
+    private double[][] strikes = new double[0][];
+    private double[][] volatilities = new double[0][];
+
+    /**
+     * Initializes a new instance of the <see cref="ImpliedVolatilitySurface"/> class with a 1% risk free rate and no dividends
+     */
+    public ImpliedVolatilitySurface() {
+        this( 0.01, 0 );
+    }
+
+    /**
+     * Initializes a new instance of the <see cref="ImpliedVolatilitySurface"/> class
+     * @param riskFreeRate The annualized, continuously compounded risk free rate
+     * @param dividendYield The annualized, continuous dividend yield of the underlying
+     */
+    public ImpliedVolatilitySurface( final double riskFreeRate, final double dividendYield ) {
+        this.riskFreeRate = riskFreeRate;
+        this.dividendYield = dividendYield;
+    }
+
+    /**
+     * Updates the surface with the contracts of the specified chain. Contracts no longer in the chain are dropped.
+     * @param chain The option chain of the current time step
+     * @returns The number of contracts whose implied volatility was solved again
+     */
+    public int update( final OptionChain chain ) {
+        final LocalDateTime now = chain.getTime();
+        final boolean newDay = time == null || !now.toLocalDate().equals( time.toLocalDate() );
+        final int current = ++generation;
+
+        final Quote[] changed = new Quote[chain.getContracts().size()];
+        int count = 0;
+        for( final OptionContract contract : chain ) {
+            final double underlyingPrice = chain.getUnderlying() != null
+                    ? chain.getUnderlying().getPrice().doubleValue()
+                    : toDouble( contract.getUnderlyingLastPrice() );
+            final double price = getMarketPrice( contract );
+
+            Quote quote = quotes.get( contract.getSymbol() );
+            if( quote == null ) {
+                quote = new Quote( contract );
+                quotes.put( contract.getSymbol(), quote );
+            }
+            else if( !newDay && Double.compare( quote.price, price ) == 0 && Double.compare( quote.underlyingPrice, underlyingPrice ) == 0 ) {
+                quote.generation = current;
+                continue;
+            }
+
+            quote.generation = current;
+            quote.price = price;
+            quote.underlyingPrice = underlyingPrice;
+            changed[count++] = quote;
+        }
+
+        final boolean dropped = quotes.size() > chain.getContracts().size();
+        if( dropped ) {
+            for( final Iterator<Quote> iterator = quotes.values().iterator(); iterator.hasNext(); ) {
+                if( iterator.next().generation != current )
+                    iterator.remove();
+            }
+        }
+
+        // solve the changed contracts in one pass, warm starting from their previous solutions
+        for( int i = 0; i < count; i++ ) {
+            final Quote quote = changed[i];
+            quote.volatility = OptionPricing.impliedVolatility( quote.call, quote.american, quote.price, quote.underlyingPrice, quote.strike,
+                    OptionPricing.yearsToExpiry( now, quote.expiry ), riskFreeRate, dividendYield, quote.volatility );
+        }
+
+        time = now;
+        if( count > 0 || dropped || newDay )
+            rebuild();
+        return count;
+    }
+
+    /**
+     * Gets the implied volatility solved for the specified contract
+     * @param symbol The option contract symbol
+     * @returns The implied volatility, or NaN if the contract isn't in the surface or its price has no solution
+     */
+    public double getImpliedVolatility( final Symbol symbol ) {
+        final Quote quote = quotes.get( symbol );
+        return quote != null ? quote.volatility : Double.NaN;
+    }
+
+    /**
+     * Gets the expiries of the surface in ascending order
+     */
+    public List<LocalDate> getExpiries() {
+        return Collections.unmodifiableList( Arrays.asList( expiries ) );
+    }
+
+    /**
+     * Gets the volatility of the surface at the specified strike and expiry
+     * @param strike The strike
+     * @param expiry The expiry date
+     * @returns The interpolated volatility, or NaN if the surface is empty
+     */
+    public double getVolatility( final BigDecimal strike, final LocalDate expiry ) {
+        if( expiries.length == 0 )
+            return Double.NaN;
+
+        final double k = strike.doubleValue();
+        final int index = Arrays.binarySearch( expiries, expiry );
+        if( index >= 0 )
+            return interpolateStrike( index, k );
+
+        final int next = -index - 1;
+        if( next == 0 )
+            return interpolateStrike( 0, k );
+        if( next == expiries.length )
+            return interpolateStrike( expiries.length - 1, k );
+
+        final double years = OptionPricing.yearsToExpiry( time, expiry );
+        final double before = interpolateStrike( next - 1, k );
+        final double after = interpolateStrike( next, k );
+        final double t0 = expiryYears[next - 1];
+        final double t1 = expiryYears[next];
+        final double weight = ( years - t0 ) / ( t1 - t0 );
+        if( t0 <= 0 || years <= 0 )
+            return before + ( after - before ) * weight;
+
+        final double variance = before * before * t0 + ( after * after * t1 - before * before * t0 ) * weight;
+        return Math.sqrt( Math.max( variance, 0 ) / years );
+    }
+
+    private double interpolateStrike( final int expiry, final double k ) {
+        final double[] row = strikes[expiry];
+        final double[] values = volatilities[expiry];
+        final int index = Arrays.binarySearch( row, k );
+        if( index >= 0 )
+            return values[index];
+
+        final int next = -index - 1;
+        if( next == 0 )
+            return values[0];
+        if( next == row.length )
+            return values[row.length - 1];
+
+        final double weight = ( k - row[next - 1] ) / ( row[next] - row[next - 1] );
+        return values[next - 1] + ( values[next] - values[next - 1] ) * weight;
+    }
+
+    /**
+     * Rebuilds the interpolation grid from the solved contracts, keeping the out of the money contract at each strike
+     */
+    private void rebuild() {
+        final Map<LocalDate,List<Quote>> byExpiry = new HashMap<>();
+        for( final Quote quote : quotes.values() ) {
+            if( !Double.isNaN( quote.volatility ) )
+                byExpiry.computeIfAbsent( quote.expiry, date -> new ArrayList<>() ).add( quote );
+        }
+
+        final LocalDate[] dates = byExpiry.keySet().toArray( new LocalDate[byExpiry.size()] );
+        Arrays.sort( dates );
+
+        final double[] years = new double[dates.length];
+        final double[][] rowStrikes = new double[dates.length][];
+        final double[][] rowVolatilities = new double[dates.length][];
+        for( int i = 0; i < dates.length; i++ ) {
+            final List<Quote> row = byExpiry.get( dates[i] );
+            row.sort( BY_STRIKE );
+
+            final double[] k = new double[row.size()];
+            final double[] v = new double[row.size()];
+            int size = 0;
+            for( final Quote quote : row ) {
+                if( size > 0 && k[size - 1] == quote.strike ) {
+                    // a call and a put share this strike, keep the out of the money one
+                    if( quote.call == ( quote.strike >= quote.underlyingPrice ) )
+                        v[size - 1] = quote.volatility;
+                    continue;
+                }
+                k[size] = quote.strike;
+                v[size] = quote.volatility;
+                size++;
+            }
+
+            years[i] = OptionPricing.yearsToExpiry( time, dates[i] );
+            rowStrikes[i] = Arrays.copyOf( k, size );
+            rowVolatilities[i] = Arrays.copyOf( v, size );
+        }
+
+        expiries = dates;
+        expiryYears = years;
+        strikes = rowStrikes;
+        volatilities = rowVolatilities;
+    }
+
+    private static double getMarketPrice( final OptionContract contract ) {
+        final double bid = toDouble( contract.getBidPrice() );
+        final double ask = toDouble( contract.getAskPrice() );
+        if( bid > 0 && ask >= bid )
+            return ( bid + ask ) / 2;
+
+        final double last = toDouble( contract.getLastPrice() );
+        return last > 0 ? last : Double.NaN;
+    }
+
+    private static double toDouble( final BigDecimal value ) {
+        return value != null ? value.doubleValue() : Double.NaN;
+    }
+
+    private static final class Quote {
+        final double strike;
+        final LocalDate expiry;
+        final boolean call;
+        final boolean american;
+
+        double price;
+        double underlyingPrice;
+        double volatility = Double.NaN;
+        int generation;
+
+        Quote( final OptionContract contract ) {
+            this.strike = contract.getStrike().doubleValue();
+            this.expiry = contract.getExpiry();
+            this.call = contract.getRight() == OptionRight.CALL;
+            this.american = contract.getSymbol().getId().getOptionStyle() == OptionStyle.AMERICAN;
+        }
+    }
+}
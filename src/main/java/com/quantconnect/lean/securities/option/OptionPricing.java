@@ -0,0 +1,333 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.securities.option;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Closed form option valuation on primitive doubles, shared by the option price models.
+ *
+ * European options use Black-Scholes-Merton with a continuous dividend yield. American options use the
+ * Barone-Adesi-Whaley quadratic approximation, whose greeks are taken by finite differences.
+ * Times are in years, rates, yields and volatilities are annualized fractions.
+ */
+final class OptionPricing {
+
+    /**
+     * The number of values written per contract by <see cref="evaluate"/>
+     */
+    static final int STRIDE = 5;
+    static final int PRICE = 0;
+    static final int DELTA = 1;
+    static final int VEGA = 2;
+    static final int THETA = 3;
+    static final int RHO = 4;
+
+    // options stop trading at the close of their expiry date
+    private static final LocalTime EXPIRY_TIME = LocalTime.of( 16, 0 );
+    private static final double SECONDS_PER_YEAR = 365.0 * 24 * 60 * 60;
+
+    private static final double INV_SQRT_2PI = 0.3989422804014327;
+    private static final double CRITICAL_PRICE_TOLERANCE = 1e-6;
+    private static final int MAX_ITERATIONS = 100;
+
+    // implied volatility search bounds and tolerance, the tolerance is in price units
+    private static final double MIN_VOLATILITY = 1e-4;
+    private static final double MAX_VOLATILITY = 5;
+    private static final double IMPLIED_PRICE_TOLERANCE = 1e-7;
+    private static final double IMPLIED_VOLATILITY_TOLERANCE = 1e-10;
+
+    // finite difference steps for the american greeks
+    private static final double PRICE_BUMP = 1e-3;
+    private static final double VOLATILITY_BUMP = 1e-3;
+    private static final double TIME_BUMP = 1.0 / 365;
+    private static final double RATE_BUMP = 1e-4;
+
+    private OptionPricing() { }
+
+    /**
+     * Evaluates the price and greeks of a single contract
+     * @param call True for a call, false for a put
+     * @param american True to allow early exercise
+     * @param s The underlying price
+     * @param k The strike
+     * @param t The time to expiry in years
+     * @param r The risk free rate
+     * @param q The dividend yield
+     * @param sigma The volatility
+     * @param out Receives price, delta, vega, theta and rho, in that order
+     * @param offset The index in <paramref name="out"/> of the price
+     */
+    static void evaluate( boolean call, boolean american, double s, double k, double t, double r, double q, double sigma, double[] out, int offset ) {
+        if( t <= 0 || sigma <= 0 || s <= 0 || k <= 0 ) {
+            evaluateDegenerate( call, american, s, k, Math.max( t, 0 ), r, q, out, offset );
+            return;
+        }
+
+        if( !american ) {
+            final double sqrtT = Math.sqrt( t );
+            final double d1 = ( Math.log( s / k ) + ( r - q + sigma * sigma / 2 ) * t ) / ( sigma * sqrtT );
+            final double d2 = d1 - sigma * sqrtT;
+            final double dividendDiscount = Math.exp( -q * t );
+            final double discount = Math.exp( -r * t );
+            final double decay = -s * dividendDiscount * normalPdf( d1 ) * sigma / ( 2 * sqrtT );
+
+            out[offset + VEGA] = s * dividendDiscount * normalPdf( d1 ) * sqrtT;
+            if( call ) {
+                out[offset + PRICE] = s * dividendDiscount * normalCdf( d1 ) - k * discount * normalCdf( d2 );
+                out[offset + DELTA] = dividendDiscount * normalCdf( d1 );
+                out[offset + THETA] = decay - r * k * discount * normalCdf( d2 ) + q * s * dividendDiscount * normalCdf( d1 );
+                out[offset + RHO] = k * t * discount * normalCdf( d2 );
+            }
+            else {
+                out[offset + PRICE] = k * discount * normalCdf( -d2 ) - s * dividendDiscount * normalCdf( -d1 );
+                out[offset + DELTA] = -dividendDiscount * normalCdf( -d1 );
+                out[offset + THETA] = decay + r * k * discount * normalCdf( -d2 ) - q * s * dividendDiscount * normalCdf( -d1 );
+                out[offset + RHO] = -k * t * discount * normalCdf( -d2 );
+            }
+            return;
+        }
+
+        final double ds = s * PRICE_BUMP;
+        final double dt = Math.min( TIME_BUMP, t / 2 );
+        final double sigmaDown = Math.max( sigma - VOLATILITY_BUMP, sigma / 2 );
+        out[offset + PRICE] = american( call, s, k, t, r, q, sigma );
+        out[offset + DELTA] = ( american( call, s + ds, k, t, r, q, sigma ) - american( call, s - ds, k, t, r, q, sigma ) ) / ( 2 * ds );
+        out[offset + VEGA] = ( american( call, s, k, t, r, q, sigma + VOLATILITY_BUMP ) - american( call, s, k, t, r, q, sigmaDown ) ) / ( sigma + VOLATILITY_BUMP - sigmaDown );
+        // theta is the change in value as the calendar moves forward, i.e. as the time to expiry shrinks
+        out[offset + THETA] = ( american( call, s, k, t - dt, r, q, sigma ) - american( call, s, k, t + dt, r, q, sigma ) ) / ( 2 * dt );
+        out[offset + RHO] = ( american( call, s, k, t, r + RATE_BUMP, q, sigma ) - out[offset + PRICE] ) / RATE_BUMP;
+    }
+
+    /**
+     * Gets the time from the specified time to the close of the expiry date, in years
+     */
+    static double yearsToExpiry( LocalDateTime time, LocalDate expiry ) {
+        return Duration.between( time, expiry.atTime( EXPIRY_TIME ) ).getSeconds() / SECONDS_PER_YEAR;
+    }
+
+    /**
+     * Solves the volatility that reproduces the specified price with a safeguarded Newton's method: each step is
+     * kept within a bracket of the root that shrinks with every evaluation, and falls back to bisection when the
+     * Newton step leaves it. The european vega is used as the derivative for american contracts too, the bracket
+     * keeps this quasi-Newton iteration convergent.
+     * @param call True for a call, false for a put
+     * @param american True to allow early exercise
+     * @param price The market price of the contract
+     * @param s The underlying price
+     * @param k The strike
+     * @param t The time to expiry in years
+     * @param r The risk free rate
+     * @param q The dividend yield
+     * @param guess The starting volatility, usually the previous solution, NaN to estimate one
+     * @returns The implied volatility, or NaN if no volatility within the search bounds reproduces the price
+     */
+    static double impliedVolatility( boolean call, boolean american, double price, double s, double k, double t, double r, double q, double guess ) {
+        if( !( price > 0 ) || t <= 0 || s <= 0 || k <= 0 )
+            return Double.NaN;
+
+        double low = MIN_VOLATILITY;
+        double high = MAX_VOLATILITY;
+        // Brenner-Subrahmanyam approximation for at the money contracts when there is no previous solution
+        double sigma = guess > low && guess < high ? guess : Math.min( Math.max( Math.sqrt( 2 * Math.PI / t ) * price / s, 0.05 ), 2 );
+
+        for( int i = 0; i < MAX_ITERATIONS; i++ ) {
+            final double error = ( american ? american( call, s, k, t, r, q, sigma ) : european( call, s, k, t, r, q, sigma ) ) - price;
+            if( Math.abs( error ) <= IMPLIED_PRICE_TOLERANCE )
+                return sigma;
+
+            // the price increases with the volatility
+            if( error > 0 )
+                high = sigma;
+            else
+                low = sigma;
+            if( high - low <= IMPLIED_VOLATILITY_TOLERANCE )
+                break;
+
+            final double next = sigma - error / vega( s, k, t, r, q, sigma );
+            sigma = next > low && next < high ? next : ( low + high ) / 2;
+        }
+
+        // the bracket collapsed on a search bound when the price is outside of the attainable range
+        return low > MIN_VOLATILITY && high < MAX_VOLATILITY ? sigma : Double.NaN;
+    }
+
+    /**
+     * Gets the Black-Scholes-Merton vega of a european option
+     */
+    static double vega( double s, double k, double t, double r, double q, double sigma ) {
+        final double sqrtT = Math.sqrt( t );
+        final double d1 = ( Math.log( s / k ) + ( r - q + sigma * sigma / 2 ) * t ) / ( sigma * sqrtT );
+        return s * Math.exp( -q * t ) * normalPdf( d1 ) * sqrtT;
+    }
+
+    /**
+     * Gets the Black-Scholes-Merton price of a european option
+     */
+    static double european( boolean call, double s, double k, double t, double r, double q, double sigma ) {
+        final double sd = sigma * Math.sqrt( t );
+        final double d1 = ( Math.log( s / k ) + ( r - q + sigma * sigma / 2 ) * t ) / sd;
+        final double d2 = d1 - sd;
+        return call
+                ? s * Math.exp( -q * t ) * normalCdf( d1 ) - k * Math.exp( -r * t ) * normalCdf( d2 )
+                : k * Math.exp( -r * t ) * normalCdf( -d2 ) - s * Math.exp( -q * t ) * normalCdf( -d1 );
+    }
+
+    /**
+     * Gets the Barone-Adesi-Whaley price of an american option. Early exercise is ignored when it can't be optimal
+     * (calls without dividends) and with non-positive rates, where the approximation is not defined; the result
+     * is then the european price floored at the intrinsic value.
+     */
+    static double american( boolean call, double s, double k, double t, double r, double q, double sigma ) {
+        final double intrinsic = Math.max( call ? s - k : k - s, 0 );
+        if( r <= 0 || ( call && q <= 0 ) )
+            return Math.max( european( call, s, k, t, r, q, sigma ), intrinsic );
+
+        final double price = call ? baroneAdesiWhaleyCall( s, k, t, r, q, sigma ) : baroneAdesiWhaleyPut( s, k, t, r, q, sigma );
+        return Math.max( price, intrinsic );
+    }
+
+    private static double baroneAdesiWhaleyCall( double s, double k, double t, double r, double q, double sigma ) {
+        final double b = r - q;
+        final double variance = sigma * sigma;
+        final double sd = sigma * Math.sqrt( t );
+        final double n = 2 * b / variance;
+        final double m = 2 * r / variance;
+        final double carry = Math.exp( ( b - r ) * t );
+        final double q2 = ( -( n - 1 ) + Math.sqrt( ( n - 1 ) * ( n - 1 ) + 4 * m / ( 1 - Math.exp( -r * t ) ) ) ) / 2;
+
+        // seed the critical price from the perpetual option and refine it with newton's method
+        final double q2Infinite = ( -( n - 1 ) + Math.sqrt( ( n - 1 ) * ( n - 1 ) + 4 * m ) ) / 2;
+        final double criticalInfinite = k / ( 1 - 1 / q2Infinite );
+        double critical = k + ( criticalInfinite - k ) * ( 1 - Math.exp( -( b * t + 2 * sd ) * k / ( criticalInfinite - k ) ) );
+        double d1 = 0;
+        for( int i = 0; i <= MAX_ITERATIONS; i++ ) {
+            d1 = ( Math.log( critical / k ) + ( b + variance / 2 ) * t ) / sd;
+            final double rhs = european( true, critical, k, t, r, q, sigma ) + ( 1 - carry * normalCdf( d1 ) ) * critical / q2;
+            if( Math.abs( critical - k - rhs ) / k < CRITICAL_PRICE_TOLERANCE || i == MAX_ITERATIONS )
+                break;
+
+            final double slope = carry * normalCdf( d1 ) * ( 1 - 1 / q2 ) + ( 1 - carry * normalPdf( d1 ) / sd ) / q2;
+            critical = ( k + rhs - slope * critical ) / ( 1 - slope );
+        }
+
+        if( s >= critical )
+            return s - k;
+
+        final double a2 = critical / q2 * ( 1 - carry * normalCdf( d1 ) );
+        return european( true, s, k, t, r, q, sigma ) + a2 * Math.pow( s / critical, q2 );
+    }
+
+    private static double baroneAdesiWhaleyPut( double s, double k, double t, double r, double q, double sigma ) {
+        final double b = r - q;
+        final double variance = sigma * sigma;
+        final double sd = sigma * Math.sqrt( t );
+        final double n = 2 * b / variance;
+        final double m = 2 * r / variance;
+        final double carry = Math.exp( ( b - r ) * t );
+        final double q1 = ( -( n - 1 ) - Math.sqrt( ( n - 1 ) * ( n - 1 ) + 4 * m / ( 1 - Math.exp( -r * t ) ) ) ) / 2;
+
+        final double q1Infinite = ( -( n - 1 ) - Math.sqrt( ( n - 1 ) * ( n - 1 ) + 4 * m ) ) / 2;
+        final double criticalInfinite = k / ( 1 - 1 / q1Infinite );
+        double critical = criticalInfinite + ( k - criticalInfinite ) * Math.exp( ( b * t - 2 * sd ) * k / ( k - criticalInfinite ) );
+        double d1 = 0;
+        for( int i = 0; i <= MAX_ITERATIONS; i++ ) {
+            d1 = ( Math.log( critical / k ) + ( b + variance / 2 ) * t ) / sd;
+            final double rhs = european( false, critical, k, t, r, q, sigma ) - ( 1 - carry * normalCdf( -d1 ) ) * critical / q1;
+            if( Math.abs( k - critical - rhs ) / k < CRITICAL_PRICE_TOLERANCE || i == MAX_ITERATIONS )
+                break;
+
+            final double slope = -carry * normalCdf( -d1 ) * ( 1 - 1 / q1 ) - ( 1 + carry * normalPdf( -d1 ) / sd ) / q1;
+            critical = ( k - rhs + slope * critical ) / ( 1 + slope );
+        }
+
+        if( s <= critical )
+            return k - s;
+
+        final double a1 = -critical / q1 * ( 1 - carry * normalCdf( -d1 ) );
+        return european( false, s, k, t, r, q, sigma ) + a1 * Math.pow( s / critical, q1 );
+    }
+
+    /**
+     * Expired contracts and zero volatility: the value is the discounted forward payoff, or the intrinsic value
+     * when that is larger and early exercise is allowed. Only delta is non-zero.
+     */
+    private static void evaluateDegenerate( boolean call, boolean american, double s, double k, double t, double r, double q, double[] out, int offset ) {
+        final double dividendDiscount = Math.exp( -q * t );
+        final double forward = call ? s * dividendDiscount - k * Math.exp( -r * t ) : k * Math.exp( -r * t ) - s * dividendDiscount;
+        final double intrinsic = call ? s - k : k - s;
+
+        if( american && intrinsic > forward && intrinsic > 0 ) {
+            out[offset + PRICE] = intrinsic;
+            out[offset + DELTA] = call ? 1 : -1;
+        }
+        else {
+            out[offset + PRICE] = Math.max( forward, 0 );
+            out[offset + DELTA] = forward > 0 ? ( call ? dividendDiscount : -dividendDiscount ) : 0;
+        }
+        out[offset + VEGA] = 0;
+        out[offset + THETA] = 0;
+        out[offset + RHO] = 0;
+    }
+
+    /**
+     * Gets the standard normal density
+     */
+    static double normalPdf( double x ) {
+        return INV_SQRT_2PI * Math.exp( -x * x / 2 );
+    }
+
+    /**
+     * Gets the standard normal cumulative distribution, accurate to double precision (Hart, 1968)
+     */
+    static double normalCdf( double x ) {
+        final double z = Math.abs( x );
+        double tail;
+        if( z > 37 )
+            tail = 0;
+        else {
+            final double e = Math.exp( -z * z / 2 );
+            if( z < 7.07106781186547 ) {
+                double numerator = 3.52624965998911E-02 * z + 0.700383064443688;
+                numerator = numerator * z + 6.37396220353165;
+                numerator = numerator * z + 33.912866078383;
+                numerator = numerator * z + 112.079291497871;
+                numerator = numerator * z + 221.213596169931;
+                numerator = numerator * z + 220.206867912376;
+                double denominator = 8.83883476483184E-02 * z + 1.75566716318264;
+                denominator = denominator * z + 16.064177579207;
+                denominator = denominator * z + 86.7807322029461;
+                denominator = denominator * z + 296.564248779674;
+                denominator = denominator * z + 637.333633378831;
+                denominator = denominator * z + 793.826512519948;
+                denominator = denominator * z + 440.413735824752;
+                tail = e * numerator / denominator;
+            }
+            else {
+                double fraction = z + 0.65;
+                fraction = z + 4 / fraction;
+                fraction = z + 3 / fraction;
+                fraction = z + 2 / fraction;
+                fraction = z + 1 / fraction;
+                tail = e / fraction / 2.506628274631;
+            }
+        }
+        return x > 0 ? 1 - tail : tail;
+    }
+}
@@ -15,9 +15,17 @@
 
 package com.quantconnect.lean.util;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
 
 /**
@@ -25,39 +33,136 @@ import java.util.function.Function;
  */
 public class ExpressionBuilder {
     
+    // type -> member name -> compiled selector, a ClassValue doesn't keep the types and their class loaders alive
+    private static final ClassValue<ConcurrentMap<String,Function<?,?>>> _selectorsByType = new ClassValue<ConcurrentMap<String,Function<?,?>>>() {
+        @Override
+        protected ConcurrentMap<String,Function<?,?>> computeValue( Class<?> type ) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+    
     private ExpressionBuilder() { }
     
     /**
-     * Constructs a selector of the form: x -> x.propertyOrField where x is an instance of 'type'
+     * Constructs a selector of the form: x -> x.propertyOrField where x is an instance of 'type'.
+     * 
+     * The member is resolved in this order: a public parameterless method named propertyOrField, its java getter,
+     * so a property name ported from C# such as Close binds to getClose(), then a field of the type or of one of
+     * its super classes, whatever its visibility.
+     * 
+     * The selector is compiled once per type and member. Methods are bound through <see cref="LambdaMetafactory"/>,
+     * so applying the selector costs about the same as a direct call, methods this class can't link to, such as the
+     * public methods of a private class, and fields are read through reflection.
      * @param type The type of the parameter in the expression
      * @param propertyOrField The name of the property or field to bind to
      * @returns A new lambda expression that represents accessing the property or field on 'type'
      */
     @SuppressWarnings("unchecked")
     public static <T, TProperty> Function<T,TProperty> makePropertyOrFieldSelector( Class<?extends T> type, String propertyOrField ) {
-        try {
-            final Method accessor = type.getMethod( propertyOrField, new Class[0] );
-            return (Function<T, TProperty>)(t -> {accessor.setAccessible( true ); try {
-                return (TProperty)accessor.invoke( t, new Object[0] );
+        return (Function<T,TProperty>)_selectorsByType.get( type ).computeIfAbsent( propertyOrField, name -> compileSelector( type, name ) );
+    }
+
+    private static Function<?,?> compileSelector( Class<?> type, String propertyOrField ) {
+        final Method accessor = findAccessor( type, propertyOrField );
+        if( accessor != null )
+            return compileMethodSelector( accessor );
+        
+        final Field field = findField( type, propertyOrField );
+        if( field == null )
+            throw new RuntimeException( new NoSuchFieldException( propertyOrField + " is neither a method nor a field of " + type.getName() ) );
+        
+        field.setAccessible( true );
+        return t -> {
+            try {
+                return field.get( t );
             }
-            catch( IllegalAccessException | IllegalArgumentException | InvocationTargetException e ) {
+            catch( IllegalAccessException e ) {
                 throw new RuntimeException( e );
-            } });
+            }
+        };
+    }
+
+    /**
+     * Binds the accessor to a generated <see cref="Function"/> implementation, falling back to reflection when
+     * the accessor isn't reachable from this class
+     */
+    private static Function<?,?> compileMethodSelector( Method accessor ) {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        final CallSite site;
+        try {
+            final MethodHandle handle = lookup.unreflect( accessor );
+            site = LambdaMetafactory.metafactory( lookup, "apply", MethodType.methodType( Function.class ),
+                    MethodType.methodType( Object.class, Object.class ), handle, handle.type().wrap() );
+        }
+        catch( IllegalAccessException | LambdaConversionException e ) {
+            return compileReflectiveSelector( accessor );
+        }
+        
+        try {
+            return (Function<?,?>)site.getTarget().invokeExact();
+        }
+        catch( RuntimeException | Error e ) {
+            throw e;
         }
         catch( Throwable e ) {
+            // the factory of a non-capturing lambda only returns its instance, every method handle declares Throwable
+            throw new IllegalStateException( e );
+        }
+    }
+
+    private static Function<?,?> compileReflectiveSelector( Method accessor ) {
+        accessor.setAccessible( true );
+        return t -> {
+            try {
+                return accessor.invoke( t );
+            }
+            catch( InvocationTargetException e ) {
+                final Throwable cause = e.getCause();
+                if( cause instanceof RuntimeException )
+                    throw (RuntimeException)cause;
+                if( cause instanceof Error )
+                    throw (Error)cause;
+                throw new RuntimeException( cause );
+            }
+            catch( IllegalAccessException e ) {
+                throw new RuntimeException( e );
+            }
+        };
+    }
+
+    /**
+     * Finds a public parameterless method with the specified name, or its getter, e.g. Close -> getClose()
+     */
+    private static Method findAccessor( Class<?> type, String propertyOrField ) {
+        final String getter = "get" + Character.toUpperCase( propertyOrField.charAt( 0 ) ) + propertyOrField.substring( 1 );
+        for( String name : new String[] { propertyOrField, getter } ) {
+            try {
+                final Method method = type.getMethod( name );
+                if( method.getReturnType() != void.class )
+                    return method;
+            }
+            catch( NoSuchMethodException | SecurityException e ) {
+                // try the next candidate
+            }
+        }
+        
+        return null;
+    }
+
+    /**
+     * Finds a field with the specified name in the type or its super classes, private fields included
+     */
+    private static Field findField( Class<?> type, String propertyOrField ) {
+        for( Class<?> current = type; current != null; current = current.getSuperclass() ) {
             try {
-                final Field field = type.getDeclaredField( propertyOrField );
-                return (Function<T, TProperty>)(t -> {field.setAccessible( true ); try {
-                    return (TProperty)field.get( t );
-                }
-                catch( IllegalArgumentException | IllegalAccessException e1 ) {
-                    throw new RuntimeException( e1 );
-                } });
+                return current.getDeclaredField( propertyOrField );
             }
-            catch( NoSuchFieldException | SecurityException e1 ) {
-                throw new RuntimeException( e1 );
+            catch( NoSuchFieldException | SecurityException e ) {
+                // search the super class
             }
         }
+        
+        return null;
     }
 
 //    /**
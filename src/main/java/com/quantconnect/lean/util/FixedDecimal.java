@@ -0,0 +1,243 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Mutable fixed point decimal used for the portfolio running sums. The value is held as a <c>long</c> count of
+ * 10^-scale units, so setting, adding and subtracting values that fit the scale does not allocate a
+ * <see cref="BigDecimal"/>, and reading the value allocates at most once per change.
+ *
+ * Results are always identical to the equivalent chain of <see cref="BigDecimal.add"/>/<see cref="BigDecimal.subtract"/>
+ * calls, scale included: the scale of the operands is tracked the way <see cref="BigDecimal"/> does it. When an
+ * operand has more fractional digits than the configured scale or a sum overflows, the operation is carried out
+ * in <see cref="BigDecimal"/> and the instance returns to fixed point as soon as the result fits again.
+ *
+ * Instances are not thread-safe.
+ */
+public final class FixedDecimal {
+
+    /**
+     * The default number of fractional digits held in fixed point. With 18 digits in a <c>long</c> this leaves 12
+     * integer digits, so values below 10^12 in magnitude with up to 6 fractional digits, cents and 5 decimal forex
+     * prices included, stay in fixed point; anything else is still exact through the <see cref="BigDecimal"/> path.
+     */
+    public static final int DEFAULT_SCALE = 6;
+
+    // longs hold any 18 digit unscaled value without overflow
+    private static final int MAX_DIGITS = 18;
+    private static final long NOT_REPRESENTABLE = Long.MIN_VALUE;
+    private static final long[] POWERS_OF_TEN = new long[MAX_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1L;
+        for( int i = 1; i < POWERS_OF_TEN.length; i++ )
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    private final int scale;
+    private long unscaled;
+    private int resultScale;
+    private BigDecimal exact;
+    private BigDecimal value;
+
+    /**
+     * Initializes a new zero valued instance with the <see cref="DEFAULT_SCALE"/>
+     */
+    public FixedDecimal() {
+        this( DEFAULT_SCALE );
+    }
+
+    /**
+     * Initializes a new zero valued instance
+     * @param scale The number of fractional digits held in fixed point, between 0 and 18. Values stay in fixed point
+     * while they are below 10^(18 - scale) in magnitude.
+     */
+    public FixedDecimal( int scale ) {
+        if( scale < 0 || scale > MAX_DIGITS )
+            throw new IllegalArgumentException( "Scale must be between 0 and " + MAX_DIGITS + ": " + scale );
+
+        this.scale = scale;
+        this.value = BigDecimal.ZERO;
+    }
+
+    /**
+     * Gets the number of fractional digits held in fixed point
+     */
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * Gets whether the value is currently held in fixed point, false while it doesn't fit the scale
+     */
+    public boolean isFixedPoint() {
+        return exact == null;
+    }
+
+    /**
+     * Sets this instance to the specified value
+     * @param value The new value
+     */
+    public void set( BigDecimal value ) {
+        final long units = toUnscaled( value, scale );
+        if( units == NOT_REPRESENTABLE ) {
+            this.exact = value;
+        }
+        else {
+            this.exact = null;
+            this.unscaled = units;
+        }
+        this.resultScale = value.scale();
+        this.value = value;
+    }
+
+    /**
+     * Sets this instance to the value of the specified instance
+     * @param other The instance to copy
+     */
+    public void set( FixedDecimal other ) {
+        if( other.exact == null && other.scale == scale ) {
+            this.exact = null;
+            this.unscaled = other.unscaled;
+            this.resultScale = other.resultScale;
+            this.value = other.value;
+        }
+        else
+            set( other.toBigDecimal() );
+    }
+
+    /**
+     * Adds the specified value to this instance
+     */
+    public void add( BigDecimal value ) {
+        if( exact == null ) {
+            final long units = toUnscaled( value, scale );
+            if( units != NOT_REPRESENTABLE && addUnits( units, value.scale() ) )
+                return;
+        }
+
+        set( toBigDecimal().add( value ) );
+    }
+
+    /**
+     * Subtracts the specified value from this instance
+     */
+    public void subtract( BigDecimal value ) {
+        if( exact == null ) {
+            final long units = toUnscaled( value, scale );
+            if( units != NOT_REPRESENTABLE && addUnits( -units, value.scale() ) )
+                return;
+        }
+
+        set( toBigDecimal().subtract( value ) );
+    }
+
+    /**
+     * Adds the value of the specified instance to this instance
+     */
+    public void add( FixedDecimal other ) {
+        if( exact == null && other.exact == null && other.scale == scale && addUnits( other.unscaled, other.resultScale ) )
+            return;
+
+        set( toBigDecimal().add( other.toBigDecimal() ) );
+    }
+
+    /**
+     * Subtracts the value of the specified instance from this instance
+     */
+    public void subtract( FixedDecimal other ) {
+        if( exact == null && other.exact == null && other.scale == scale && addUnits( -other.unscaled, other.resultScale ) )
+            return;
+
+        set( toBigDecimal().subtract( other.toBigDecimal() ) );
+    }
+
+    /**
+     * Gets the signum of this value
+     */
+    public int signum() {
+        return exact == null ? Long.signum( unscaled ) : exact.signum();
+    }
+
+    /**
+     * Gets the value of this instance, with the scale <see cref="BigDecimal"/> arithmetic would have produced.
+     * The returned instance is reused until the value changes.
+     */
+    public BigDecimal toBigDecimal() {
+        if( value == null ) {
+            // the result scale is the widest operand scale, so the units are an exact multiple of 10^(scale - resultScale)
+            final int shift = scale - resultScale;
+            value = shift >= 0 && shift <= MAX_DIGITS
+                    ? BigDecimal.valueOf( unscaled / POWERS_OF_TEN[shift], resultScale )
+                    : BigDecimal.valueOf( unscaled, scale ).setScale( resultScale, RoundingMode.UNNECESSARY );
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toString();
+    }
+
+    private boolean addUnits( long units, int operandScale ) {
+        final long sum = unscaled + units;
+        // overflow iff both operands have the same sign and the sum's sign differs
+        if( ((unscaled ^ sum) & (units ^ sum)) < 0 || sum == NOT_REPRESENTABLE )
+            return false;
+
+        unscaled = sum;
+        resultScale = Math.max( resultScale, operandScale );
+        value = null;
+        return true;
+    }
+
+    /**
+     * Gets the specified value as a count of 10^-scale units, in long arithmetic on the value's unscaled value
+     * @returns The units, or <see cref="NOT_REPRESENTABLE"/> if the value has more significant fractional digits than
+     * the scale or its units have more than <see cref="MAX_DIGITS"/> digits
+     */
+    private static long toUnscaled( BigDecimal value, int scale ) {
+        if( value.signum() == 0 )
+            return 0L;
+
+        // only trailing zeros can bring a value wider than a long's 18 digits back into range, that rare case allocates
+        if( value.precision() > MAX_DIGITS ) {
+            value = value.stripTrailingZeros();
+            if( value.precision() > MAX_DIGITS )
+                return NOT_REPRESENTABLE;
+        }
+
+        long units = value.unscaledValue().longValue();
+        int valueScale = value.scale();
+
+        // drop trailing zeros beyond the scale
+        while( valueScale > scale ) {
+            if( units % 10 != 0 )
+                return NOT_REPRESENTABLE;
+            units /= 10;
+            valueScale--;
+        }
+
+        final int shift = scale - valueScale;
+        if( shift > MAX_DIGITS || Math.abs( units ) >= POWERS_OF_TEN[MAX_DIGITS - shift] )
+            return NOT_REPRESENTABLE;
+
+        return units * POWERS_OF_TEN[shift];
+    }
+}
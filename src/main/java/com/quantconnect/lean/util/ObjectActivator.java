@@ -19,17 +19,22 @@
 
 package com.quantconnect.lean.util;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Executable;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 import com.quantconnect.lean.SecurityIdentifier;
 import com.quantconnect.lean.Symbol;
@@ -39,8 +44,7 @@ import com.quantconnect.lean.Symbol;
  */
 public /*static*/ class ObjectActivator {
 
-    private static final Object[] _emptyObjectArray = new Object[0];
-    private static final Map<Class<?>,Method> _cloneMethodsByType = new HashMap<>();
+    private static final ConcurrentMap<Class<?>,UnaryOperator<?>> _clonersByType = new ConcurrentHashMap<>();
     private static final ConcurrentMap<Class<?>,Supplier<?>> _activatorsByType = new ConcurrentHashMap<>();
     private static final Set<Class<?>> knownImmutableTypes = new HashSet<>();
     private static final Class<?>[] NO_PARAMETER_ARRAY = new Class[0];
@@ -56,7 +60,8 @@ public /*static*/ class ObjectActivator {
     /**
      * Fast Object Creator from Generic Type:
      * Modified from http://rogeralsing.com/2008/02/28/linq-expressions-creating-objects/
-     * This assumes that the type has a parameterless, default constructor
+     * This assumes that the type has a parameterless, default constructor. The constructor is bound once
+     * through <see cref="LambdaMetafactory"/> so the returned supplier costs about the same as a direct <c>new</c>.
      * @param dataType Class of the object we wish to create
      * @returns Method to return an instance of object
      */
@@ -65,23 +70,9 @@ public /*static*/ class ObjectActivator {
         // if we already have it, just use it
         return (Supplier<T>)_activatorsByType.computeIfAbsent( dataType, dt -> {
             try {
+                //User has forgotten to include a parameterless constructor: getConstructor throws
                 final Constructor<T> ctor = dataType.getConstructor( NO_PARAMETER_ARRAY );
-
-                //User has forgotten to include a parameterless constructor:
-                if( ctor == null )
-                    return null;
-
-                final Supplier<T> factory = () -> {
-                    try {
-                        return ctor.newInstance( _emptyObjectArray );
-                    }
-                    catch( InstantiationException | IllegalAccessException | IllegalArgumentException
-                            | InvocationTargetException e ) {
-                        throw new RuntimeException( e );
-                    }
-                };
-
-                return factory;
+                return bind( ctor, Supplier.class, "get", MethodType.methodType( Object.class ) );
             }
             catch( NoSuchMethodException | SecurityException e ) {
                 throw new RuntimeException( e );
@@ -90,21 +81,75 @@ public /*static*/ class ObjectActivator {
     }
 
     /**
-     * Clones the specified instance using reflection
+     * Clones the specified instance using the type's static <c>getClone</c> method, bound once per type
      * @param instanceToClone The instance to be cloned
      * @returns A field/property wise, non-recursive clone of the instance
      */
     @SuppressWarnings("unchecked")
     public static <T> T clone( final T instanceToClone ) {
         final Class<? extends Object> type = instanceToClone.getClass();
-        final Method method = _cloneMethodsByType.computeIfAbsent( type, t ->
-        Arrays.stream( type.getMethods() ).filter( x -> x.getName().equals( "getClone" ) && x.getParameters().length == 1 ).findFirst().orElse( null ) );
+        final UnaryOperator<T> cloner = (UnaryOperator<T>)_clonersByType.computeIfAbsent( type, t -> {
+            final Method method = Arrays.stream( type.getMethods() )
+                    .filter( x -> x.getName().equals( "getClone" ) && x.getParameters().length == 1 && Modifier.isStatic( x.getModifiers() ) )
+                    .findFirst()
+                    .orElseThrow( () -> new IllegalArgumentException( "No static getClone method found on " + type.getName() ) );
+            
+            return bind( method, UnaryOperator.class, "apply", MethodType.methodType( Object.class, Object.class ) );
+        } );
 
+        return cloner.apply( instanceToClone );
+    }
+
+    /**
+     * Binds the constructor or static method to a generated implementation of the functional interface, falling back
+     * to a method handle adapted once to the erased signature of the interface and invoked exactly, when the member
+     * isn't publicly reachable from here
+     */
+    @SuppressWarnings("unchecked")
+    private static <F> F bind( final Executable member, final Class<F> functionalInterface, final String methodName, final MethodType erasedType ) {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
         try {
-            return (T)method.invoke( null, instanceToClone ); //Static method
+            final MethodHandle handle = member instanceof Constructor ? lookup.unreflectConstructor( (Constructor<?>)member ) : lookup.unreflect( (Method)member );
+            final CallSite site = LambdaMetafactory.metafactory( lookup, methodName, MethodType.methodType( functionalInterface ),
+                    erasedType, handle, handle.type() );
+            return (F)site.getTarget().invoke();
         }
-        catch( IllegalAccessException | IllegalArgumentException | InvocationTargetException e ) {
-            throw new RuntimeException( e );
+        catch( Throwable e ) {
+            try {
+                member.setAccessible( true );
+                final MethodHandle handle = (member instanceof Constructor ? lookup.unreflectConstructor( (Constructor<?>)member ) : lookup.unreflect( (Method)member ) )
+                        .asType( erasedType );
+                if( functionalInterface == Supplier.class ) {
+                    return (F)(Supplier<Object>)() -> {
+                        try {
+                            return (Object)handle.invokeExact();
+                        }
+                        catch( Throwable t ) {
+                            throw propagate( t );
+                        }
+                    };
+                }
+                
+                return (F)(UnaryOperator<Object>)x -> {
+                    try {
+                        return (Object)handle.invokeExact( x );
+                    }
+                    catch( Throwable t ) {
+                        throw propagate( t );
+                    }
+                };
+            }
+            catch( IllegalAccessException | SecurityException e1 ) {
+                throw new RuntimeException( e1 );
+            }
         }
     }
+
+    private static RuntimeException propagate( final Throwable t ) {
+        if( t instanceof RuntimeException )
+            return (RuntimeException)t;
+        if( t instanceof Error )
+            throw (Error)t;
+        return new RuntimeException( t );
+    }
 }
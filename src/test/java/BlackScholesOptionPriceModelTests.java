@@ -0,0 +1,189 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.common.securities.option;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.quantconnect.lean.Global;
+import com.quantconnect.lean.Market;
+import com.quantconnect.lean.OptionRight;
+import com.quantconnect.lean.OptionStyle;
+import com.quantconnect.lean.Resolution;
+import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.data.BaseData;
+import com.quantconnect.lean.data.Slice;
+import com.quantconnect.lean.data.SubscriptionDataConfig;
+import com.quantconnect.lean.data.market.OptionChain;
+import com.quantconnect.lean.data.market.OptionChains;
+import com.quantconnect.lean.data.market.OptionContract;
+import com.quantconnect.lean.data.market.TradeBar;
+import com.quantconnect.lean.securities.Cash;
+import com.quantconnect.lean.securities.CashBook;
+import com.quantconnect.lean.securities.IVolatilityModel;
+import com.quantconnect.lean.securities.Security;
+import com.quantconnect.lean.securities.SecurityExchangeHours;
+import com.quantconnect.lean.securities.SymbolProperties;
+import com.quantconnect.lean.securities.option.BlackScholesOptionPriceModel;
+import com.quantconnect.lean.securities.option.OptionPriceModelResult;
+
+public class BlackScholesOptionPriceModelTests {
+
+    private static final LocalDate EXPIRY = LocalDate.of( 2016, 12, 16 );
+    private static final Symbol CANONICAL = Symbol.create( "SPY", SecurityType.Option, Market.USA );
+    private static final double HOURS_PER_YEAR = 365 * 24;
+
+    private Security security;
+    private ConstantVolatilityModel volatility;
+
+    @Before
+    public void setUp() {
+        final SubscriptionDataConfig config = new SubscriptionDataConfig( TradeBar.class, CANONICAL, Resolution.Minute,
+                Global.NEW_YORK_TZ_ID, Global.NEW_YORK_TZ_ID, true, false, false, false, null, false );
+        security = new Security( SecurityExchangeHours.alwaysOpen( Global.NEW_YORK_TZ_ID ), config,
+                new Cash( CashBook.ACCOUNT_CURRENCY, BigDecimal.ZERO, BigDecimal.ONE ), SymbolProperties.getDefault( CashBook.ACCOUNT_CURRENCY ) );
+        volatility = new ConstantVolatilityModel();
+        security.setVolatilityModel( volatility );
+    }
+
+    /**
+     * Barone-Adesi-Whaley values for the layout of Haug's table in The Complete Guide to Option Pricing Formulas: a strike
+     * of 100, a 10% rate and a zero cost of carry, columns are the underlying prices 90, 100 and 110. The values are those
+     * of Haug's own approximation routine, rounded to 4 decimals.
+     */
+    @Test
+    public void americanContractsMatchTheBaroneAdesiWhaleyTables() {
+        final BlackScholesOptionPriceModel model = new BlackScholesOptionPriceModel( 0.10, 0.10 );
+        final double[] times = { 0.1, 0.1, 0.1, 0.5, 0.5, 0.5 };
+        final double[] volatilities = { 0.15, 0.25, 0.35, 0.15, 0.25, 0.35 };
+        final double[][] calls = {
+            { 0.0206, 1.8769, 10.0061 }, { 0.3159, 3.1277, 10.3901 }, { 0.9495, 4.3777, 11.1679 },
+            { 0.8208, 4.0841, 10.8085 }, { 2.7436, 6.8013, 13.0167 }, { 5.0062, 9.5103, 15.5684 } };
+        final double[][] puts = {
+            { 10.0000, 1.8769, 0.0410 }, { 10.2530, 3.1277, 0.4562 }, { 10.8785, 4.3777, 1.2402 },
+            { 10.5592, 4.0841, 1.0822 }, { 12.4416, 6.8013, 3.3226 }, { 14.6943, 9.5103, 5.8822 } };
+        final double[] spots = { 90, 100, 110 };
+
+        for( int row = 0; row < times.length; row++ ) {
+            for( int column = 0; column < spots.length; column++ ) {
+                final double call = price( model, OptionStyle.AMERICAN, OptionRight.CALL, spots[column], 100, times[row], volatilities[row] );
+                final double put = price( model, OptionStyle.AMERICAN, OptionRight.PUT, spots[column], 100, times[row], volatilities[row] );
+                assertEquals( "call " + row + "/" + column, calls[row][column], call, 1e-4 );
+                assertEquals( "put " + row + "/" + column, puts[row][column], put, 1e-4 );
+            }
+        }
+    }
+
+    @Test
+    public void europeanContractsMatchReferenceValues() {
+        // Haug: S = 60, K = 65, T = 0.25, r = 8%, no dividends, volatility 30%
+        assertEquals( 2.1334, price( new BlackScholesOptionPriceModel( 0.08, 0 ), OptionStyle.EUROPEAN, OptionRight.CALL, 60, 65, 0.25, 0.30 ), 1e-4 );
+        // Haug: S = 75, K = 70, T = 0.5, r = 10%, 5% dividend yield, volatility 35%
+        assertEquals( 4.0870, price( new BlackScholesOptionPriceModel( 0.10, 0.05 ), OptionStyle.EUROPEAN, OptionRight.PUT, 75, 70, 0.5, 0.35 ), 1e-4 );
+    }
+
+    @Test
+    public void europeanContractsRespectPutCallParity() {
+        final double r = 0.05;
+        final double q = 0.02;
+        final BlackScholesOptionPriceModel model = new BlackScholesOptionPriceModel( r, q );
+        for( final double t : new double[] { 0.1, 0.5, 2 } ) {
+            for( final double spot : new double[] { 80, 100, 125 } ) {
+                final double call = price( model, OptionStyle.EUROPEAN, OptionRight.CALL, spot, 100, t, 0.3 );
+                final double put = price( model, OptionStyle.EUROPEAN, OptionRight.PUT, spot, 100, t, 0.3 );
+                assertEquals( spot * Math.exp( -q * t ) - 100 * Math.exp( -r * t ), call - put, 1e-9 );
+            }
+        }
+    }
+
+    @Test
+    public void chainBatchesMatchContractsValuedOnTheirOwn() {
+        final BlackScholesOptionPriceModel batched = new BlackScholesOptionPriceModel( 0.05, 0.02, ForkJoinPool.commonPool(), 1 );
+        final BlackScholesOptionPriceModel single = new BlackScholesOptionPriceModel( 0.05, 0.02 );
+        volatility.volatility = BigDecimal.valueOf( 0.25 );
+
+        final List<OptionContract> contracts = new ArrayList<>();
+        for( int strike = 50; strike <= 150; strike++ ) {
+            contracts.add( contract( OptionStyle.AMERICAN, OptionRight.PUT, strike, 100 ) );
+            contracts.add( contract( OptionStyle.EUROPEAN, OptionRight.CALL, strike, 100 ) );
+        }
+
+        // the chain is valued again as the time moves on
+        for( final double t : new double[] { 0.5, 0.25 } ) {
+            final LocalDateTime time = timeBeforeExpiry( t );
+            // the underlying's price is all the model reads, the canonical symbol stands in for the equity
+            final TradeBar underlying = new TradeBar( time, CANONICAL,
+                    BigDecimal.valueOf( 100 ), BigDecimal.valueOf( 100 ), BigDecimal.valueOf( 100 ), BigDecimal.valueOf( 100 ), 100 );
+            final OptionChain chain = new OptionChain( CANONICAL, time, underlying, Collections.<BaseData>emptyList(), Collections.<BaseData>emptyList(),
+                    contracts, Collections.<Symbol>emptyList() );
+            final OptionChains chains = new OptionChains();
+            chains.put( CANONICAL, chain );
+            final Slice slice = new Slice( time, Collections.<BaseData>emptyList(), null, null, null, chains, null, null, null, null );
+            final Slice empty = new Slice( time, Collections.<BaseData>emptyList() );
+
+            for( final OptionContract contract : contracts ) {
+                final OptionPriceModelResult expected = single.evaluate( security, empty, contract );
+                final OptionPriceModelResult actual = batched.evaluate( security, slice, contract );
+                assertEquals( 0, expected.getTheoreticalPrice().compareTo( actual.getTheoreticalPrice() ) );
+                assertEquals( 0, expected.getGreeks().getDelta().compareTo( actual.getGreeks().getDelta() ) );
+            }
+        }
+    }
+
+    private double price( BlackScholesOptionPriceModel model, OptionStyle style, OptionRight right, double spot, double strike, double years, double sigma ) {
+        volatility.volatility = BigDecimal.valueOf( sigma );
+        final OptionContract contract = contract( style, right, strike, spot );
+        final Slice slice = new Slice( timeBeforeExpiry( years ), Collections.<BaseData>emptyList() );
+        return model.evaluate( security, slice, contract ).getTheoreticalPrice().doubleValue();
+    }
+
+    private static OptionContract contract( OptionStyle style, OptionRight right, double strike, double spot ) {
+        final Symbol symbol = Symbol.createOption( "SPY", Market.USA, style, right, BigDecimal.valueOf( strike ), EXPIRY );
+        final OptionContract contract = new OptionContract( symbol, CANONICAL );
+        contract.setUnderlyingLastPrice( BigDecimal.valueOf( spot ) );
+        return contract;
+    }
+
+    /**
+     * Gets the time the specified number of years before the contracts stop trading, at the close of their expiry date
+     */
+    private static LocalDateTime timeBeforeExpiry( double years ) {
+        return EXPIRY.atTime( 16, 0 ).minusHours( Math.round( years * HOURS_PER_YEAR ) );
+    }
+
+    private static final class ConstantVolatilityModel implements IVolatilityModel {
+        BigDecimal volatility = BigDecimal.ZERO;
+
+        @Override
+        public BigDecimal getVolatility() {
+            return volatility;
+        }
+
+        @Override
+        public void update( Security security, BaseData data ) { }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.common.securities;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import org.junit.Test;
+
+import com.quantconnect.lean.Market;
+import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.orders.OrderEvent;
+import com.quantconnect.lean.orders.OrderTypes.OrderDirection;
+import com.quantconnect.lean.orders.OrderTypes.OrderStatus;
+import com.quantconnect.lean.securities.BuyingPowerLedger;
+
+public class BuyingPowerLedgerTests {
+
+    private static final Symbol EURUSD = Symbol.create( "EURUSD", SecurityType.Forex, Market.FXCM );
+    private static final LocalDateTime TIME = LocalDateTime.of( 2016, 10, 3, 9, 30 );
+
+    @Test
+    public void partialFillReleasesItsShareAndCancelReleasesTheRest() {
+        final BuyingPowerLedger ledger = new BuyingPowerLedger();
+        ledger.reserve( 1, 100, BigDecimal.valueOf( 5000 ) );
+        ledger.reserve( 2, 10, BigDecimal.valueOf( 100 ) );
+        assertAmount( 5100, ledger.getTotalReserved() );
+
+        ledger.onOrderEvent( event( 1, OrderStatus.PartiallyFilled, 40 ) );
+        assertAmount( 3000, ledger.getReserved( 1 ) );
+        assertAmount( 3100, ledger.getTotalReserved() );
+        assertAmount( 100, ledger.getReservedByOthers( 1 ) );
+        assertAmount( 3000, ledger.getReservedByOthers( 2 ) );
+
+        ledger.onOrderEvent( event( 1, OrderStatus.Canceled, 0 ) );
+        assertAmount( 0, ledger.getReserved( 1 ) );
+        assertAmount( 100, ledger.getTotalReserved() );
+    }
+
+    @Test
+    public void fillClosingTheOrderReleasesTheReservation() {
+        final BuyingPowerLedger ledger = new BuyingPowerLedger();
+        ledger.reserve( 1, 100, BigDecimal.valueOf( 5000 ) );
+
+        ledger.onOrderEvent( event( 1, OrderStatus.PartiallyFilled, -60 ) );
+        assertAmount( 2000, ledger.getTotalReserved() );
+
+        ledger.onOrderEvent( event( 1, OrderStatus.Filled, -40 ) );
+        assertAmount( 0, ledger.getTotalReserved() );
+    }
+
+    @Test
+    public void eventsWithoutFillsOrOfUnknownOrdersChangeNothing() {
+        final BuyingPowerLedger ledger = new BuyingPowerLedger();
+        ledger.reserve( 1, 100, BigDecimal.valueOf( 5000 ) );
+
+        ledger.onOrderEvent( event( 1, OrderStatus.Submitted, 0 ) );
+        ledger.onOrderEvent( event( 2, OrderStatus.PartiallyFilled, 10 ) );
+        ledger.onOrderEvent( event( 3, OrderStatus.Canceled, 0 ) );
+        assertAmount( 5000, ledger.getTotalReserved() );
+    }
+
+    @Test
+    public void reservingAgainReplacesThePreviousReservation() {
+        final BuyingPowerLedger ledger = new BuyingPowerLedger();
+        ledger.reserve( 1, 100, BigDecimal.valueOf( 5000 ) );
+        ledger.reserve( 1, 50, BigDecimal.valueOf( 2500 ) );
+        assertAmount( 2500, ledger.getTotalReserved() );
+
+        // an update reducing the order to nothing left to fill releases it
+        ledger.reserve( 1, 0, BigDecimal.ZERO );
+        assertAmount( 0, ledger.getTotalReserved() );
+    }
+
+    private static OrderEvent event( int orderId, OrderStatus status, int fillQuantity ) {
+        final OrderDirection direction = fillQuantity < 0 ? OrderDirection.Sell : OrderDirection.Buy;
+        return new OrderEvent( orderId, EURUSD, TIME, status, direction, BigDecimal.ONE, fillQuantity, BigDecimal.ZERO );
+    }
+
+    private static void assertAmount( long expected, BigDecimal actual ) {
+        assertEquals( 0, BigDecimal.valueOf( expected ).compareTo( actual ) );
+    }
+}
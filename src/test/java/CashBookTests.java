@@ -0,0 +1,120 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.common.securities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+import com.quantconnect.lean.Market;
+import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.data.market.TradeBar;
+import com.quantconnect.lean.securities.Cash;
+import com.quantconnect.lean.securities.CashBook;
+
+public class CashBookTests {
+
+    @Test
+    public void viewsRejectChangesThatWouldBypassTheBook() {
+        final CashBook book = new CashBook();
+        book.add( "EUR", BigDecimal.TEN, new BigDecimal( "1.1" ) );
+
+        assertUnsupported( () -> book.keySet().remove( "EUR" ) );
+        assertUnsupported( () -> book.values().clear() );
+        assertUnsupported( () -> book.entrySet().iterator().next().setValue( new Cash( "EUR", BigDecimal.ONE, BigDecimal.ONE ) ) );
+        assertUnsupported( () -> book.entrySet().removeIf( ( Entry<String,Cash> entry ) -> true ) );
+        assertEquals( 2, book.size() );
+    }
+
+    @Test
+    public void totalValueFollowsChangesMadeThroughTheBook() {
+        final CashBook book = new CashBook();
+        book.add( "EUR", BigDecimal.TEN, new BigDecimal( "1.1" ) );
+        assertAmount( "11", book.getTotalValueInAccountCurrency() );
+
+        book.get( "EUR" ).setAmount( BigDecimal.valueOf( 20 ) );
+        assertAmount( "22", book.getTotalValueInAccountCurrency() );
+
+        book.remove( "EUR" );
+        assertAmount( "0", book.getTotalValueInAccountCurrency() );
+    }
+
+    @Test
+    public void totalValueFollowsConversionRateUpdates() {
+        final Symbol eurusd = Symbol.create( "EURUSD", SecurityType.Forex, Market.FXCM );
+        final CashBook book = new CashBook();
+        book.add( "EUR", BigDecimal.TEN, new BigDecimal( "1.1" ) );
+        assertAmount( "11", book.getTotalValueInAccountCurrency() );
+
+        // the data feed's updates go through the notifying setter
+        final BigDecimal rate = new BigDecimal( "1.2" );
+        book.get( "EUR" ).update( new TradeBar( LocalDateTime.of( 2016, 10, 3, 9, 30 ), eurusd, rate, rate, rate, rate, 0 ) );
+        assertAmount( "12", book.getTotalValueInAccountCurrency() );
+
+        book.get( "EUR" ).setConversionRate( new BigDecimal( "1.3" ) );
+        assertAmount( "13", book.getTotalValueInAccountCurrency() );
+    }
+
+    @Test
+    public void cashBySecuritySymbolIsReadOnly() throws Exception {
+        final Symbol eurusd = Symbol.create( "EURUSD", SecurityType.Forex, Market.FXCM );
+        final CashBook book = new CashBook();
+        final Cash euro = new Cash( "EUR", BigDecimal.TEN, new BigDecimal( "1.1" ) );
+        setSecuritySymbol( euro, eurusd );
+        book.put( "EUR", euro );
+
+        final List<Cash> cash = book.getCashBySecuritySymbol( eurusd );
+        assertEquals( 1, cash.size() );
+        assertUnsupported( () -> cash.clear() );
+        assertUnsupported( () -> cash.add( euro ) );
+        assertUnsupported( () -> book.getCashBySecuritySymbol( Symbol.create( "GBPUSD", SecurityType.Forex, Market.FXCM ) ).add( euro ) );
+
+        // the index still follows the book
+        book.remove( "EUR" );
+        assertEquals( 0, book.getCashBySecuritySymbol( eurusd ).size() );
+    }
+
+    /**
+     * Sets the conversion rate security the way <see cref="Cash.ensureCurrencyDataFeed"/> does, without a data feed
+     */
+    private static void setSecuritySymbol( Cash cash, Symbol symbol ) throws Exception {
+        final Field field = Cash.class.getDeclaredField( "securitySymbol" );
+        field.setAccessible( true );
+        field.set( cash, symbol );
+    }
+
+    private static void assertUnsupported( Runnable change ) {
+        try {
+            change.run();
+            fail( "The view should be read only" );
+        }
+        catch( UnsupportedOperationException e ) {
+            // expected
+        }
+    }
+
+    private static void assertAmount( String expected, BigDecimal actual ) {
+        assertEquals( 0, new BigDecimal( expected ).compareTo( actual ) );
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.common.data.market;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+import com.quantconnect.lean.Market;
+import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.data.market.DataDictionary;
+import com.quantconnect.lean.data.market.TradeBar;
+import com.quantconnect.lean.data.market.TradeBars;
+
+public class DataDictionaryTests {
+
+    private static final LocalDateTime TIME = LocalDateTime.of( 2016, 10, 3, 9, 30 );
+
+    @Test
+    public void putRemoveClearAndIteration() {
+        final TradeBars bars = new TradeBars();
+        final Map<Symbol,TradeBar> expected = new HashMap<>();
+        for( int i = 0; i < 100; i++ ) {
+            final TradeBar bar = tradeBar( symbol( i ) );
+            assertNull( bars.put( bar.getSymbol(), bar ) );
+            expected.put( bar.getSymbol(), bar );
+        }
+
+        // replacing a value returns the previous one
+        final TradeBar replacement = tradeBar( symbol( 0 ) );
+        assertSame( expected.get( symbol( 0 ) ), bars.put( symbol( 0 ), replacement ) );
+        expected.put( symbol( 0 ), replacement );
+
+        for( int i = 0; i < 100; i += 2 )
+            assertSame( expected.remove( symbol( i ) ), bars.remove( symbol( i ) ) );
+        assertNull( bars.remove( symbol( 0 ) ) );
+
+        assertEquals( expected.size(), bars.size() );
+        assertEquals( expected.keySet(), bars.keySet() );
+        final Map<Symbol,TradeBar> iterated = new HashMap<>();
+        for( final Entry<Symbol,TradeBar> entry : bars.entrySet() )
+            assertNull( iterated.put( entry.getKey(), entry.getValue() ) );
+        assertEquals( expected, iterated );
+        assertEquals( expected.size(), bars.values().size() );
+        assertTrue( bars.values().containsAll( expected.values() ) );
+
+        bars.clear();
+        assertTrue( bars.isEmpty() );
+        assertFalse( bars.entrySet().iterator().hasNext() );
+
+        // a cleared dictionary is refilled as a new one
+        final TradeBar bar = tradeBar( symbol( 1 ) );
+        bars.add( bar );
+        assertSame( bar, bars.get( symbol( 1 ) ) );
+        assertEquals( 1, bars.size() );
+    }
+
+    @Test
+    public void readOnlyDictionariesRejectChanges() {
+        final TradeBars bars = new TradeBars();
+        bars.add( tradeBar( symbol( 0 ) ) );
+        final Runnable unlock = bars.lockReadOnly();
+
+        assertUnsupported( () -> bars.put( symbol( 1 ), tradeBar( symbol( 1 ) ) ) );
+        assertUnsupported( () -> bars.remove( symbol( 0 ) ) );
+        assertUnsupported( () -> bars.clear() );
+        assertUnsupported( () -> bars.keySet().clear() );
+        assertUnsupported( () -> bars.values().clear() );
+        assertUnsupported( () -> bars.entrySet().clear() );
+        assertEquals( 1, bars.size() );
+
+        unlock.run();
+        bars.clear();
+        assertTrue( bars.isEmpty() );
+    }
+
+    @Test
+    public void clearShrinksATableThatFellWellBelowItsPeak() throws Exception {
+        final TradeBars bars = new TradeBars();
+        fill( bars, 1000 );
+        bars.clear();
+        final int peakTable = tableLength( bars );
+
+        // a fill close to the peak keeps the table
+        fill( bars, 600 );
+        bars.clear();
+        assertEquals( peakTable, tableLength( bars ) );
+
+        // a fill well below it shrinks the table to that fill's size
+        fill( bars, 10 );
+        bars.clear();
+        assertTrue( tableLength( bars ) < peakTable / 16 );
+
+        // and the table grows again when the symbols come back
+        fill( bars, 1000 );
+        assertEquals( 1000, bars.size() );
+        bars.clear();
+        assertEquals( peakTable, tableLength( bars ) );
+    }
+
+    private static void fill( DataDictionary<TradeBar> bars, int count ) {
+        for( int i = 0; i < count; i++ )
+            bars.add( tradeBar( symbol( i ) ) );
+    }
+
+    /**
+     * The length of the backing open addressing table, private to the dictionary
+     */
+    private static int tableLength( DataDictionary<?> dictionary ) throws Exception {
+        final Field data = DataDictionary.class.getDeclaredField( "data" );
+        data.setAccessible( true );
+        final Object map = data.get( dictionary );
+        final Field n = map.getClass().getDeclaredField( "n" );
+        n.setAccessible( true );
+        return n.getInt( map );
+    }
+
+    private static void assertUnsupported( Runnable change ) {
+        try {
+            change.run();
+            fail( "The dictionary should be read only" );
+        }
+        catch( UnsupportedOperationException e ) {
+            // expected
+        }
+    }
+
+    private static Symbol symbol( int i ) {
+        return Symbol.create( "DATA" + i, SecurityType.Base, Market.USA );
+    }
+
+    private static TradeBar tradeBar( Symbol symbol ) {
+        return new TradeBar( TIME, symbol, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, 1 );
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import com.quantconnect.lean.util.ExpressionBuilder;
+
+public class ExpressionBuilderTests {
+
+    @Test
+    public void publicMethodsAreBoundByNameOrGetter() {
+        final Bar bar = new Bar( BigDecimal.TEN, 7 );
+
+        final Function<Bar,BigDecimal> close = ExpressionBuilder.makePropertyOrFieldSelector( Bar.class, "Close" );
+        assertEquals( BigDecimal.TEN, close.apply( bar ) );
+        final Function<Bar,BigDecimal> getClose = ExpressionBuilder.makePropertyOrFieldSelector( Bar.class, "getClose" );
+        assertEquals( BigDecimal.TEN, getClose.apply( bar ) );
+
+        // a method named like the member wins over the getter, primitives are boxed
+        final Function<Bar,Integer> volume = ExpressionBuilder.makePropertyOrFieldSelector( Bar.class, "volume" );
+        assertEquals( Integer.valueOf( 14 ), volume.apply( bar ) );
+    }
+
+    @Test
+    public void selectorsAreCompiledOncePerTypeAndMember() {
+        assertSame( ExpressionBuilder.makePropertyOrFieldSelector( Bar.class, "Close" ), ExpressionBuilder.makePropertyOrFieldSelector( Bar.class, "Close" ) );
+        assertSame( ExpressionBuilder.makePropertyOrFieldSelector( Bar.class, "getClose" ), ExpressionBuilder.makePropertyOrFieldSelector( Bar.class, "getClose" ) );
+    }
+
+    @Test
+    public void publicMethodsAreCalledWithoutReflection() {
+        final Function<Bar,Object> selector = ExpressionBuilder.makePropertyOrFieldSelector( Bar.class, "Failure" );
+        final StackTraceElement[] trace = failureTrace( selector, new Bar( BigDecimal.ONE, 1 ) );
+
+        // the generated function calls the accessor directly
+        assertFalse( callsThroughReflection( trace ) );
+    }
+
+    @Test
+    public void methodsOfClassesThatCantBeLinkedFallBackToReflection() {
+        final Hidden hidden = new Hidden();
+        final Function<Hidden,String> name = ExpressionBuilder.makePropertyOrFieldSelector( Hidden.class, "Name" );
+        assertEquals( "hidden", name.apply( hidden ) );
+
+        final Function<Hidden,Object> selector = ExpressionBuilder.makePropertyOrFieldSelector( Hidden.class, "Failure" );
+        assertTrue( callsThroughReflection( failureTrace( selector, hidden ) ) );
+    }
+
+    @Test
+    public void fieldsAreReadWhateverTheirVisibility() {
+        final DerivedBar bar = new DerivedBar( BigDecimal.ONE, 3 );
+
+        final Function<DerivedBar,String> label = ExpressionBuilder.makePropertyOrFieldSelector( DerivedBar.class, "label" );
+        assertEquals( "derived", label.apply( bar ) );
+
+        // a private field of a super class
+        final Function<DerivedBar,BigDecimal> close = ExpressionBuilder.makePropertyOrFieldSelector( DerivedBar.class, "close" );
+        assertEquals( BigDecimal.ONE, close.apply( bar ) );
+        final Function<DerivedBar,Integer> shares = ExpressionBuilder.makePropertyOrFieldSelector( DerivedBar.class, "shares" );
+        assertEquals( Integer.valueOf( 3 ), shares.apply( bar ) );
+    }
+
+    @Test
+    public void missingMembersAreRejected() {
+        try {
+            ExpressionBuilder.makePropertyOrFieldSelector( Bar.class, "Open" );
+            fail();
+        }
+        catch( RuntimeException e ) {
+            assertTrue( e.getCause() instanceof NoSuchFieldException );
+        }
+
+        // void methods aren't selectors
+        try {
+            ExpressionBuilder.makePropertyOrFieldSelector( Bar.class, "reset" );
+            fail();
+        }
+        catch( RuntimeException e ) {
+            assertTrue( e.getCause() instanceof NoSuchFieldException );
+        }
+    }
+
+    private static <T> StackTraceElement[] failureTrace( Function<T,Object> selector, T instance ) {
+        try {
+            selector.apply( instance );
+        }
+        catch( IllegalStateException e ) {
+            // the accessor's exception isn't wrapped
+            assertEquals( "failure", e.getMessage() );
+            return e.getStackTrace();
+        }
+        throw new AssertionError( "the accessor didn't throw" );
+    }
+
+    private static boolean callsThroughReflection( StackTraceElement[] trace ) {
+        // only the frames between the accessor and this test count, the test runner calls the tests through reflection
+        for( final StackTraceElement element : trace ) {
+            if( element.getClassName().equals( ExpressionBuilderTests.class.getName() ) )
+                return false;
+            if( element.getClassName().equals( "java.lang.reflect.Method" ) && element.getMethodName().equals( "invoke" ) )
+                return true;
+        }
+        return false;
+    }
+
+    public static class Bar {
+        private final BigDecimal close;
+        private final int shares;
+
+        public Bar( BigDecimal close, int shares ) {
+            this.close = close;
+            this.shares = shares;
+        }
+
+        public BigDecimal getClose() {
+            return close;
+        }
+
+        public int volume() {
+            return shares * 2;
+        }
+
+        public int getVolume() {
+            return shares;
+        }
+
+        public Object getFailure() {
+            throw new IllegalStateException( "failure" );
+        }
+
+        public void reset() { }
+    }
+
+    public static class DerivedBar extends Bar {
+        protected String label = "derived";
+
+        public DerivedBar( BigDecimal close, int shares ) {
+            super( close, shares );
+        }
+    }
+
+    private static class Hidden {
+        @SuppressWarnings("unused")
+        public String getName() {
+            return "hidden";
+        }
+
+        @SuppressWarnings("unused")
+        public Object getFailure() {
+            throw new IllegalStateException( "failure" );
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.quantconnect.lean.util.FixedDecimal;
+
+public class FixedDecimalTests {
+
+    @Test
+    public void matchesBigDecimalArithmeticIncludingScale() {
+        final Random random = new Random( 20161018 );
+        for( int iteration = 0; iteration < 200; iteration++ ) {
+            final FixedDecimal fixed = new FixedDecimal();
+            BigDecimal expected = BigDecimal.ZERO;
+            for( int i = 0; i < 500; i++ ) {
+                final BigDecimal operand = randomOperand( random );
+                if( random.nextBoolean() ) {
+                    fixed.add( operand );
+                    expected = expected.add( operand );
+                }
+                else {
+                    fixed.subtract( operand );
+                    expected = expected.subtract( operand );
+                }
+
+                assertEquals( expected, fixed.toBigDecimal() );
+                assertEquals( expected.signum(), fixed.signum() );
+            }
+        }
+    }
+
+    @Test
+    public void addsOtherInstancesLikeBigDecimal() {
+        final Random random = new Random( 7 );
+        final FixedDecimal total = new FixedDecimal();
+        final FixedDecimal operand = new FixedDecimal();
+        BigDecimal expected = BigDecimal.ZERO;
+        for( int i = 0; i < 10000; i++ ) {
+            final BigDecimal value = randomOperand( random );
+            operand.set( value );
+            if( random.nextBoolean() ) {
+                total.add( operand );
+                expected = expected.add( value );
+            }
+            else {
+                total.subtract( operand );
+                expected = expected.subtract( value );
+            }
+
+            assertEquals( expected, total.toBigDecimal() );
+        }
+    }
+
+    @Test
+    public void matchesRoundedDivisionResults() {
+        // typical accounting values: a HALF_UP divide keeps the dividend's scale
+        final FixedDecimal fixed = new FixedDecimal();
+        BigDecimal expected = BigDecimal.ZERO;
+        for( int i = 1; i < 1000; i++ ) {
+            final BigDecimal value = BigDecimal.valueOf( i * 1234567L, 4 ).divide( BigDecimal.valueOf( i % 7 + 1 ), RoundingMode.HALF_UP );
+            fixed.add( value );
+            expected = expected.add( value );
+        }
+
+        assertTrue( fixed.isFixedPoint() );
+        assertEquals( expected, fixed.toBigDecimal() );
+    }
+
+    @Test
+    public void fallsBackOnOverflowAndReturnsToFixedPoint() {
+        final FixedDecimal fixed = new FixedDecimal( 2 );
+        final BigDecimal large = new BigDecimal( "9000000000000000.00" );
+        BigDecimal expected = BigDecimal.ZERO;
+
+        // 9E17 units per addition, a long overflows on the eleventh
+        for( int i = 0; i < 10; i++ ) {
+            fixed.add( large );
+            expected = expected.add( large );
+            assertTrue( fixed.isFixedPoint() );
+        }
+
+        fixed.add( large );
+        expected = expected.add( large );
+        assertFalse( fixed.isFixedPoint() );
+        assertEquals( expected, fixed.toBigDecimal() );
+
+        for( int i = 0; i < 10; i++ ) {
+            fixed.subtract( large );
+            expected = expected.subtract( large );
+        }
+        assertTrue( fixed.isFixedPoint() );
+        assertEquals( expected, fixed.toBigDecimal() );
+    }
+
+    @Test
+    public void fallsBackWhenOperandExceedsScale() {
+        final FixedDecimal fixed = new FixedDecimal( 2 );
+        fixed.add( new BigDecimal( "1.005" ) );
+        assertFalse( fixed.isFixedPoint() );
+        assertEquals( new BigDecimal( "1.005" ), fixed.toBigDecimal() );
+
+        // trailing zeros beyond the scale are representable
+        fixed.set( new BigDecimal( "1.5000" ) );
+        assertTrue( fixed.isFixedPoint() );
+        fixed.add( new BigDecimal( "2.25" ) );
+        assertEquals( new BigDecimal( "3.7500" ), fixed.toBigDecimal() );
+    }
+
+    @Test
+    public void defaultScaleHoldsPortfolioSizedValues() {
+        // a hundred billion dollars of holdings priced to the forex pip stay in fixed point
+        final FixedDecimal fixed = new FixedDecimal();
+        final BigDecimal value = new BigDecimal( "99999999999.12345" );
+        fixed.add( value );
+        fixed.add( value );
+        fixed.subtract( new BigDecimal( "0.000001" ) );
+        assertTrue( fixed.isFixedPoint() );
+        assertEquals( value.add( value ).subtract( new BigDecimal( "0.000001" ) ), fixed.toBigDecimal() );
+
+        // the magnitude the default scale leaves room for
+        fixed.set( new BigDecimal( "999999999999.999999" ) );
+        assertTrue( fixed.isFixedPoint() );
+        fixed.set( new BigDecimal( "1000000000000" ) );
+        assertFalse( fixed.isFixedPoint() );
+        fixed.set( new BigDecimal( "-999999999999.999999" ) );
+        assertTrue( fixed.isFixedPoint() );
+        fixed.set( new BigDecimal( "-1000000000000.000000" ) );
+        assertFalse( fixed.isFixedPoint() );
+    }
+
+    @Test
+    public void trailingZerosBeyondALongStayInFixedPoint() {
+        final FixedDecimal fixed = new FixedDecimal();
+        final BigDecimal wide = new BigDecimal( "12.500000000000000000000" );
+        fixed.set( wide );
+        assertTrue( fixed.isFixedPoint() );
+        assertEquals( wide, fixed.toBigDecimal() );
+
+        fixed.add( new BigDecimal( "1E+3" ) );
+        assertTrue( fixed.isFixedPoint() );
+        assertEquals( wide.add( new BigDecimal( "1E+3" ) ), fixed.toBigDecimal() );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void rejectsScaleBeyondLongPrecision() {
+        new FixedDecimal( 19 );
+    }
+
+    private static BigDecimal randomOperand( Random random ) {
+        switch( random.nextInt( 6 ) ) {
+            case 0:
+                // more fractional digits than the default scale
+                return BigDecimal.valueOf( random.nextLong(), 12 + random.nextInt( 4 ) );
+            case 1:
+                // large enough to overflow a long once scaled
+                return new BigDecimal( random.nextLong() ).multiply( BigDecimal.valueOf( 1000 ) );
+            case 2:
+                return BigDecimal.valueOf( random.nextInt( 1000 ), -random.nextInt( 3 ) );
+            case 3:
+                // trailing zeros beyond the default scale
+                return BigDecimal.valueOf( random.nextInt(), random.nextInt( 5 ) ).setScale( 7 + random.nextInt( 20 ) );
+            default:
+                return BigDecimal.valueOf( random.nextInt(), random.nextInt( 11 ) );
+        }
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.common.securities.option;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.quantconnect.lean.Global;
+import com.quantconnect.lean.Market;
+import com.quantconnect.lean.OptionRight;
+import com.quantconnect.lean.OptionStyle;
+import com.quantconnect.lean.Resolution;
+import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.data.BaseData;
+import com.quantconnect.lean.data.Slice;
+import com.quantconnect.lean.data.SubscriptionDataConfig;
+import com.quantconnect.lean.data.market.OptionChain;
+import com.quantconnect.lean.data.market.OptionContract;
+import com.quantconnect.lean.data.market.TradeBar;
+import com.quantconnect.lean.securities.Cash;
+import com.quantconnect.lean.securities.CashBook;
+import com.quantconnect.lean.securities.IVolatilityModel;
+import com.quantconnect.lean.securities.Security;
+import com.quantconnect.lean.securities.SecurityExchangeHours;
+import com.quantconnect.lean.securities.SymbolProperties;
+import com.quantconnect.lean.securities.option.BlackScholesOptionPriceModel;
+import com.quantconnect.lean.securities.option.ImpliedVolatilitySurface;
+
+public class ImpliedVolatilitySurfaceTests {
+
+    private static final Symbol CANONICAL = Symbol.create( "SPY", SecurityType.Option, Market.USA );
+    private static final LocalDateTime TIME = LocalDateTime.of( 2016, 10, 3, 10, 0 );
+    private static final LocalDate NEAR = LocalDate.of( 2016, 11, 18 );
+    private static final LocalDate FAR = LocalDate.of( 2016, 12, 16 );
+    private static final double RATE = 0.05;
+    private static final double DIVIDENDS = 0.02;
+    private static final double SECONDS_PER_YEAR = 365.0 * 24 * 60 * 60;
+
+    private final BlackScholesOptionPriceModel model = new BlackScholesOptionPriceModel( RATE, DIVIDENDS );
+    private Security security;
+    private ConstantVolatilityModel volatility;
+
+    @Before
+    public void setUp() {
+        final SubscriptionDataConfig config = new SubscriptionDataConfig( TradeBar.class, CANONICAL, Resolution.Minute,
+                Global.NEW_YORK_TZ_ID, Global.NEW_YORK_TZ_ID, true, false, false, false, null, false );
+        security = new Security( SecurityExchangeHours.alwaysOpen( Global.NEW_YORK_TZ_ID ), config,
+                new Cash( CashBook.ACCOUNT_CURRENCY, BigDecimal.ZERO, BigDecimal.ONE ), SymbolProperties.getDefault( CashBook.ACCOUNT_CURRENCY ) );
+        volatility = new ConstantVolatilityModel();
+        security.setVolatilityModel( volatility );
+    }
+
+    @Test
+    public void impliedVolatilitiesRepriceTheContracts() {
+        for( final double sigma : new double[] { 0.1, 0.3, 0.8 } ) {
+            final List<OptionContract> contracts = new ArrayList<>();
+            for( final OptionStyle style : OptionStyle.values() ) {
+                for( final OptionRight right : OptionRight.values() ) {
+                    for( final double strike : new double[] { 80, 95, 100, 105, 120 } )
+                        contracts.add( quoted( style, right, strike, NEAR, 100, sigma, TIME ) );
+                }
+            }
+
+            final ImpliedVolatilitySurface surface = new ImpliedVolatilitySurface( RATE, DIVIDENDS );
+            assertEquals( contracts.size(), surface.update( chain( TIME, 100, contracts ) ) );
+            for( final OptionContract contract : contracts ) {
+                final double implied = surface.getImpliedVolatility( contract.getSymbol() );
+                final double intrinsic = Math.max( contract.getRight() == OptionRight.CALL ? 100 - contract.getStrike().doubleValue() : contract.getStrike().doubleValue() - 100, 0 );
+                if( contract.getBidPrice().doubleValue() == intrinsic ) {
+                    // an american contract worth its exercise value has no time value to solve a volatility from
+                    assertTrue( describe( contract ), Double.isNaN( implied ) );
+                    continue;
+                }
+                assertEquals( describe( contract ), contract.getBidPrice().doubleValue(), reprice( contract, 100, implied, TIME ), 1e-6 );
+                // far from the money at a low volatility the vega vanishes, a range of volatilities reproduces the price
+                if( sigma > 0.2 || Math.abs( contract.getStrike().doubleValue() - 100 ) < 10 )
+                    assertEquals( describe( contract ), sigma, implied, 1e-5 );
+            }
+        }
+    }
+
+    @Test
+    public void solverConvergesOnDeepAndNearExpiryContracts() {
+        final LocalDateTime lastDay = NEAR.atTime( 10, 0 ).minusDays( 1 );
+        final List<OptionContract> contracts = Arrays.asList(
+                // deep in and out of the money
+                quoted( OptionStyle.EUROPEAN, OptionRight.CALL, 50, NEAR, 100, 0.4, TIME ),
+                quoted( OptionStyle.EUROPEAN, OptionRight.PUT, 200, NEAR, 100, 0.4, TIME ),
+                quoted( OptionStyle.AMERICAN, OptionRight.CALL, 50, NEAR, 100, 0.4, TIME ),
+                quoted( OptionStyle.EUROPEAN, OptionRight.CALL, 140, NEAR, 100, 0.4, TIME ),
+                quoted( OptionStyle.AMERICAN, OptionRight.PUT, 70, NEAR, 100, 0.4, TIME ) );
+        final List<OptionContract> expiring = Arrays.asList(
+                quoted( OptionStyle.EUROPEAN, OptionRight.CALL, 100, NEAR, 100, 0.25, lastDay ),
+                quoted( OptionStyle.AMERICAN, OptionRight.PUT, 100, NEAR, 100, 0.25, lastDay ),
+                quoted( OptionStyle.EUROPEAN, OptionRight.PUT, 97, NEAR, 100, 0.25, lastDay ) );
+
+        final ImpliedVolatilitySurface surface = new ImpliedVolatilitySurface( RATE, DIVIDENDS );
+        surface.update( chain( TIME, 100, contracts ) );
+        for( final OptionContract contract : contracts ) {
+            final double implied = surface.getImpliedVolatility( contract.getSymbol() );
+            assertEquals( describe( contract ), contract.getBidPrice().doubleValue(), reprice( contract, 100, implied, TIME ), 1e-6 );
+        }
+
+        final ImpliedVolatilitySurface expiringSurface = new ImpliedVolatilitySurface( RATE, DIVIDENDS );
+        expiringSurface.update( chain( lastDay, 100, expiring ) );
+        for( final OptionContract contract : expiring ) {
+            final double implied = expiringSurface.getImpliedVolatility( contract.getSymbol() );
+            assertEquals( describe( contract ), 0.25, implied, 1e-4 );
+            assertEquals( describe( contract ), contract.getBidPrice().doubleValue(), reprice( contract, 100, implied, lastDay ), 1e-6 );
+        }
+    }
+
+    @Test
+    public void solverRecoversFromAFarWarmStart() {
+        final ImpliedVolatilitySurface surface = new ImpliedVolatilitySurface( RATE, DIVIDENDS );
+        final OptionContract contract = quoted( OptionStyle.EUROPEAN, OptionRight.CALL, 130, NEAR, 100, 3.0, TIME );
+        surface.update( chain( TIME, 100, Collections.singletonList( contract ) ) );
+        assertEquals( 3.0, surface.getImpliedVolatility( contract.getSymbol() ), 1e-5 );
+
+        // a Newton step from 300% overshoots below zero, the bracket falls back to bisection
+        final LocalDateTime later = TIME.plusMinutes( 1 );
+        setPrice( contract, price( contract, 100, 0.15, later ) );
+        assertEquals( 1, surface.update( chain( later, 100, Collections.singletonList( contract ) ) ) );
+        final double implied = surface.getImpliedVolatility( contract.getSymbol() );
+        assertEquals( contract.getBidPrice().doubleValue(), reprice( contract, 100, implied, later ), 1e-7 );
+        assertEquals( 0.15, implied, 1e-3 );
+    }
+
+    @Test
+    public void pricesOutsideOfTheAttainableRangeHaveNoSolution() {
+        final OptionContract belowIntrinsic = quoted( OptionStyle.EUROPEAN, OptionRight.CALL, 80, NEAR, 100, 0.3, TIME );
+        setPrice( belowIntrinsic, 15 );
+        final OptionContract aboveUnderlying = quoted( OptionStyle.EUROPEAN, OptionRight.CALL, 100, NEAR, 100, 0.3, TIME );
+        setPrice( aboveUnderlying, 150 );
+
+        final ImpliedVolatilitySurface surface = new ImpliedVolatilitySurface( RATE, DIVIDENDS );
+        surface.update( chain( TIME, 100, Arrays.asList( belowIntrinsic, aboveUnderlying ) ) );
+        assertTrue( Double.isNaN( surface.getImpliedVolatility( belowIntrinsic.getSymbol() ) ) );
+        assertTrue( Double.isNaN( surface.getImpliedVolatility( aboveUnderlying.getSymbol() ) ) );
+        assertTrue( Double.isNaN( surface.getVolatility( BigDecimal.valueOf( 100 ), NEAR ) ) );
+    }
+
+    @Test
+    public void onlyChangedContractsAreSolvedAgain() {
+        final List<OptionContract> contracts = new ArrayList<>();
+        for( final double strike : new double[] { 90, 95, 100, 105, 110 } )
+            contracts.add( quoted( OptionStyle.EUROPEAN, OptionRight.CALL, strike, NEAR, 100, 0.3, TIME ) );
+
+        final ImpliedVolatilitySurface surface = new ImpliedVolatilitySurface( RATE, DIVIDENDS );
+        assertEquals( 5, surface.update( chain( TIME, 100, contracts ) ) );
+
+        // nothing changed
+        final LocalDateTime second = TIME.plusMinutes( 1 );
+        assertEquals( 0, surface.update( chain( second, 100, contracts ) ) );
+
+        // one quote changed
+        final OptionContract changed = contracts.get( 2 );
+        setPrice( changed, price( changed, 100, 0.35, second.plusMinutes( 1 ) ) );
+        assertEquals( 1, surface.update( chain( second.plusMinutes( 1 ), 100, contracts ) ) );
+        assertEquals( 0.35, surface.getImpliedVolatility( changed.getSymbol() ), 1e-5 );
+        assertEquals( 0.3, surface.getImpliedVolatility( contracts.get( 1 ).getSymbol() ), 1e-5 );
+
+        // the underlying moved, every contract is solved again
+        assertEquals( 5, surface.update( chain( second.plusMinutes( 2 ), 100.2, contracts ) ) );
+
+        // a new day, every contract is solved again with the shorter time to expiry
+        assertEquals( 5, surface.update( chain( TIME.plusDays( 1 ), 100.2, contracts ) ) );
+        final double lowest = surface.getImpliedVolatility( contracts.get( 0 ).getSymbol() );
+        assertEquals( lowest, surface.getVolatility( BigDecimal.valueOf( 80 ), NEAR ), 0 );
+
+        // contracts missing from the chain are dropped, from the surface too
+        final OptionContract dropped = contracts.remove( 0 );
+        assertEquals( 0, surface.update( chain( TIME.plusDays( 1 ).plusMinutes( 1 ), 100.2, contracts ) ) );
+        assertTrue( Double.isNaN( surface.getImpliedVolatility( dropped.getSymbol() ) ) );
+        assertEquals( surface.getImpliedVolatility( contracts.get( 0 ).getSymbol() ), surface.getVolatility( BigDecimal.valueOf( 80 ), NEAR ), 0 );
+    }
+
+    @Test
+    public void surfaceInterpolatesStrikesLinearlyAndExpiriesInTotalVariance() {
+        final double[] strikes = { 90, 100, 110 };
+        final double[] nearVolatilities = { 0.30, 0.25, 0.28 };
+        final double[] farVolatilities = { 0.27, 0.22, 0.26 };
+        final OptionContract[] near = new OptionContract[strikes.length];
+        final OptionContract[] far = new OptionContract[strikes.length];
+        final List<OptionContract> contracts = new ArrayList<>();
+        for( int i = 0; i < strikes.length; i++ ) {
+            near[i] = quoted( OptionStyle.EUROPEAN, OptionRight.CALL, strikes[i], NEAR, 100, nearVolatilities[i], TIME );
+            far[i] = quoted( OptionStyle.EUROPEAN, OptionRight.CALL, strikes[i], FAR, 100, farVolatilities[i], TIME );
+            contracts.add( near[i] );
+            contracts.add( far[i] );
+        }
+
+        final ImpliedVolatilitySurface surface = new ImpliedVolatilitySurface( RATE, DIVIDENDS );
+        surface.update( chain( TIME, 100, contracts ) );
+        assertEquals( Arrays.asList( NEAR, FAR ), surface.getExpiries() );
+
+        final double near90 = surface.getImpliedVolatility( near[0].getSymbol() );
+        final double near100 = surface.getImpliedVolatility( near[1].getSymbol() );
+        final double near110 = surface.getImpliedVolatility( near[2].getSymbol() );
+        final double far90 = surface.getImpliedVolatility( far[0].getSymbol() );
+        final double far100 = surface.getImpliedVolatility( far[1].getSymbol() );
+
+        // quoted points and linear interpolation in strike
+        assertEquals( near100, surface.getVolatility( BigDecimal.valueOf( 100 ), NEAR ), 0 );
+        assertEquals( near90 + ( near100 - near90 ) * 0.25, surface.getVolatility( BigDecimal.valueOf( 92.5 ), NEAR ), 1e-12 );
+        assertEquals( near100 + ( near110 - near100 ) * 0.5, surface.getVolatility( BigDecimal.valueOf( 105 ), NEAR ), 1e-12 );
+
+        // beyond the quoted strikes the nearest strike is used
+        assertEquals( near90, surface.getVolatility( BigDecimal.valueOf( 50 ), NEAR ), 0 );
+        assertEquals( near110, surface.getVolatility( BigDecimal.valueOf( 200 ), NEAR ), 0 );
+
+        // before the first and after the last expiry the nearest expiry is used
+        assertEquals( near90, surface.getVolatility( BigDecimal.valueOf( 90 ), NEAR.minusDays( 20 ) ), 0 );
+        assertEquals( far100, surface.getVolatility( BigDecimal.valueOf( 100 ), FAR.plusDays( 60 ) ), 0 );
+
+        // between the expiries the total variance is interpolated linearly in time
+        final LocalDate between = LocalDate.of( 2016, 12, 2 );
+        final double t0 = years( TIME, NEAR );
+        final double t1 = years( TIME, FAR );
+        final double t = years( TIME, between );
+        final double weight = ( t - t0 ) / ( t1 - t0 );
+        final double variance = near90 * near90 * t0 + ( far90 * far90 * t1 - near90 * near90 * t0 ) * weight;
+        assertEquals( Math.sqrt( variance / t ), surface.getVolatility( BigDecimal.valueOf( 90 ), between ), 1e-12 );
+
+        // both interpolations combined, beyond the quoted strikes
+        final double nearEdge = near110;
+        final double farEdge = surface.getImpliedVolatility( far[2].getSymbol() );
+        final double edgeVariance = nearEdge * nearEdge * t0 + ( farEdge * farEdge * t1 - nearEdge * nearEdge * t0 ) * weight;
+        assertEquals( Math.sqrt( edgeVariance / t ), surface.getVolatility( BigDecimal.valueOf( 150 ), between ), 1e-12 );
+    }
+
+    @Test
+    public void surfaceUsesTheOutOfTheMoneyContractAtEachStrike() {
+        final OptionContract lowCall = quoted( OptionStyle.EUROPEAN, OptionRight.CALL, 90, NEAR, 100, 0.35, TIME );
+        final OptionContract lowPut = quoted( OptionStyle.EUROPEAN, OptionRight.PUT, 90, NEAR, 100, 0.30, TIME );
+        final OptionContract highCall = quoted( OptionStyle.EUROPEAN, OptionRight.CALL, 110, NEAR, 100, 0.24, TIME );
+        final OptionContract highPut = quoted( OptionStyle.EUROPEAN, OptionRight.PUT, 110, NEAR, 100, 0.29, TIME );
+
+        final ImpliedVolatilitySurface surface = new ImpliedVolatilitySurface( RATE, DIVIDENDS );
+        surface.update( chain( TIME, 100, Arrays.asList( lowCall, lowPut, highCall, highPut ) ) );
+        assertEquals( surface.getImpliedVolatility( lowPut.getSymbol() ), surface.getVolatility( BigDecimal.valueOf( 90 ), NEAR ), 0 );
+        assertEquals( surface.getImpliedVolatility( highCall.getSymbol() ), surface.getVolatility( BigDecimal.valueOf( 110 ), NEAR ), 0 );
+    }
+
+    /**
+     * Creates a contract quoted at the model price of the specified volatility, with no bid/ask spread
+     */
+    private OptionContract quoted( OptionStyle style, OptionRight right, double strike, LocalDate expiry, double spot, double sigma, LocalDateTime time ) {
+        final Symbol symbol = Symbol.createOption( "SPY", Market.USA, style, right, BigDecimal.valueOf( strike ), expiry );
+        final OptionContract contract = new OptionContract( symbol, CANONICAL );
+        setPrice( contract, price( contract, spot, sigma, time ) );
+        return contract;
+    }
+
+    private double price( OptionContract contract, double spot, double sigma, LocalDateTime time ) {
+        volatility.volatility = BigDecimal.valueOf( sigma );
+        contract.setUnderlyingLastPrice( BigDecimal.valueOf( spot ) );
+        return model.evaluate( security, new Slice( time, Collections.<BaseData>emptyList() ), contract ).getTheoreticalPrice().doubleValue();
+    }
+
+    private double reprice( OptionContract contract, double spot, double sigma, LocalDateTime time ) {
+        final BigDecimal bid = contract.getBidPrice();
+        final double price = price( contract, spot, sigma, time );
+        setPrice( contract, bid.doubleValue() );
+        return price;
+    }
+
+    private static String describe( OptionContract contract ) {
+        return contract.getSymbol().getId().getOptionStyle() + " " + contract.getRight() + " " + contract.getStrike() + " " + contract.getExpiry();
+    }
+
+    private static void setPrice( OptionContract contract, double price ) {
+        contract.setBidPrice( BigDecimal.valueOf( price ) );
+        contract.setAskPrice( BigDecimal.valueOf( price ) );
+        contract.setLastPrice( BigDecimal.valueOf( price ) );
+    }
+
+    private static OptionChain chain( LocalDateTime time, double spot, List<OptionContract> contracts ) {
+        final BigDecimal price = BigDecimal.valueOf( spot );
+        // the underlying's price is all the surface reads, the canonical symbol stands in for the equity
+        final TradeBar underlying = new TradeBar( time, CANONICAL, price, price, price, price, 100 );
+        for( final OptionContract contract : contracts )
+            contract.setUnderlyingLastPrice( price );
+        return new OptionChain( CANONICAL, time, underlying, Collections.<BaseData>emptyList(), Collections.<BaseData>emptyList(),
+                contracts, Collections.<Symbol>emptyList() );
+    }
+
+    private static double years( LocalDateTime time, LocalDate expiry ) {
+        return Duration.between( time, expiry.atTime( 16, 0 ) ).getSeconds() / SECONDS_PER_YEAR;
+    }
+
+    private static final class ConstantVolatilityModel implements IVolatilityModel {
+        BigDecimal volatility = BigDecimal.ZERO;
+
+        @Override
+        public BigDecimal getVolatility() {
+            return volatility;
+        }
+
+        @Override
+        public void update( Security security, BaseData data ) { }
+    }
+}
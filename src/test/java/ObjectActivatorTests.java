@@ -0,0 +1,100 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import com.quantconnect.lean.util.ObjectActivator;
+
+public class ObjectActivatorTests {
+
+    @Test
+    public void activatorCreatesNewInstances() {
+        final Supplier<PublicData> activator = ObjectActivator.getActivator( PublicData.class );
+        final PublicData first = activator.get();
+        final PublicData second = activator.get();
+
+        assertEquals( 42, first.value );
+        assertNotSame( first, second );
+        assertSame( activator, ObjectActivator.getActivator( PublicData.class ) );
+    }
+
+    @Test
+    public void activatorCreatesInstancesOfTypesNotReachableFromTheActivator() {
+        final HiddenData data = ObjectActivator.getActivator( HiddenData.class ).get();
+        assertEquals( 7, data.value );
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void activatorPropagatesConstructorExceptions() {
+        ObjectActivator.getActivator( ThrowingData.class ).get();
+    }
+
+    @Test
+    public void cloneUsesTheTypesGetCloneMethod() {
+        final PublicData original = new PublicData();
+        original.value = 5;
+
+        final PublicData clone = ObjectActivator.clone( original );
+        assertNotSame( original, clone );
+        assertEquals( 5, clone.value );
+    }
+
+    @Test
+    public void cloneWorksForTypesNotReachableFromTheActivator() {
+        final HiddenData original = new HiddenData();
+        original.value = 9;
+
+        final HiddenData clone = ObjectActivator.clone( original );
+        assertNotSame( original, clone );
+        assertEquals( 9, clone.value );
+    }
+
+    public static class PublicData {
+        public int value = 42;
+
+        public static PublicData getClone( PublicData data ) {
+            final PublicData clone = new PublicData();
+            clone.value = data.value;
+            return clone;
+        }
+    }
+
+    // the class is private so the activator falls back to a method handle
+    private static class HiddenData {
+        int value = 7;
+
+        public HiddenData() { }
+
+        public static HiddenData getClone( HiddenData data ) {
+            final HiddenData clone = new HiddenData();
+            clone.value = data.value;
+            return clone;
+        }
+    }
+
+    private static class ThrowingData {
+        public ThrowingData() {
+            throw new IllegalStateException();
+        }
+    }
+}
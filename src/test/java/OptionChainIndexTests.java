@@ -0,0 +1,230 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.common.data.market;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.quantconnect.lean.Market;
+import com.quantconnect.lean.OptionRight;
+import com.quantconnect.lean.OptionStyle;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.data.market.OptionChainIndex;
+
+public class OptionChainIndexTests {
+
+    private static final LocalDate NOVEMBER = LocalDate.of( 2016, 11, 18 );
+    private static final LocalDate DECEMBER = LocalDate.of( 2016, 12, 16 );
+    private static final LocalDate JANUARY = LocalDate.of( 2017, 1, 20 );
+
+    @Test
+    public void expiriesAreACopyOfTheIndex() {
+        final OptionChainIndex index = new OptionChainIndex();
+        index.add( contract( DECEMBER ) );
+        index.add( contract( JANUARY ) );
+
+        final List<LocalDate> expiries = index.getExpiries();
+        assertEquals( Arrays.asList( DECEMBER, JANUARY ), expiries );
+
+        // inserting and removing expiries shifts the index's array, the returned list keeps its content
+        index.add( contract( NOVEMBER ) );
+        index.remove( contract( JANUARY ) );
+        assertEquals( Arrays.asList( DECEMBER, JANUARY ), expiries );
+        assertEquals( Arrays.asList( NOVEMBER, DECEMBER ), index.getExpiries() );
+    }
+
+    @Test
+    public void selectsInclusiveStrikeAndExpiryRanges() {
+        final OptionChainIndex index = new OptionChainIndex();
+        final Symbol call95 = contract( OptionRight.CALL, "95", DECEMBER );
+        final Symbol call100 = contract( OptionRight.CALL, "100", DECEMBER );
+        final Symbol call105 = contract( OptionRight.CALL, "105", DECEMBER );
+        final Symbol put100 = contract( OptionRight.PUT, "100", DECEMBER );
+        final Symbol novemberCall = contract( OptionRight.CALL, "100", NOVEMBER );
+        final Symbol januaryPut = contract( OptionRight.PUT, "105", JANUARY );
+        for( final Symbol symbol : Arrays.asList( januaryPut, call105, put100, call100, novemberCall, call95 ) )
+            assertTrue( index.add( symbol ) );
+        assertFalse( index.add( call100 ) );
+        assertEquals( 6, index.size() );
+
+        // ordered by expiry, then calls before puts, then strike
+        assertEquals( Arrays.asList( novemberCall, call95, call100, call105, put100, januaryPut ),
+                index.select( new BigDecimal( "95" ), new BigDecimal( "105" ), NOVEMBER, JANUARY ) );
+        assertEquals( Arrays.asList( call100, put100 ), index.select( new BigDecimal( "100" ), new BigDecimal( "100" ), DECEMBER, DECEMBER ) );
+        assertEquals( Collections.singletonList( put100 ), index.select( OptionRight.PUT, new BigDecimal( "90" ), new BigDecimal( "100" ), NOVEMBER, DECEMBER ) );
+        assertEquals( Arrays.asList( call100, call105 ), index.select( OptionRight.CALL, new BigDecimal( "99.99999" ), new BigDecimal( "105.00001" ), DECEMBER, DECEMBER ) );
+        assertEquals( Collections.emptyList(), index.select( new BigDecimal( "100.00001" ), new BigDecimal( "104.99999" ), DECEMBER, DECEMBER ) );
+        assertEquals( Collections.emptyList(), index.select( new BigDecimal( "105" ), new BigDecimal( "95" ), NOVEMBER, JANUARY ) );
+        assertEquals( Collections.emptyList(), index.select( new BigDecimal( "95" ), new BigDecimal( "105" ), JANUARY, NOVEMBER ) );
+        assertEquals( Collections.emptyList(), index.select( new BigDecimal( "95" ), new BigDecimal( "105" ), NOVEMBER.plusDays( 1 ), DECEMBER.minusDays( 1 ) ) );
+        assertEquals( 6, index.select( new BigDecimal( "-1E+30" ), new BigDecimal( "1E+30" ), NOVEMBER, JANUARY ).size() );
+    }
+
+    @Test
+    public void strikesCompareExactly() {
+        // 0.1 + 0.2 isn't 0.3 in doubles, the strikes and bounds are compared as decimals
+        final OptionChainIndex index = new OptionChainIndex();
+        final Symbol low = contract( OptionRight.CALL, "0.3", DECEMBER );
+        final Symbol high = contract( OptionRight.CALL, "12.3456", DECEMBER );
+        index.add( low );
+        index.add( high );
+
+        final BigDecimal sum = new BigDecimal( "0.1" ).add( new BigDecimal( "0.2" ) );
+        assertEquals( Collections.singletonList( low ), index.select( sum, sum, DECEMBER, DECEMBER ) );
+        assertEquals( Collections.singletonList( high ), index.select( new BigDecimal( "12.3456" ), new BigDecimal( "12.34560" ), DECEMBER, DECEMBER ) );
+        assertEquals( Collections.emptyList(), index.select( new BigDecimal( "12.34561" ), new BigDecimal( "13" ), DECEMBER, DECEMBER ) );
+        assertEquals( 0, new BigDecimal( "12.0456" ).compareTo( index.getStrikeSpacing() ) );
+    }
+
+    @Test
+    public void removeAndUpdateKeepTheIndexInSyncWithTheContracts() {
+        final OptionChainIndex index = new OptionChainIndex();
+        final Symbol call = contract( OptionRight.CALL, "100", DECEMBER );
+        final Symbol put = contract( OptionRight.PUT, "100", DECEMBER );
+        final Symbol january = contract( OptionRight.CALL, "100", JANUARY );
+        index.update( Arrays.asList( call, put, january ) );
+        assertEquals( Arrays.asList( DECEMBER, JANUARY ), index.getExpiries() );
+
+        assertTrue( index.remove( put ) );
+        assertFalse( index.remove( put ) );
+        assertFalse( index.contains( put ) );
+        assertEquals( Collections.singletonList( call ), index.select( new BigDecimal( "0" ), new BigDecimal( "200" ), DECEMBER, DECEMBER ) );
+
+        // removing the last contract of an expiry removes the expiry
+        assertTrue( index.remove( call ) );
+        assertEquals( Collections.singletonList( JANUARY ), index.getExpiries() );
+
+        // update adds the new contracts and removes the missing ones
+        final Symbol november = contract( OptionRight.PUT, "95", NOVEMBER );
+        index.update( Arrays.asList( november, put, put ) );
+        assertEquals( 2, index.size() );
+        assertTrue( index.contains( put ) );
+        assertFalse( index.contains( january ) );
+        assertEquals( Arrays.asList( NOVEMBER, DECEMBER ), index.getExpiries() );
+
+        index.update( Collections.<Symbol>emptyList() );
+        assertEquals( 0, index.size() );
+        assertEquals( Collections.emptyList(), index.getExpiries() );
+    }
+
+    @Test
+    public void strikeSpacingIsTheSmallestDifferenceBetweenDistinctStrikes() {
+        final OptionChainIndex index = new OptionChainIndex();
+        assertNull( index.getStrikeSpacing() );
+
+        final Symbol call100 = contract( OptionRight.CALL, "100", DECEMBER );
+        index.add( call100 );
+        index.add( contract( OptionRight.PUT, "100", JANUARY ) );
+        // a strike shared by several contracts has no spacing
+        assertNull( index.getStrikeSpacing() );
+
+        index.add( contract( OptionRight.CALL, "110", DECEMBER ) );
+        assertEquals( 0, BigDecimal.TEN.compareTo( index.getStrikeSpacing() ) );
+
+        // strikes of other expiries and rights count too
+        final Symbol put102 = contract( OptionRight.PUT, "102.5", JANUARY );
+        index.add( put102 );
+        assertEquals( 0, new BigDecimal( "2.5" ).compareTo( index.getStrikeSpacing() ) );
+
+        index.remove( put102 );
+        assertEquals( 0, BigDecimal.TEN.compareTo( index.getStrikeSpacing() ) );
+    }
+
+    @Test
+    public void selectMatchesALinearFilterOfTheContracts() {
+        final Random random = new Random( 7 );
+        final LocalDate[] expiries = { NOVEMBER, DECEMBER, JANUARY, JANUARY.plusWeeks( 1 ), JANUARY.plusMonths( 2 ) };
+        final OptionChainIndex index = new OptionChainIndex();
+        final Set<Symbol> contracts = new HashSet<>();
+
+        for( int round = 0; round < 50; round++ ) {
+            // churn the chain, through add and remove or through update
+            for( int i = 0; i < 40; i++ ) {
+                final Symbol symbol = contract( random.nextBoolean() ? OptionRight.CALL : OptionRight.PUT,
+                        BigDecimal.valueOf( 5 * ( 1 + random.nextInt( 200 ) ), 1 ).toPlainString(),
+                        expiries[random.nextInt( expiries.length )] );
+                if( random.nextInt( 3 ) == 0 )
+                    contracts.remove( symbol );
+                else
+                    contracts.add( symbol );
+            }
+            if( round % 2 == 0 )
+                index.update( contracts );
+            else
+                sync( index, contracts );
+            assertEquals( contracts.size(), index.size() );
+
+            for( int query = 0; query < 20; query++ ) {
+                final BigDecimal minStrike = BigDecimal.valueOf( random.nextInt( 10000 ), 2 );
+                final BigDecimal maxStrike = minStrike.add( BigDecimal.valueOf( random.nextInt( 3000 ), 2 ) );
+                final LocalDate minExpiry = NOVEMBER.plusDays( random.nextInt( 120 ) - 10 );
+                final LocalDate maxExpiry = minExpiry.plusDays( random.nextInt( 60 ) );
+                final OptionRight right = random.nextInt( 3 ) == 0 ? null : random.nextBoolean() ? OptionRight.CALL : OptionRight.PUT;
+
+                final List<Symbol> expected = new ArrayList<>();
+                for( final Symbol symbol : contracts ) {
+                    final BigDecimal strike = symbol.getId().getStrikePrice();
+                    final LocalDate expiry = symbol.getId().getDate();
+                    if( ( right == null || symbol.getId().getOptionRight() == right ) && strike.compareTo( minStrike ) >= 0 && strike.compareTo( maxStrike ) <= 0
+                            && !expiry.isBefore( minExpiry ) && !expiry.isAfter( maxExpiry ) )
+                        expected.add( symbol );
+                }
+                expected.sort( INDEX_ORDER );
+
+                assertEquals( expected, index.select( right, minStrike, maxStrike, minExpiry, maxExpiry ) );
+            }
+        }
+    }
+
+    /**
+     * The order of the index's selections, strikes are unique for an expiry and right in these tests
+     */
+    static final Comparator<Symbol> INDEX_ORDER = Comparator.<Symbol,LocalDate>comparing( symbol -> symbol.getId().getDate() )
+            .thenComparing( symbol -> symbol.getId().getOptionRight() )
+            .thenComparing( symbol -> symbol.getId().getStrikePrice() );
+
+    private static void sync( OptionChainIndex index, Set<Symbol> contracts ) {
+        for( final Symbol symbol : contracts )
+            index.add( symbol );
+        for( final Symbol symbol : index.select( new BigDecimal( "-1E+30" ), new BigDecimal( "1E+30" ), LocalDate.MIN, LocalDate.MAX ) ) {
+            if( !contracts.contains( symbol ) )
+                assertTrue( index.remove( symbol ) );
+        }
+    }
+
+    private static Symbol contract( LocalDate expiry ) {
+        return contract( OptionRight.CALL, "100", expiry );
+    }
+
+    private static Symbol contract( OptionRight right, String strike, LocalDate expiry ) {
+        return Symbol.createOption( "SPY", Market.USA, OptionStyle.AMERICAN, right, new BigDecimal( strike ), expiry );
+    }
+}
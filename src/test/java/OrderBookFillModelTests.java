@@ -0,0 +1,244 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.common.orders.fills;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.quantconnect.lean.Global;
+import com.quantconnect.lean.Market;
+import com.quantconnect.lean.Resolution;
+import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.TickType;
+import com.quantconnect.lean.TimeKeeper;
+import com.quantconnect.lean.data.SubscriptionDataConfig;
+import com.quantconnect.lean.data.market.Tick;
+import com.quantconnect.lean.orders.LimitOrder;
+import com.quantconnect.lean.orders.OrderEvent;
+import com.quantconnect.lean.orders.OrderTypes.OrderStatus;
+import com.quantconnect.lean.orders.fees.ConstantFeeModel;
+import com.quantconnect.lean.orders.fills.OrderBookFillModel;
+import com.quantconnect.lean.securities.Cash;
+import com.quantconnect.lean.securities.CashBook;
+import com.quantconnect.lean.securities.Security;
+import com.quantconnect.lean.securities.SecurityExchangeHours;
+import com.quantconnect.lean.securities.SecurityManager;
+import com.quantconnect.lean.securities.SymbolProperties;
+
+public class OrderBookFillModelTests {
+
+    private static final Symbol EURUSD = Symbol.create( "EURUSD", SecurityType.Forex, Market.FXCM );
+    private static final LocalDateTime TIME = LocalDateTime.of( 2016, 10, 3, 9, 30 );
+
+    private Security security;
+
+    @Before
+    public void setUp() {
+        final SubscriptionDataConfig config = new SubscriptionDataConfig( Tick.class, EURUSD, Resolution.Tick,
+                Global.NEW_YORK_TZ_ID, Global.NEW_YORK_TZ_ID, true, false, false, false, null, false );
+        security = new Security( SecurityExchangeHours.alwaysOpen( Global.NEW_YORK_TZ_ID ), config,
+                new Cash( CashBook.ACCOUNT_CURRENCY, BigDecimal.ZERO, BigDecimal.ONE ), SymbolProperties.getDefault( CashBook.ACCOUNT_CURRENCY ) );
+        security.setFeeModel( new ConstantFeeModel( BigDecimal.ZERO ) );
+        new SecurityManager( new TimeKeeper( TIME, Global.NEW_YORK_TZ_ID ) ).add( security );
+    }
+
+    @Test
+    public void tradesAtTheLimitDepleteTheQueueAheadBeforeFilling() {
+        final OrderBookFillModel model = new OrderBookFillModel();
+        quote( model, "100.00", 500, "100.02", 500 );
+
+        // joins the back of the 500 displayed at the bid
+        final TestLimitOrder order = new TestLimitOrder( 1, 100, "100.00" );
+        assertFill( model.limitFill( security, order ), OrderStatus.Submitted, 0, null );
+
+        trade( model, "100.00", 300 );
+        assertFill( model.limitFill( security, order ), OrderStatus.Submitted, 0, null );
+
+        trade( model, "100.00", 250 );
+        assertFill( model.limitFill( security, order ), OrderStatus.PartiallyFilled, 50, "100.00" );
+
+        trade( model, "100.00", 80 );
+        assertFill( model.limitFill( security, order ), OrderStatus.Filled, 50, "100.00" );
+    }
+
+    @Test
+    public void queueAheadShrinksWithTheDisplayedSize() {
+        final OrderBookFillModel model = new OrderBookFillModel();
+        quote( model, "100.00", 500, "100.02", 500 );
+
+        final TestLimitOrder order = new TestLimitOrder( 1, 100, "100.00" );
+        model.limitFill( security, order );
+
+        // orders ahead were canceled, only 100 are left ahead of ours
+        quote( model, "100.00", 100, "100.02", 500 );
+        trade( model, "100.00", 130 );
+        assertFill( model.limitFill( security, order ), OrderStatus.PartiallyFilled, 30, "100.00" );
+    }
+
+    @Test
+    public void tradesThroughTheLimitFillWhateverTheQueue() {
+        final OrderBookFillModel model = new OrderBookFillModel();
+        quote( model, "100.00", 500, "100.02", 500 );
+
+        final TestLimitOrder buy = new TestLimitOrder( 1, 100, "100.00" );
+        final TestLimitOrder sell = new TestLimitOrder( 2, -100, "100.02" );
+        model.limitFill( security, buy );
+        model.limitFill( security, sell );
+
+        trade( model, "99.99", 80 );
+        trade( model, "100.03", 100 );
+        assertFill( model.limitFill( security, buy ), OrderStatus.PartiallyFilled, 80, "100.00" );
+        assertFill( model.limitFill( security, sell ), OrderStatus.Filled, -100, "100.02" );
+    }
+
+    @Test
+    public void participationRateCapsTakingAndTradeFills() {
+        final OrderBookFillModel model = new OrderBookFillModel( 0.1 );
+        quote( model, "100.00", 500, "100.02", 500 );
+
+        // marketable, takes a tenth of the displayed ask
+        final TestLimitOrder buy = new TestLimitOrder( 1, 100, "100.02" );
+        assertFill( model.limitFill( security, buy ), OrderStatus.PartiallyFilled, 50, "100.02" );
+
+        // the ask refreshes, another tenth of it
+        quote( model, "100.00", 500, "100.02", 500 );
+        assertFill( model.limitFill( security, buy ), OrderStatus.Filled, 50, "100.02" );
+
+        // trade fills accumulate their fraction until a whole unit is due
+        final TestLimitOrder sell = new TestLimitOrder( 2, -10, "100.02" );
+        model.limitFill( security, sell );
+        trade( model, "100.03", 5 );
+        assertFill( model.limitFill( security, sell ), OrderStatus.Submitted, 0, null );
+        trade( model, "100.03", 25 );
+        assertFill( model.limitFill( security, sell ), OrderStatus.PartiallyFilled, -3, "100.02" );
+    }
+
+    @Test
+    public void feeIsProratedAcrossPartialFills() {
+        security.setFeeModel( new ConstantFeeModel( BigDecimal.TEN ) );
+        final OrderBookFillModel model = new OrderBookFillModel();
+        quote( model, "100.00", 500, "100.02", 500 );
+
+        final TestLimitOrder order = new TestLimitOrder( 1, 100, "100.00" );
+        model.limitFill( security, order );
+
+        trade( model, "99.99", 30 );
+        final OrderEvent first = model.limitFill( security, order );
+        assertEquals( 0, new BigDecimal( 3 ).compareTo( first.orderFee ) );
+
+        trade( model, "99.99", 45 );
+        final OrderEvent second = model.limitFill( security, order );
+        assertEquals( 0, new BigDecimal( "4.5" ).compareTo( second.orderFee ) );
+
+        // the last fill charges what is left of the order fee
+        trade( model, "99.99", 500 );
+        final OrderEvent last = model.limitFill( security, order );
+        assertFill( last, OrderStatus.Filled, 25, "100.00" );
+        assertEquals( 0, new BigDecimal( "2.5" ).compareTo( last.orderFee ) );
+    }
+
+    @Test
+    public void canceledOrderLeavesTheBookAfterAPartialFill() {
+        final OrderBookFillModel model = new OrderBookFillModel();
+        quote( model, "100.00", 500, "100.02", 500 );
+
+        final TestLimitOrder order = new TestLimitOrder( 1, 100, "100.00" );
+        model.limitFill( security, order );
+        trade( model, "99.99", 40 );
+        assertFill( model.limitFill( security, order ), OrderStatus.PartiallyFilled, 40, "100.00" );
+
+        order.cancel();
+        assertFill( model.limitFill( security, order ), OrderStatus.Canceled, 0, null );
+
+        // the ask drops to the canceled order's limit, it no longer takes the displayed size
+        quote( model, "99.98", 500, "100.00", 200 );
+        final TestLimitOrder other = new TestLimitOrder( 2, 300, "100.00" );
+        assertFill( model.limitFill( security, other ), OrderStatus.PartiallyFilled, 200, "100.00" );
+    }
+
+    @Test
+    public void windowShiftKeepsTheLevelsStillInIt() {
+        final OrderBookFillModel model = new OrderBookFillModel();
+        quote( model, "100.00", 500, null, 0 );
+        // a better bid leaves the deeper level displayed
+        quote( model, "100.05", 300, null, 0 );
+
+        // an ask just past the window moves it up by 512 levels, 100.00 is its lowest level
+        quote( model, null, 0, "105.12", 100 );
+
+        final TestLimitOrder sell = new TestLimitOrder( 1, -800, "100.00" );
+        assertFill( model.limitFill( security, sell ), OrderStatus.Filled, -800, "100.01875" );
+    }
+
+    @Test
+    public void windowShiftDropsTheLevelsLeavingIt() {
+        final OrderBookFillModel model = new OrderBookFillModel();
+        quote( model, null, 0, "100.00", 500 );
+        quote( model, null, 0, "99.95", 200 );
+
+        // a bid just below the window moves it down, 100.00 falls out of it
+        quote( model, "94.87", 100, null, 0 );
+
+        final TestLimitOrder buy = new TestLimitOrder( 1, 1000, "100.00" );
+        assertFill( model.limitFill( security, buy ), OrderStatus.PartiallyFilled, 200, "99.95" );
+    }
+
+    private void quote( OrderBookFillModel model, String bid, long bidSize, String ask, long askSize ) {
+        final Tick tick = new Tick( TIME, EURUSD, price( bid ), price( ask ) );
+        tick.bidSize = bidSize;
+        tick.askSize = askSize;
+        model.update( security, tick );
+    }
+
+    private void trade( OrderBookFillModel model, String price, int quantity ) {
+        final Tick tick = new Tick( TIME, EURUSD, new BigDecimal( price ), BigDecimal.ZERO, BigDecimal.ZERO );
+        tick.tickType = TickType.Trade;
+        tick.quantity = quantity;
+        model.update( security, tick );
+    }
+
+    private static BigDecimal price( String price ) {
+        return price == null ? BigDecimal.ZERO : new BigDecimal( price );
+    }
+
+    private static void assertFill( OrderEvent fill, OrderStatus status, int quantity, String price ) {
+        assertEquals( status, fill.status );
+        assertEquals( quantity, fill.fillQuantity );
+        if( price != null )
+            assertEquals( 0, new BigDecimal( price ).compareTo( fill.fillPrice ) );
+    }
+
+    /**
+     * A limit order with an id whose status the test sets, as the transaction handler would
+     */
+    private static final class TestLimitOrder extends LimitOrder {
+        TestLimitOrder( int id, int quantity, String limitPrice ) {
+            super( EURUSD, quantity, new BigDecimal( limitPrice ), TIME );
+            this.id = id;
+            this.status = OrderStatus.Submitted;
+        }
+
+        void cancel() {
+            status = OrderStatus.Canceled;
+        }
+    }
+}
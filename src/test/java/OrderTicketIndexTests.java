@@ -0,0 +1,188 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.common.securities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.quantconnect.lean.Market;
+import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.orders.OrderEvent;
+import com.quantconnect.lean.orders.OrderResponse;
+import com.quantconnect.lean.orders.OrderResponseErrorCode;
+import com.quantconnect.lean.orders.OrderTicket;
+import com.quantconnect.lean.orders.OrderTypes.OrderDirection;
+import com.quantconnect.lean.orders.OrderTypes.OrderStatus;
+import com.quantconnect.lean.orders.OrderTypes.OrderType;
+import com.quantconnect.lean.orders.SubmitOrderRequest;
+import com.quantconnect.lean.securities.OrderTicketIndex;
+
+public class OrderTicketIndexTests {
+
+    private static final Symbol EURUSD = Symbol.create( "EURUSD", SecurityType.Forex, Market.FXCM );
+    private static final Symbol GBPUSD = Symbol.create( "GBPUSD", SecurityType.Forex, Market.FXCM );
+    private static final LocalDateTime TIME = LocalDateTime.of( 2016, 10, 3, 9, 30 );
+
+    @Test
+    public void closingEventsMoveTicketsOutOfTheOpenTickets() {
+        final OrderTicketIndex index = new OrderTicketIndex();
+        final OrderTicket first = ticket( 1, EURUSD );
+        final OrderTicket second = ticket( 2, EURUSD );
+        index.add( first );
+        index.add( second );
+
+        // events that don't close the order leave it open
+        index.onOrderEvent( event( 1, EURUSD, OrderStatus.Submitted ) );
+        index.onOrderEvent( event( 1, EURUSD, OrderStatus.PartiallyFilled ) );
+        assertEquals( Arrays.asList( first, second ), index.getOpenTickets( EURUSD ) );
+
+        index.onOrderEvent( event( 1, EURUSD, OrderStatus.Filled ) );
+        assertEquals( Collections.singletonList( second ), index.getOpenTickets( EURUSD ) );
+        assertEquals( 1, index.getOpenCount() );
+        assertSame( first, index.get( 1 ) );
+
+        index.onOrderEvent( event( 2, EURUSD, OrderStatus.Canceled ) );
+        assertEquals( Collections.emptyList(), index.getOpenTickets( EURUSD ) );
+        assertEquals( Collections.emptyList(), index.getOpenTickets( null ) );
+        assertEquals( 2, index.getCount() );
+    }
+
+    @Test
+    public void ticketsClosedWhenAddedGoToTheArchive() {
+        final OrderTicketIndex index = new OrderTicketIndex();
+        final SubmitOrderRequest request = request( 1, EURUSD );
+        final OrderTicket invalid = OrderTicket.invalidSubmitRequest( null, request,
+                OrderResponse.error( request, OrderResponseErrorCode.InsufficientBuyingPower, "" ) );
+        index.add( invalid );
+
+        assertEquals( 0, index.getOpenCount() );
+        assertSame( invalid, index.get( 1 ) );
+    }
+
+    @Test
+    public void closingEventsReportedBeforeTheTicketIsAddedAreApplied() {
+        final OrderTicketIndex index = new OrderTicketIndex();
+        index.onOrderEvent( event( 1, EURUSD, OrderStatus.Filled ) );
+
+        final OrderTicket ticket = ticket( 1, EURUSD );
+        index.add( ticket );
+
+        assertEquals( Collections.emptyList(), index.getOpenTickets( null ) );
+        assertSame( ticket, index.get( 1 ) );
+    }
+
+    @Test
+    public void archiveKeepsOnlyTheMostRecentlyClosedTickets() {
+        final OrderTicketIndex index = new OrderTicketIndex( 2 );
+        final OrderTicket open = ticket( 1, EURUSD );
+        index.add( open );
+        for( int id = 2; id <= 5; id++ ) {
+            index.add( ticket( id, EURUSD ) );
+            index.onOrderEvent( event( id, EURUSD, OrderStatus.Filled ) );
+        }
+
+        // open tickets are never evicted, the two most recently closed ones are kept
+        assertSame( open, index.get( 1 ) );
+        assertNull( index.get( 2 ) );
+        assertNull( index.get( 3 ) );
+        assertEquals( 4, index.get( 4 ).getOrderId() );
+        assertEquals( 5, index.get( 5 ).getOrderId() );
+        assertEquals( 5, index.getCount() );
+        assertEquals( Arrays.asList( 1, 4, 5 ), orderIds( index.getTickets( null ) ) );
+    }
+
+    @Test
+    public void queriesMatchAScanOfTheTicketsInSubmissionOrder() {
+        final Random random = new Random( 3 );
+        final OrderTicketIndex index = new OrderTicketIndex();
+        final List<OrderTicket> all = new ArrayList<>();
+        final List<OrderTicket> open = new ArrayList<>();
+
+        // ids are large and sparse so hash order would differ from submission order
+        int id = 0;
+        for( int i = 0; i < 500; i++ ) {
+            id += 1 + random.nextInt( 1000 );
+            final OrderTicket ticket = ticket( id, random.nextBoolean() ? EURUSD : GBPUSD );
+            index.add( ticket );
+            all.add( ticket );
+            open.add( ticket );
+
+            if( random.nextInt( 3 ) == 0 ) {
+                final OrderTicket closed = open.remove( random.nextInt( open.size() ) );
+                index.onOrderEvent( event( closed.getOrderId(), closed.getSymbol(), OrderStatus.Filled ) );
+            }
+        }
+
+        assertEquals( open, index.getOpenTickets( null ) );
+        for( final Symbol symbol : Arrays.asList( EURUSD, GBPUSD ) ) {
+            final List<OrderTicket> expected = new ArrayList<>();
+            for( final OrderTicket ticket : open ) {
+                if( ticket.getSymbol().equals( symbol ) )
+                    expected.add( ticket );
+            }
+            assertEquals( expected, index.getOpenTickets( symbol ) );
+        }
+
+        assertEquals( all, index.getTickets( null ) );
+        final List<OrderTicket> eurusd = new ArrayList<>();
+        for( final OrderTicket ticket : all ) {
+            if( ticket.getSymbol().equals( EURUSD ) )
+                eurusd.add( ticket );
+        }
+        assertEquals( eurusd, index.getTickets( x -> x.getSymbol().equals( EURUSD ) ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void rejectsASecondTicketForAnOrder() {
+        final OrderTicketIndex index = new OrderTicketIndex();
+        index.add( ticket( 1, EURUSD ) );
+        index.add( ticket( 1, EURUSD ) );
+    }
+
+    private static List<Integer> orderIds( List<OrderTicket> tickets ) {
+        final List<Integer> ids = new ArrayList<>();
+        for( final OrderTicket ticket : tickets )
+            ids.add( ticket.getOrderId() );
+        return ids;
+    }
+
+    private static OrderTicket ticket( int orderId, Symbol symbol ) {
+        return new OrderTicket( null, request( orderId, symbol ) );
+    }
+
+    private static SubmitOrderRequest request( int orderId, Symbol symbol ) {
+        final SubmitOrderRequest request = new SubmitOrderRequest( OrderType.Market, SecurityType.Forex, symbol, 100, BigDecimal.ZERO, BigDecimal.ZERO, TIME, "" );
+        request.setOrderId( orderId );
+        return request;
+    }
+
+    private static OrderEvent event( int orderId, Symbol symbol, OrderStatus status ) {
+        final int fillQuantity = status.isFill() ? 100 : 0;
+        return new OrderEvent( orderId, symbol, TIME, status, OrderDirection.Buy, BigDecimal.ONE, fillQuantity, BigDecimal.ZERO );
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.common.orders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.quantconnect.lean.Market;
+import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.orders.CancelOrderRequest;
+import com.quantconnect.lean.orders.OrderEvent;
+import com.quantconnect.lean.orders.OrderResponse;
+import com.quantconnect.lean.orders.OrderResponseErrorCode;
+import com.quantconnect.lean.orders.OrderTicket;
+import com.quantconnect.lean.orders.OrderTypes.OrderDirection;
+import com.quantconnect.lean.orders.OrderTypes.OrderStatus;
+import com.quantconnect.lean.orders.OrderTypes.OrderType;
+import com.quantconnect.lean.orders.SubmitOrderRequest;
+import com.quantconnect.lean.orders.UpdateOrderFields;
+import com.quantconnect.lean.orders.UpdateOrderRequest;
+
+public class OrderTicketTests {
+
+    private static final Symbol EURUSD = Symbol.create( "EURUSD", SecurityType.Forex, Market.FXCM );
+    private static final LocalDateTime TIME = LocalDateTime.of( 2016, 10, 3, 14, 30 );
+
+    @Test
+    public void orderClosedCompletesOnTheClosingEvents() throws Exception {
+        for( final OrderStatus closing : new OrderStatus[] { OrderStatus.Filled, OrderStatus.Canceled, OrderStatus.Invalid } ) {
+            final OrderTicket ticket = ticket( 1, 100 );
+            addOrderEvent( ticket, event( 1, OrderStatus.Submitted, 0, BigDecimal.ZERO ) );
+            addOrderEvent( ticket, event( 1, OrderStatus.PartiallyFilled, 40, BigDecimal.ONE ) );
+            assertFalse( closing.toString(), ticket.getOrderClosed().isDone() );
+
+            addOrderEvent( ticket, event( 1, closing, closing == OrderStatus.Filled ? 60 : 0, BigDecimal.ONE ) );
+            assertSame( closing.toString(), ticket, ticket.getOrderClosed().getNow( null ) );
+        }
+    }
+
+    @Test
+    public void invalidTicketsAreClosedWhenCreated() {
+        final SubmitOrderRequest submit = request( 1, 100 );
+        final List<OrderTicket> tickets = new ArrayList<>();
+        tickets.add( OrderTicket.invalidSubmitRequest( null, submit, OrderResponse.error( submit, OrderResponseErrorCode.InsufficientBuyingPower, "" ) ) );
+        tickets.add( OrderTicket.invalidWarmingUp( null, request( 2, 100 ) ) );
+        tickets.add( OrderTicket.invalidCancelOrderId( null, new CancelOrderRequest( TIME, 3, "" ) ) );
+        tickets.add( OrderTicket.invalidUpdateOrderId( null, new UpdateOrderRequest( TIME, 4, new UpdateOrderFields() ) ) );
+
+        for( final OrderTicket ticket : tickets ) {
+            assertEquals( OrderStatus.Invalid, ticket.getStatus() );
+            assertSame( ticket, ticket.getOrderClosed().getNow( null ) );
+        }
+    }
+
+    @Test
+    public void fillTotalsAreKeptAsEventsAreAdded() throws Exception {
+        final OrderTicket ticket = ticket( 1, -300 );
+        assertEquals( 0, ticket.getQuantityFilled() );
+        assertEquals( 0, ticket.getAverageFillPrice().signum() );
+
+        addOrderEvent( ticket, event( 1, OrderStatus.PartiallyFilled, -100, new BigDecimal( "1.10" ) ) );
+        addOrderEvent( ticket, event( 1, OrderStatus.Filled, -200, new BigDecimal( "1.40" ) ) );
+
+        assertEquals( -300, ticket.getQuantityFilled() );
+        assertEquals( 0, new BigDecimal( "1.30" ).compareTo( ticket.getAverageFillPrice() ) );
+    }
+
+    @Test
+    public void concurrentFillsAreAllAccountedFor() throws Exception {
+        final int threads = 4;
+        final int fillsPerThread = 500;
+        final OrderTicket ticket = ticket( 1, threads * fillsPerThread * 3 );
+        final ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try {
+            final CountDownLatch start = new CountDownLatch( 1 );
+            final List<Future<?>> futures = new ArrayList<>();
+            for( int t = 0; t < threads; t++ ) {
+                final int thread = t;
+                futures.add( executor.submit( () -> {
+                    start.await();
+                    // each thread fills at its own price, with fills of one to three units
+                    for( int i = 0; i < fillsPerThread; i++ )
+                        addOrderEvent( ticket, event( 1, OrderStatus.PartiallyFilled, 1 + i % 3, BigDecimal.valueOf( 10 + thread ) ) );
+                    return null;
+                } ) );
+            }
+            start.countDown();
+            for( final Future<?> future : futures )
+                future.get( 30, TimeUnit.SECONDS );
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        int quantity = 0;
+        BigDecimal weighted = BigDecimal.ZERO;
+        for( int thread = 0; thread < threads; thread++ ) {
+            for( int i = 0; i < fillsPerThread; i++ ) {
+                quantity += 1 + i % 3;
+                weighted = weighted.add( BigDecimal.valueOf( ( 10 + thread ) * ( 1 + i % 3 ) ) );
+            }
+        }
+
+        assertEquals( threads * fillsPerThread, ticket.getOrderEvents().size() );
+        assertEquals( quantity, ticket.getQuantityFilled() );
+        assertEquals( 0, weighted.divide( BigDecimal.valueOf( quantity ), RoundingMode.HALF_UP ).compareTo( ticket.getAverageFillPrice() ) );
+    }
+
+    /**
+     * Adds an event the way the transaction handler does, addOrderEvent is package private
+     */
+    private static void addOrderEvent( OrderTicket ticket, OrderEvent event ) throws Exception {
+        final Method method = OrderTicket.class.getDeclaredMethod( "addOrderEvent", OrderEvent.class );
+        method.setAccessible( true );
+        try {
+            method.invoke( ticket, event );
+        }
+        catch( InvocationTargetException e ) {
+            throw (Exception)e.getCause();
+        }
+    }
+
+    private static OrderTicket ticket( int orderId, int quantity ) {
+        return new OrderTicket( null, request( orderId, quantity ) );
+    }
+
+    private static SubmitOrderRequest request( int orderId, int quantity ) {
+        final SubmitOrderRequest request = new SubmitOrderRequest( OrderType.Market, SecurityType.Forex, EURUSD, quantity, BigDecimal.ZERO, BigDecimal.ZERO, TIME, "" );
+        request.setOrderId( orderId );
+        return request;
+    }
+
+    private static OrderEvent event( int orderId, OrderStatus status, int fillQuantity, BigDecimal fillPrice ) {
+        final OrderDirection direction = fillQuantity < 0 ? OrderDirection.Sell : OrderDirection.Buy;
+        return new OrderEvent( orderId, EURUSD, TIME, status, direction, fillPrice, fillQuantity, BigDecimal.ZERO );
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.common.securities;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.quantconnect.lean.Global;
+import com.quantconnect.lean.Market;
+import com.quantconnect.lean.Resolution;
+import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.TimeKeeper;
+import com.quantconnect.lean.data.SubscriptionDataConfig;
+import com.quantconnect.lean.data.market.TradeBar;
+import com.quantconnect.lean.orders.OrderEvent;
+import com.quantconnect.lean.orders.OrderTypes.OrderDirection;
+import com.quantconnect.lean.orders.OrderTypes.OrderStatus;
+import com.quantconnect.lean.securities.Cash;
+import com.quantconnect.lean.securities.CashBook;
+import com.quantconnect.lean.securities.Security;
+import com.quantconnect.lean.securities.SecurityExchangeHours;
+import com.quantconnect.lean.securities.SecurityManager;
+import com.quantconnect.lean.securities.SecurityPortfolioManager;
+import com.quantconnect.lean.securities.SecurityTransactionManager;
+import com.quantconnect.lean.securities.SymbolProperties;
+
+public class PortfolioTotalsTests {
+
+    private static final Symbol SPX = Symbol.create( "SPX500USD", SecurityType.Cfd, Market.Oanda );
+    private static final Symbol NAS = Symbol.create( "NAS100USD", SecurityType.Cfd, Market.Oanda );
+    private static final Symbol DAX = Symbol.create( "DE30EUR", SecurityType.Cfd, Market.Oanda );
+    private static final LocalDateTime TIME = LocalDateTime.of( 2016, 10, 3, 14, 30 );
+
+    /**
+     * Every portfolio total that is maintained incrementally
+     */
+    private static final List<Function<SecurityPortfolioManager,BigDecimal>> TOTALS = Arrays.asList(
+            SecurityPortfolioManager::getTotalUnleveredAbsoluteHoldingsCost,
+            SecurityPortfolioManager::getTotalAbsoluteHoldingsCost,
+            SecurityPortfolioManager::getTotalHoldingsValue,
+            SecurityPortfolioManager::getTotalPortfolioValue,
+            SecurityPortfolioManager::getTotalUnrealizedProfit,
+            SecurityPortfolioManager::getTotalFees,
+            SecurityPortfolioManager::getTotalProfit,
+            SecurityPortfolioManager::getTotalSaleVolume,
+            SecurityPortfolioManager::getTotalMarginUsed );
+
+    private SecurityManager securities;
+    private SecurityPortfolioManager portfolio;
+    private Cash euro;
+    private Security spx;
+    private Security nas;
+    private Security dax;
+
+    @Before
+    public void setUp() {
+        securities = new SecurityManager( new TimeKeeper( TIME, Global.NEW_YORK_TZ_ID ) );
+        portfolio = new SecurityPortfolioManager( securities, new SecurityTransactionManager( securities ) );
+        portfolio.getCashBook().add( "EUR", BigDecimal.ZERO, new BigDecimal( "1.10" ) );
+        euro = portfolio.getCashBook().get( "EUR" );
+
+        final Cash dollar = portfolio.getCashBook().get( CashBook.ACCOUNT_CURRENCY );
+        spx = addSecurity( SPX, dollar, "200" );
+        nas = addSecurity( NAS, dollar, "100" );
+        dax = addSecurity( DAX, euro, "50" );
+    }
+
+    @Test
+    public void fillsUpdateTheTotals() {
+        fill( SPX, 10, "200", "1" );
+        fill( NAS, -20, "100", "2" );
+        assertTotalsMatchTheRecomputation();
+        assertAmount( "4000", portfolio.getTotalAbsoluteHoldingsCost() );
+        assertAmount( "3", portfolio.getTotalFees() );
+        assertAmount( "4000", portfolio.getTotalSaleVolume() );
+
+        // adding to a position, then closing part of it at a profit
+        fill( SPX, 10, "200", "1" );
+        fill( SPX, -5, "210", "1" );
+        assertTotalsMatchTheRecomputation();
+        assertAmount( "50", portfolio.getTotalProfit() );
+        assertAmount( "5", portfolio.getTotalFees() );
+
+        // closing a position entirely
+        fill( NAS, 20, "100", "2" );
+        assertTotalsMatchTheRecomputation();
+        assertAmount( "3000", portfolio.getTotalAbsoluteHoldingsCost() );
+        assertAmount( "7", portfolio.getTotalFees() );
+    }
+
+    @Test
+    public void aPriceUpdateOnlyMarksThatHoldingDirty() throws Exception {
+        fill( SPX, 10, "200", "0" );
+        fill( NAS, 10, "100", "0" );
+        assertTotalsMatchTheRecomputation();
+        assertEquals( Collections.emptySet(), dirtyHoldings() );
+
+        setPrice( spx, "210" );
+        assertEquals( Collections.singleton( spx.getHoldings() ), dirtyHoldings() );
+
+        // a flat holding's contribution doesn't depend on its price
+        setPrice( dax, "55" );
+        assertEquals( Collections.singleton( spx.getHoldings() ), dirtyHoldings() );
+
+        assertAmount( "100", portfolio.getTotalUnrealizedProfit() );
+        assertEquals( Collections.emptySet(), dirtyHoldings() );
+        assertTotalsMatchTheRecomputation();
+    }
+
+    @Test
+    public void aConversionRateChangeRevaluesTheHoldingsQuotedInThatCurrency() throws Exception {
+        fill( SPX, 10, "200", "0" );
+        fill( DAX, 20, "50", "0" );
+        assertAmount( "3100", portfolio.getTotalHoldingsValue() );
+        assertEquals( Collections.emptySet(), dirtyHoldings() );
+
+        euro.setConversionRate( new BigDecimal( "1.20" ) );
+        assertEquals( Collections.singleton( dax.getHoldings() ), dirtyHoldings() );
+
+        assertAmount( "3200", portfolio.getTotalHoldingsValue() );
+        assertTotalsMatchTheRecomputation();
+
+        // a new price and a new rate for the same holding revalue it once, the dollar holdings stay clean
+        setPrice( dax, "60" );
+        euro.setConversionRate( new BigDecimal( "1.00" ) );
+        assertEquals( Collections.singleton( dax.getHoldings() ), dirtyHoldings() );
+        assertAmount( "3200", portfolio.getTotalHoldingsValue() );
+        assertTotalsMatchTheRecomputation();
+    }
+
+    /**
+     * Reads every total incrementally, then again with the full recomputation cross-check enabled, which throws on
+     * any difference, and checks both reads agree
+     */
+    private void assertTotalsMatchTheRecomputation() {
+        for( final Function<SecurityPortfolioManager,BigDecimal> total : TOTALS ) {
+            portfolio.setVerifyTotals( false );
+            final BigDecimal incremental = total.apply( portfolio );
+            portfolio.setVerifyTotals( true );
+            try {
+                assertEquals( 0, incremental.compareTo( total.apply( portfolio ) ) );
+            }
+            finally {
+                portfolio.setVerifyTotals( false );
+            }
+        }
+    }
+
+    /**
+     * The holdings waiting to be revalued on the next read, the totals are package private
+     */
+    @SuppressWarnings("unchecked")
+    private Set<Object> dirtyHoldings() throws Exception {
+        final Field totalsField = SecurityPortfolioManager.class.getDeclaredField( "totals" );
+        totalsField.setAccessible( true );
+        final Object totals = totalsField.get( portfolio );
+        final Field dirtyField = totals.getClass().getDeclaredField( "dirty" );
+        dirtyField.setAccessible( true );
+        return new HashSet<>( (Set<Object>)dirtyField.get( totals ) );
+    }
+
+    private void fill( Symbol symbol, int quantity, String price, String fee ) {
+        final OrderDirection direction = quantity < 0 ? OrderDirection.Sell : OrderDirection.Buy;
+        portfolio.processFill( new OrderEvent( 1, symbol, TIME, OrderStatus.Filled, direction, new BigDecimal( price ), quantity, new BigDecimal( fee ) ) );
+    }
+
+    private Security addSecurity( Symbol symbol, Cash quoteCurrency, String price ) {
+        final SubscriptionDataConfig config = new SubscriptionDataConfig( TradeBar.class, symbol, Resolution.Minute,
+                Global.NEW_YORK_TZ_ID, Global.NEW_YORK_TZ_ID, true, false, false, false, null, false );
+        final Security security = new Security( SecurityExchangeHours.alwaysOpen( Global.NEW_YORK_TZ_ID ), config, quoteCurrency,
+                SymbolProperties.getDefault( quoteCurrency.getSymbol() ) );
+        securities.add( security );
+        setPrice( security, price );
+        return security;
+    }
+
+    private static void setPrice( Security security, String price ) {
+        final BigDecimal value = new BigDecimal( price );
+        security.setMarketPrice( new TradeBar( TIME, security.getSymbol(), value, value, value, value, 1000 ) );
+    }
+
+    private static void assertAmount( String expected, BigDecimal actual ) {
+        assertEquals( 0, new BigDecimal( expected ).compareTo( actual ) );
+    }
+}
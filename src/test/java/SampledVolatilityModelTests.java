@@ -0,0 +1,86 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.common.securities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.quantconnect.lean.Market;
+import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.TickType;
+import com.quantconnect.lean.data.market.Bar;
+import com.quantconnect.lean.data.market.QuoteBar;
+import com.quantconnect.lean.data.market.Tick;
+import com.quantconnect.lean.data.market.TradeBar;
+import com.quantconnect.lean.securities.SampledVolatilityModel;
+import com.quantconnect.lean.securities.StandardDeviationOfReturnsVolatilityModel;
+
+public class SampledVolatilityModelTests {
+
+    private static final Symbol EURUSD = Symbol.create( "EURUSD", SecurityType.Forex, Market.FXCM );
+    private static final LocalDateTime START = LocalDateTime.of( 2016, 10, 3, 0, 0 );
+
+    @Test
+    public void quoteBarsDoNotChangeATradeBarModel() {
+        final Random random = new Random( 1 );
+        final SampledVolatilityModel trades = new StandardDeviationOfReturnsVolatilityModel( 10 );
+        final SampledVolatilityModel mixed = new StandardDeviationOfReturnsVolatilityModel( 10 );
+        for( int day = 0; day < 30; day++ ) {
+            final LocalDateTime time = START.plusDays( day );
+            final BigDecimal close = BigDecimal.valueOf( 100 + random.nextInt( 10 ) );
+            final TradeBar bar = new TradeBar( time, EURUSD, close, close, close, close, 1000, Duration.ofDays( 1 ) );
+            trades.update( null, bar );
+            mixed.update( null, bar );
+
+            // quotes at a very different level would dominate the returns if they were sampled
+            final Bar quote = new Bar( close.add( BigDecimal.TEN ), close.add( BigDecimal.TEN ), close.add( BigDecimal.TEN ), close.add( BigDecimal.TEN ) );
+            mixed.update( null, new QuoteBar( time, EURUSD, quote, 100, quote, 100, Duration.ofDays( 1 ) ) );
+        }
+
+        assertTrue( trades.getVolatility().signum() > 0 );
+        assertEquals( trades.getVolatility(), mixed.getVolatility() );
+    }
+
+    @Test
+    public void tickModelSamplesOnlyTradeTicks() {
+        final SampledVolatilityModel trades = new StandardDeviationOfReturnsVolatilityModel( 5, Duration.ofMinutes( 1 ), 252 * 390 );
+        final SampledVolatilityModel mixed = new StandardDeviationOfReturnsVolatilityModel( 5, Duration.ofMinutes( 1 ), 252 * 390 );
+        trades.setDataType( Tick.class );
+        mixed.setDataType( Tick.class );
+
+        final Random random = new Random( 2 );
+        for( int second = 0; second < 20 * 60; second += 15 ) {
+            final LocalDateTime time = START.plusSeconds( second );
+            final BigDecimal price = BigDecimal.valueOf( 1000 + random.nextInt( 20 ), 1 );
+            final Tick trade = new Tick( time, EURUSD, price, price, price );
+            trade.tickType = TickType.Trade;
+            trades.update( null, trade );
+            mixed.update( null, trade );
+            mixed.update( null, new Tick( time, EURUSD, price.subtract( BigDecimal.ONE ), price.add( BigDecimal.ONE ) ) );
+        }
+
+        assertTrue( trades.getVolatility().signum() > 0 );
+        assertEquals( trades.getVolatility(), mixed.getVolatility() );
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.common.securities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.quantconnect.lean.Market;
+import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.data.BaseData;
+import com.quantconnect.lean.data.market.Bar;
+import com.quantconnect.lean.data.market.QuoteBar;
+import com.quantconnect.lean.data.market.Tick;
+import com.quantconnect.lean.data.market.TradeBar;
+import com.quantconnect.lean.securities.SecurityCache;
+
+public class SecurityCacheTests {
+
+    private static final Symbol EURUSD = Symbol.create( "EURUSD", SecurityType.Forex, Market.FXCM );
+    private static final LocalDateTime START = LocalDateTime.of( 2016, 10, 3, 9, 30 );
+
+    @Test
+    public void batchedTicksMatchSequentialUpdates() {
+        final Random random = new Random( 1 );
+        for( int iteration = 0; iteration < 200; iteration++ ) {
+            final List<BaseData> ticks = new ArrayList<>();
+            final int count = 1 + random.nextInt( 20 );
+            for( int i = 0; i < count; i++ ) {
+                final Tick tick = new Tick( START.plusSeconds( i ), EURUSD, price( random ), price( random ), price( random ) );
+                tick.bidSize = random.nextInt( 3 ) * 100;
+                tick.askSize = random.nextInt( 3 ) * 100;
+                ticks.add( tick );
+            }
+
+            assertBatchMatchesSequential( Tick.class, ticks );
+        }
+    }
+
+    @Test
+    public void batchedTradeBarsMatchSequentialUpdates() {
+        final Random random = new Random( 2 );
+        for( int iteration = 0; iteration < 200; iteration++ ) {
+            final List<BaseData> bars = new ArrayList<>();
+            final int count = 1 + random.nextInt( 20 );
+            for( int i = 0; i < count; i++ )
+                bars.add( new TradeBar( START.plusMinutes( i ), EURUSD, price( random ), price( random ), price( random ), price( random ), random.nextInt( 3 ) * 100 ) );
+
+            assertBatchMatchesSequential( TradeBar.class, bars );
+        }
+    }
+
+    @Test
+    public void batchedQuoteBarsMatchSequentialUpdates() {
+        final Random random = new Random( 3 );
+        for( int iteration = 0; iteration < 200; iteration++ ) {
+            final List<BaseData> bars = new ArrayList<>();
+            final int count = 1 + random.nextInt( 20 );
+            int minute = 0;
+            for( int i = 0; i < count; i++ ) {
+                // repeat end times now and then, those bars only update the quote side of the cache
+                if( random.nextInt( 4 ) != 0 )
+                    minute++;
+                final Bar bid = random.nextInt( 5 ) == 0 ? null : new Bar( price( random ), price( random ), price( random ), price( random ) );
+                final Bar ask = bid != null && random.nextInt( 5 ) == 0 ? null : new Bar( price( random ), price( random ), price( random ), price( random ) );
+                bars.add( new QuoteBar( START.plusMinutes( minute ), EURUSD, bid, random.nextInt( 3 ) * 100, ask, random.nextInt( 3 ) * 100 ) );
+            }
+
+            assertBatchMatchesSequential( QuoteBar.class, bars );
+        }
+    }
+
+    private static void assertBatchMatchesSequential( Class<?> dataType, List<BaseData> data ) {
+        // prime both caches identically so values not touched by the batch are compared too
+        final TradeBar prime = new TradeBar( START.minusMinutes( 1 ), EURUSD, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, 1 );
+        final SecurityCache sequential = new SecurityCache();
+        final SecurityCache batched = new SecurityCache();
+        sequential.addData( prime );
+        batched.addData( prime );
+
+        for( BaseData datum : data )
+            sequential.addData( datum );
+        batched.addData( dataType, data );
+
+        assertEquals( sequential.getPrice(), batched.getPrice() );
+        assertEquals( sequential.getOpen(), batched.getOpen() );
+        assertEquals( sequential.getHigh(), batched.getHigh() );
+        assertEquals( sequential.getLow(), batched.getLow() );
+        assertEquals( sequential.getClose(), batched.getClose() );
+        assertEquals( sequential.getVolume(), batched.getVolume() );
+        assertEquals( sequential.getBidPrice(), batched.getBidPrice() );
+        assertEquals( sequential.getAskPrice(), batched.getAskPrice() );
+        assertEquals( sequential.getBidSize(), batched.getBidSize() );
+        assertEquals( sequential.getAskSize(), batched.getAskSize() );
+        assertSame( sequential.getData(), batched.getData() );
+    }
+
+    private static BigDecimal price( Random random ) {
+        // zero prices are skipped by the cache, make them common
+        return random.nextInt( 4 ) == 0 ? BigDecimal.ZERO : BigDecimal.valueOf( 1 + random.nextInt( 10000 ), 2 );
+    }
+}
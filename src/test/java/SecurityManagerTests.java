@@ -0,0 +1,194 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.common.securities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.quantconnect.lean.Global;
+import com.quantconnect.lean.Market;
+import com.quantconnect.lean.Resolution;
+import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.TimeKeeper;
+import com.quantconnect.lean.data.SubscriptionDataConfig;
+import com.quantconnect.lean.data.market.TradeBar;
+import com.quantconnect.lean.event.CollectionChangedEvent;
+import com.quantconnect.lean.event.CollectionChangedEvent.CollectionChangedAction;
+import com.quantconnect.lean.securities.Cash;
+import com.quantconnect.lean.securities.CashBook;
+import com.quantconnect.lean.securities.Security;
+import com.quantconnect.lean.securities.SecurityExchangeHours;
+import com.quantconnect.lean.securities.SecurityManager;
+import com.quantconnect.lean.securities.SymbolProperties;
+
+public class SecurityManagerTests {
+
+    private static final LocalDateTime TIME = LocalDateTime.of( 2016, 10, 3, 9, 30 );
+    private static final Symbol EURUSD = Symbol.create( "EURUSD", SecurityType.Forex, Market.FXCM );
+    private static final Symbol GBPUSD = Symbol.create( "GBPUSD", SecurityType.Forex, Market.FXCM );
+
+    private SecurityManager securities;
+
+    @Before
+    public void setUp() {
+        securities = new SecurityManager( new TimeKeeper( TIME, Global.NEW_YORK_TZ_ID ) );
+    }
+
+    @Test
+    public void addAllRejectsTwoSecuritiesWithTheSameSymbol() {
+        final Security first = createSecurity( EURUSD );
+        final Security second = createSecurity( EURUSD );
+
+        try {
+            securities.addAll( Arrays.asList( createSecurity( GBPUSD ), first, second ) );
+            fail( "The second EURUSD security should have been rejected" );
+        }
+        catch( IllegalArgumentException e ) {
+            // expected
+        }
+
+        // the batch is validated before anything is added
+        assertFalse( securities.containsKey( GBPUSD ) );
+        assertFalse( securities.containsKey( EURUSD ) );
+    }
+
+    @Test
+    public void addAllAddsARepeatedSecurityOnce() {
+        final Security eurusd = createSecurity( EURUSD );
+        final Security gbpusd = createSecurity( GBPUSD );
+
+        final List<Security> added = securities.addAll( Arrays.asList( eurusd, gbpusd, eurusd ) );
+
+        assertEquals( Arrays.asList( eurusd, gbpusd ), added );
+        assertSame( eurusd, securities.get( EURUSD ) );
+    }
+
+    @Test
+    public void addAllDeliversOneEventHoldingEveryAddedSecurity() throws InterruptedException {
+        final BlockingQueue<CollectionChangedEvent> events = listen();
+        final Security eurusd = createSecurity( EURUSD );
+        final Security gbpusd = createSecurity( GBPUSD );
+
+        securities.addAll( Arrays.asList( eurusd, gbpusd ) );
+
+        final CollectionChangedEvent event = events.poll( 5, TimeUnit.SECONDS );
+        assertEquals( CollectionChangedAction.Add, event.getAction() );
+        assertEquals( Arrays.asList( eurusd, gbpusd ), event.getElements() );
+        assertNull( events.poll( 100, TimeUnit.MILLISECONDS ) );
+    }
+
+    @Test
+    public void removeAllDeliversOneEventHoldingEveryRemovedSecurity() throws InterruptedException {
+        final Security eurusd = createSecurity( EURUSD );
+        final Security gbpusd = createSecurity( GBPUSD );
+        securities.addAll( Arrays.asList( eurusd, gbpusd ) );
+        final BlockingQueue<CollectionChangedEvent> events = listen();
+
+        // symbols not in the collection are ignored
+        securities.removeAll( Arrays.asList( GBPUSD, Symbol.create( "USDJPY", SecurityType.Forex, Market.FXCM ), EURUSD ) );
+
+        final CollectionChangedEvent event = events.poll( 5, TimeUnit.SECONDS );
+        assertEquals( CollectionChangedAction.Remove, event.getAction() );
+        assertEquals( Arrays.asList( gbpusd, eurusd ), event.getElements() );
+        assertTrue( securities.isEmpty() );
+        assertNull( events.poll( 100, TimeUnit.MILLISECONDS ) );
+    }
+
+    @Test
+    public void putAllAndClearAreSingleChanges() throws InterruptedException {
+        final BlockingQueue<CollectionChangedEvent> events = listen();
+        final Security eurusd = createSecurity( EURUSD );
+        final Security gbpusd = createSecurity( GBPUSD );
+        final Map<Symbol,Security> map = new LinkedHashMap<>();
+        map.put( EURUSD, eurusd );
+        map.put( GBPUSD, gbpusd );
+
+        securities.putAll( map );
+        final CollectionChangedEvent added = events.poll( 5, TimeUnit.SECONDS );
+        assertEquals( CollectionChangedAction.Add, added.getAction() );
+        assertEquals( Arrays.asList( eurusd, gbpusd ), added.getElements() );
+
+        securities.clear();
+        final CollectionChangedEvent removed = events.poll( 5, TimeUnit.SECONDS );
+        assertEquals( CollectionChangedAction.Remove, removed.getAction() );
+        assertEquals( new HashSet<>( Arrays.asList( eurusd, gbpusd ) ), new HashSet<>( removed.getElements() ) );
+        assertNull( events.poll( 100, TimeUnit.MILLISECONDS ) );
+    }
+
+    @Test
+    public void putAllRejectsASecurityReplacingAnother() {
+        securities.add( createSecurity( EURUSD ) );
+        final Map<Symbol,Security> map = new LinkedHashMap<>();
+        map.put( GBPUSD, createSecurity( GBPUSD ) );
+        map.put( EURUSD, createSecurity( EURUSD ) );
+
+        try {
+            securities.putAll( map );
+            fail( "The second EURUSD security should have been rejected" );
+        }
+        catch( IllegalArgumentException e ) {
+            // expected
+        }
+        assertFalse( securities.containsKey( GBPUSD ) );
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void singleElementAccessIsRejectedForBatchEvents() {
+        final Security eurusd = createSecurity( EURUSD );
+        assertSame( eurusd, new CollectionChangedEvent( CollectionChangedAction.Add, eurusd ).getElement() );
+
+        try {
+            new CollectionChangedEvent( CollectionChangedAction.Add, Arrays.asList( eurusd, createSecurity( GBPUSD ) ) ).getElement();
+            fail( "A batch event has no single element" );
+        }
+        catch( IllegalStateException e ) {
+            // expected
+        }
+    }
+
+    private BlockingQueue<CollectionChangedEvent> listen() {
+        final BlockingQueue<CollectionChangedEvent> events = new LinkedBlockingQueue<>();
+        securities.addCollectionChangedListener( events::add );
+        return events;
+    }
+
+    private static Security createSecurity( Symbol symbol ) {
+        final SubscriptionDataConfig config = new SubscriptionDataConfig( TradeBar.class, symbol, Resolution.Minute,
+                Global.NEW_YORK_TZ_ID, Global.NEW_YORK_TZ_ID, true, false, false, false, null, false );
+        return new Security( SecurityExchangeHours.alwaysOpen( Global.NEW_YORK_TZ_ID ), config,
+                new Cash( CashBook.ACCOUNT_CURRENCY, BigDecimal.ZERO, BigDecimal.ONE ), SymbolProperties.getDefault( CashBook.ACCOUNT_CURRENCY ) );
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.common.securities;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.quantconnect.lean.Global;
+import com.quantconnect.lean.Market;
+import com.quantconnect.lean.Resolution;
+import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.TimeKeeper;
+import com.quantconnect.lean.data.SubscriptionDataConfig;
+import com.quantconnect.lean.data.market.TradeBar;
+import com.quantconnect.lean.securities.CashBook;
+import com.quantconnect.lean.securities.Security;
+import com.quantconnect.lean.securities.SecurityExchangeHours;
+import com.quantconnect.lean.securities.SecurityManager;
+import com.quantconnect.lean.securities.SecurityMarginModel;
+import com.quantconnect.lean.securities.SecurityPortfolioManager;
+import com.quantconnect.lean.securities.SecurityTransactionManager;
+import com.quantconnect.lean.securities.SymbolProperties;
+import com.quantconnect.lean.securities.UnsettledCashAmount;
+
+public class SecurityPortfolioManagerTests {
+
+    private static final Symbol EURUSD = Symbol.create( "EURUSD", SecurityType.Forex, Market.FXCM );
+    private static final LocalDateTime TIME = LocalDateTime.of( 2016, 10, 3, 14, 30 );
+
+    private SecurityPortfolioManager portfolio;
+    private Security security;
+
+    @Before
+    public void setUp() {
+        final SecurityManager securities = new SecurityManager( new TimeKeeper( TIME, Global.NEW_YORK_TZ_ID ) );
+        portfolio = new SecurityPortfolioManager( securities, new SecurityTransactionManager( securities ) );
+
+        final SubscriptionDataConfig config = new SubscriptionDataConfig( TradeBar.class, EURUSD, Resolution.Minute,
+                Global.NEW_YORK_TZ_ID, Global.NEW_YORK_TZ_ID, true, false, false, false, null, false );
+        security = new Security( SecurityExchangeHours.alwaysOpen( Global.NEW_YORK_TZ_ID ), config, portfolio.getCashBook().get( CashBook.ACCOUNT_CURRENCY ),
+                SymbolProperties.getDefault( CashBook.ACCOUNT_CURRENCY ) );
+        securities.add( security );
+        security.setMarketPrice( new TradeBar( TIME, EURUSD, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, 1000 ) );
+        security.getHoldings().setHoldings( BigDecimal.ONE, 1000 );
+    }
+
+    @Test
+    public void changingLeverageWithAnOpenPositionUpdatesTheTotals() {
+        security.setLeverage( BigDecimal.ONE );
+        assertAmount( 1000, portfolio.getTotalUnleveredAbsoluteHoldingsCost() );
+        assertAmount( 1000, portfolio.getTotalMarginUsed() );
+
+        security.setLeverage( BigDecimal.valueOf( 4 ) );
+        assertAmount( 250, portfolio.getTotalUnleveredAbsoluteHoldingsCost() );
+        assertAmount( 250, portfolio.getTotalMarginUsed() );
+
+        // the incrementally maintained totals agree with a full recomputation
+        portfolio.setVerifyTotals( true );
+        assertAmount( 250, portfolio.getTotalMarginUsed() );
+    }
+
+    @Test
+    public void changingTheMarginModelWithAnOpenPositionUpdatesTheTotals() {
+        security.setMarginModel( new SecurityMarginModel( BigDecimal.ONE ) );
+        assertAmount( 1000, portfolio.getTotalMarginUsed() );
+
+        security.setMarginModel( new SecurityMarginModel( BigDecimal.valueOf( 2 ) ) );
+        assertAmount( 500, portfolio.getTotalUnleveredAbsoluteHoldingsCost() );
+        assertAmount( 500, portfolio.getTotalMarginUsed() );
+
+        portfolio.setVerifyTotals( true );
+        assertAmount( 500, portfolio.getTotalMarginUsed() );
+    }
+
+    @Test
+    public void unsettledCashIsSettledInSettlementTimeOrder() {
+        // added out of settlement time order
+        addUnsettledCash( TIME.plusDays( 3 ), 300 );
+        addUnsettledCash( TIME.plusDays( 1 ), 100 );
+        addUnsettledCash( TIME.plusDays( 2 ), 200 );
+        assertAmount( 600, unsettledCash() );
+
+        // an amount settles once its settlement time has passed
+        portfolio.scanForCashSettlement( TIME.plusDays( 1 ) );
+        assertAmount( 600, unsettledCash() );
+        portfolio.scanForCashSettlement( TIME.plusDays( 1 ).plusMinutes( 1 ) );
+        assertAmount( 500, unsettledCash() );
+        assertAmount( 100_100, settledCash() );
+
+        portfolio.scanForCashSettlement( TIME.plusDays( 2 ).plusMinutes( 1 ) );
+        assertAmount( 300, unsettledCash() );
+        assertAmount( 100_300, settledCash() );
+
+        // an amount added after later ones were queued still settles when it's due
+        addUnsettledCash( TIME.plusDays( 2 ).plusHours( 1 ), 50 );
+        portfolio.scanForCashSettlement( TIME.plusDays( 2 ).plusHours( 2 ) );
+        assertAmount( 300, unsettledCash() );
+        assertAmount( 100_350, settledCash() );
+
+        portfolio.scanForCashSettlement( TIME.plusDays( 4 ) );
+        assertAmount( 0, unsettledCash() );
+        assertAmount( 100_650, settledCash() );
+    }
+
+    @Test
+    public void amountsWithTheSameSettlementTimeSettleTogether() {
+        addUnsettledCash( TIME.plusDays( 1 ), 10 );
+        addUnsettledCash( TIME.plusDays( 2 ), 1000 );
+        addUnsettledCash( TIME.plusDays( 1 ), 20 );
+        addUnsettledCash( TIME.plusDays( 1 ), -5 );
+
+        portfolio.scanForCashSettlement( TIME.plusDays( 1 ).plusSeconds( 1 ) );
+        assertAmount( 1000, unsettledCash() );
+        assertAmount( 100_025, settledCash() );
+    }
+
+    @Test
+    public void addingUnsettledCashDoesNotWaitForTheSettlementScan() throws Exception {
+        final Field locker = SecurityPortfolioManager.class.getDeclaredField( "unsettledCashAmountsLocker" );
+        locker.setAccessible( true );
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // hold the scan's lock while the fill thread adds an amount
+            synchronized( locker.get( portfolio ) ) {
+                executor.submit( () -> portfolio.addUnsettledCashAmount( new UnsettledCashAmount( TIME, CashBook.ACCOUNT_CURRENCY, BigDecimal.TEN ) ) )
+                        .get( 10, TimeUnit.SECONDS );
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        portfolio.scanForCashSettlement( TIME.plusMinutes( 1 ) );
+        assertAmount( 100_010, settledCash() );
+    }
+
+    @Test
+    public void amountsAddedWhileScanningAreAllSettled() throws Exception {
+        final int amounts = 5000;
+        // the fill thread's caller books the unsettled cash before queuing the amounts
+        portfolio.getUnsettledCashBook().get( CashBook.ACCOUNT_CURRENCY ).addAmount( BigDecimal.valueOf( amounts ) );
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final CountDownLatch start = new CountDownLatch( 1 );
+            final Future<?> adder = executor.submit( () -> {
+                start.await();
+                for( int i = 0; i < amounts; i++ )
+                    portfolio.addUnsettledCashAmount( new UnsettledCashAmount( TIME.plusMinutes( i % 100 ), CashBook.ACCOUNT_CURRENCY, BigDecimal.ONE ) );
+                return null;
+            } );
+
+            start.countDown();
+            for( int minute = 0; !adder.isDone(); minute = ( minute + 1 ) % 100 )
+                portfolio.scanForCashSettlement( TIME.plusMinutes( minute ) );
+            adder.get( 30, TimeUnit.SECONDS );
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        portfolio.scanForCashSettlement( TIME.plusDays( 1 ) );
+        assertAmount( 0, unsettledCash() );
+        assertAmount( 100_000 + amounts, settledCash() );
+    }
+
+    private void addUnsettledCash( LocalDateTime settlementTimeUtc, long amount ) {
+        portfolio.getUnsettledCashBook().get( CashBook.ACCOUNT_CURRENCY ).addAmount( BigDecimal.valueOf( amount ) );
+        portfolio.addUnsettledCashAmount( new UnsettledCashAmount( settlementTimeUtc, CashBook.ACCOUNT_CURRENCY, BigDecimal.valueOf( amount ) ) );
+    }
+
+    private BigDecimal settledCash() {
+        return portfolio.getCashBook().get( CashBook.ACCOUNT_CURRENCY ).getAmount();
+    }
+
+    private BigDecimal unsettledCash() {
+        return portfolio.getUnsettledCashBook().get( CashBook.ACCOUNT_CURRENCY ).getAmount();
+    }
+
+    private static void assertAmount( long expected, BigDecimal actual ) {
+        assertEquals( 0, BigDecimal.valueOf( expected ).compareTo( actual ) );
+    }
+}
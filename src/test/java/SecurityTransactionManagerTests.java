@@ -0,0 +1,261 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.common.securities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.quantconnect.lean.Global;
+import com.quantconnect.lean.Market;
+import com.quantconnect.lean.Resolution;
+import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.TimeKeeper;
+import com.quantconnect.lean.data.SubscriptionDataConfig;
+import com.quantconnect.lean.data.market.TradeBar;
+import com.quantconnect.lean.orders.Order;
+import com.quantconnect.lean.orders.OrderEvent;
+import com.quantconnect.lean.orders.OrderRequest;
+import com.quantconnect.lean.orders.OrderTicket;
+import com.quantconnect.lean.orders.OrderTypes.OrderDirection;
+import com.quantconnect.lean.orders.OrderTypes.OrderStatus;
+import com.quantconnect.lean.orders.OrderTypes.OrderType;
+import com.quantconnect.lean.orders.SubmitOrderRequest;
+import com.quantconnect.lean.securities.Cash;
+import com.quantconnect.lean.securities.CashBook;
+import com.quantconnect.lean.securities.IOrderProcessor;
+import com.quantconnect.lean.securities.Security;
+import com.quantconnect.lean.securities.SecurityExchangeHours;
+import com.quantconnect.lean.securities.SecurityManager;
+import com.quantconnect.lean.securities.SecurityPortfolioManager;
+import com.quantconnect.lean.securities.SecurityTransactionManager;
+import com.quantconnect.lean.securities.SymbolProperties;
+
+public class SecurityTransactionManagerTests {
+
+    private static final Symbol EURUSD = Symbol.create( "EURUSD", SecurityType.Forex, Market.FXCM );
+    private static final LocalDateTime TIME = LocalDateTime.of( 2016, 10, 3, 14, 30 );
+
+    private SecurityTransactionManager transactions;
+    private SecurityPortfolioManager portfolio;
+    private Security security;
+    private FakeOrderProcessor processor;
+
+    @Before
+    public void setUp() {
+        final SecurityManager securities = new SecurityManager( new TimeKeeper( TIME, Global.NEW_YORK_TZ_ID ) );
+        transactions = new SecurityTransactionManager( securities );
+        portfolio = new SecurityPortfolioManager( securities, transactions );
+        processor = new FakeOrderProcessor();
+        transactions.setOrderProcessor( processor );
+
+        final SubscriptionDataConfig config = new SubscriptionDataConfig( TradeBar.class, EURUSD, Resolution.Minute,
+                Global.NEW_YORK_TZ_ID, Global.NEW_YORK_TZ_ID, true, false, false, false, null, false );
+        security = new Security( SecurityExchangeHours.alwaysOpen( Global.NEW_YORK_TZ_ID ), config, portfolio.getCashBook().get( CashBook.ACCOUNT_CURRENCY ),
+                SymbolProperties.getDefault( CashBook.ACCOUNT_CURRENCY ) );
+        securities.add( security );
+        security.setMarketPrice( new TradeBar( TIME, EURUSD, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, 1000 ) );
+    }
+
+    @Test
+    public void batchReducingOrdersAreExemptOnlyUpToTheProjectedPosition() {
+        security.getHoldings().setHoldings( BigDecimal.ONE, 100 );
+
+        final List<OrderTicket> tickets = transactions.addOrders( portfolio, Arrays.asList( marketOrder( -100 ), marketOrder( -100 ) ) );
+
+        // the first sell closes the long position, the second opens a short one and needs margin
+        assertEquals( 0, transactions.getBuyingPowerLedger().getReserved( tickets.get( 0 ).getOrderId() ).signum() );
+        assertEquals( 1, transactions.getBuyingPowerLedger().getReserved( tickets.get( 1 ).getOrderId() ).signum() );
+    }
+
+    @Test
+    public void batchOrdersWithoutCapitalAreRegisteredByTheProcessor() {
+        portfolio.setCash( BigDecimal.valueOf( 150 ) );
+
+        final List<OrderTicket> tickets = transactions.addOrders( portfolio, Arrays.asList( marketOrder( 100 ), marketOrder( 100 ) ) );
+
+        assertEquals( 2, processor.requests.size() );
+        assertSame( tickets.get( 0 ), transactions.getOrderTicket( tickets.get( 0 ).getOrderId() ) );
+        assertSame( tickets.get( 1 ), transactions.getOrderTicket( tickets.get( 1 ).getOrderId() ) );
+        assertTrue( tickets.get( 0 ).getStatus().isOpen() );
+        assertEquals( OrderStatus.Invalid, tickets.get( 1 ).getStatus() );
+
+        // only the accepted order holds a reservation
+        assertEquals( 0, transactions.getBuyingPowerLedger().getReserved( tickets.get( 0 ).getOrderId() )
+                .compareTo( transactions.getBuyingPowerLedger().getTotalReserved() ) );
+    }
+
+    @Test
+    public void batchOrdersWithoutCapitalAreNotSentByAPlainProcessor() {
+        final PlainOrderProcessor plain = new PlainOrderProcessor();
+        transactions.setOrderProcessor( plain );
+        portfolio.setCash( BigDecimal.valueOf( 150 ) );
+
+        final List<OrderTicket> tickets = transactions.addOrders( portfolio, Arrays.asList( marketOrder( 100 ), marketOrder( 100 ) ) );
+
+        // the processor doesn't check the responses itself, only the order with sufficient capital reaches it
+        assertEquals( 1, plain.requests.size() );
+        assertSame( tickets.get( 0 ).getSubmitRequest(), plain.requests.get( 0 ) );
+        assertTrue( tickets.get( 0 ).getStatus().isOpen() );
+        assertEquals( OrderStatus.Invalid, tickets.get( 1 ).getStatus() );
+        assertEquals( 0, transactions.getBuyingPowerLedger().getReserved( tickets.get( 1 ).getOrderId() ).signum() );
+    }
+
+    @Test
+    public void openOrderTicketsFollowTheOrderEventsWithoutScanning() {
+        final OrderTicket first = transactions.addOrder( marketOrder( 100 ) );
+        final OrderTicket second = transactions.addOrder( marketOrder( 100 ) );
+        assertEquals( Arrays.asList( first, second ), transactions.getOpenOrderTickets( EURUSD ).collect( Collectors.toList() ) );
+
+        transactions.onOrderEvent( new OrderEvent( first.getOrderId(), EURUSD, TIME, OrderStatus.Filled, OrderDirection.Buy, BigDecimal.ONE, 100, BigDecimal.ZERO ) );
+
+        assertEquals( Arrays.asList( second ), transactions.getOpenOrderTickets( EURUSD ).collect( Collectors.toList() ) );
+        assertEquals( Arrays.asList( second ), transactions.getOpenOrderTickets( null ).collect( Collectors.toList() ) );
+        assertSame( first, transactions.getOrderTicketIndex().get( first.getOrderId() ) );
+        assertEquals( 0, processor.scans );
+    }
+
+    @Test
+    public void waitForOrderTimesOutOnAnOpenOrder() {
+        transactions.setMarketOrderFillTimeout( 50 );
+        final CompletableFuture<OrderTicket> closed = transactions.addOrderAsync( marketOrder( 100 ) );
+        final OrderTicket ticket = processor.tickets.values().iterator().next();
+
+        assertFalse( closed.isDone() );
+        final long start = System.nanoTime();
+        assertFalse( transactions.waitForOrder( ticket.getOrderId() ) );
+        assertTrue( System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos( 50 ) );
+        assertFalse( transactions.waitForOrder( -1 ) );
+    }
+
+    @Test
+    public void waitForOrderReturnsOnceTheOrderIsClosed() {
+        portfolio.setCash( BigDecimal.valueOf( 150 ) );
+
+        final List<OrderTicket> tickets = transactions.addOrders( portfolio, Arrays.asList( marketOrder( 100 ), marketOrder( 100 ) ) );
+
+        // the rejected order is closed when its ticket is created
+        assertSame( tickets.get( 1 ), tickets.get( 1 ).getOrderClosed().getNow( null ) );
+        assertTrue( transactions.waitForOrder( tickets.get( 1 ).getOrderId() ) );
+    }
+
+    @Test
+    public void capitalCheckDoesNotReserve() {
+        final OrderTicket ticket = transactions.addOrder( marketOrder( 100 ) );
+        final Order order = Order.createOrder( ticket.getSubmitRequest() );
+
+        assertTrue( transactions.getSufficientCapitalForOrder( portfolio, order ) );
+        assertEquals( 0, transactions.getBuyingPowerLedger().getTotalReserved().signum() );
+
+        assertTrue( transactions.reserveCapitalForOrder( portfolio, order ) );
+        assertEquals( 1, transactions.getBuyingPowerLedger().getReserved( order.getId() ).signum() );
+    }
+
+    private static SubmitOrderRequest marketOrder( int quantity ) {
+        return new SubmitOrderRequest( OrderType.Market, SecurityType.Forex, EURUSD, quantity, BigDecimal.ZERO, BigDecimal.ZERO, TIME, "" );
+    }
+
+    /**
+     * Registers a ticket for each submit request, an invalid one when the request carries an error response, and
+     * receives whole batches, rejected requests included
+     */
+    private final class FakeOrderProcessor extends PlainOrderProcessor {
+        @Override
+        public OrderTicket process( OrderRequest request ) {
+            if( !request.getResponse().isError() )
+                return super.process( request );
+
+            requests.add( request );
+            final OrderTicket ticket = OrderTicket.invalidSubmitRequest( transactions, (SubmitOrderRequest)request, request.getResponse() );
+            tickets.put( ticket.getOrderId(), ticket );
+            return ticket;
+        }
+
+        @Override
+        public List<OrderTicket> process( SecurityTransactionManager transactionManager, List<? extends OrderRequest> requests ) {
+            final List<OrderTicket> tickets = new ArrayList<>( requests.size() );
+            for( final OrderRequest request : requests )
+                tickets.add( process( request ) );
+            return tickets;
+        }
+    }
+
+    /**
+     * Sends every submit request it is given, relying on the default batch processing for rejected requests
+     */
+    private class PlainOrderProcessor implements IOrderProcessor {
+        final List<OrderRequest> requests = new ArrayList<>();
+        final Map<Integer,OrderTicket> tickets = new HashMap<>();
+        int scans;
+
+        @Override
+        public OrderTicket process( OrderRequest request ) {
+            requests.add( request );
+            final OrderTicket ticket = new OrderTicket( transactions, (SubmitOrderRequest)request );
+            tickets.put( ticket.getOrderId(), ticket );
+            return ticket;
+        }
+
+        @Override
+        public int getOrdersCount() {
+            return tickets.size();
+        }
+
+        @Override
+        public Order getOrderById( int orderId ) {
+            return null;
+        }
+
+        @Override
+        public Order getOrderByBrokerageId( String brokerageId ) {
+            return null;
+        }
+
+        @Override
+        public Stream<OrderTicket> getOrderTickets( Predicate<OrderTicket> filter ) {
+            scans++;
+            return tickets.values().stream().filter( filter );
+        }
+
+        @Override
+        public OrderTicket getOrderTicket( int orderId ) {
+            return tickets.get( orderId );
+        }
+
+        @Override
+        public Stream<Order> getOrders( Predicate<Order> filter ) {
+            return Stream.empty();
+        }
+    }
+}
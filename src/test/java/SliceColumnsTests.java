@@ -0,0 +1,178 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.common.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.quantconnect.lean.Market;
+import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.data.BaseData;
+import com.quantconnect.lean.data.Slice;
+import com.quantconnect.lean.data.SliceColumns;
+import com.quantconnect.lean.data.market.Bar;
+import com.quantconnect.lean.data.market.QuoteBar;
+import com.quantconnect.lean.data.market.QuoteBars;
+import com.quantconnect.lean.data.market.TradeBar;
+import com.quantconnect.lean.data.market.TradeBars;
+
+public class SliceColumnsTests {
+
+    private static final Symbol EURUSD = Symbol.create( "EURUSD", SecurityType.Forex, Market.FXCM );
+    private static final Symbol GBPUSD = Symbol.create( "GBPUSD", SecurityType.Forex, Market.FXCM );
+    private static final Symbol USDJPY = Symbol.create( "USDJPY", SecurityType.Forex, Market.FXCM );
+    private static final Symbol AUDUSD = Symbol.create( "AUDUSD", SecurityType.Forex, Market.FXCM );
+    private static final LocalDateTime TIME = LocalDateTime.of( 2016, 10, 3, 9, 30 );
+
+    @Test
+    public void tradeOnlySymbolsHaveNoQuotes() {
+        final TradeBars tradeBars = new TradeBars();
+        tradeBars.put( EURUSD, tradeBar( EURUSD, 1, 3, 0.5, 2, 100 ) );
+        final SliceColumns columns = new SliceColumns( tradeBars, new QuoteBars() );
+
+        assertEquals( 1, columns.size() );
+        assertEquals( 0, columns.indexOf( EURUSD ) );
+        assertEquals( -1, columns.indexOf( GBPUSD ) );
+        assertArrayEquals( new double[] { 1 }, columns.getOpen(), 0 );
+        assertArrayEquals( new double[] { 3 }, columns.getHigh(), 0 );
+        assertArrayEquals( new double[] { 0.5 }, columns.getLow(), 0 );
+        assertArrayEquals( new double[] { 2 }, columns.getClose(), 0 );
+        assertArrayEquals( new double[] { 100 }, columns.getVolume(), 0 );
+        assertTrue( Double.isNaN( columns.getBid()[0] ) );
+        assertTrue( Double.isNaN( columns.getAsk()[0] ) );
+    }
+
+    @Test
+    public void quoteOnlySymbolsTakeTheirPricesFromTheQuotes() {
+        final QuoteBars quoteBars = new QuoteBars();
+        quoteBars.put( GBPUSD, quoteBar( GBPUSD, new Bar( bd( 1.0 ), bd( 1.4 ), bd( 0.8 ), bd( 1.2 ) ), new Bar( bd( 1.2 ), bd( 1.6 ), bd( 1.0 ), bd( 1.4 ) ) ) );
+        // a quote with only a bid side
+        quoteBars.put( AUDUSD, quoteBar( AUDUSD, new Bar( bd( 0.7 ), bd( 0.8 ), bd( 0.6 ), bd( 0.75 ) ), null ) );
+        final SliceColumns columns = new SliceColumns( new TradeBars(), quoteBars );
+
+        assertEquals( 2, columns.size() );
+        final int gbp = columns.indexOf( GBPUSD );
+        assertEquals( 1.2, columns.getBid()[gbp], 1e-12 );
+        assertEquals( 1.4, columns.getAsk()[gbp], 1e-12 );
+        assertEquals( 1.1, columns.getOpen()[gbp], 1e-12 );
+        assertEquals( 1.5, columns.getHigh()[gbp], 1e-12 );
+        assertEquals( 0.9, columns.getLow()[gbp], 1e-12 );
+        assertEquals( 1.3, columns.getClose()[gbp], 1e-12 );
+        assertTrue( Double.isNaN( columns.getVolume()[gbp] ) );
+
+        final int aud = columns.indexOf( AUDUSD );
+        assertEquals( 0.75, columns.getBid()[aud], 0 );
+        assertTrue( Double.isNaN( columns.getAsk()[aud] ) );
+        assertEquals( 0.75, columns.getClose()[aud], 0 );
+    }
+
+    @Test
+    public void mixedSymbolsKeepTheTradesAndAddTheQuotes() {
+        final TradeBar eurTrade = tradeBar( EURUSD, 1.1, 1.2, 1.0, 1.15, 10 );
+        final TradeBar jpyTrade = tradeBar( USDJPY, 100, 102, 99, 101, 20 );
+        final QuoteBar jpyQuote = quoteBar( USDJPY, new Bar( bd( 99 ), bd( 101 ), bd( 98 ), bd( 100.5 ) ), new Bar( bd( 100 ), bd( 103 ), bd( 99 ), bd( 101.5 ) ) );
+        final QuoteBar gbpQuote = quoteBar( GBPUSD, new Bar( bd( 1.2 ), bd( 1.2 ), bd( 1.2 ), bd( 1.2 ) ), new Bar( bd( 1.4 ), bd( 1.4 ), bd( 1.4 ), bd( 1.4 ) ) );
+        final TradeBars tradeBars = new TradeBars();
+        tradeBars.put( EURUSD, eurTrade );
+        tradeBars.put( USDJPY, jpyTrade );
+        final QuoteBars quoteBars = new QuoteBars();
+        quoteBars.put( USDJPY, jpyQuote );
+        quoteBars.put( GBPUSD, gbpQuote );
+        final Slice slice = new Slice( TIME, Arrays.<BaseData>asList( eurTrade, jpyTrade ), tradeBars, quoteBars, null, null, null, null, null, null );
+
+        final SliceColumns columns = slice.getColumns();
+        assertEquals( 3, columns.size() );
+
+        // trade bar symbols come first, the quote only symbols after them
+        assertEquals( 2, columns.indexOf( GBPUSD ) );
+        assertEquals( GBPUSD, columns.getSymbol( 2 ) );
+
+        final int jpy = columns.indexOf( USDJPY );
+        assertEquals( 101, columns.getClose()[jpy], 0 );
+        assertEquals( 20, columns.getVolume()[jpy], 0 );
+        assertEquals( 100.5, columns.getBid()[jpy], 0 );
+        assertEquals( 101.5, columns.getAsk()[jpy], 0 );
+
+        final int eur = columns.indexOf( EURUSD );
+        assertEquals( 1.15, columns.getClose()[eur], 0 );
+        assertTrue( Double.isNaN( columns.getBid()[eur] ) );
+
+        assertEquals( 1.3, columns.getClose()[2], 1e-12 );
+        assertTrue( Double.isNaN( columns.getVolume()[2] ) );
+    }
+
+    @Test
+    public void gettersReturnCopies() {
+        final TradeBars tradeBars = new TradeBars();
+        tradeBars.put( EURUSD, tradeBar( EURUSD, 1, 1, 1, 1, 1 ) );
+        final SliceColumns columns = new SliceColumns( tradeBars, new QuoteBars() );
+
+        columns.getClose()[0] = 42;
+        columns.getBid()[0] = 42;
+        columns.getSymbols()[0] = GBPUSD;
+
+        assertEquals( 1, columns.getClose()[0], 0 );
+        assertTrue( Double.isNaN( columns.getBid()[0] ) );
+        assertEquals( EURUSD, columns.getSymbols()[0] );
+    }
+
+    @Test
+    public void zScoresIgnoreMissingValues() {
+        final double[] scores = SliceColumns.zScores( new double[] { 1, Double.NaN, 3 } );
+        assertEquals( -1, scores[0], 1e-12 );
+        assertTrue( Double.isNaN( scores[1] ) );
+        assertEquals( 1, scores[2], 1e-12 );
+    }
+
+    @Test
+    public void zScoresWithoutDispersionAreNaN() {
+        assertNaN( SliceColumns.zScores( new double[] { Double.NaN, Double.NaN } ) );
+        assertNaN( SliceColumns.zScores( new double[] { 5, Double.NaN } ) );
+        assertNaN( SliceColumns.zScores( new double[] { 2, 2, 2 } ) );
+        assertEquals( 0, SliceColumns.zScores( new double[0] ).length );
+    }
+
+    @Test
+    public void rankPutsNaNLastAndKeepsTiesInColumnOrder() {
+        final double[] values = { 3, Double.NaN, 1, 3, Double.NEGATIVE_INFINITY, Double.NaN, 2 };
+        assertArrayEquals( new int[] { 4, 2, 6, 0, 3, 1, 5 }, SliceColumns.rank( values ) );
+    }
+
+    private static void assertNaN( double[] values ) {
+        for( final double value : values )
+            assertTrue( Double.isNaN( value ) );
+    }
+
+    private static TradeBar tradeBar( Symbol symbol, double open, double high, double low, double close, long volume ) {
+        return new TradeBar( TIME, symbol, bd( open ), bd( high ), bd( low ), bd( close ), volume );
+    }
+
+    private static QuoteBar quoteBar( Symbol symbol, Bar bid, Bar ask ) {
+        return new QuoteBar( TIME, symbol, bid, 10, ask, 10 );
+    }
+
+    private static BigDecimal bd( double value ) {
+        return BigDecimal.valueOf( value );
+    }
+}
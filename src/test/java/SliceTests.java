@@ -0,0 +1,150 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.common.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+import com.quantconnect.lean.Market;
+import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.data.BaseData;
+import com.quantconnect.lean.data.Slice;
+import com.quantconnect.lean.data.market.DataDictionary;
+import com.quantconnect.lean.data.market.Tick;
+import com.quantconnect.lean.data.market.TradeBar;
+
+import javaslang.Lazy;
+
+public class SliceTests {
+
+    private static final Symbol EURUSD = Symbol.create( "EURUSD", SecurityType.Forex, Market.FXCM );
+    private static final Symbol GBPUSD = Symbol.create( "GBPUSD", SecurityType.Forex, Market.FXCM );
+    private static final Symbol USDJPY = Symbol.create( "USDJPY", SecurityType.Forex, Market.FXCM );
+    private static final LocalDateTime TIME = LocalDateTime.of( 2016, 10, 3, 9, 30 );
+
+    private final TradeBar eurusd = tradeBar( EURUSD, "1.12" );
+    private final TradeBar gbpusd = tradeBar( GBPUSD, "1.29" );
+    private final Tick firstTick = new Tick( TIME, USDJPY, new BigDecimal( "101.1" ), new BigDecimal( "101.2" ) );
+    private final Tick lastTick = new Tick( TIME, USDJPY, new BigDecimal( "101.3" ), new BigDecimal( "101.4" ) );
+
+    @Test
+    public void typedDictionariesAreBuiltOnceAndReadOnly() {
+        final Slice slice = slice();
+
+        final DataDictionary<TradeBar> tradeBars = slice.get( TradeBar.class );
+        assertSame( tradeBars, slice.get( TradeBar.class ) );
+        assertEquals( 2, tradeBars.size() );
+        assertSame( eurusd, tradeBars.get( EURUSD ) );
+        assertSame( gbpusd, tradeBars.get( GBPUSD ) );
+        assertTrue( tradeBars.isReadOnly() );
+        try {
+            tradeBars.put( USDJPY, tradeBar( USDJPY, "101" ) );
+            fail();
+        }
+        catch( UnsupportedOperationException e ) {
+            // expected
+        }
+
+        // tick subscriptions are represented by their last tick
+        final DataDictionary<Tick> ticks = slice.get( Tick.class );
+        assertSame( ticks, slice.get( Tick.class ) );
+        assertEquals( 1, ticks.size() );
+        assertSame( lastTick, ticks.get( USDJPY ) );
+
+        // base types hold every symbol
+        assertEquals( 3, slice.get( BaseData.class ).size() );
+    }
+
+    @Test
+    public void entriesAreBuiltOnFirstIteration() throws Exception {
+        final Slice slice = slice();
+        assertFalse( entries( slice ).isEvaluated() );
+        assertEquals( 3, slice.getCount() );
+        assertFalse( entries( slice ).isEvaluated() );
+
+        final Map<Symbol,BaseData> iterated = new HashMap<>();
+        for( final Entry<Symbol,BaseData> entry : slice )
+            iterated.put( entry.getKey(), entry.getValue() );
+        assertTrue( entries( slice ).isEvaluated() );
+
+        assertEquals( 3, iterated.size() );
+        assertSame( eurusd, iterated.get( EURUSD ) );
+        assertSame( gbpusd, iterated.get( GBPUSD ) );
+        assertSame( lastTick, iterated.get( USDJPY ) );
+
+        // values come from the same entries, in the same order
+        final List<BaseData> values = slice.values();
+        int i = 0;
+        for( final Entry<Symbol,BaseData> entry : slice )
+            assertSame( entry.getValue(), values.get( i++ ) );
+
+        try {
+            slice.iterator().next().setValue( eurusd );
+            fail();
+        }
+        catch( UnsupportedOperationException e ) {
+            // expected
+        }
+    }
+
+    @Test
+    public void collectionsAreBuiltFromTheDataWhenNotProvided() {
+        final Slice slice = slice();
+
+        // the ticks collection built from the data is returned, not the missing input
+        assertEquals( 1, slice.getTicks().size() );
+        assertEquals( Arrays.asList( firstTick, lastTick ), slice.getTicks().get( USDJPY ) );
+
+        // each collection only holds data of its own type
+        assertEquals( 2, slice.getBars().size() );
+        assertSame( eurusd, slice.getBars().get( EURUSD ) );
+        assertEquals( 0, slice.getQuoteBars().size() );
+        assertEquals( 0, slice.getSplits().size() );
+    }
+
+    private Slice slice() {
+        return new Slice( TIME, Arrays.<BaseData>asList( eurusd, firstTick, gbpusd, lastTick ) );
+    }
+
+    /**
+     * The slice's lazily built entries, private to the slice
+     */
+    private static Lazy<?> entries( Slice slice ) throws Exception {
+        final Field field = Slice.class.getDeclaredField( "_entries" );
+        field.setAccessible( true );
+        return (Lazy<?>)field.get( slice );
+    }
+
+    private static TradeBar tradeBar( Symbol symbol, String price ) {
+        final BigDecimal value = new BigDecimal( price );
+        return new TradeBar( TIME, symbol, value, value, value, value, 1000 );
+    }
+}
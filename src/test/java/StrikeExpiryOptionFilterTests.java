@@ -0,0 +1,174 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.common.securities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import com.quantconnect.lean.Global;
+import com.quantconnect.lean.Market;
+import com.quantconnect.lean.OptionRight;
+import com.quantconnect.lean.OptionStyle;
+import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.data.BaseData;
+import com.quantconnect.lean.data.market.TradeBar;
+import com.quantconnect.lean.securities.StrikeExpiryOptionFilter;
+
+public class StrikeExpiryOptionFilterTests {
+
+    private static final Symbol SPY = Symbol.create( "SPY", SecurityType.Option, Market.USA );
+    private static final LocalDate START = LocalDate.of( 2016, 10, 3 );
+
+    /**
+     * The order of the filtered contracts, strikes are unique for an expiry and right in these tests
+     */
+    private static final Comparator<Symbol> FILTER_ORDER = Comparator.<Symbol,LocalDate>comparing( symbol -> symbol.getId().getDate() )
+            .thenComparing( symbol -> symbol.getId().getOptionRight() )
+            .thenComparing( symbol -> symbol.getId().getStrikePrice() );
+
+    @Test
+    public void filtersTheContractsAroundTheUnderlyingPriceInIndexOrder() {
+        final LocalDate december = LocalDate.of( 2016, 12, 16 );
+        final LocalDate november = LocalDate.of( 2016, 11, 18 );
+        final Symbol decemberPut = contract( OptionRight.PUT, "100", december );
+        final Symbol decemberCall = contract( OptionRight.CALL, "102.5", december );
+        final Symbol novemberCall105 = contract( OptionRight.CALL, "105", november );
+        final Symbol novemberCall100 = contract( OptionRight.CALL, "100", november );
+        final Symbol tooHigh = contract( OptionRight.CALL, "110", november );
+        final Symbol tooLate = contract( OptionRight.CALL, "100", LocalDate.of( 2017, 1, 20 ) );
+
+        final StrikeExpiryOptionFilter filter = new StrikeExpiryOptionFilter( -1, 2, Duration.ZERO, Duration.ofDays( 90 ) );
+        final List<Symbol> symbols = Arrays.asList( tooLate, decemberPut, tooHigh, decemberCall, novemberCall105, novemberCall100 );
+
+        // the spacing is 2.5, so strikes from 99 to 106
+        assertEquals( Arrays.asList( novemberCall100, novemberCall105, decemberCall, decemberPut ), toList( filter.filter( symbols, underlying( START, "101.5" ) ) ) );
+    }
+
+    @Test
+    public void expiryBoundsOfPartialDaysRoundInwards() {
+        final Symbol tomorrow = contract( OptionRight.CALL, "100", START.plusDays( 1 ) );
+        final Symbol inTwoDays = contract( OptionRight.CALL, "100", START.plusDays( 2 ) );
+        final Symbol inThreeDays = contract( OptionRight.CALL, "100", START.plusDays( 3 ) );
+        final List<Symbol> symbols = Arrays.asList( tomorrow, inTwoDays, inThreeDays );
+
+        final StrikeExpiryOptionFilter filter = new StrikeExpiryOptionFilter( -1, 1, Duration.ofHours( 36 ), Duration.ofHours( 60 ) );
+        assertEquals( Collections.singletonList( inTwoDays ), toList( filter.filter( symbols, underlying( START, "100" ) ) ) );
+    }
+
+    @Test
+    public void missingUnderlyingSkipsTheFilter() {
+        final StrikeExpiryOptionFilter filter = new StrikeExpiryOptionFilter( -1, 1, Duration.ZERO, Duration.ofDays( 30 ) );
+        final List<Symbol> symbols = Collections.singletonList( contract( OptionRight.CALL, "100", START.plusYears( 1 ) ) );
+        assertSame( symbols, filter.filter( symbols, null ) );
+    }
+
+    @Test
+    public void filterMatchesALinearScanOfTheContracts() {
+        final Random random = new Random( 11 );
+        final StrikeExpiryOptionFilter filter = new StrikeExpiryOptionFilter( -3, 4, Duration.ofDays( 2 ), Duration.ofDays( 40 ) );
+        final List<Symbol> chain = new ArrayList<>();
+
+        for( int day = 0; day < 30; day++ ) {
+            final LocalDate date = START.plusDays( day );
+
+            // contracts are listed and delisted as the days go by
+            for( int i = 0; i < 30; i++ ) {
+                final OptionRight right = random.nextBoolean() ? OptionRight.CALL : OptionRight.PUT;
+                final String strike = BigDecimal.valueOf( 800 + 5 * random.nextInt( 80 ), 1 ).toPlainString();
+                final Symbol symbol = contract( right, strike, START.plusDays( random.nextInt( 90 ) ) );
+                if( !chain.contains( symbol ) )
+                    chain.add( symbol );
+            }
+            for( int i = 0; i < 10 && !chain.isEmpty(); i++ )
+                chain.remove( random.nextInt( chain.size() ) );
+            Collections.shuffle( chain, random );
+
+            for( int minute = 0; minute < 5; minute++ ) {
+                final BaseData underlying = underlying( date, BigDecimal.valueOf( 8000 + random.nextInt( 4000 ), 2 ).toPlainString() );
+                final List<Symbol> expected = linearFilter( chain, underlying, -3, 4, Duration.ofDays( 2 ), Duration.ofDays( 40 ) );
+                expected.sort( FILTER_ORDER );
+                assertEquals( expected, toList( filter.filter( chain, underlying ) ) );
+            }
+        }
+    }
+
+    /**
+     * The filter as it was before it kept an index of the contracts: a scan of every contract per call
+     */
+    private static List<Symbol> linearFilter( List<Symbol> symbols, BaseData underlying, int minStrike, int maxStrike, Duration minExpiry, Duration maxExpiry ) {
+        final TreeSet<BigDecimal> uniqueStrikes = new TreeSet<>();
+        for( final Symbol symbol : symbols )
+            uniqueStrikes.add( symbol.getId().getStrikePrice() );
+
+        BigDecimal strikeSize = null;
+        BigDecimal previous = null;
+        for( final BigDecimal strike : uniqueStrikes ) {
+            if( previous != null && ( strikeSize == null || strike.subtract( previous ).compareTo( strikeSize ) < 0 ) )
+                strikeSize = strike.subtract( previous );
+            previous = strike;
+        }
+        if( strikeSize == null )
+            strikeSize = Global.FIVE;
+
+        final LocalDate date = underlying.getTime().toLocalDate();
+        final BigDecimal minPrice = underlying.getPrice().add( strikeSize.multiply( BigDecimal.valueOf( minStrike ) ) );
+        final BigDecimal maxPrice = underlying.getPrice().add( strikeSize.multiply( BigDecimal.valueOf( maxStrike ) ) );
+        final LocalDate minExp = date.plusDays( minExpiry.toDays() );
+        final LocalDate maxExp = date.plusDays( maxExpiry.toDays() );
+
+        final List<Symbol> filtered = new ArrayList<>();
+        for( final Symbol symbol : symbols ) {
+            final BigDecimal strikePrice = symbol.getId().getStrikePrice();
+            final LocalDate expiry = symbol.getId().getDate();
+            if( strikePrice.compareTo( minPrice ) >= 0 && strikePrice.compareTo( maxPrice ) <= 0 && !expiry.isBefore( minExp ) && !expiry.isAfter( maxExp ) )
+                filtered.add( symbol );
+        }
+        return filtered;
+    }
+
+    private static List<Symbol> toList( Iterable<Symbol> symbols ) {
+        final List<Symbol> list = new ArrayList<>();
+        for( final Symbol symbol : symbols )
+            list.add( symbol );
+        return list;
+    }
+
+    private static BaseData underlying( LocalDate date, String price ) {
+        final BigDecimal value = new BigDecimal( price );
+        final LocalDateTime time = date.atTime( 10, 0 );
+        // the underlying's time and price are all the filter reads, the canonical symbol stands in for the equity
+        return new TradeBar( time, SPY, value, value, value, value, 100 );
+    }
+
+    private static Symbol contract( OptionRight right, String strike, LocalDate expiry ) {
+        return Symbol.createOption( "SPY", Market.USA, OptionStyle.AMERICAN, right, new BigDecimal( strike ), expiry );
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.engine.datafeeds;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import com.quantconnect.lean.Global;
+import com.quantconnect.lean.Market;
+import com.quantconnect.lean.OptionRight;
+import com.quantconnect.lean.OptionStyle;
+import com.quantconnect.lean.Resolution;
+import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.TimeKeeper;
+import com.quantconnect.lean.data.BaseData;
+import com.quantconnect.lean.data.Slice;
+import com.quantconnect.lean.data.SubscriptionDataConfig;
+import com.quantconnect.lean.data.SubscriptionManager;
+import com.quantconnect.lean.data.market.OptionChain;
+import com.quantconnect.lean.data.market.Split;
+import com.quantconnect.lean.data.market.Tick;
+import com.quantconnect.lean.data.market.TradeBar;
+import com.quantconnect.lean.data.universeselection.OptionChainUniverseDataCollection;
+import com.quantconnect.lean.lean.engine.datafeeds.DataFeedPacket;
+import com.quantconnect.lean.lean.engine.datafeeds.TimeSlice;
+import com.quantconnect.lean.lean.engine.datafeeds.TimeSliceBuilder;
+import com.quantconnect.lean.lean.engine.datafeeds.UpdateData;
+import com.quantconnect.lean.securities.Cash;
+import com.quantconnect.lean.securities.CashBook;
+import com.quantconnect.lean.securities.Security;
+import com.quantconnect.lean.securities.SecurityExchangeHours;
+import com.quantconnect.lean.securities.SymbolProperties;
+import com.quantconnect.lean.securities.option.Option;
+
+public class TimeSliceBuilderTests {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool( 4 );
+    private static final LocalDateTime UTC_TIME = LocalDateTime.of( 2016, 8, 1, 14, 31 );
+
+    @AfterClass
+    public static void shutdownPool() {
+        POOL.shutdown();
+    }
+
+    @Test
+    public void parallelAssemblyMatchesSequentialForRandomTimeSteps() {
+        final Random random = new Random( 20160801 );
+        for( int iteration = 0; iteration < 50; iteration++ ) {
+            final TimeStep step = createRandomTimeStep( random, 1 + random.nextInt( 2000 ) );
+            assertEquivalent( step, new TimeSliceBuilder( POOL, 1 + random.nextInt( 64 ) ) );
+        }
+    }
+
+    @Test
+    public void parallelAssemblyMatchesSequentialWhenBuilderIsReused() {
+        final Random random = new Random( 42 );
+        final TimeSliceBuilder sequential = new TimeSliceBuilder();
+        final TimeSliceBuilder parallel = new TimeSliceBuilder( POOL, 16 );
+        for( int iteration = 0; iteration < 20; iteration++ ) {
+            final TimeStep step = createRandomTimeStep( random, 1 + random.nextInt( 1000 ) );
+            assertEquivalent( sequential.create( UTC_TIME, Global.NEW_YORK_TZ_ID, step.cashBook, step.packets, null ),
+                    parallel.create( UTC_TIME, Global.NEW_YORK_TZ_ID, step.cashBook, step.packets, null ) );
+        }
+    }
+
+    @Test
+    public void cashSecuritiesUpdateTheirCashWithTheLastDataPoint() {
+        final Security eurusd = createSecurity( "EURUSD", false, false, false );
+        final Security usdjpy = createSecurity( "USDJPY", false, false, false );
+        final TradeBar first = new TradeBar( UTC_TIME, eurusd.getSymbol(), BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, 10 );
+        final TradeBar last = new TradeBar( UTC_TIME, eurusd.getSymbol(), BigDecimal.TEN, BigDecimal.TEN, BigDecimal.TEN, BigDecimal.TEN, 10 );
+        final TradeBar yen = new TradeBar( UTC_TIME, usdjpy.getSymbol(), BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, 10 );
+
+        final List<DataFeedPacket> packets = new ArrayList<>();
+        for( int i = 0; i < 100; i++ )
+            packets.add( new DataFeedPacket( usdjpy, usdjpy.getSubscriptions().get( 0 ), Collections.singletonList( yen ) ) );
+        packets.add( new DataFeedPacket( eurusd, eurusd.getSubscriptions().get( 0 ), Arrays.asList( first, last ) ) );
+
+        final CashBook cashBook = new CashBook();
+        final Cash euro = addCash( cashBook, "EUR", eurusd );
+        final Cash jpy = addCash( cashBook, "JPY", usdjpy );
+
+        final TimeSlice timeSlice = new TimeSliceBuilder( POOL, 8 ).create( UTC_TIME, Global.NEW_YORK_TZ_ID, cashBook, packets, null );
+        assertEquals( 101, timeSlice.CashBookUpdateData.size() );
+        for( int i = 0; i < 100; i++ ) {
+            assertSame( jpy, timeSlice.CashBookUpdateData.get( i ).target );
+            assertEquals( Collections.singletonList( yen ), timeSlice.CashBookUpdateData.get( i ).data );
+        }
+        assertSame( euro, timeSlice.CashBookUpdateData.get( 100 ).target );
+        assertEquals( Collections.singletonList( last ), timeSlice.CashBookUpdateData.get( 100 ).data );
+
+        assertEquivalent( new TimeStep( packets, cashBook ), new TimeSliceBuilder( POOL, 8 ) );
+    }
+
+    @Test
+    public void optionPacketsBuildTheirChainsBetweenParallelRuns() {
+        final Random random = new Random( 7 );
+        final Option option = createOption( "SPY" );
+        final Security eurusd = createSecurity( "EURUSD", false, false, false );
+        final TradeBar underlying = new TradeBar( UTC_TIME, eurusd.getSymbol(), BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, 10 );
+
+        final List<DataFeedPacket> packets = new ArrayList<>();
+        for( int run = 0; run < 3; run++ ) {
+            for( int i = 0; i < 200; i++ )
+                packets.add( new DataFeedPacket( eurusd, eurusd.getSubscriptions().get( 0 ), Collections.singletonList( underlying ) ) );
+            packets.add( createOptionPacket( random, option ) );
+        }
+
+        final TimeSlice expected = new TimeSliceBuilder().create( UTC_TIME, Global.NEW_YORK_TZ_ID, new CashBook(), packets, null );
+        final TimeSlice actual = new TimeSliceBuilder( POOL, 16 ).create( UTC_TIME, Global.NEW_YORK_TZ_ID, new CashBook(), packets, null );
+        assertEquivalent( expected, actual );
+        assertEquals( 1, actual.Slice.getOptionChains().size() );
+    }
+
+    @Test
+    public void createdSlicesAreNotChangedByTheNextSlice() {
+        final Security eurusd = createSecurity( "EURUSD", false, false, false );
+        final Security gbpusd = createSecurity( "GBPUSD", false, false, false );
+        final TradeBar euro = new TradeBar( UTC_TIME, eurusd.getSymbol(), BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, 10 );
+        final TradeBar pound = new TradeBar( UTC_TIME, gbpusd.getSymbol(), BigDecimal.TEN, BigDecimal.TEN, BigDecimal.TEN, BigDecimal.TEN, 10 );
+
+        final TimeSlice retained = TimeSlice.create( UTC_TIME, Global.NEW_YORK_TZ_ID, new CashBook(),
+                Collections.singletonList( new DataFeedPacket( eurusd, eurusd.getSubscriptions().get( 0 ), Collections.singletonList( euro ) ) ), null );
+        final TimeSlice next = TimeSlice.create( UTC_TIME.plusMinutes( 1 ), Global.NEW_YORK_TZ_ID, new CashBook(),
+                Collections.singletonList( new DataFeedPacket( gbpusd, gbpusd.getSubscriptions().get( 0 ), Collections.singletonList( pound ) ) ), null );
+
+        assertEquals( Collections.singletonMap( eurusd.getSymbol(), euro ), new HashMap<>( retained.Slice.getBars() ) );
+        assertEquals( 1, retained.SecuritiesUpdateData.size() );
+        assertSame( eurusd, retained.SecuritiesUpdateData.get( 0 ).target );
+        assertEquals( Collections.singletonMap( gbpusd.getSymbol(), pound ), new HashMap<>( next.Slice.getBars() ) );
+    }
+
+    @Test
+    public void slicesOfAReusedBuilderCannotBeMadeWritable() {
+        final TimeSliceBuilder builder = new TimeSliceBuilder();
+        final Security eurusd = createSecurity( "EURUSD", false, false, false );
+        final TradeBar bar = new TradeBar( UTC_TIME, eurusd.getSymbol(), BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, 10 );
+        final List<DataFeedPacket> packets = Collections.singletonList( new DataFeedPacket( eurusd, eurusd.getSubscriptions().get( 0 ), Collections.singletonList( bar ) ) );
+
+        final TimeSlice timeSlice = builder.create( UTC_TIME, Global.NEW_YORK_TZ_ID, new CashBook(), packets, null );
+        try {
+            timeSlice.Slice.getBars().lockReadOnly();
+            fail( "The bars are already read only" );
+        }
+        catch( IllegalStateException e ) {
+            // expected
+        }
+        try {
+            timeSlice.Slice.getBars().remove( eurusd.getSymbol() );
+            fail( "The bars should be read only" );
+        }
+        catch( UnsupportedOperationException e ) {
+            // expected
+        }
+
+        // the builder itself still refills its dictionaries
+        assertEquals( bar, builder.create( UTC_TIME, Global.NEW_YORK_TZ_ID, new CashBook(), packets, null ).Slice.getBars().get( eurusd.getSymbol() ) );
+    }
+
+    private static void assertEquivalent( final TimeStep step, final TimeSliceBuilder parallel ) {
+        final TimeSlice expected = new TimeSliceBuilder().create( UTC_TIME, Global.NEW_YORK_TZ_ID, step.cashBook, step.packets, null );
+        final TimeSlice actual = parallel.create( UTC_TIME, Global.NEW_YORK_TZ_ID, step.cashBook, step.packets, null );
+        assertEquivalent( expected, actual );
+    }
+
+    private static void assertEquivalent( final TimeSlice expected, final TimeSlice actual ) {
+        assertEquals( expected.getDataPointCount(), actual.getDataPointCount() );
+        assertUpdatesEqual( expected.SecuritiesUpdateData, actual.SecuritiesUpdateData );
+        assertUpdatesEqual( expected.ConsolidatorUpdateData, actual.ConsolidatorUpdateData );
+        assertUpdatesEqual( expected.CustomData, actual.CustomData );
+        assertUpdatesEqual( expected.CashBookUpdateData, actual.CashBookUpdateData );
+
+        final Slice expectedSlice = expected.Slice;
+        final Slice actualSlice = actual.Slice;
+        assertEquals( expectedSlice.hasData(), actualSlice.hasData() );
+        assertEquals( expectedSlice.keySet(), actualSlice.keySet() );
+        assertEquals( expectedSlice.values(), actualSlice.values() );
+        assertEquals( new HashMap<>( expectedSlice.getBars() ), new HashMap<>( actualSlice.getBars() ) );
+        assertEquals( new HashMap<>( expectedSlice.getQuoteBars() ), new HashMap<>( actualSlice.getQuoteBars() ) );
+        assertEquals( new HashMap<>( expectedSlice.getTicks() ), new HashMap<>( actualSlice.getTicks() ) );
+        assertEquals( new HashMap<>( expectedSlice.getSplits() ), new HashMap<>( actualSlice.getSplits() ) );
+
+        // chains built from universe data are new instances in each slice, so compare their contents
+        assertEquals( expectedSlice.getOptionChains().keySet(), actualSlice.getOptionChains().keySet() );
+        for( final Symbol symbol : expectedSlice.getOptionChains().keySet() ) {
+            final OptionChain expectedChain = expectedSlice.getOptionChains().get( symbol );
+            final OptionChain actualChain = actualSlice.getOptionChains().get( symbol );
+            assertSame( expectedChain.getUnderlying(), actualChain.getUnderlying() );
+            assertEquals( expectedChain.getFilteredContracts(), actualChain.getFilteredContracts() );
+        }
+    }
+
+    private static <T> void assertUpdatesEqual( final List<UpdateData<T>> expected, final List<UpdateData<T>> actual ) {
+        assertEquals( expected.size(), actual.size() );
+        for( int i = 0; i < expected.size(); i++ ) {
+            assertEquals( expected.get( i ).target, actual.get( i ).target );
+            assertEquals( expected.get( i ).dataType, actual.get( i ).dataType );
+            assertEquals( expected.get( i ).data, actual.get( i ).data );
+        }
+    }
+
+    /**
+     * Creates packets over a small universe of currency pairs so later packets overwrite earlier dictionary entries,
+     * mixing trade bars, ticks, splits, internal feeds, custom data, pairs converting cash and option chains
+     */
+    private static TimeStep createRandomTimeStep( final Random random, final int count ) {
+        final int universeSize = 1 + random.nextInt( count );
+        final Map<Integer,Security> securities = new HashMap<>();
+        final CashBook cashBook = new CashBook();
+        final List<DataFeedPacket> packets = new ArrayList<>( count );
+        for( int i = 0; i < count; i++ ) {
+            final int index = random.nextInt( universeSize );
+            if( index % 7 == 6 ) {
+                final Option option = (Option)securities.computeIfAbsent( index, x -> createOption( "OP" + x ) );
+                packets.add( createOptionPacket( random, option ) );
+                continue;
+            }
+
+            final boolean ticks = index % 3 == 0;
+            final Security security = securities.computeIfAbsent( index, x -> {
+                final String currency = getCurrency( x );
+                final Security created = createSecurity( currency + CashBook.ACCOUNT_CURRENCY, ticks, random.nextInt( 10 ) == 0, random.nextInt( 10 ) == 0 );
+                if( random.nextInt( 3 ) == 0 )
+                    addCash( cashBook, currency, created );
+                return created;
+            } );
+            final Symbol symbol = security.getSymbol();
+
+            final List<BaseData> data = new ArrayList<>();
+            final int points = random.nextInt( 4 );
+            for( int j = 0; j < points; j++ ) {
+                final BigDecimal price = BigDecimal.valueOf( 1 + random.nextInt( 10000 ), 2 );
+                if( random.nextInt( 20 ) == 0 )
+                    data.add( new Split( symbol, UTC_TIME, price, BigDecimal.valueOf( 2 ) ) );
+                else if( ticks )
+                    data.add( new Tick( UTC_TIME, symbol, price, price, price ) );
+                else
+                    data.add( new TradeBar( UTC_TIME, symbol, price, price, price, price, random.nextInt( 100000 ) ) );
+            }
+
+            packets.add( new DataFeedPacket( security, security.getSubscriptions().get( 0 ), data ) );
+        }
+
+        return new TimeStep( packets, cashBook );
+    }
+
+    /**
+     * Gets a three letter currency code for the specified index of the universe
+     */
+    private static String getCurrency( final int index ) {
+        final char[] code = new char[3];
+        int remainder = index;
+        for( int i = code.length - 1; i >= 0; i-- ) {
+            code[i] = (char)( 'A' + remainder % 26 );
+            remainder /= 26;
+        }
+        return new String( code );
+    }
+
+    /**
+     * Adds cash converted by the specified currency pair, the pair is resolved from the subscriptions like the algorithm does
+     */
+    private static Cash addCash( final CashBook cashBook, final String currency, final Security pair ) {
+        final SubscriptionManager subscriptions = new SubscriptionManager( new TimeKeeper( UTC_TIME, Global.NEW_YORK_TZ_ID ) );
+        subscriptions.add( pair.getSymbol(), Resolution.Minute, Global.NEW_YORK_TZ_ID, Global.NEW_YORK_TZ_ID );
+
+        final Cash cash = new Cash( currency, BigDecimal.ZERO, BigDecimal.ONE );
+        cash.ensureCurrencyDataFeed( null, subscriptions, null, null, null, cashBook );
+        cashBook.put( currency, cash );
+        return cash;
+    }
+
+    /**
+     * Creates a packet of option universe data, selecting a random set of contracts of the option's underlying
+     */
+    private static DataFeedPacket createOptionPacket( final Random random, final Option option ) {
+        final Symbol canonical = option.getSymbol();
+        final BigDecimal price = BigDecimal.valueOf( 1 + random.nextInt( 10000 ), 2 );
+        final TradeBar underlying = new TradeBar( UTC_TIME, canonical, price, price, price, price, 100 );
+
+        final Set<Symbol> contracts = new HashSet<>();
+        final int count = 1 + random.nextInt( 4 );
+        for( int i = 0; i < count; i++ ) {
+            contracts.add( Symbol.createOption( canonical.getId().getSymbol(), Market.USA, OptionStyle.AMERICAN, random.nextBoolean() ? OptionRight.CALL : OptionRight.PUT,
+                    BigDecimal.valueOf( 50 + random.nextInt( 100 ) ), UTC_TIME.toLocalDate().plusDays( 1 + random.nextInt( 60 ) ) ) );
+        }
+
+        final OptionChainUniverseDataCollection universe = new OptionChainUniverseDataCollection( UTC_TIME, canonical,
+                Collections.singletonList( underlying ), underlying );
+        universe.setFilteredContracts( contracts );
+        return new DataFeedPacket( option, option.getSubscriptions().get( 0 ), Collections.singletonList( universe ) );
+    }
+
+    private static Security createSecurity( final String ticker, final boolean ticks, final boolean isInternalFeed, final boolean isCustom ) {
+        final Symbol symbol = Symbol.create( ticker, SecurityType.Forex, Market.FXCM );
+        final SubscriptionDataConfig config = new SubscriptionDataConfig( ticks ? Tick.class : TradeBar.class, symbol, ticks ? Resolution.Tick : Resolution.Minute,
+                Global.NEW_YORK_TZ_ID, Global.NEW_YORK_TZ_ID, true, false, isInternalFeed, isCustom, null, false );
+        return new Security( SecurityExchangeHours.alwaysOpen( Global.NEW_YORK_TZ_ID ), config, new Cash( CashBook.ACCOUNT_CURRENCY, BigDecimal.ZERO, BigDecimal.ONE ),
+                SymbolProperties.getDefault( CashBook.ACCOUNT_CURRENCY ) );
+    }
+
+    private static Option createOption( final String underlying ) {
+        final Symbol symbol = Symbol.create( underlying, SecurityType.Option, Market.USA );
+        final SubscriptionDataConfig config = new SubscriptionDataConfig( OptionChainUniverseDataCollection.class, symbol, Resolution.Minute,
+                Global.NEW_YORK_TZ_ID, Global.NEW_YORK_TZ_ID, true, false, false, false, null, false );
+        return new Option( SecurityExchangeHours.alwaysOpen( Global.NEW_YORK_TZ_ID ), config, new Cash( CashBook.ACCOUNT_CURRENCY, BigDecimal.ZERO, BigDecimal.ONE ),
+                SymbolProperties.getDefault( CashBook.ACCOUNT_CURRENCY ) );
+    }
+
+    private static final class TimeStep {
+        final List<DataFeedPacket> packets;
+        final CashBook cashBook;
+
+        TimeStep( final List<DataFeedPacket> packets, final CashBook cashBook ) {
+            this.packets = packets;
+            this.cashBook = cashBook;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * QUANTCONNECT.COM - Democratizing Finance, Empowering Individuals.
+ * Lean Algorithmic Trading Engine v2.0. Copyright 2014 QuantConnect Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.quantconnect.lean.tests.common.orders.fills;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.quantconnect.lean.Market;
+import com.quantconnect.lean.SecurityType;
+import com.quantconnect.lean.Symbol;
+import com.quantconnect.lean.orders.LimitOrder;
+import com.quantconnect.lean.orders.Order;
+import com.quantconnect.lean.orders.OrderTypes.OrderStatus;
+import com.quantconnect.lean.orders.OrderTypes.OrderType;
+import com.quantconnect.lean.orders.StopLimitOrder;
+import com.quantconnect.lean.orders.SubmitOrderRequest;
+import com.quantconnect.lean.orders.fills.TriggerPriceIndex;
+
+public class TriggerPriceIndexTests {
+
+    private static final Symbol EURUSD = Symbol.create( "EURUSD", SecurityType.Forex, Market.FXCM );
+    private static final LocalDateTime TIME = LocalDateTime.of( 2016, 10, 3, 9, 30 );
+
+    private TriggerPriceIndex index;
+    private int nextId;
+
+    @Before
+    public void setUp() {
+        index = new TriggerPriceIndex();
+        nextId = 1;
+    }
+
+    @Test
+    public void buyLimitsCrossWhenTheAskFallsToTheirLimit() {
+        final Order near = add( OrderType.Limit, 100, 0, 99 );
+        final Order far = add( OrderType.Limit, 100, 0, 95 );
+
+        assertCrossed( query( price( 100 ), price( 100 ), price( 100 ), price( 100 ) ) );
+        assertCrossed( query( price( 99 ), price( 101 ), price( 100 ), price( 100 ) ), near );
+        assertCrossed( query( price( 94 ), price( 101 ), price( 100 ), price( 100 ) ), far, near );
+    }
+
+    @Test
+    public void buyStopsCrossWhenTheAskRisesToTheirStop() {
+        final Order near = add( OrderType.StopMarket, 100, 101, 0 );
+        final Order far = add( OrderType.StopMarket, 100, 105, 0 );
+
+        assertCrossed( query( price( 100 ), price( 100 ), price( 100 ), price( 100 ) ) );
+        assertCrossed( query( price( 99 ), price( 101 ), price( 100 ), price( 100 ) ), near );
+        assertCrossed( query( price( 99 ), price( 106 ), price( 100 ), price( 100 ) ), near, far );
+    }
+
+    @Test
+    public void sellStopsCrossWhenTheBidFallsToTheirStop() {
+        final Order near = add( OrderType.StopMarket, -100, 99, 0 );
+        final Order far = add( OrderType.StopMarket, -100, 95, 0 );
+
+        assertCrossed( query( price( 100 ), price( 100 ), price( 100 ), price( 100 ) ) );
+        assertCrossed( query( price( 100 ), price( 100 ), price( 99 ), price( 101 ) ), near );
+        assertCrossed( query( price( 100 ), price( 100 ), price( 94 ), price( 101 ) ), far, near );
+    }
+
+    @Test
+    public void sellLimitsCrossWhenTheBidRisesToTheirLimit() {
+        final Order near = add( OrderType.Limit, -100, 0, 101 );
+        final Order far = add( OrderType.Limit, -100, 0, 105 );
+
+        assertCrossed( query( price( 100 ), price( 100 ), price( 100 ), price( 100 ) ) );
+        assertCrossed( query( price( 100 ), price( 100 ), price( 99 ), price( 101 ) ), near );
+        assertCrossed( query( price( 100 ), price( 100 ), price( 99 ), price( 106 ) ), near, far );
+    }
+
+    @Test
+    public void sidesAreQueriedWithTheirOwnPrices() {
+        final Order buyLimit = add( OrderType.Limit, 100, 0, 99 );
+        final Order sellLimit = add( OrderType.Limit, -100, 0, 99 );
+
+        // a wide spread, the ask never falls to the buy limit while the bid is above the sell limit
+        assertCrossed( query( price( 100 ), price( 100 ), price( 98 ), price( 99 ) ), sellLimit );
+        assertCrossed( query( price( 99 ), price( 100 ), price( 98 ), price( 98 ) ), buyLimit );
+    }
+
+    @Test
+    public void triggeredBuyStopLimitMovesToTheLimitBook() {
+        final StopLimitOrder order = (StopLimitOrder)add( OrderType.StopLimit, 100, 101, 100 );
+
+        // the ask reaches the stop, the fill model triggers the stop without filling
+        assertCrossed( query( price( 101 ), price( 101 ), price( 101 ), price( 101 ) ), order );
+        assertCrossed( query( price( 101 ), price( 101 ), price( 101 ), price( 101 ), o -> ((StopLimitOrder)o).setStopTriggered( true ) ), order );
+
+        // now indexed by its limit, the ask rising further no longer crosses it, falling back to the limit does
+        assertCrossed( query( price( 101 ), price( 110 ), price( 101 ), price( 110 ) ) );
+        assertCrossed( query( price( 100 ), price( 101 ), price( 100 ), price( 101 ) ), order );
+        assertEquals( 1, index.size() );
+    }
+
+    @Test
+    public void triggeredSellStopLimitMovesToTheLimitBook() {
+        final StopLimitOrder order = (StopLimitOrder)add( OrderType.StopLimit, -100, 99, 100 );
+
+        assertCrossed( query( price( 99 ), price( 99 ), price( 99 ), price( 99 ), o -> ((StopLimitOrder)o).setStopTriggered( true ) ), order );
+
+        // now indexed by its limit, the bid falling further no longer crosses it, rising back to the limit does
+        assertCrossed( query( price( 90 ), price( 99 ), price( 90 ), price( 99 ) ) );
+        assertCrossed( query( price( 99 ), price( 100 ), price( 99 ), price( 100 ) ), order );
+        assertEquals( 1, index.size() );
+    }
+
+    @Test
+    public void closedOrdersAreRemovedAfterTheAction() {
+        final ClosableLimitOrder order = new ClosableLimitOrder( nextId++, 100, price( 99 ) );
+        final Order other = add( OrderType.Limit, 100, 0, 99 );
+        index.add( order );
+
+        assertCrossed( query( price( 99 ), price( 99 ), price( 99 ), price( 99 ), o -> {
+            if( o == order )
+                order.close();
+        } ), other, order );
+
+        assertEquals( 1, index.size() );
+        assertCrossed( query( price( 99 ), price( 99 ), price( 99 ), price( 99 ) ), other );
+    }
+
+    @Test
+    public void addingAgainMovesTheOrderAndRemoveDropsIt() {
+        final Order order = add( OrderType.Limit, 100, 0, 99 );
+        assertFalse( index.add( Order.createOrder( new SubmitOrderRequest( OrderType.Market, SecurityType.Forex, EURUSD, 100,
+                BigDecimal.ZERO, BigDecimal.ZERO, TIME, "" ) ) ) );
+
+        assertTrue( index.add( order ) );
+        assertEquals( 1, index.size() );
+
+        assertTrue( index.remove( order.getId() ) );
+        assertFalse( index.remove( order.getId() ) );
+        assertCrossed( query( price( 0 ), price( 1000 ), price( 0 ), price( 1000 ) ) );
+    }
+
+    private Order add( OrderType type, int quantity, int stopPrice, int limitPrice ) {
+        final SubmitOrderRequest request = new SubmitOrderRequest( type, SecurityType.Forex, EURUSD, quantity,
+                price( stopPrice ), price( limitPrice ), TIME, "" );
+        request.setOrderId( nextId++ );
+        final Order order = Order.createOrder( request );
+        assertTrue( index.add( order ) );
+        return order;
+    }
+
+    private List<Order> query( BigDecimal buyLow, BigDecimal buyHigh, BigDecimal sellLow, BigDecimal sellHigh ) {
+        return query( buyLow, buyHigh, sellLow, sellHigh, o -> { } );
+    }
+
+    private List<Order> query( BigDecimal buyLow, BigDecimal buyHigh, BigDecimal sellLow, BigDecimal sellHigh, Consumer<Order> action ) {
+        final List<Order> crossed = new ArrayList<>();
+        index.forEachCrossed( buyLow, buyHigh, sellLow, sellHigh, o -> {
+            crossed.add( o );
+            action.accept( o );
+        } );
+        return crossed;
+    }
+
+    private static void assertCrossed( List<Order> actual, Order... expected ) {
+        assertEquals( Arrays.asList( expected ), actual );
+    }
+
+    private static BigDecimal price( int price ) {
+        return BigDecimal.valueOf( price );
+    }
+
+    /**
+     * A limit order the test can close, as the transaction handler would once it fills
+     */
+    private static final class ClosableLimitOrder extends LimitOrder {
+        ClosableLimitOrder( int id, int quantity, BigDecimal limitPrice ) {
+            super( EURUSD, quantity, limitPrice, TIME );
+            this.id = id;
+            this.status = OrderStatus.Submitted;
+        }
+
+        void close() {
+            status = OrderStatus.Filled;
+        }
+    }
+}